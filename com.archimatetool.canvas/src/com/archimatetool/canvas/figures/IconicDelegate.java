@@ -12,7 +12,7 @@ import org.eclipse.swt.graphics.Image;
 
 import com.archimatetool.canvas.model.IIconic;
 import com.archimatetool.editor.model.IArchiveManager;
-import com.archimatetool.editor.ui.ImageFactory;
+import com.archimatetool.editor.ui.ImageCache;
 
 
 /**
@@ -35,25 +35,8 @@ public class IconicDelegate {
         if(fIconic.getImagePath() != null) {
             IArchiveManager archiveManager = (IArchiveManager)fIconic.getAdapter(IArchiveManager.class);
 
-            Image image = null;
-            try {
-                image = archiveManager.createImage(fIconic.getImagePath());
-            }
-            catch(Exception ex) {
-                ex.printStackTrace();
-            }
-            
-            if(image != null) {
-                // If the image bounds is bigger than the maximum displayed image here then create a scaled image
-                if(image.getBounds().width > IIconic.MAX_IMAGE_SIZE || image.getBounds().height > IIconic.MAX_IMAGE_SIZE) {
-                    fImage = ImageFactory.getScaledImage(image, IIconic.MAX_IMAGE_SIZE);
-                    image.dispose();
-                }
-                // Else use original
-                else {
-                    fImage = image;
-                }
-            }
+            // Shared image, scaled if the image bounds is bigger than the maximum displayed image here
+            fImage = ImageCache.INSTANCE.getImage(archiveManager, fIconic.getImagePath(), IIconic.MAX_IMAGE_SIZE);
         }
     }
     
@@ -121,8 +104,8 @@ public class IconicDelegate {
     }
     
     private void disposeImage() {
-        if(fImage != null && !fImage.isDisposed()) {
-            fImage.dispose();
+        if(fImage != null) {
+            ImageCache.INSTANCE.release(fImage);
             fImage = null;
         }
     }
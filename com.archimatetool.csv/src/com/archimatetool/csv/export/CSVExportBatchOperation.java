@@ -0,0 +1,25 @@
+/**
+ * This program and the accompanying materials
+ * are made available under the terms of the License
+ * which accompanies this distribution in the file LICENSE.txt
+ */
+package com.archimatetool.csv.export;
+
+import java.io.File;
+
+import com.archimatetool.editor.batch.IBatchOperation;
+import com.archimatetool.model.IArchimateModel;
+
+
+
+/**
+ * Batch Operation to export a model to CSV files with the default settings
+ *
+ * @author Phillip Beauvoir
+ */
+public class CSVExportBatchOperation implements IBatchOperation {
+    
+    public void run(IArchimateModel model, File outputFolder, String argument) throws Exception {
+        new CSVExporter(model).export(outputFolder);
+    }
+}
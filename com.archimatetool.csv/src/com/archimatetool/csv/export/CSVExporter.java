@@ -13,7 +13,6 @@ import java.io.Writer;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
-import java.util.Iterator;
 import java.util.List;
 
 import org.eclipse.emf.ecore.EObject;
@@ -24,9 +23,11 @@ import com.archimatetool.model.FolderType;
 import com.archimatetool.model.IArchimateComponent;
 import com.archimatetool.model.IArchimateElement;
 import com.archimatetool.model.IArchimateModel;
+import com.archimatetool.model.IArchimatePackage;
 import com.archimatetool.model.IFolder;
 import com.archimatetool.model.IProperty;
 import com.archimatetool.model.IRelationship;
+import com.archimatetool.model.util.ModelWalker;
 
 
 
@@ -37,6 +38,11 @@ import com.archimatetool.model.IRelationship;
  */
 public class CSVExporter implements CSVConstants {
     
+    /**
+     * Walker of the elements and relationships in a model
+     */
+    private static final ModelWalker COMPONENT_WALKER = new ModelWalker(IArchimatePackage.Literals.ARCHIMATE_COMPONENT);
+    
     private char fDelimiter = ',';
     private String fFilePrefix = ""; //$NON-NLS-1$
     
@@ -197,14 +203,21 @@ public class CSVExporter implements CSVConstants {
         }
         
         // Write Element and Relationship Properties
-        for(Iterator<EObject> iter = fModel.eAllContents(); iter.hasNext();) {
-            EObject eObject = iter.next();
-            if(eObject instanceof IArchimateComponent) {
-                IArchimateComponent component = (IArchimateComponent)eObject;
-                for(IProperty property : component.getProperties()) {
-                    writer.write(CRLF);
-                    writer.write(createPropertyRow(component.getId(), property));
+        final List<IArchimateComponent> components = new ArrayList<IArchimateComponent>();
+        
+        COMPONENT_WALKER.walk(fModel, new ModelWalker.IVisitor() {
+            public boolean visit(EObject eObject) {
+                if(!((IArchimateComponent)eObject).getProperties().isEmpty()) {
+                    components.add((IArchimateComponent)eObject);
                 }
+                return true;
+            }
+        });
+        
+        for(IArchimateComponent component : components) {
+            for(IProperty property : component.getProperties()) {
+                writer.write(CRLF);
+                writer.write(createPropertyRow(component.getId(), property));
             }
         }
         
@@ -219,17 +232,12 @@ public class CSVExporter implements CSVConstants {
             return true;
         }
         
-        for(Iterator<EObject> iter = fModel.eAllContents(); iter.hasNext();) {
-            EObject eObject = iter.next();
-            if(eObject instanceof IArchimateComponent) {
-                IArchimateComponent component = (IArchimateComponent)eObject;
-                if(!component.getProperties().isEmpty()) {
-                    return true;
-                }
+        // The walk is stopped at the first element or relationship with properties
+        return !COMPONENT_WALKER.walk(fModel, new ModelWalker.IVisitor() {
+            public boolean visit(EObject eObject) {
+                return ((IArchimateComponent)eObject).getProperties().isEmpty();
             }
-        }
-
-        return false;
+        });
     }
 
     /**
@@ -0,0 +1,46 @@
+/**
+ * This program and the accompanying materials
+ * are made available under the terms of the License
+ * which accompanies this distribution in the file LICENSE.txt
+ */
+package com.archimatetool.csv.importer;
+
+import java.io.File;
+
+import com.archimatetool.csv.CSVParseException;
+import com.archimatetool.editor.batch.BatchOperationException;
+import com.archimatetool.editor.batch.IBatchOperation;
+import com.archimatetool.editor.model.IArchiveManager;
+import com.archimatetool.model.IArchimateModel;
+
+
+
+/**
+ * Batch Operation to import CSV data into a model and save the model with the same file name in the output folder.
+ * The argument is the elements CSV file. The relations and properties files next to it are imported as well.
+ *
+ * @author Phillip Beauvoir
+ */
+public class CSVImportBatchOperation implements IBatchOperation {
+    
+    public void run(IArchimateModel model, File outputFolder, String argument) throws Exception {
+        try {
+            new CSVImporter(model).doImport(new File(argument));
+        }
+        catch(CSVParseException ex) {
+            throw new BatchOperationException(ex.getMessage());
+        }
+        
+        // Don't overwrite the original model
+        File file = model.getFile();
+        model.setFile(new File(outputFolder, file.getName()));
+        
+        try {
+            IArchiveManager archiveManager = (IArchiveManager)model.getAdapter(IArchiveManager.class);
+            archiveManager.saveModel();
+        }
+        finally {
+            model.setFile(file);
+        }
+    }
+}
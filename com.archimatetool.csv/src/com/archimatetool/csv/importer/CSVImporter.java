@@ -40,6 +40,7 @@ import com.archimatetool.model.IProperties;
 import com.archimatetool.model.IProperty;
 import com.archimatetool.model.IRelationship;
 import com.archimatetool.model.util.ArchimateModelUtils;
+import com.archimatetool.model.util.StringPool;
 
 
 /**
@@ -51,6 +52,9 @@ public class CSVImporter implements CSVConstants {
     
     private IArchimateModel fModel;
     
+    // Property keys, values and documentation are interned in the model's pool
+    private StringPool fStringPool;
+    
     // ID -> IArchimateComponent: new elements and relations added
     Map<String, IArchimateComponent> newComponents = new HashMap<String, IArchimateComponent>();
     
@@ -74,6 +78,7 @@ public class CSVImporter implements CSVConstants {
 
     public CSVImporter(IArchimateModel model) {
         fModel = model;
+        fStringPool = StringPool.getStringPool(model);
     }
     
     /**
@@ -279,7 +284,7 @@ public class CSVImporter implements CSVConstants {
         }
 
         String name = normalise(csvRecord.get(2));
-        String documentation = csvRecord.get(3);
+        String documentation = fStringPool.intern(csvRecord.get(3));
         
         // Is the element already in the model?
         IArchimateElement element = (IArchimateElement)findArchimateComponentInModel(id, eClass);
@@ -349,7 +354,7 @@ public class CSVImporter implements CSVConstants {
         }
 
         String name = normalise(csvRecord.get(2));
-        String documentation = csvRecord.get(3);
+        String documentation = fStringPool.intern(csvRecord.get(3));
         
         // Is the relation already in the model?
         IRelationship relation = (IRelationship)findArchimateComponentInModel(id, eClass);
@@ -449,8 +454,8 @@ public class CSVImporter implements CSVConstants {
             throw new CSVParseException(Messages.CSVImporter_7 + id);
         }
         
-        String key = normalise(csvRecord.get(1));
-        String value = normalise(csvRecord.get(2));
+        String key = fStringPool.intern(normalise(csvRecord.get(1)));
+        String value = fStringPool.intern(normalise(csvRecord.get(2)));
         
         // Is there already a property with this key?
         IProperty property = getProperty(propertiesObject, key);
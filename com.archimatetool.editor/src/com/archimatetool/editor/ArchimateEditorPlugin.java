@@ -10,12 +10,17 @@ import java.io.IOException;
 import java.net.URL;
 
 import org.eclipse.core.runtime.FileLocator;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.Platform;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
 import org.eclipse.osgi.service.datalocation.Location;
 import org.eclipse.ui.plugin.AbstractUIPlugin;
 import org.osgi.framework.Bundle;
 import org.osgi.framework.BundleContext;
 
+import com.archimatetool.editor.metrics.Metrics;
 import com.archimatetool.editor.preferences.Preferences;
 
 
@@ -53,6 +58,17 @@ public class ArchimateEditorPlugin extends AbstractUIPlugin {
     @Override
     public void start(BundleContext context) throws Exception {
         super.start(context);
+        
+        // Publish the performance metrics over JMX. Starting the platform MBean server takes a while so do it in the background.
+        Job job = new Job("Register Metrics MBean") { //$NON-NLS-1$
+            @Override
+            protected IStatus run(IProgressMonitor monitor) {
+                Metrics.INSTANCE.registerMBean();
+                return Status.OK_STATUS;
+            }
+        };
+        job.setSystem(true);
+        job.schedule();
     }
 
     /**
@@ -60,6 +76,8 @@ public class ArchimateEditorPlugin extends AbstractUIPlugin {
      */
     @Override
     public void stop(BundleContext context) throws Exception {
+        Metrics.INSTANCE.unregisterMBean();
+        
         // super must be *last*
         super.stop(context);
     }
@@ -43,6 +43,7 @@ import com.archimatetool.editor.ui.dialog.RelationshipsMatrixDialog;
 import com.archimatetool.editor.ui.services.ViewManager;
 import com.archimatetool.editor.utils.PlatformUtils;
 import com.archimatetool.editor.views.navigator.INavigatorView;
+import com.archimatetool.editor.views.performance.IPerformanceView;
 import com.archimatetool.editor.views.tree.ITreeModelView;
 
 
@@ -93,6 +94,7 @@ extends ActionBarAdvisor {
     private IAction fShowOutlineView;
     private IAction fShowNavigatorView;
     private IAction fShowPaletteView;
+    private IAction fShowPerformanceView;
     
     private IAction fActionShowRelationsMatrix;
     
@@ -244,6 +246,10 @@ extends ActionBarAdvisor {
         };
         register(fShowPaletteView);
         
+        fShowPerformanceView = new ToggleViewAction(IPerformanceView.NAME, IPerformanceView.ID,
+                "com.archimatetool.editor.action.showPerformanceView", null); //$NON-NLS-1$
+        register(fShowPerformanceView);
+        
         // Show Relationships matrix dialog
         fActionShowRelationsMatrix = new Action(Messages.ArchimateEditorActionBarAdvisor_17) {
             @Override
@@ -450,6 +456,7 @@ extends ActionBarAdvisor {
         menu.add(fShowOutlineView);
         menu.add(fShowNavigatorView);
         menu.add(fShowPaletteView);
+        menu.add(fShowPerformanceView);
         menu.add(new GroupMarker("show_view_append")); //$NON-NLS-1$
         menu.add(new Separator("show_view_end")); //$NON-NLS-1$
 
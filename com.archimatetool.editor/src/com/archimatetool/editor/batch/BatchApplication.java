@@ -0,0 +1,404 @@
+/**
+ * This program and the accompanying materials
+ * are made available under the terms of the License
+ * which accompanies this distribution in the file LICENSE.txt
+ */
+package com.archimatetool.editor.batch;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.eclipse.equinox.app.IApplication;
+import org.eclipse.equinox.app.IApplicationContext;
+import org.eclipse.gef.commands.CommandStack;
+import org.eclipse.swt.SWTError;
+import org.eclipse.swt.widgets.Display;
+
+import com.archimatetool.editor.ArchimateEditorPlugin;
+import com.archimatetool.editor.Logger;
+import com.archimatetool.editor.model.IArchiveManager;
+import com.archimatetool.editor.model.impl.ModelLoader;
+import com.archimatetool.editor.utils.FileUtils;
+import com.archimatetool.model.IArchimateModel;
+
+
+
+/**
+ * Application that opens models and runs operations on them from the command line without the workbench. For example:<p>
+ *
+ * <pre>Archi -application com.archimatetool.editor.batch -nosplash -consoleLog -output reports -csvExport -validate models</pre>
+ *
+ * The operations are registered with the "com.archimatetool.editor.batchOperation" extension point and each one is a command line option.
+ * Models can be given as model files or as folders of model files. Each operation writes its files to a folder
+ * named after the operation in a folder named after the model in the output folder.<p>
+ *
+ * Models are loaded and have the operations run on them in a pool of threads, one for each processor unless "-threads" is given.
+ * Operations that draw diagrams need a Display and are run afterwards on the main thread. On a machine with no screen this needs
+ * a virtual X server such as Xvfb. If the Display can't be made nothing is run. The models wait in memory for the main thread,
+ * so no more models are loaded ahead of it than there are threads.<p>
+ *
+ * The time taken to load each model and run each operation is written to standard output.
+ *
+ * @author Phillip Beauvoir
+ */
+public class BatchApplication implements IApplication {
+    
+    /**
+     * ID of the Application
+     */
+    public static final String ID = ArchimateEditorPlugin.PLUGIN_ID + ".batch"; //$NON-NLS-1$
+    
+    /**
+     * Exit code if a model could not be loaded or an operation failed
+     */
+    public static final Integer EXIT_FAILED = 1;
+    
+    /**
+     * Exit code if the command line is wrong
+     */
+    public static final Integer EXIT_USAGE = 2;
+    
+    /**
+     * Exit code if an operation needs a Display and one could not be made
+     */
+    public static final Integer EXIT_NO_DISPLAY = 3;
+    
+    /**
+     * An operation and its argument from the command line
+     */
+    private static class Operation {
+        BatchOperationExtensionHandler.Descriptor descriptor;
+        String argument;
+        
+        Operation(BatchOperationExtensionHandler.Descriptor descriptor, String argument) {
+            this.descriptor = descriptor;
+            this.argument = argument;
+        }
+    }
+    
+    /**
+     * A loaded model, or null if it could not be loaded, and whether everything run on it so far has succeeded
+     */
+    private static class Result {
+        IArchimateModel model;
+        boolean ok = true;
+    }
+    
+    private File fOutputFolder;
+    private int fThreads = Runtime.getRuntime().availableProcessors();
+    private List<File> fFiles = new ArrayList<File>();
+    private List<Operation> fOperations = new ArrayList<Operation>();
+    
+    public Object start(IApplicationContext context) throws Exception {
+        String[] args = (String[])context.getArguments().get(IApplicationContext.APPLICATION_ARGS);
+        
+        if(!parseArguments(args == null ? new String[0] : args)) {
+            printUsage();
+            return EXIT_USAGE;
+        }
+        
+        Display display = null;
+        
+        if(needsDisplay()) {
+            try {
+                display = new Display();
+            }
+            catch(SWTError ex) {
+                System.err.println("Could not open a display: " + ex.getMessage()); //$NON-NLS-1$
+                System.err.println("Operations that draw diagrams need a display. Use a virtual X server such as Xvfb on a machine with no screen."); //$NON-NLS-1$
+                return EXIT_NO_DISPLAY;
+            }
+        }
+        
+        context.applicationRunning();
+        
+        try {
+            return run() ? EXIT_OK : EXIT_FAILED;
+        }
+        finally {
+            if(display != null) {
+                display.dispose();
+            }
+        }
+    }
+    
+    public void stop() {
+    }
+    
+    /**
+     * Load the models and run the operations
+     * @return true if all models were loaded and all operations succeeded
+     */
+    private boolean run() throws InterruptedException {
+        long start = System.currentTimeMillis();
+        
+        final boolean needsDisplay = needsDisplay();
+        
+        List<File> modelFolders = new ArrayList<File>();
+        Set<String> folderNames = new HashSet<String>();
+        
+        for(File file : fFiles) {
+            // Two models with the same name get different folders
+            String name = FileUtils.getFileNameWithoutExtension(file);
+            for(int i = 2; !folderNames.add(name); i++) {
+                name = FileUtils.getFileNameWithoutExtension(file) + "_" + i; //$NON-NLS-1$
+            }
+            modelFolders.add(new File(fOutputFolder, name));
+        }
+        
+        // Models kept for the main thread wait in memory, so only load as many ahead of it as there are threads
+        int ahead = needsDisplay ? fThreads : fFiles.size();
+        
+        ExecutorService executor = Executors.newFixedThreadPool(fThreads);
+        List<Future<Result>> futures = new ArrayList<Future<Result>>();
+        
+        boolean ok = true;
+        
+        try {
+            for(int i = 0; i < Math.min(ahead, fFiles.size()); i++) {
+                futures.add(submit(executor, fFiles.get(i), modelFolders.get(i), needsDisplay));
+            }
+            
+            // Operations that need the Display are run on this thread as each model is ready, in the order the models were given
+            for(int i = 0; i < fFiles.size(); i++) {
+                Result result;
+                try {
+                    result = futures.get(i).get();
+                }
+                catch(ExecutionException ex) {
+                    throw new RuntimeException(ex.getCause());
+                }
+                
+                // Load the next model while this one is used
+                if(futures.size() < fFiles.size()) {
+                    int next = futures.size();
+                    futures.add(submit(executor, fFiles.get(next), modelFolders.get(next), needsDisplay));
+                }
+                
+                // Don't hold on to the model after it has been used
+                futures.set(i, null);
+                
+                ok &= result.ok;
+                
+                if(result.model != null) {
+                    for(Operation operation : fOperations) {
+                        if(operation.descriptor.needsDisplay()) {
+                            ok &= runOperation(operation, result.model, fFiles.get(i), modelFolders.get(i));
+                        }
+                    }
+                    closeModel(result.model);
+                }
+            }
+        }
+        finally {
+            executor.shutdown();
+        }
+        
+        System.out.println(String.format("%d models, %d operations, %d threads, %d ms, %s", //$NON-NLS-1$
+                fFiles.size(), fOperations.size(), fThreads, System.currentTimeMillis() - start, ok ? "OK" : "FAILED")); //$NON-NLS-1$ //$NON-NLS-2$
+        
+        return ok;
+    }
+    
+    /**
+     * Load a model and run the operations that don't need the Display on it in the pool
+     * @param keepModel true to keep the model in the Result for the operations on the main thread
+     */
+    private Future<Result> submit(ExecutorService executor, final File file, final File modelFolder, final boolean keepModel) {
+        return executor.submit(new Callable<Result>() {
+            public Result call() {
+                Result result = new Result();
+                
+                result.model = loadModel(file);
+                if(result.model == null) {
+                    result.ok = false;
+                    return result;
+                }
+                
+                for(Operation operation : fOperations) {
+                    if(!operation.descriptor.needsDisplay()) {
+                        result.ok &= runOperation(operation, result.model, file, modelFolder);
+                    }
+                }
+                
+                if(!keepModel) {
+                    closeModel(result.model);
+                    result.model = null;
+                }
+                
+                return result;
+            }
+        });
+    }
+    
+    /**
+     * Load a model without asking about later versions or unknown features
+     * @return The model or null if it could not be loaded
+     */
+    private IArchimateModel loadModel(File file) {
+        long start = System.currentTimeMillis();
+        
+        ModelLoader loader = new ModelLoader(file, false);
+        loader.load();
+        
+        IArchimateModel model = loader.getModel();
+        
+        if(model == null) {
+            String error = loader.getError() != null ? loader.getError().getMessage() : "Not a model file"; //$NON-NLS-1$
+            report(file, "load", start, error); //$NON-NLS-1$
+            return null;
+        }
+        
+        loader.fixCompatibility();
+        
+        model.setFile(file);
+        model.setDefaults();
+        model.setAdapter(CommandStack.class, new CommandStack());
+        loader.createArchiveManager();
+        
+        report(file, "load", start, null); //$NON-NLS-1$
+        
+        return model;
+    }
+    
+    private void closeModel(IArchimateModel model) {
+        IArchiveManager archiveManager = (IArchiveManager)model.getAdapter(IArchiveManager.class);
+        if(archiveManager != null) {
+            archiveManager.dispose();
+        }
+    }
+    
+    /**
+     * @return true if the operation succeeded
+     */
+    private boolean runOperation(Operation operation, IArchimateModel model, File file, File modelFolder) {
+        long start = System.currentTimeMillis();
+        String id = operation.descriptor.getId();
+        
+        try {
+            File folder = new File(modelFolder, id);
+            folder.mkdirs();
+            if(!folder.isDirectory()) {
+                throw new IOException("Could not create folder " + folder); //$NON-NLS-1$
+            }
+            
+            operation.descriptor.createOperation().run(model, folder, operation.argument);
+            report(file, id, start, null);
+            return true;
+        }
+        catch(BatchOperationException ex) {
+            report(file, id, start, ex.getMessage());
+        }
+        catch(Exception ex) {
+            report(file, id, start, ex.toString());
+            Logger.logError("Batch operation " + id + " failed on " + file, ex); //$NON-NLS-1$ //$NON-NLS-2$
+        }
+        
+        return false;
+    }
+    
+    /**
+     * Write the time taken to run something on a model to standard output
+     * @param error The reason it failed, or null if it succeeded
+     */
+    private void report(File file, String id, long start, String error) {
+        System.out.println(String.format("%-30s %-14s %8d ms  %s", //$NON-NLS-1$
+                file.getName(), id, System.currentTimeMillis() - start, error == null ? "OK" : "FAILED: " + error)); //$NON-NLS-1$ //$NON-NLS-2$
+    }
+    
+    private boolean needsDisplay() {
+        for(Operation operation : fOperations) {
+            if(operation.descriptor.needsDisplay()) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * @return false if the command line is wrong
+     */
+    boolean parseArguments(String[] args) {
+        for(int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            
+            if("-output".equals(arg) && i + 1 < args.length) { //$NON-NLS-1$
+                fOutputFolder = new File(args[++i]);
+            }
+            else if("-threads".equals(arg) && i + 1 < args.length) { //$NON-NLS-1$
+                try {
+                    fThreads = Integer.parseInt(args[++i]);
+                }
+                catch(NumberFormatException ex) {
+                    return false;
+                }
+                if(fThreads < 1) {
+                    return false;
+                }
+            }
+            else if(arg.startsWith("-")) { //$NON-NLS-1$
+                BatchOperationExtensionHandler.Descriptor descriptor = BatchOperationExtensionHandler.INSTANCE.getOperation(arg.substring(1));
+                if(descriptor == null) {
+                    System.err.println("Unknown option: " + arg); //$NON-NLS-1$
+                    return false;
+                }
+                
+                String argument = null;
+                if(descriptor.getArgument() != null) {
+                    if(i + 1 == args.length) {
+                        return false;
+                    }
+                    argument = args[++i];
+                }
+                
+                fOperations.add(new Operation(descriptor, argument));
+            }
+            else {
+                addFile(new File(arg));
+            }
+        }
+        
+        return fOutputFolder != null && !fFiles.isEmpty() && !fOperations.isEmpty();
+    }
+    
+    /**
+     * Add a model file, or the model files in a folder
+     */
+    private void addFile(File file) {
+        if(file.isDirectory()) {
+            File[] files = file.listFiles();
+            if(files != null) {
+                for(File child : FileUtils.sortFiles(files)) {
+                    if(child.isFile() && child.getName().toLowerCase().endsWith(".archimate")) { //$NON-NLS-1$
+                        fFiles.add(child);
+                    }
+                }
+            }
+        }
+        else {
+            fFiles.add(file);
+        }
+    }
+    
+    private void printUsage() {
+        System.out.println("Usage: -output <folder> [-threads <number>] <operations> <model files or folders>"); //$NON-NLS-1$
+        System.out.println("Operations:"); //$NON-NLS-1$
+        
+        for(BatchOperationExtensionHandler.Descriptor descriptor : BatchOperationExtensionHandler.INSTANCE.getRegisteredOperations()) {
+            String option = "-" + descriptor.getId(); //$NON-NLS-1$
+            if(descriptor.getArgument() != null) {
+                option += " <" + descriptor.getArgument() + ">"; //$NON-NLS-1$ //$NON-NLS-2$
+            }
+            System.out.println(String.format("  %-30s %s", option, descriptor.getName())); //$NON-NLS-1$
+        }
+    }
+}
@@ -0,0 +1,21 @@
+/**
+ * This program and the accompanying materials
+ * are made available under the terms of the License
+ * which accompanies this distribution in the file LICENSE.txt
+ */
+package com.archimatetool.editor.batch;
+
+
+
+/**
+ * Thrown by an {@link IBatchOperation} that ran but found that the model did not pass.
+ * Only the message is reported, not the stack trace.
+ *
+ * @author Phillip Beauvoir
+ */
+public class BatchOperationException extends Exception {
+    
+    public BatchOperationException(String message) {
+        super(message);
+    }
+}
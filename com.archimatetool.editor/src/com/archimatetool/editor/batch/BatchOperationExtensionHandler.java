@@ -0,0 +1,101 @@
+/**
+ * This program and the accompanying materials
+ * are made available under the terms of the License
+ * which accompanies this distribution in the file LICENSE.txt
+ */
+package com.archimatetool.editor.batch;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IConfigurationElement;
+import org.eclipse.core.runtime.IExtensionRegistry;
+import org.eclipse.core.runtime.Platform;
+
+
+
+/**
+ * Manages Batch Operation Extensions
+ *
+ * @author Phillip Beauvoir
+ */
+public class BatchOperationExtensionHandler {
+    
+    public static String EXTENSIONPOINT = "com.archimatetool.editor.batchOperation"; //$NON-NLS-1$
+    
+    public static BatchOperationExtensionHandler INSTANCE = new BatchOperationExtensionHandler();
+    
+    /**
+     * A registered batch operation. The operation class is only loaded when it is run.
+     */
+    public static class Descriptor {
+        private IConfigurationElement fElement;
+        
+        Descriptor(IConfigurationElement element) {
+            fElement = element;
+        }
+        
+        /**
+         * @return The ID, which is also the command line option without the "-"
+         */
+        public String getId() {
+            return fElement.getAttribute("id"); //$NON-NLS-1$
+        }
+        
+        public String getName() {
+            return fElement.getAttribute("name"); //$NON-NLS-1$
+        }
+        
+        /**
+         * @return The name of the argument that follows the option on the command line, or null if it does not take one
+         */
+        public String getArgument() {
+            return fElement.getAttribute("argument"); //$NON-NLS-1$
+        }
+        
+        /**
+         * @return true if the operation needs a Display, so it has to be run on the main thread
+         */
+        public boolean needsDisplay() {
+            return Boolean.valueOf(fElement.getAttribute("needsDisplay")); //$NON-NLS-1$
+        }
+        
+        public IBatchOperation createOperation() throws CoreException {
+            return (IBatchOperation)fElement.createExecutableExtension("class"); //$NON-NLS-1$
+        }
+    }
+    
+    private List<Descriptor> descriptors = new ArrayList<Descriptor>();
+    
+    private BatchOperationExtensionHandler() {
+        registerOperations();
+    }
+    
+    public List<Descriptor> getRegisteredOperations() {
+        return descriptors;
+    }
+    
+    /**
+     * @param id The ID of the operation
+     * @return The operation with id or null
+     */
+    public Descriptor getOperation(String id) {
+        for(Descriptor descriptor : descriptors) {
+            if(descriptor.getId().equals(id)) {
+                return descriptor;
+            }
+        }
+        
+        return null;
+    }
+    
+    private void registerOperations() {
+        IExtensionRegistry registry = Platform.getExtensionRegistry();
+        for(IConfigurationElement configurationElement : registry.getConfigurationElementsFor(EXTENSIONPOINT)) {
+            if(configurationElement.getAttribute("id") != null) { //$NON-NLS-1$
+                descriptors.add(new Descriptor(configurationElement));
+            }
+        }
+    }
+}
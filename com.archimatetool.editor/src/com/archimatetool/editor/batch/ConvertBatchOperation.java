@@ -0,0 +1,39 @@
+/**
+ * This program and the accompanying materials
+ * are made available under the terms of the License
+ * which accompanies this distribution in the file LICENSE.txt
+ */
+package com.archimatetool.editor.batch;
+
+import java.io.File;
+
+import com.archimatetool.editor.model.IArchiveManager;
+import com.archimatetool.model.IArchimateModel;
+
+
+
+/**
+ * Batch Operation to save a copy of a model in the format given as the argument, "binary" or "xml".
+ * The copy has the same file name as the model and is saved with its images, so an archive file stays an archive file.
+ *
+ * @author Phillip Beauvoir
+ */
+public class ConvertBatchOperation implements IBatchOperation {
+    
+    public void run(IArchimateModel model, File outputFolder, String argument) throws Exception {
+        boolean binary;
+        
+        if("binary".equalsIgnoreCase(argument)) { //$NON-NLS-1$
+            binary = true;
+        }
+        else if("xml".equalsIgnoreCase(argument)) { //$NON-NLS-1$
+            binary = false;
+        }
+        else {
+            throw new IllegalArgumentException("The format must be binary or xml, not " + argument); //$NON-NLS-1$
+        }
+        
+        IArchiveManager archiveManager = (IArchiveManager)model.getAdapter(IArchiveManager.class);
+        archiveManager.saveModelCopy(new File(outputFolder, model.getFile().getName()), binary);
+    }
+}
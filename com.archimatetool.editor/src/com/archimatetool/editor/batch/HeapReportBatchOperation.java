@@ -0,0 +1,42 @@
+/**
+ * This program and the accompanying materials
+ * are made available under the terms of the License
+ * which accompanies this distribution in the file LICENSE.txt
+ */
+package com.archimatetool.editor.batch;
+
+import java.io.File;
+import java.io.PrintWriter;
+
+import com.archimatetool.model.IArchimateModel;
+import com.archimatetool.model.util.StringPool;
+
+
+
+/**
+ * Batch Operation to write "heap-report.txt" with the heap saved by sharing the model's
+ * property keys, property values and documentation through its StringPool
+ *
+ * @author Phillip Beauvoir
+ */
+public class HeapReportBatchOperation implements IBatchOperation {
+    
+    public void run(IArchimateModel model, File outputFolder, String argument) throws Exception {
+        StringPool pool = StringPool.getStringPool(model);
+        Runtime runtime = Runtime.getRuntime();
+        
+        PrintWriter writer = new PrintWriter(new File(outputFolder, "heap-report.txt"), "UTF-8"); //$NON-NLS-1$ //$NON-NLS-2$
+        try {
+            writer.println("Strings interned:      " + pool.getLookupCount()); //$NON-NLS-1$
+            writer.println("Different strings:     " + pool.size()); //$NON-NLS-1$
+            writer.println("Duplicates shared:     " + pool.getDuplicateCount()); //$NON-NLS-1$
+            writer.println("Heap saved (estimate): " + pool.getBytesSaved() / 1024 + " KB"); //$NON-NLS-1$ //$NON-NLS-2$
+            
+            // This is for all models loaded at the same time
+            writer.println("Heap used by the JVM:  " + (runtime.totalMemory() - runtime.freeMemory()) / 1024 + " KB"); //$NON-NLS-1$ //$NON-NLS-2$
+        }
+        finally {
+            writer.close();
+        }
+    }
+}
@@ -0,0 +1,35 @@
+/**
+ * This program and the accompanying materials
+ * are made available under the terms of the License
+ * which accompanies this distribution in the file LICENSE.txt
+ */
+package com.archimatetool.editor.batch;
+
+import java.io.File;
+
+import com.archimatetool.model.IArchimateModel;
+
+
+
+/**
+ * An operation that is run on models from the command line by the {@link BatchApplication}, without the workbench.<p>
+ *
+ * Operations are registered with the "com.archimatetool.editor.batchOperation" extension point. The model has an IArchiveManager
+ * and a CommandStack but is not registered with the IEditorModelManager.
+ * An operation that does not need a Display can be run on any thread, at the same time as operations on other models.
+ * An operation that needs a Display to draw diagrams is run on the main thread, which has the Display.
+ *
+ * @author Phillip Beauvoir
+ */
+public interface IBatchOperation {
+    
+    /**
+     * Run this operation on a model
+     * @param model The model
+     * @param outputFolder The folder to write files to. This is made for the model and the operation and exists already.
+     * @param argument The argument given on the command line, or null if the operation does not take one
+     * @throws BatchOperationException If the operation ran but the model did not pass, such as a failed validation
+     * @throws Exception If the operation could not be run
+     */
+    void run(IArchimateModel model, File outputFolder, String argument) throws Exception;
+}
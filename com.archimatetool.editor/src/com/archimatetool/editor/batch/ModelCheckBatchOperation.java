@@ -0,0 +1,41 @@
+/**
+ * This program and the accompanying materials
+ * are made available under the terms of the License
+ * which accompanies this distribution in the file LICENSE.txt
+ */
+package com.archimatetool.editor.batch;
+
+import java.io.File;
+import java.io.PrintWriter;
+
+import com.archimatetool.editor.model.ModelChecker;
+import com.archimatetool.model.IArchimateModel;
+
+
+
+/**
+ * Batch Operation to check the integrity of a model as it is checked when it is opened in Archi.
+ * Any errors are written to "errors.txt".
+ *
+ * @author Phillip Beauvoir
+ */
+public class ModelCheckBatchOperation implements IBatchOperation {
+    
+    public void run(IArchimateModel model, File outputFolder, String argument) throws Exception {
+        ModelChecker checker = new ModelChecker(model);
+        
+        if(!checker.checkAll()) {
+            PrintWriter writer = new PrintWriter(new File(outputFolder, "errors.txt"), "UTF-8"); //$NON-NLS-1$ //$NON-NLS-2$
+            try {
+                for(String message : checker.getErrorMessages()) {
+                    writer.println(message);
+                }
+            }
+            finally {
+                writer.close();
+            }
+            
+            throw new BatchOperationException(checker.getErrorMessages().size() + " errors"); //$NON-NLS-1$
+        }
+    }
+}
@@ -0,0 +1,42 @@
+/**
+ * This program and the accompanying materials
+ * are made available under the terms of the License
+ * which accompanies this distribution in the file LICENSE.txt
+ */
+package com.archimatetool.editor.batch;
+
+import java.io.File;
+
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.graphics.Image;
+import org.eclipse.swt.graphics.ImageData;
+import org.eclipse.swt.graphics.ImageLoader;
+
+import com.archimatetool.editor.diagram.util.DiagramUtils;
+import com.archimatetool.model.IArchimateModel;
+import com.archimatetool.model.IDiagramModel;
+
+
+
+/**
+ * Batch Operation to save each View in a model as a PNG image named after the View's ID
+ *
+ * @author Phillip Beauvoir
+ */
+public class PNGExportBatchOperation implements IBatchOperation {
+    
+    public void run(IArchimateModel model, File outputFolder, String argument) throws Exception {
+        for(IDiagramModel dm : model.getDiagramModels()) {
+            Image image = DiagramUtils.createImage(dm, 1, 10);
+            
+            try {
+                ImageLoader loader = new ImageLoader();
+                loader.data = new ImageData[] { image.getImageData() };
+                loader.save(new File(outputFolder, dm.getId() + ".png").getPath(), SWT.IMAGE_PNG); //$NON-NLS-1$
+            }
+            finally {
+                image.dispose();
+            }
+        }
+    }
+}
@@ -10,6 +10,8 @@ import java.util.EventObject;
 import java.util.List;
 
 import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.draw2d.DeferredUpdateManager;
+import org.eclipse.draw2d.LightweightSystem;
 import org.eclipse.draw2d.PositionConstants;
 import org.eclipse.draw2d.geometry.Dimension;
 import org.eclipse.draw2d.geometry.Point;
@@ -46,6 +48,7 @@ import org.eclipse.gef.ui.palette.PaletteViewerPreferences;
 import org.eclipse.gef.ui.palette.PaletteViewerProvider;
 import org.eclipse.gef.ui.parts.GraphicalEditorWithFlyoutPalette;
 import org.eclipse.gef.ui.parts.GraphicalViewerKeyHandler;
+import org.eclipse.gef.ui.parts.ScrollingGraphicalViewer;
 import org.eclipse.help.IContextProvider;
 import org.eclipse.jface.action.IAction;
 import org.eclipse.jface.commands.ActionHandler;
@@ -60,6 +63,7 @@ import org.eclipse.swt.custom.CLabel;
 import org.eclipse.swt.events.MouseAdapter;
 import org.eclipse.swt.events.MouseEvent;
 import org.eclipse.swt.events.MouseTrackAdapter;
+import org.eclipse.swt.graphics.GC;
 import org.eclipse.swt.graphics.Image;
 import org.eclipse.swt.layout.GridData;
 import org.eclipse.swt.layout.GridLayout;
@@ -112,6 +116,8 @@ import com.archimatetool.editor.diagram.actions.ZoomNormalAction;
 import com.archimatetool.editor.diagram.dnd.PaletteTemplateTransferDropTargetListener;
 import com.archimatetool.editor.diagram.tools.FormatPainterInfo;
 import com.archimatetool.editor.diagram.tools.FormatPainterToolEntry;
+import com.archimatetool.editor.metrics.Metrics;
+import com.archimatetool.editor.metrics.Timer;
 import com.archimatetool.editor.preferences.IPreferenceConstants;
 import com.archimatetool.editor.preferences.Preferences;
 import com.archimatetool.editor.ui.ArchimateLabelProvider;
@@ -288,6 +294,56 @@ implements IDiagramModelEditor, IContextProvider, ITabbedPropertySheetPageContri
      */
     protected abstract void createRootEditPart(GraphicalViewer viewer);
     
+    /**
+     * Time taken to validate and paint the figures of a diagram each time it is updated
+     */
+    private static final Timer PAINT_TIMER = Metrics.INSTANCE.getTimer(Metrics.DIAGRAM_PAINT);
+    
+    /**
+     * Same as the super class but with a viewer that times each update and paint of the figures
+     */
+    @Override
+    protected void createGraphicalViewer(Composite parent) {
+        GraphicalViewer viewer = new ScrollingGraphicalViewer() {
+            @Override
+            protected LightweightSystem createLightweightSystem() {
+                LightweightSystem lws = super.createLightweightSystem();
+                
+                lws.setUpdateManager(new DeferredUpdateManager() {
+                    @Override
+                    public synchronized void performUpdate() {
+                        long start = PAINT_TIMER.start();
+                        try {
+                            super.performUpdate();
+                        }
+                        finally {
+                            PAINT_TIMER.stop(start);
+                        }
+                    }
+                    
+                    // Painting the parts of the control that are exposed
+                    @Override
+                    public void paint(GC gc) {
+                        long start = PAINT_TIMER.start();
+                        try {
+                            super.paint(gc);
+                        }
+                        finally {
+                            PAINT_TIMER.stop(start);
+                        }
+                    }
+                });
+                
+                return lws;
+            }
+        };
+        
+        viewer.createControl(parent);
+        setGraphicalViewer(viewer);
+        configureGraphicalViewer();
+        hookGraphicalViewer();
+        initializeGraphicalViewer();
+    }
     
     @Override
     protected void configureGraphicalViewer() {
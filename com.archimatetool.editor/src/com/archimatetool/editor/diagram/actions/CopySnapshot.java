@@ -39,6 +39,7 @@ import com.archimatetool.model.IDiagramModelContainer;
 import com.archimatetool.model.IDiagramModelObject;
 import com.archimatetool.model.IDiagramModelReference;
 import com.archimatetool.model.IRelationship;
+import com.archimatetool.model.util.StringPool;
 
 
 
@@ -111,6 +112,11 @@ public final class CopySnapshot {
      */
     private IArchimateModel fTargetArchimateModel;
     
+    /**
+     * The StringPool of the target Archimate Model
+     */
+    private StringPool fTargetStringPool;
+    
     /**
      * When a model is closed in the the app clear the system Clipboard of any CopySnapshot objects
      * if the CopySnapshot references thta model that is closed
@@ -361,6 +367,9 @@ public final class CopySnapshot {
         
         fTargetArchimateModel = targetDiagramModel.getArchimateModel();
         
+        // Pasted strings are shared with the target model
+        fTargetStringPool = StringPool.getStringPool(fTargetArchimateModel);
+        
         // Create copies of Archimate Elements or not
         fDoCreateArchimateElementCopies = needsCopiedArchimateElements(targetDiagramModel);
 
@@ -397,6 +406,7 @@ public final class CopySnapshot {
         }
         
         IDiagramModelObject newObject = (IDiagramModelObject)snapshotObject.getCopy();
+        fTargetStringPool.internAll(newObject);
         
         // Offset top level objects
         if(container instanceof IDiagramModel) {
@@ -418,6 +428,7 @@ public final class CopySnapshot {
             if(fDoCreateArchimateElementCopies) {
                 String name = dmo.getArchimateElement().getName();
                 dmo.getArchimateElement().setName(name + " " + Messages.CopySnapshot_1); //$NON-NLS-1$
+                fTargetStringPool.internAll(dmo.getArchimateElement());
             }
             // Else re-use original ArchiMate element
             else {
@@ -454,6 +465,7 @@ public final class CopySnapshot {
         // Only add Connections that have both nodes copied as well
         if(newSource != null && newTarget != null) {
             IDiagramModelConnection newConnection = (IDiagramModelConnection)snapshotConnection.getCopy();
+            fTargetStringPool.internAll(newConnection);
             
             // Re-use original Archimate relationship
             if(!fDoCreateArchimateElementCopies && snapshotConnection instanceof IDiagramModelArchimateConnection) {
@@ -461,6 +473,9 @@ public final class CopySnapshot {
                 IRelationship relationship = originalDiagramConnection.getRelationship();
                 ((IDiagramModelArchimateConnection)newConnection).setRelationship(relationship);
             }
+            else if(newConnection instanceof IDiagramModelArchimateConnection) {
+                fTargetStringPool.internAll(((IDiagramModelArchimateConnection)newConnection).getRelationship());
+            }
             
             result.add(new PasteDiagramConnectionCommand(newConnection, newSource, newTarget, fDoCreateArchimateElementCopies));
         }
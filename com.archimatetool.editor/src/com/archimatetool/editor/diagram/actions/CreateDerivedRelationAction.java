@@ -53,8 +53,8 @@ import com.archimatetool.model.IDiagramModelArchimateConnection;
 import com.archimatetool.model.IDiagramModelArchimateObject;
 import com.archimatetool.model.IFolder;
 import com.archimatetool.model.IRelationship;
+import com.archimatetool.model.util.DerivedRelationsEngine;
 import com.archimatetool.model.util.DerivedRelationsUtils;
-import com.archimatetool.model.util.DerivedRelationsUtils.TooComplicatedException;
 
 
 
@@ -167,6 +167,7 @@ public class CreateDerivedRelationAction extends SelectionAction {
         IArchimateElement tgtElement;
         List<List<IRelationship>> chains;
         boolean isTooComplicated;
+        boolean isPartial;
         
         ChainList(IDiagramModelArchimateObject srcDiagramObject, IDiagramModelArchimateObject tgtDiagramObject) {
             this.srcDiagramObject = srcDiagramObject;
@@ -184,11 +185,20 @@ public class CreateDerivedRelationAction extends SelectionAction {
         }
         
         private void findChains() {
-            try {
-                chains = DerivedRelationsUtils.getDerivedRelationshipChains(srcElement, tgtElement);
+            DerivedRelationsEngine.Result result = new DerivedRelationsEngine().findChains(srcElement, tgtElement);
+            
+            if(!result.getChains().isEmpty()) {
+                chains = result.getChains();
             }
-            catch(TooComplicatedException ex) {
-                isTooComplicated = true;
+            
+            // Ran out of time but we may have found some chains
+            if(!result.isComplete()) {
+                if(chains == null) {
+                    isTooComplicated = true;
+                }
+                else {
+                    isPartial = true;
+                }
             }
         }
         
@@ -257,7 +267,12 @@ public class CreateDerivedRelationAction extends SelectionAction {
         }
         
         private void createTable(Composite parent, ChainList chainList) {
-            createLabel(parent, chainList);
+            CLabel label = createLabel(parent, chainList);
+            
+            if(chainList.isPartial) {
+                label.setText(label.getText() + "  " + Messages.CreateDerivedRelationAction_12); //$NON-NLS-1$
+                label.setImage(Display.getCurrent().getSystemImage(SWT.ICON_INFORMATION));
+            }
             
             Composite c = new Composite(parent, SWT.NULL);
             c.setLayout(new TableColumnLayout());
@@ -43,6 +43,8 @@ public class Messages extends NLS {
 
     public static String CreateDerivedRelationAction_11;
 
+    public static String CreateDerivedRelationAction_12;
+
     public static String CreateDerivedRelationAction_2;
 
     public static String CreateDerivedRelationAction_3;
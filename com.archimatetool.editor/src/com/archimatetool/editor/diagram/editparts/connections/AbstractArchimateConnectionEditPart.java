@@ -8,16 +8,11 @@ package com.archimatetool.editor.diagram.editparts.connections;
 import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
 
-import org.eclipse.emf.common.notify.Adapter;
-import org.eclipse.emf.common.notify.Notification;
-import org.eclipse.emf.ecore.util.EContentAdapter;
-
 import com.archimatetool.editor.diagram.IArchimateDiagramEditor;
+import com.archimatetool.editor.diagram.editparts.connections.StructuralChainsService.IStructuralChainListener;
 import com.archimatetool.model.IArchimateModel;
-import com.archimatetool.model.IArchimatePackage;
 import com.archimatetool.model.IDiagramModelArchimateConnection;
 import com.archimatetool.model.IRelationship;
-import com.archimatetool.model.util.DerivedRelationsUtils;
 
 
 /**
@@ -31,19 +26,12 @@ implements IArchimateConnectionEditPart {
     private IArchimateModel fArchimateModel;
     
     /**
-     * Listen to all model changes to refresh Structural color.
+     * Listen to the model's Structural Chains service to refresh Structural color.
      */
-    private Adapter fModelAdapter = new EContentAdapter() {
+    private IStructuralChainListener fStructuralChainListener = new IStructuralChainListener() {
         @Override
-        public void notifyChanged(Notification msg) {
-            super.notifyChanged(msg);
-
-            Object feature = msg.getFeature();
-            if(feature == IArchimatePackage.Literals.RELATIONSHIP__SOURCE
-                                                    || feature == IArchimatePackage.Literals.RELATIONSHIP__TARGET
-                                                    || feature == IArchimatePackage.Literals.FOLDER__ELEMENTS) {
-                showStructural();
-            }
+        public void structuralChainChanged(IRelationship relationship, boolean inChain) {
+            getFigure().highlight(inChain);
         }
     };
     
@@ -76,9 +64,9 @@ implements IArchimateConnectionEditPart {
             fArchimateModel = getModel().getDiagramModel().getArchimateModel();
 			// Listen to Archimate Relationship changes
 			getModel().getRelationship().eAdapters().add(getECoreAdapter());
-			// Register to listen to overall model changes that affect the structural relationship chains
+			// Register to listen to model changes that affect the structural relationship chains
 			if(isShowStructural()) {
-	            fArchimateModel.eAdapters().add(fModelAdapter);
+			    getStructuralChainsService().addListener(getModel().getRelationship(), fStructuralChainListener);
 	        }
 			// Listen to Viewer Property changes for "Show Structural Chains"
 			getViewer().addPropertyChangeListener(propertyListener);
@@ -90,7 +78,7 @@ implements IArchimateConnectionEditPart {
         if(isActive()) {
             super.deactivate();
             getModel().getRelationship().eAdapters().remove(getECoreAdapter());
-            fArchimateModel.eAdapters().remove(fModelAdapter);
+            getStructuralChainsService().removeListener(getModel().getRelationship(), fStructuralChainListener);
             getViewer().removePropertyChangeListener(propertyListener);
         }
     }
@@ -108,11 +96,11 @@ implements IArchimateConnectionEditPart {
      */
     protected void registerStructural() {
         if(isShowStructural()) {
-            fArchimateModel.eAdapters().add(fModelAdapter);
-            showStructural();
+            boolean doHighlight = getStructuralChainsService().addListener(getModel().getRelationship(), fStructuralChainListener);
+            getFigure().highlight(doHighlight);
         }
         else {
-            fArchimateModel.eAdapters().remove(fModelAdapter);
+            getStructuralChainsService().removeListener(getModel().getRelationship(), fStructuralChainListener);
             clearStructural();
         }
     }
@@ -123,10 +111,14 @@ implements IArchimateConnectionEditPart {
     
     protected void showStructural() {
         IRelationship relation = getModel().getRelationship();
-        boolean doHighlight = DerivedRelationsUtils.isInDerivedChain(relation);
+        boolean doHighlight = getStructuralChainsService().isInStructuralChain(relation);
         getFigure().highlight(doHighlight);
     }
     
+    protected StructuralChainsService getStructuralChainsService() {
+        return StructuralChainsService.getService(fArchimateModel);
+    }
+    
     protected void clearStructural() {
         getFigure().highlight(false);
     }
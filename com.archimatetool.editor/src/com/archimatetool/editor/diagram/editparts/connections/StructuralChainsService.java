@@ -0,0 +1,280 @@
+/**
+ * This program and the accompanying materials
+ * are made available under the terms of the License
+ * which accompanies this distribution in the file LICENSE.txt
+ */
+package com.archimatetool.editor.diagram.editparts.connections;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.emf.common.notify.Notification;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.EReference;
+import org.eclipse.emf.ecore.util.EContentAdapter;
+
+import com.archimatetool.model.IArchimateElement;
+import com.archimatetool.model.IArchimateModel;
+import com.archimatetool.model.IArchimatePackage;
+import com.archimatetool.model.IFolder;
+import com.archimatetool.model.IRelationship;
+import com.archimatetool.model.util.ArchimateModelUtils;
+import com.archimatetool.model.util.DerivedRelationsUtils;
+
+
+
+/**
+ * Keeps track of which relationships in a model are in a structural chain of relationships for the
+ * "Show Structural Chains" option, and tells listeners when this changes.
+ *
+ * There is one service for each model, registered with the model as an IAdapter. The service only listens to the model
+ * while there are listeners. Whether a relationship is in a chain only depends on the relationships connected to its
+ * source and target elements, so when a relationship is added, removed or reconnected only the relationships around
+ * its old and new source and target elements are checked again. Other changes to the model, such as changing names,
+ * are ignored.
+ *
+ * @author Phillip Beauvoir
+ */
+public class StructuralChainsService {
+    
+    /**
+     * Listener for changes to whether a relationship is in a structural chain
+     */
+    public interface IStructuralChainListener {
+        void structuralChainChanged(IRelationship relationship, boolean inChain);
+    }
+    
+    /**
+     * @param model The model
+     * @return The service for model
+     */
+    public static StructuralChainsService getService(IArchimateModel model) {
+        StructuralChainsService service = (StructuralChainsService)model.getAdapter(StructuralChainsService.class);
+        if(service == null) {
+            service = new StructuralChainsService(model);
+            model.setAdapter(StructuralChainsService.class, service);
+        }
+        return service;
+    }
+    
+    private IArchimateModel fModel;
+    
+    /**
+     * Relationship -> listeners
+     */
+    private Map<IRelationship, List<IStructuralChainListener>> fListeners = new HashMap<IRelationship, List<IStructuralChainListener>>();
+    
+    /**
+     * Relationship -> whether it is in a chain, for relationships that have listeners
+     */
+    private Map<IRelationship, Boolean> fInChain = new HashMap<IRelationship, Boolean>();
+    
+    private EContentAdapter fModelAdapter = new EContentAdapter() {
+        @Override
+        protected boolean resolve() {
+            // Don't load the children of diagram models that have not been loaded yet
+            return false;
+        }
+        
+        @Override
+        public void notifyChanged(Notification msg) {
+            super.notifyChanged(msg);
+            modelChanged(msg);
+        }
+    };
+    
+    StructuralChainsService(IArchimateModel model) {
+        fModel = model;
+    }
+    
+    /**
+     * Add a listener for changes to whether relationship is in a structural chain
+     * @param relationship The relationship
+     * @param listener The listener
+     * @return true if relationship is in a structural chain
+     */
+    public boolean addListener(IRelationship relationship, IStructuralChainListener listener) {
+        // First listener so start listening to the model
+        if(fListeners.isEmpty()) {
+            fModel.eAdapters().add(fModelAdapter);
+        }
+        
+        List<IStructuralChainListener> list = fListeners.get(relationship);
+        if(list == null) {
+            list = new ArrayList<IStructuralChainListener>(1);
+            fListeners.put(relationship, list);
+            fInChain.put(relationship, DerivedRelationsUtils.isInDerivedChain(relationship));
+        }
+        
+        if(!list.contains(listener)) {
+            list.add(listener);
+        }
+        
+        return fInChain.get(relationship);
+    }
+    
+    /**
+     * Remove a listener
+     * @param relationship The relationship
+     * @param listener The listener
+     */
+    public void removeListener(IRelationship relationship, IStructuralChainListener listener) {
+        List<IStructuralChainListener> list = fListeners.get(relationship);
+        if(list == null) {
+            return;
+        }
+        
+        list.remove(listener);
+        
+        if(list.isEmpty()) {
+            fListeners.remove(relationship);
+            fInChain.remove(relationship);
+            
+            // No more listeners so stop listening to the model
+            if(fListeners.isEmpty()) {
+                fModel.eAdapters().remove(fModelAdapter);
+            }
+        }
+    }
+    
+    /**
+     * @param relationship The relationship
+     * @return true if relationship is in a structural chain
+     */
+    public boolean isInStructuralChain(IRelationship relationship) {
+        Boolean inChain = fInChain.get(relationship);
+        return inChain != null ? inChain : DerivedRelationsUtils.isInDerivedChain(relationship);
+    }
+    
+    /**
+     * @return true if the service is listening to the model
+     */
+    boolean isListening() {
+        return fModel.eAdapters().contains(fModelAdapter);
+    }
+    
+    private void modelChanged(Notification msg) {
+        if(msg.isTouch()) {
+            return;
+        }
+        
+        Object feature = msg.getFeature();
+        
+        // Elements around which relationships might have joined or left a chain
+        Set<IArchimateElement> elements = new LinkedHashSet<IArchimateElement>();
+        
+        // Source or target of a relationship was set
+        if(feature == IArchimatePackage.Literals.RELATIONSHIP__SOURCE || feature == IArchimatePackage.Literals.RELATIONSHIP__TARGET) {
+            IRelationship relationship = (IRelationship)msg.getNotifier();
+            addElement(elements, msg.getOldValue());
+            addElement(elements, msg.getNewValue());
+            addElement(elements, relationship.getSource());
+            addElement(elements, relationship.getTarget());
+        }
+        
+        // Containment change
+        else if(feature instanceof EReference && ((EReference)feature).isContainment()) {
+            switch(msg.getEventType()) {
+                case Notification.ADD:
+                    addChangedObject(elements, msg.getNewValue());
+                    break;
+                
+                case Notification.ADD_MANY:
+                    for(Object o : (Collection<?>)msg.getNewValue()) {
+                        addChangedObject(elements, o);
+                    }
+                    break;
+                
+                case Notification.REMOVE:
+                    addChangedObject(elements, msg.getOldValue());
+                    break;
+                
+                case Notification.REMOVE_MANY:
+                    for(Object o : (Collection<?>)msg.getOldValue()) {
+                        addChangedObject(elements, o);
+                    }
+                    break;
+                
+                case Notification.SET:
+                case Notification.UNSET:
+                    addChangedObject(elements, msg.getOldValue());
+                    addChangedObject(elements, msg.getNewValue());
+                    break;
+                
+                default:
+                    break;
+            }
+        }
+        
+        if(elements.isEmpty()) {
+            return;
+        }
+        
+        // Relationships around the changed elements that have listeners
+        Set<IRelationship> relationships = new LinkedHashSet<IRelationship>();
+        for(IArchimateElement element : elements) {
+            addListenedRelationships(relationships, ArchimateModelUtils.getSourceRelationships(element));
+            addListenedRelationships(relationships, ArchimateModelUtils.getTargetRelationships(element));
+        }
+        
+        for(IRelationship relationship : relationships) {
+            boolean inChain = DerivedRelationsUtils.isInDerivedChain(relationship);
+            if(fInChain.get(relationship) != inChain) {
+                fInChain.put(relationship, inChain);
+                for(IStructuralChainListener listener : new ArrayList<IStructuralChainListener>(fListeners.get(relationship))) {
+                    listener.structuralChainChanged(relationship, inChain);
+                }
+            }
+        }
+    }
+    
+    /**
+     * An object was added to or removed from the model
+     */
+    private void addChangedObject(Set<IArchimateElement> elements, Object object) {
+        if(object instanceof IRelationship) {
+            IRelationship relationship = (IRelationship)object;
+            addElement(elements, relationship.getSource());
+            addElement(elements, relationship.getTarget());
+        }
+        else if(object instanceof IArchimateElement) {
+            // The relationships of the element and the elements at their other ends
+            IArchimateElement element = (IArchimateElement)object;
+            addElement(elements, element);
+            for(IRelationship relationship : ArchimateModelUtils.getSourceRelationships(element)) {
+                addElement(elements, relationship.getTarget());
+            }
+            for(IRelationship relationship : ArchimateModelUtils.getTargetRelationships(element)) {
+                addElement(elements, relationship.getSource());
+            }
+        }
+        else if(object instanceof IFolder) {
+            IFolder folder = (IFolder)object;
+            for(EObject child : folder.getElements()) {
+                addChangedObject(elements, child);
+            }
+            for(IFolder child : folder.getFolders()) {
+                addChangedObject(elements, child);
+            }
+        }
+    }
+    
+    private void addElement(Set<IArchimateElement> elements, Object object) {
+        if(object instanceof IArchimateElement) {
+            elements.add((IArchimateElement)object);
+        }
+    }
+    
+    private void addListenedRelationships(Set<IRelationship> relationships, List<IRelationship> list) {
+        for(IRelationship relationship : list) {
+            if(fListeners.containsKey(relationship)) {
+                relationships.add(relationship);
+            }
+        }
+    }
+}
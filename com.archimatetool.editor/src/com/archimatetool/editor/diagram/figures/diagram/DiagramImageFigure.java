@@ -18,7 +18,7 @@ import com.archimatetool.editor.diagram.figures.AbstractDiagramModelObjectFigure
 import com.archimatetool.editor.model.IArchiveManager;
 import com.archimatetool.editor.ui.ColorFactory;
 import com.archimatetool.editor.ui.IArchimateImages;
-import com.archimatetool.editor.ui.ImageFactory;
+import com.archimatetool.editor.ui.ImageCache;
 import com.archimatetool.model.IDiagramModelImage;
 
 
@@ -133,26 +133,23 @@ public class DiagramImageFigure extends AbstractDiagramModelObjectFigure {
         }
     }
     
+    /**
+     * @return The shared image at its own size from the ImageCache, or null.
+     *         This must be released with ImageCache#release(Image) and not disposed.
+     */
     protected Image getOriginalImage() {
-        Image image = null;
-        
         String imagePath = getDiagramModelObject().getImagePath();
-        
-        if(imagePath != null) {
-            IArchiveManager archiveManager = (IArchiveManager)getDiagramModelObject().getAdapter(IArchiveManager.class);
-            try {
-                image = archiveManager.createImage(imagePath);
-            }
-            catch(Exception ex) {
-                ex.printStackTrace();
-            }
+        if(imagePath == null) {
+            return null;
         }
         
-        return image;
+        IArchiveManager archiveManager = (IArchiveManager)getDiagramModelObject().getAdapter(IArchiveManager.class);
+        return ImageCache.INSTANCE.getImage(archiveManager, imagePath);
     }
     
     /**
-     * Use a re-usable rescaled image because drawing an image to scale in paintFigure(Graphics) is too slow
+     * Use a re-usable rescaled image because drawing an image to scale in paintFigure(Graphics) is too slow.
+     * The rescaled image is shared with other figures showing the same image at the same size.
      */
     protected void rescaleImage() {
         int width = bounds.width;
@@ -164,27 +161,24 @@ public class DiagramImageFigure extends AbstractDiagramModelObjectFigure {
         
         // If the image bounds are different to those in the current image, rescale the image
         if(width != fCurrentImageSize.width || height != fCurrentImageSize.height) {
-            disposeImage();
-            
-            Image originalImage = getOriginalImage();
-            
-            // Use original image
-            if(width == originalImage.getBounds().width && height == originalImage.getBounds().height) {
-                fImage = originalImage;
-            }
-            // Scaled image
-            else {
-                fImage = ImageFactory.getScaledImage(originalImage, width, height);
-                originalImage.dispose();
+            IArchiveManager archiveManager = (IArchiveManager)getDiagramModelObject().getAdapter(IArchiveManager.class);
+            Image image = ImageCache.INSTANCE.getImage(archiveManager, getDiagramModelObject().getImagePath(), width, height);
+            if(image == null) {
+                return;
             }
-
+            
+            disposeImage();
+            fImage = image;
             fCurrentImageSize = new Dimension(fImage);
         }
     }
     
+    /**
+     * Release the image back to the ImageCache
+     */
     protected void disposeImage() {
-        if(fImage != null && !fImage.isDisposed()) {
-            fImage.dispose();
+        if(fImage != null) {
+            ImageCache.INSTANCE.release(fImage);
             fImage = null;
         }
     }
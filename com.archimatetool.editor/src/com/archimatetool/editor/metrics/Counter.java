@@ -0,0 +1,46 @@
+/**
+ * This program and the accompanying materials
+ * are made available under the terms of the License
+ * which accompanies this distribution in the file LICENSE.txt
+ */
+package com.archimatetool.editor.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+
+
+/**
+ * Counts how many times something happened.
+ * Incrementing is lock free and does not contend between threads.
+ *
+ * @author Phillip Beauvoir
+ */
+public class Counter implements IMetric {
+    
+    private String fName;
+    private LongAdder fCount = new LongAdder();
+    
+    Counter(String name) {
+        fName = name;
+    }
+    
+    public String getName() {
+        return fName;
+    }
+    
+    public void increment() {
+        fCount.increment();
+    }
+    
+    public void add(long n) {
+        fCount.add(n);
+    }
+    
+    public long getCount() {
+        return fCount.sum();
+    }
+    
+    public void reset() {
+        fCount.reset();
+    }
+}
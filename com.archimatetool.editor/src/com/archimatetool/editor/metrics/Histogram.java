@@ -0,0 +1,155 @@
+/**
+ * This program and the accompanying materials
+ * are made available under the terms of the License
+ * which accompanies this distribution in the file LICENSE.txt
+ */
+package com.archimatetool.editor.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+
+
+/**
+ * The distribution of a value, such as a size or a time.<p>
+ *
+ * Values are counted in buckets, four for each power of two, so updating takes a few atomic operations and no locks or allocation.
+ * Percentiles are estimated from the buckets to within 25%. The count, total and maximum are exact.
+ * Values that are recorded while the histogram is being reset may be lost.
+ *
+ * @author Phillip Beauvoir
+ */
+public class Histogram implements IMetric {
+    
+    /**
+     * Values 0 to 3 have their own bucket, then four buckets for each power of two up to 2^63
+     */
+    static final int BUCKETS = 4 + 61 * 4;
+    
+    private String fName;
+    private AtomicLongArray fBuckets = new AtomicLongArray(BUCKETS);
+    private LongAdder fTotal = new LongAdder();
+    private AtomicLong fMax = new AtomicLong();
+    
+    Histogram(String name) {
+        fName = name;
+    }
+    
+    public String getName() {
+        return fName;
+    }
+    
+    /**
+     * Record a value. Negative values are recorded as zero.
+     */
+    public void update(long value) {
+        if(value < 0) {
+            value = 0;
+        }
+        
+        fBuckets.incrementAndGet(getBucket(value));
+        fTotal.add(value);
+        
+        long max = fMax.get();
+        while(value > max && !fMax.compareAndSet(max, value)) {
+            max = fMax.get();
+        }
+    }
+    
+    public long getCount() {
+        long count = 0;
+        for(int i = 0; i < BUCKETS; i++) {
+            count += fBuckets.get(i);
+        }
+        return count;
+    }
+    
+    /**
+     * @return The sum of all values
+     */
+    public long getTotal() {
+        return fTotal.sum();
+    }
+    
+    /**
+     * @return The largest value
+     */
+    public long getMax() {
+        return fMax.get();
+    }
+    
+    /**
+     * @return The average value, or 0 if there are no values
+     */
+    public double getMean() {
+        long count = getCount();
+        return count == 0 ? 0 : (double)getTotal() / count;
+    }
+    
+    /**
+     * @param percentile Between 0 and 1, such as 0.95
+     * @return An estimate of the value that this fraction of values are less than or equal to, or 0 if there are no values
+     */
+    public long getPercentile(double percentile) {
+        long[] counts = new long[BUCKETS];
+        long count = 0;
+        for(int i = 0; i < BUCKETS; i++) {
+            counts[i] = fBuckets.get(i);
+            count += counts[i];
+        }
+        
+        if(count == 0) {
+            return 0;
+        }
+        
+        long rank = Math.max(1, (long)Math.ceil(count * percentile));
+        long seen = 0;
+        
+        for(int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if(seen >= rank) {
+                return Math.min(getBucketMax(i), getMax());
+            }
+        }
+        
+        return getMax();
+    }
+    
+    public void reset() {
+        for(int i = 0; i < BUCKETS; i++) {
+            fBuckets.set(i, 0);
+        }
+        fTotal.reset();
+        fMax.set(0);
+    }
+    
+    /**
+     * @param value A value that is not negative
+     * @return The index of the bucket that value is counted in
+     */
+    static int getBucket(long value) {
+        if(value < 4) {
+            return (int)value;
+        }
+        
+        // Position of the highest bit, and the two bits below it
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int fraction = (int)(value >>> (exponent - 2)) & 3;
+        return 4 + (exponent - 2) * 4 + fraction;
+    }
+    
+    /**
+     * @return The largest value that is counted in a bucket
+     */
+    static long getBucketMax(int bucket) {
+        if(bucket < 4) {
+            return bucket;
+        }
+        
+        int exponent = (bucket - 4) / 4 + 2;
+        long fraction = (bucket - 4) % 4;
+        long min = (4 + fraction) << (exponent - 2);
+        return min + (1L << (exponent - 2)) - 1;
+    }
+}
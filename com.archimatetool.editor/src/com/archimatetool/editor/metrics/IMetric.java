@@ -0,0 +1,31 @@
+/**
+ * This program and the accompanying materials
+ * are made available under the terms of the License
+ * which accompanies this distribution in the file LICENSE.txt
+ */
+package com.archimatetool.editor.metrics;
+
+
+
+/**
+ * A performance metric in the {@link Metrics} registry
+ *
+ * @author Phillip Beauvoir
+ */
+public interface IMetric {
+    
+    /**
+     * @return The name of the metric, such as "model.load"
+     */
+    String getName();
+    
+    /**
+     * @return The number of times the metric has been updated since it was created or reset
+     */
+    long getCount();
+    
+    /**
+     * Set the metric back to zero
+     */
+    void reset();
+}
@@ -0,0 +1,176 @@
+/**
+ * This program and the accompanying materials
+ * are made available under the terms of the License
+ * which accompanies this distribution in the file LICENSE.txt
+ */
+package com.archimatetool.editor.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import com.archimatetool.editor.Logger;
+
+
+
+/**
+ * Registry of the performance metrics of the application.<p>
+ *
+ * Metrics are always on. Code that updates a metric often should get it once and keep it in a static field
+ * so that updating it is only a few atomic operations. The metrics are shown in the Performance View
+ * and are published over JMX as the MBean "com.archimatetool:type=Metrics".
+ *
+ * @author Phillip Beauvoir
+ */
+public class Metrics {
+    
+    public static Metrics INSTANCE = new Metrics();
+    
+    /**
+     * Name of the MBean
+     */
+    public static final String OBJECT_NAME = "com.archimatetool:type=Metrics"; //$NON-NLS-1$
+    
+    // Names of the metrics of the editor
+    
+    public static final String MODEL_LOAD = "model.load"; //$NON-NLS-1$
+    public static final String MODEL_CHECK = "model.check"; //$NON-NLS-1$
+    public static final String MODEL_SAVE = "model.save"; //$NON-NLS-1$
+    public static final String MODEL_NOTIFICATIONS = "model.notifications"; //$NON-NLS-1$
+    public static final String DIAGRAM_PAINT = "diagram.paint"; //$NON-NLS-1$
+    public static final String REPORT_HTML = "report.html"; //$NON-NLS-1$
+    public static final String REPORT_JASPER = "report.jasper"; //$NON-NLS-1$
+    
+    private ConcurrentMap<String, IMetric> fMetrics = new ConcurrentHashMap<String, IMetric>();
+    
+    private ObjectName fObjectName;
+    
+    Metrics() {
+    }
+    
+    /**
+     * @return The Counter with name, which is created if there is none
+     * @throws IllegalArgumentException if there is a different type of metric with name
+     */
+    public Counter getCounter(String name) {
+        IMetric metric = fMetrics.get(name);
+        if(metric == null) {
+            metric = register(new Counter(name));
+        }
+        return (Counter)checkType(metric, Counter.class);
+    }
+    
+    /**
+     * @return The Histogram with name, which is created if there is none
+     * @throws IllegalArgumentException if there is a different type of metric with name
+     */
+    public Histogram getHistogram(String name) {
+        IMetric metric = fMetrics.get(name);
+        if(metric == null) {
+            metric = register(new Histogram(name));
+        }
+        return (Histogram)checkType(metric, Histogram.class);
+    }
+    
+    /**
+     * @return The Timer with name, which is created if there is none
+     * @throws IllegalArgumentException if there is a different type of metric with name
+     */
+    public Timer getTimer(String name) {
+        IMetric metric = fMetrics.get(name);
+        if(metric == null) {
+            metric = register(new Timer(name));
+        }
+        return (Timer)checkType(metric, Timer.class);
+    }
+    
+    /**
+     * @return The metric with name, or null if there is none
+     */
+    public IMetric getMetric(String name) {
+        return fMetrics.get(name);
+    }
+    
+    /**
+     * @return All metrics sorted by name
+     */
+    public List<IMetric> getMetrics() {
+        List<IMetric> metrics = new ArrayList<IMetric>(fMetrics.values());
+        
+        Collections.sort(metrics, new Comparator<IMetric>() {
+            public int compare(IMetric m1, IMetric m2) {
+                return m1.getName().compareTo(m2.getName());
+            }
+        });
+        
+        return metrics;
+    }
+    
+    /**
+     * Set all metrics back to zero
+     */
+    public void reset() {
+        for(IMetric metric : fMetrics.values()) {
+            metric.reset();
+        }
+    }
+    
+    /**
+     * Publish the metrics as an MBean in the platform MBean server, if this has not been done already
+     */
+    public synchronized void registerMBean() {
+        if(fObjectName != null) {
+            return;
+        }
+        
+        try {
+            ObjectName objectName = new ObjectName(OBJECT_NAME);
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            if(!server.isRegistered(objectName)) {
+                server.registerMBean(new MetricsMBean(this), objectName);
+                fObjectName = objectName;
+            }
+        }
+        catch(JMException ex) {
+            Logger.logError("Could not register metrics MBean", ex); //$NON-NLS-1$
+        }
+    }
+    
+    /**
+     * Remove the MBean from the platform MBean server, if it was registered
+     */
+    public synchronized void unregisterMBean() {
+        if(fObjectName == null) {
+            return;
+        }
+        
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(fObjectName);
+        }
+        catch(JMException ex) {
+            Logger.logError("Could not unregister metrics MBean", ex); //$NON-NLS-1$
+        }
+        
+        fObjectName = null;
+    }
+    
+    private IMetric register(IMetric metric) {
+        IMetric existing = fMetrics.putIfAbsent(metric.getName(), metric);
+        return existing != null ? existing : metric;
+    }
+    
+    private IMetric checkType(IMetric metric, Class<? extends IMetric> type) {
+        if(metric.getClass() != type) {
+            throw new IllegalArgumentException("Metric " + metric.getName() + " is a " + metric.getClass().getSimpleName()); //$NON-NLS-1$ //$NON-NLS-2$
+        }
+        return metric;
+    }
+}
@@ -0,0 +1,142 @@
+/**
+ * This program and the accompanying materials
+ * are made available under the terms of the License
+ * which accompanies this distribution in the file LICENSE.txt
+ */
+package com.archimatetool.editor.metrics;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanOperationInfo;
+import javax.management.MBeanParameterInfo;
+import javax.management.ReflectionException;
+
+
+
+/**
+ * MBean that publishes the metrics of a {@link Metrics} registry over JMX.<p>
+ *
+ * Each metric has read only attributes named after it. A Counter has one attribute with its count.
+ * A Histogram has "name.count", "name.total", "name.mean", "name.max" and "name.p95".
+ * A Timer has "name.count" and the others are in milliseconds, as "name.totalMs" and so on.
+ * Metrics that are created after a JMX client has connected are shown when it gets the MBean's info again.
+ * The "reset" operation sets all metrics back to zero.
+ *
+ * @author Phillip Beauvoir
+ */
+class MetricsMBean implements DynamicMBean {
+    
+    private static final String[] HISTOGRAM_ATTRIBUTES = { "count", "total", "mean", "max", "p95" }; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$
+    private static final String[] TIMER_ATTRIBUTES = { "count", "totalMs", "meanMs", "maxMs", "p95Ms" }; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$
+    
+    private static final String RESET = "reset"; //$NON-NLS-1$
+    
+    private Metrics fMetrics;
+    
+    MetricsMBean(Metrics metrics) {
+        fMetrics = metrics;
+    }
+    
+    public Object getAttribute(String attribute) throws AttributeNotFoundException {
+        for(IMetric metric : fMetrics.getMetrics()) {
+            if(metric instanceof Counter && attribute.equals(metric.getName())) {
+                return metric.getCount();
+            }
+            
+            if(metric instanceof Histogram && attribute.startsWith(metric.getName() + ".")) { //$NON-NLS-1$
+                Object value = getValue((Histogram)metric, attribute.substring(metric.getName().length() + 1));
+                if(value != null) {
+                    return value;
+                }
+            }
+        }
+        
+        throw new AttributeNotFoundException(attribute);
+    }
+    
+    private Object getValue(Histogram histogram, String key) {
+        boolean timer = histogram instanceof Timer;
+        String[] keys = timer ? TIMER_ATTRIBUTES : HISTOGRAM_ATTRIBUTES;
+        
+        if(key.equals(keys[0])) {
+            return histogram.getCount();
+        }
+        if(key.equals(keys[1])) {
+            return timer ? (Object)Timer.toMillis(histogram.getTotal()) : (Object)histogram.getTotal();
+        }
+        if(key.equals(keys[2])) {
+            return timer ? Timer.toMillis(histogram.getMean()) : histogram.getMean();
+        }
+        if(key.equals(keys[3])) {
+            return timer ? (Object)Timer.toMillis(histogram.getMax()) : (Object)histogram.getMax();
+        }
+        if(key.equals(keys[4])) {
+            return timer ? (Object)Timer.toMillis(histogram.getPercentile(0.95)) : (Object)histogram.getPercentile(0.95);
+        }
+        
+        return null;
+    }
+    
+    public AttributeList getAttributes(String[] attributes) {
+        AttributeList list = new AttributeList();
+        
+        for(String attribute : attributes) {
+            try {
+                list.add(new Attribute(attribute, getAttribute(attribute)));
+            }
+            catch(AttributeNotFoundException ex) {
+                // Leave it out
+            }
+        }
+        
+        return list;
+    }
+    
+    public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+        throw new AttributeNotFoundException("Attributes are read only"); //$NON-NLS-1$
+    }
+    
+    public AttributeList setAttributes(AttributeList attributes) {
+        return new AttributeList();
+    }
+    
+    public Object invoke(String actionName, Object[] params, String[] signature) throws ReflectionException {
+        if(RESET.equals(actionName)) {
+            fMetrics.reset();
+            return null;
+        }
+        
+        throw new ReflectionException(new NoSuchMethodException(actionName));
+    }
+    
+    public MBeanInfo getMBeanInfo() {
+        List<MBeanAttributeInfo> attributes = new ArrayList<MBeanAttributeInfo>();
+        
+        for(IMetric metric : fMetrics.getMetrics()) {
+            if(metric instanceof Counter) {
+                attributes.add(new MBeanAttributeInfo(metric.getName(), Long.class.getName(), "Count", true, false, false)); //$NON-NLS-1$
+            }
+            else if(metric instanceof Histogram) {
+                boolean timer = metric instanceof Timer;
+                String[] keys = timer ? TIMER_ATTRIBUTES : HISTOGRAM_ATTRIBUTES;
+                for(int i = 0; i < keys.length; i++) {
+                    String type = i == 0 || (!timer && i != 2) ? Long.class.getName() : Double.class.getName();
+                    attributes.add(new MBeanAttributeInfo(metric.getName() + "." + keys[i], type, keys[i], true, false, false)); //$NON-NLS-1$
+                }
+            }
+        }
+        
+        MBeanOperationInfo reset = new MBeanOperationInfo(RESET, "Set all metrics back to zero", //$NON-NLS-1$
+                new MBeanParameterInfo[0], void.class.getName(), MBeanOperationInfo.ACTION);
+        
+        return new MBeanInfo(getClass().getName(), "Archi performance metrics", //$NON-NLS-1$
+                attributes.toArray(new MBeanAttributeInfo[attributes.size()]), null, new MBeanOperationInfo[] { reset }, null);
+    }
+}
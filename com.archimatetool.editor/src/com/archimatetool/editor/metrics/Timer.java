@@ -0,0 +1,58 @@
+/**
+ * This program and the accompanying materials
+ * are made available under the terms of the License
+ * which accompanies this distribution in the file LICENSE.txt
+ */
+package com.archimatetool.editor.metrics;
+
+import java.util.concurrent.TimeUnit;
+
+
+
+/**
+ * A histogram of how long something takes, in nanoseconds. Use it like this:<p>
+ *
+ * <pre>
+ * long start = timer.start();
+ * try {
+ *     ...
+ * }
+ * finally {
+ *     timer.stop(start);
+ * }
+ * </pre>
+ *
+ * @author Phillip Beauvoir
+ */
+public class Timer extends Histogram {
+    
+    Timer(String name) {
+        super(name);
+    }
+    
+    /**
+     * @return The start time to pass to {@link #stop(long)}
+     */
+    public long start() {
+        return System.nanoTime();
+    }
+    
+    /**
+     * Record the time since start
+     * @param start The time returned by {@link #start()}
+     * @return The time taken in nanoseconds
+     */
+    public long stop(long start) {
+        long elapsed = System.nanoTime() - start;
+        update(elapsed);
+        return elapsed;
+    }
+    
+    /**
+     * @param nanos A time in nanoseconds, as returned by {@link #getTotal()}, {@link #getMax()} and {@link #getPercentile(double)}
+     * @return The time in milliseconds
+     */
+    public static double toMillis(double nanos) {
+        return nanos / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+}
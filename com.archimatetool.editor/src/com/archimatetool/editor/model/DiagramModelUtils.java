@@ -25,6 +25,7 @@ import com.archimatetool.model.IDiagramModelReference;
 import com.archimatetool.model.IJunctionElement;
 import com.archimatetool.model.IRelationship;
 import com.archimatetool.model.util.ArchimateModelUtils;
+import com.archimatetool.model.util.LazyDiagramContent;
 
 
 
@@ -54,7 +55,8 @@ public class DiagramModelUtils {
             // Not found, so maybe it's expressed as a nested parent/child relationship
             if(models.isEmpty() && archimateComponent instanceof IRelationship && ConnectionPreferences.useNestedConnections()) {
                 for(IDiagramModel diagramModel : archimateComponent.getArchimateModel().getDiagramModels()) {
-                    if(!findNestedComponentsForRelationship(diagramModel, (IRelationship)archimateComponent).isEmpty() && !models.contains(diagramModel)) {
+                    if(canHaveNestedComponents(diagramModel, (IRelationship)archimateComponent)
+                            && !findNestedComponentsForRelationship(diagramModel, (IRelationship)archimateComponent).isEmpty() && !models.contains(diagramModel)) {
                         models.add(diagramModel);
                     }
                 }
@@ -74,12 +76,19 @@ public class DiagramModelUtils {
             return false;
         }
         
+        // Referenced in a diagram model that has not been loaded yet, so don't load it
+        for(IDiagramModel diagramModel : LazyDiagramContent.getUnloadedDiagramModels(archimateComponent.getArchimateModel(), archimateComponent.getId())) {
+            if(diagramModel.getArchimateModel() != null) {
+                return true;
+            }
+        }
+        
         boolean found = !findDiagramModelComponentsForArchimateComponent(archimateComponent).isEmpty();
         
         // Not found, so maybe it's expressed as a nested parent/child relationship
         if(!found && archimateComponent instanceof IRelationship && ConnectionPreferences.useNestedConnections()) {
             for(IDiagramModel diagramModel : archimateComponent.getArchimateModel().getDiagramModels()) {
-                if(!findNestedComponentsForRelationship(diagramModel, (IRelationship)archimateComponent).isEmpty()) {
+                if(canHaveNestedComponents(diagramModel, (IRelationship)archimateComponent) && !findNestedComponentsForRelationship(diagramModel, (IRelationship)archimateComponent).isEmpty()) {
                     return true;
                 }
             }
@@ -116,6 +125,8 @@ public class DiagramModelUtils {
     static List<IDiagramModelArchimateObject> findDiagramModelObjectsForElement(IArchimateElement element) {
         List<IDiagramModelArchimateObject> list = new ArrayList<IDiagramModelArchimateObject>();
         
+        loadUnloadedDiagramModels(element);
+        
         /*
          * It's not simply a case of returning the list of references.
          * If an *ancestor* of a dmo is deleted, or the diagram model itself, but not the direct parent,
@@ -140,6 +151,8 @@ public class DiagramModelUtils {
     static List<IDiagramModelArchimateConnection> findDiagramModelConnectionsForRelation(IRelationship relationship) {
         List<IDiagramModelArchimateConnection> list = new ArrayList<IDiagramModelArchimateConnection>();
         
+        loadUnloadedDiagramModels(relationship);
+        
         /*
          * It's not simply a case of returning the list of references.
          * If an *ancestor* of a dmc is deleted, or the diagram model itself, but not the direct parent,
@@ -156,6 +169,33 @@ public class DiagramModelUtils {
         return list;
     }
 
+    /**
+     * Load the children of diagram models that have not been loaded yet that reference a given Archimate component
+     * so that the component's list of references is complete.
+     */
+    private static void loadUnloadedDiagramModels(IArchimateComponent archimateComponent) {
+        if(archimateComponent.getArchimateModel() != null) {
+            for(IDiagramModel diagramModel : LazyDiagramContent.getUnloadedDiagramModels(archimateComponent.getArchimateModel(), archimateComponent.getId())) {
+                diagramModel.getChildren(); // This will load them
+            }
+        }
+    }
+    
+    /**
+     * @return false if the children of a diagram model have not been loaded yet and don't reference both the source and target
+     *         of a relationship, so there can't be any nested components for the relationship in it
+     */
+    private static boolean canHaveNestedComponents(IDiagramModel diagramModel, IRelationship relationship) {
+        LazyDiagramContent content = LazyDiagramContent.getContent(diagramModel);
+        if(content == null) {
+            return true;
+        }
+        
+        return relationship.getSource() != null && relationship.getTarget() != null
+                && content.getReferencedIDs().contains(relationship.getSource().getId())
+                && content.getReferencedIDs().contains(relationship.getTarget().getId());
+    }
+    
     /**
      * Find all (visible and extant) Diagram Model Objects for a given Archimate element in a Diagram Model.
      * This is the faster method.
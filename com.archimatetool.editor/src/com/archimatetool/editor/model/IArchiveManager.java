@@ -135,6 +135,15 @@ public interface IArchiveManager {
      */
     void saveModel() throws IOException;
     
+    /**
+     * Save a copy of the Model and any images to a file in the XML or the binary format.
+     * The model's file and the format it is saved in are not changed.
+     * @param file The file to save to
+     * @param binary If true the copy is saved in the binary format, otherwise in the XML format
+     * @throws IOException
+     */
+    void saveModelCopy(File file, boolean binary) throws IOException;
+    
     /**
      * Load all images for this model
      * @throws IOException
@@ -31,6 +31,12 @@ public interface IEditorModelManager {
     String PROPERTY_MODEL_REMOVED = "IEditorModelManager.model.removed"; //$NON-NLS-1$
     String PROPERTY_MODEL_SAVED = "IEditorModelManager.model.saved"; //$NON-NLS-1$
     
+    /*
+     * The files of models being loaded in the background have changed.
+     * When a model has finished loading the old value is its file and the new value is the model, or null if it was not loaded.
+     */
+    String PROPERTY_MODELS_LOADING = "IEditorModelManager.models.loading"; //$NON-NLS-1$
+    
     String COMMAND_STACK_CHANGED = "IEditorModelManager.model.dirty"; //$NON-NLS-1$
 
     String PROPERTY_ECORE_EVENT = "IEditorModelManager.ecore.event"; //$NON-NLS-1$
@@ -83,7 +89,7 @@ public interface IEditorModelManager {
     void openModel(IArchimateModel model);
     
     /**
-     * Load a model
+     * Load a model. If the model is being loaded in the background it is finished now.
      * @param file
      * @return The newly loaded model or null
      */
@@ -132,6 +138,11 @@ public interface IEditorModelManager {
      */
     boolean isModelLoaded(File file);
     
+    /**
+     * @return The files of models from the saved state that are still being loaded in the background
+     */
+    List<File> getLoadingModelFiles();
+    
     /**
      * Add a Property Change Listener
      * @param listener
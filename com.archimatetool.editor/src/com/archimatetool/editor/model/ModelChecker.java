@@ -6,50 +6,261 @@
 package com.archimatetool.editor.model;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
+import org.eclipse.emf.common.notify.Notification;
 import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.EReference;
+import org.eclipse.emf.ecore.util.EContentAdapter;
+import org.eclipse.emf.ecore.util.EcoreUtil;
 import org.eclipse.jface.dialogs.MessageDialog;
 import org.eclipse.swt.widgets.Shell;
 
 import com.archimatetool.editor.Logger;
+import com.archimatetool.editor.metrics.Metrics;
+import com.archimatetool.editor.metrics.Timer;
 import com.archimatetool.editor.utils.StringUtils;
 import com.archimatetool.model.FolderType;
 import com.archimatetool.model.IArchimateElement;
 import com.archimatetool.model.IArchimateModel;
+import com.archimatetool.model.IDiagramModel;
 import com.archimatetool.model.IDiagramModelArchimateConnection;
 import com.archimatetool.model.IDiagramModelArchimateObject;
+import com.archimatetool.model.IFolder;
 import com.archimatetool.model.IIdentifier;
 import com.archimatetool.model.INameable;
 import com.archimatetool.model.IRelationship;
+import com.archimatetool.model.util.IDAdapter;
+import com.archimatetool.model.util.LazyDiagramContent;
 
 
 /**
- * Check Model for integrity
- * 
+ * Check Model for integrity<p>
+ *
+ * All checks are made on each object in one pass through the model. The folders and the diagram models are checked
+ * as separate parts that are shared out over the available processors with fork/join. The calling thread waits
+ * for the check to finish so the model must not be changed by other threads while it is checked.<p>
+ *
+ * The children of diagram models that have not been loaded yet are not loaded. Instead the elements and relationships
+ * that they reference are checked to be in the model.<p>
+ *
+ * {@link #checkChanged()} checks only the objects that have been added or changed since the last successful check
+ * of the model.
+ *
  * @author Phillip Beauvoir
  */
 public class ModelChecker {
-
+    
+    private static final int CHECK_IDS = 1;
+    private static final int CHECK_RELATIONS = 2;
+    private static final int CHECK_DIAGRAMS = 4;
+    private static final int CHECK_ALL = CHECK_IDS | CHECK_RELATIONS | CHECK_DIAGRAMS;
+    
+    private static final Timer CHECK_TIMER = Metrics.INSTANCE.getTimer(Metrics.MODEL_CHECK);
+    
     private IArchimateModel fModel;
+    private ForkJoinPool fPool;
     
     private List<String> fErrorMessages;
     
+    /**
+     * Messages found in a part of the model, kept by check so that they are reported in the same order
+     * whichever part is checked first
+     */
+    private static class Result {
+        List<String> ids = new ArrayList<String>();
+        List<String> relations = new ArrayList<String>();
+        List<String> diagrams = new ArrayList<String>();
+    }
+    
+    /**
+     * Keeps the objects of a model that have been added or changed since the last successful check.
+     * It is registered with the model as an IAdapter once a check of the model has succeeded.
+     */
+    private static class ChangeTracker extends EContentAdapter {
+        Set<EObject> added = new LinkedHashSet<EObject>();
+        Set<EObject> changed = new LinkedHashSet<EObject>();
+        
+        // Something was removed, so other objects may be orphaned
+        boolean removed;
+        
+        @Override
+        protected boolean resolve() {
+            // Don't load the children of diagram models that have not been loaded yet
+            return false;
+        }
+        
+        @Override
+        public void notifyChanged(Notification msg) {
+            super.notifyChanged(msg);
+            
+            if(msg.isTouch()) {
+                return;
+            }
+            
+            switch(msg.getEventType()) {
+                case Notification.ADD:
+                    addObject(msg.getNewValue());
+                    break;
+                
+                case Notification.ADD_MANY:
+                    for(Object o : (Collection<?>)msg.getNewValue()) {
+                        addObject(o);
+                    }
+                    break;
+                
+                case Notification.REMOVE:
+                case Notification.REMOVE_MANY:
+                    removed = true;
+                    break;
+                
+                case Notification.SET:
+                case Notification.UNSET:
+                    if(msg.getNotifier() instanceof EObject) {
+                        changed.add((EObject)msg.getNotifier());
+                    }
+                    if(msg.getFeature() instanceof EReference && ((EReference)msg.getFeature()).isContainment()) {
+                        if(msg.getOldValue() != null) {
+                            removed = true;
+                        }
+                        addObject(msg.getNewValue());
+                    }
+                    break;
+                
+                default:
+                    break;
+            }
+        }
+        
+        private void addObject(Object o) {
+            if(o instanceof EObject) {
+                added.add((EObject)o);
+            }
+        }
+        
+        void clear() {
+            added.clear();
+            changed.clear();
+            removed = false;
+        }
+    }
+    
     public ModelChecker(IArchimateModel model) {
+        this(model, ForkJoinPool.commonPool());
+    }
+    
+    /**
+     * @param model The model
+     * @param pool The fork/join pool to use
+     */
+    public ModelChecker(IArchimateModel model, ForkJoinPool pool) {
         fModel = model;
+        fPool = pool;
     }
     
     /**
      * @return True if OK, false if not OK
      */
     public boolean checkAll() {
-        fErrorMessages = new ArrayList<String>();
+        long start = CHECK_TIMER.start();
+        try {
+            return doCheckAll();
+        }
+        finally {
+            CHECK_TIMER.stop(start);
+        }
+    }
+    
+    private boolean doCheckAll() {
+        List<Callable<Result>> tasks = new ArrayList<Callable<Result>>();
+        
+        // checkFolderStructure() is not that important
+        for(IFolder folder : fModel.getFolders()) {
+            addTasks(folder, tasks);
+        }
         
-        // fErrorMessages.addAll(checkFolderStructure()); // not that important
-        fErrorMessages.addAll(checkHasIdentifiers());
-        fErrorMessages.addAll(checkRelationsHaveElements());
-        fErrorMessages.addAll(checkDiagramObjectsReferences());
+        fErrorMessages = run(tasks);
+        
+        // Start again from here
+        ChangeTracker tracker = (ChangeTracker)fModel.getAdapter(ChangeTracker.class);
+        if(tracker != null && fErrorMessages.isEmpty()) {
+            tracker.clear();
+        }
+        
+        return fErrorMessages.isEmpty();
+    }
+    
+    /**
+     * Check only the objects that have been added or changed since the last successful check of the model.
+     * The whole model is checked if it has not been checked successfully before or if anything has been removed from it,
+     * since that can leave other objects orphaned.
+     * @return True if OK, false if not OK
+     */
+    public boolean checkChanged() {
+        long start = CHECK_TIMER.start();
+        try {
+            return doCheckChanged();
+        }
+        finally {
+            CHECK_TIMER.stop(start);
+        }
+    }
+    
+    private boolean doCheckChanged() {
+        ChangeTracker tracker = (ChangeTracker)fModel.getAdapter(ChangeTracker.class);
+        
+        if(tracker == null || tracker.removed) {
+            if(!doCheckAll()) {
+                return false;
+            }
+            
+            // Keep track of changes from now on
+            if(tracker == null) {
+                tracker = new ChangeTracker();
+                fModel.eAdapters().add(tracker);
+                fModel.setAdapter(ChangeTracker.class, tracker);
+            }
+            
+            return true;
+        }
+        
+        Result result = new Result();
+        
+        for(EObject eObject : tracker.added) {
+            // Added and then removed again
+            if(!EcoreUtil.isAncestor(fModel, eObject)) {
+                continue;
+            }
+            check(eObject, result, CHECK_ALL);
+            if(!(eObject instanceof IDiagramModel && !LazyDiagramContent.isLoaded((IDiagramModel)eObject))) {
+                for(Iterator<EObject> iter = eObject.eAllContents(); iter.hasNext();) {
+                    check(iter.next(), result, CHECK_ALL);
+                }
+            }
+        }
+        
+        for(EObject eObject : tracker.changed) {
+            if(!tracker.added.contains(eObject) && EcoreUtil.isAncestor(fModel, eObject)) {
+                check(eObject, result, CHECK_ALL);
+            }
+        }
+        
+        List<Result> results = new ArrayList<Result>();
+        results.add(result);
+        fErrorMessages = merge(results);
+        
+        if(fErrorMessages.isEmpty()) {
+            tracker.clear();
+        }
         
         return fErrorMessages.isEmpty();
     }
@@ -63,14 +274,15 @@ public class ModelChecker {
             return;
         }
         
-        String message = Messages.ModelChecker_0 + " " + fModel.getName() + "\n"; //$NON-NLS-1$ //$NON-NLS-2$
+        StringBuilder message = new StringBuilder();
+        message.append(Messages.ModelChecker_0 + " " + fModel.getName() + "\n"); //$NON-NLS-1$ //$NON-NLS-2$
         
         for(String s : fErrorMessages) {
-            message += s + "\n"; //$NON-NLS-1$
+            message.append(s + "\n"); //$NON-NLS-1$
             logMessage(s);
         }
         
-        MessageDialog.openError(shell, Messages.ModelChecker_1, message);
+        MessageDialog.openError(shell, Messages.ModelChecker_1, message.toString());
     }
     
     List<String> checkFolderStructure() {
@@ -105,89 +317,284 @@ public class ModelChecker {
     }
     
     List<String> checkHasIdentifiers() {
-        List<String> messages = new ArrayList<String>();
+        Result result = new Result();
         
         for(Iterator<EObject> iter = fModel.eAllContents(); iter.hasNext();) {
-            EObject eObject = iter.next();
-            if(eObject instanceof IIdentifier && !StringUtils.isSet(((IIdentifier)eObject).getId())) {
-                String name = (eObject instanceof INameable) ? ((INameable)eObject).getName() : eObject.getClass().getName();
-                String message = Messages.ModelChecker_10 + " " + name; //$NON-NLS-1$
-                messages.add(message);
-            }
+            check(iter.next(), result, CHECK_IDS);
         }
         
-        return messages;
+        return result.ids;
     }
     
     List<String> checkRelationsHaveElements() {
-        List<String> messages = new ArrayList<String>();
+        Result result = new Result();
         
         for(Iterator<EObject> iter = fModel.getFolder(FolderType.RELATIONS).eAllContents(); iter.hasNext();) {
-            EObject eObject = iter.next();
-            if(eObject instanceof IRelationship) {
-                IRelationship relation = (IRelationship)eObject;
-                String name = " (" + relation.getId() + ")"; //$NON-NLS-1$ //$NON-NLS-2$
-                if(relation.getSource() == null) {
-                    String message = Messages.ModelChecker_19 + name;
-                    messages.add(message);
+            check(iter.next(), result, CHECK_RELATIONS);
+        }
+        
+        return result.relations;
+    }
+    
+    List<String> checkDiagramObjectsReferences() {
+        Result result = new Result();
+        
+        for(Iterator<EObject> iter = fModel.getFolder(FolderType.DIAGRAMS).eAllContents(); iter.hasNext();) {
+            check(iter.next(), result, CHECK_DIAGRAMS);
+        }
+        
+        return result.diagrams;
+    }
+    
+    /**
+     * Add a task to check a folder, its sub-folders and their elements, and a task to check each diagram model in them.
+     * Only the folders are walked here, on the calling thread.
+     */
+    private void addTasks(final IFolder folder, List<Callable<Result>> tasks) {
+        tasks.add(new Callable<Result>() {
+            public Result call() {
+                Result result = new Result();
+                checkFolder(folder, result);
+                return result;
+            }
+        });
+        
+        addDiagramModelTasks(folder, tasks);
+    }
+    
+    private void addDiagramModelTasks(IFolder folder, List<Callable<Result>> tasks) {
+        for(EObject eObject : folder.getElements()) {
+            if(eObject instanceof IDiagramModel) {
+                final IDiagramModel dm = (IDiagramModel)eObject;
+                
+                // Get this here so that it doesn't change between threads
+                final LazyDiagramContent content = LazyDiagramContent.getContent(dm);
+                
+                tasks.add(new Callable<Result>() {
+                    public Result call() {
+                        Result result = new Result();
+                        checkDiagramModel(dm, content, result);
+                        return result;
+                    }
+                });
+            }
+        }
+        
+        for(IFolder subFolder : folder.getFolders()) {
+            addDiagramModelTasks(subFolder, tasks);
+        }
+    }
+    
+    /**
+     * Check a folder, its sub-folders and their elements apart from diagram models
+     */
+    private void checkFolder(IFolder folder, Result result) {
+        check(folder, result, CHECK_ALL);
+        
+        for(EObject eObject : folder.getElements()) {
+            if(!(eObject instanceof IDiagramModel)) {
+                check(eObject, result, CHECK_ALL);
+                for(Iterator<EObject> iter = eObject.eAllContents(); iter.hasNext();) {
+                    check(iter.next(), result, CHECK_ALL);
                 }
-                else if(relation.getSource().getArchimateModel() == null) {
-                    String message = Messages.ModelChecker_20 + name;
-                    messages.add(message);
+            }
+        }
+        
+        for(IFolder subFolder : folder.getFolders()) {
+            checkFolder(subFolder, result);
+        }
+    }
+    
+    /**
+     * Check a diagram model and its children, or the references of its children if they have not been loaded yet
+     */
+    private void checkDiagramModel(IDiagramModel dm, LazyDiagramContent content, Result result) {
+        check(dm, result, CHECK_ALL);
+        
+        if(content != null) {
+            IDAdapter idAdapter = (IDAdapter)fModel.getAdapter(IDAdapter.class);
+            if(idAdapter != null) {
+                checkDiagramModelReferences(dm, content, idAdapter, result.diagrams);
+            }
+        }
+        else {
+            for(Iterator<EObject> iter = dm.eAllContents(); iter.hasNext();) {
+                check(iter.next(), result, CHECK_ALL);
+            }
+        }
+    }
+    
+    /**
+     * Check the references of the children of a diagram model that have not been loaded yet, as they would be checked if they were loaded
+     */
+    private void checkDiagramModelReferences(IDiagramModel dm, LazyDiagramContent content, IDAdapter idAdapter, List<String> messages) {
+        for(Entry<String, String> entry : content.getElementReferences().entrySet()) {
+            String name = " '" + dm.getName() + "' (" + entry.getKey() + ")"; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+            
+            EObject element = idAdapter.getObject(entry.getValue());
+            if(!(element instanceof IArchimateElement)) {
+                messages.add(Messages.ModelChecker_12 + name);
+            }
+            else if(((IArchimateElement)element).getArchimateModel() == null) {
+                messages.add(Messages.ModelChecker_13 + name);
+            }
+        }
+        
+        for(Entry<String, String> entry : content.getRelationshipReferences().entrySet()) {
+            String name = " '" + dm.getName() + "' (" + entry.getKey() + ")"; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+            
+            EObject object = idAdapter.getObject(entry.getValue());
+            if(!(object instanceof IRelationship)) {
+                messages.add(Messages.ModelChecker_15 + name);
+            }
+            else {
+                IRelationship relation = (IRelationship)object;
+                if(relation.getArchimateModel() == null) {
+                    messages.add(Messages.ModelChecker_16 + name);
                 }
-                if(relation.getTarget() == null) {
-                    String message = Messages.ModelChecker_21 + name;
-                    messages.add(message);
+                if(relation.getSource() != null && relation.getSource().getArchimateModel() == null) {
+                    messages.add(Messages.ModelChecker_17 + name);
                 }
-                else if(relation.getTarget().getArchimateModel() == null) {
-                    String message = Messages.ModelChecker_22 + name;
-                    messages.add(message);
+                if(relation.getTarget() != null && relation.getTarget().getArchimateModel() == null) {
+                    messages.add(Messages.ModelChecker_18 + name);
                 }
             }
         }
+    }
+    
+    /**
+     * Make the checks on one object
+     * @param eObject The object
+     * @param result Where to add messages
+     * @param checks The checks to make
+     */
+    private void check(EObject eObject, Result result, int checks) {
+        if((checks & CHECK_IDS) != 0) {
+            checkHasIdentifier(eObject, result.ids);
+        }
+        if((checks & CHECK_RELATIONS) != 0 && eObject instanceof IRelationship) {
+            checkRelationHasElements((IRelationship)eObject, result.relations);
+        }
+        if((checks & CHECK_DIAGRAMS) != 0) {
+            if(eObject instanceof IDiagramModelArchimateObject) {
+                checkDiagramObjectReferences((IDiagramModelArchimateObject)eObject, result.diagrams);
+            }
+            if(eObject instanceof IDiagramModelArchimateConnection) {
+                checkDiagramConnectionReferences((IDiagramModelArchimateConnection)eObject, result.diagrams);
+            }
+        }
+    }
+    
+    private void checkHasIdentifier(EObject eObject, List<String> messages) {
+        if(eObject instanceof IIdentifier && !StringUtils.isSet(((IIdentifier)eObject).getId())) {
+            String name = (eObject instanceof INameable) ? ((INameable)eObject).getName() : eObject.getClass().getName();
+            String message = Messages.ModelChecker_10 + " " + name; //$NON-NLS-1$
+            messages.add(message);
+        }
+    }
+    
+    private void checkRelationHasElements(IRelationship relation, List<String> messages) {
+        String name = " (" + relation.getId() + ")"; //$NON-NLS-1$ //$NON-NLS-2$
+        if(relation.getSource() == null) {
+            String message = Messages.ModelChecker_19 + name;
+            messages.add(message);
+        }
+        else if(relation.getSource().getArchimateModel() == null) {
+            String message = Messages.ModelChecker_20 + name;
+            messages.add(message);
+        }
+        if(relation.getTarget() == null) {
+            String message = Messages.ModelChecker_21 + name;
+            messages.add(message);
+        }
+        else if(relation.getTarget().getArchimateModel() == null) {
+            String message = Messages.ModelChecker_22 + name;
+            messages.add(message);
+        }
+    }
+    
+    private void checkDiagramObjectReferences(IDiagramModelArchimateObject dmo, List<String> messages) {
+        String name = dmo.getDiagramModel() == null ? Messages.ModelChecker_11 : " '" + dmo.getDiagramModel().getName() + "' (" + dmo.getId() + ")"; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
         
-        return messages;
+        IArchimateElement element = dmo.getArchimateElement();
+        if(element == null) {
+            messages.add(Messages.ModelChecker_12 + name);
+        }
+        else if(element.getArchimateModel() == null) {
+            messages.add(Messages.ModelChecker_13 + name);
+        }
     }
     
-    List<String> checkDiagramObjectsReferences() {
-        List<String> messages = new ArrayList<String>();
+    private void checkDiagramConnectionReferences(IDiagramModelArchimateConnection conn, List<String> messages) {
+        String name = conn.getDiagramModel() == null ? Messages.ModelChecker_14 : " '" + conn.getDiagramModel().getName() + "' (" + conn.getId() + ")"; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
         
-        for(Iterator<EObject> iter = fModel.getFolder(FolderType.DIAGRAMS).eAllContents(); iter.hasNext();) {
-            EObject eObject = iter.next();
-            if(eObject instanceof IDiagramModelArchimateObject) {
-                IDiagramModelArchimateObject dmo = (IDiagramModelArchimateObject)eObject;
-                String name = dmo.getDiagramModel() == null ? Messages.ModelChecker_11 : " '" + dmo.getDiagramModel().getName() + "' (" + dmo.getId() + ")"; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
-                
-                IArchimateElement element = dmo.getArchimateElement();
-                if(element == null) {
-                    messages.add(Messages.ModelChecker_12 + name);
+        IRelationship relation = conn.getRelationship();
+        if(relation == null) {
+            messages.add(Messages.ModelChecker_15 + name);
+        }
+        else {
+            if(relation.getArchimateModel() == null) {
+                messages.add(Messages.ModelChecker_16 + name);
+            }
+            if(relation.getSource() != null && relation.getSource().getArchimateModel() == null) {
+                messages.add(Messages.ModelChecker_17 + name);
+            }
+            if(relation.getTarget() != null && relation.getTarget().getArchimateModel() == null) {
+                messages.add(Messages.ModelChecker_18 + name);
+            }
+        }
+    }
+    
+    /**
+     * Run the tasks, in parallel if there is more than one, and merge their messages
+     */
+    private List<String> run(List<Callable<Result>> tasks) {
+        List<Result> results = new ArrayList<Result>();
+        
+        if(tasks.size() == 1 || fPool.getParallelism() == 1) {
+            for(Callable<Result> task : tasks) {
+                try {
+                    results.add(task.call());
                 }
-                else if(element.getArchimateModel() == null) {
-                    messages.add(Messages.ModelChecker_13 + name);
+                catch(Exception ex) {
+                    throw new RuntimeException(ex);
                 }
             }
-            if(eObject instanceof IDiagramModelArchimateConnection) {
-                IDiagramModelArchimateConnection conn = (IDiagramModelArchimateConnection)eObject;
-                String name = conn.getDiagramModel() == null ? Messages.ModelChecker_14 : " '" + conn.getDiagramModel().getName() + "' (" + conn.getId() + ")"; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
-                
-                IRelationship relation = conn.getRelationship();
-                if(relation == null) {
-                    messages.add(Messages.ModelChecker_15 + name);
+        }
+        else {
+            for(Future<Result> future : fPool.invokeAll(tasks)) {
+                try {
+                    results.add(future.get());
                 }
-                else {
-                    if(relation.getArchimateModel() == null) {
-                        messages.add(Messages.ModelChecker_16 + name);
-                    }
-                    if(relation.getSource() != null && relation.getSource().getArchimateModel() == null) {
-                        messages.add(Messages.ModelChecker_17 + name);
-                    }
-                    if(relation.getTarget() != null && relation.getTarget().getArchimateModel() == null) {
-                        messages.add(Messages.ModelChecker_18 + name);
-                    }
+                catch(InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException(ex);
+                }
+                catch(ExecutionException ex) {
+                    throw new RuntimeException(ex.getCause());
                 }
             }
         }
         
+        return merge(results);
+    }
+    
+    /**
+     * @return The messages of all results, those of each check in turn and in the order of the results
+     */
+    private List<String> merge(List<Result> results) {
+        List<String> messages = new ArrayList<String>();
+        
+        for(Result result : results) {
+            messages.addAll(result.ids);
+        }
+        for(Result result : results) {
+            messages.addAll(result.relations);
+        }
+        for(Result result : results) {
+            messages.addAll(result.diagrams);
+        }
+        
         return messages;
     }
     
@@ -0,0 +1,26 @@
+/**
+ * This program and the accompanying materials
+ * are made available under the terms of the License
+ * which accompanies this distribution in the file LICENSE.txt
+ */
+package com.archimatetool.editor.model.compatibility;
+
+import java.util.Collections;
+
+import org.eclipse.emf.ecore.resource.Resource;
+
+import com.archimatetool.model.IArchimateModel;
+
+/**
+ * Abstract compatibility visitor that can also be used on its own as an ICompatibilityHandler
+ * 
+ * @author Phillip Beauvoir
+ */
+public abstract class AbstractCompatibilityVisitor implements ICompatibilityVisitor {
+    
+    @Override
+    public void fixCompatibility(Resource resource) throws CompatibilityHandlerException {
+        IArchimateModel model = (IArchimateModel)resource.getContents().get(0);
+        ModelCompatibility.visit(model, Collections.singletonList(this));
+    }
+}
@@ -0,0 +1,42 @@
+/**
+ * This program and the accompanying materials
+ * are made available under the terms of the License
+ * which accompanies this distribution in the file LICENSE.txt
+ */
+package com.archimatetool.editor.model.compatibility;
+
+import org.eclipse.emf.ecore.EClass;
+import org.eclipse.emf.ecore.EObject;
+
+import com.archimatetool.model.IArchimateModel;
+
+/**
+ * A compatibility handler that is given the objects of a model that it fixes instead of walking the model itself.<p>
+ * 
+ * The model is walked once for all visitors, and each object is given only to the visitors of its type.
+ * If no visitor needs to fix the model it is not walked at all.
+ * 
+ * @author Phillip Beauvoir
+ */
+public interface ICompatibilityVisitor extends ICompatibilityHandler {
+    
+    /**
+     * @return The types of objects to visit. Objects of these types and their sub-types are visited.
+     */
+    EClass[] getVisitedTypes();
+    
+    /**
+     * Called before the model is walked
+     * @param model The model
+     * @return true if the model needs fixing by this visitor, false if its objects should not be visited
+     */
+    boolean begin(IArchimateModel model);
+    
+    /**
+     * Fix an object. An object is visited after the objects that it contains, and objects are visited in the order
+     * that they are in the model. Objects must not be added to or removed from the model here.
+     * @param eObject The object
+     * @throws CompatibilityHandlerException
+     */
+    void visit(EObject eObject) throws CompatibilityHandlerException;
+}
@@ -6,12 +6,16 @@
 package com.archimatetool.editor.model.compatibility;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IConfigurationElement;
 import org.eclipse.core.runtime.IExtensionRegistry;
 import org.eclipse.core.runtime.Platform;
+import org.eclipse.emf.ecore.EClass;
+import org.eclipse.emf.ecore.EObject;
 import org.eclipse.emf.ecore.resource.Resource;
 import org.eclipse.emf.ecore.resource.Resource.Diagnostic;
 import org.eclipse.emf.ecore.xmi.ClassNotFoundException;
@@ -24,6 +28,8 @@ import org.xml.sax.SAXParseException;
 import com.archimatetool.editor.Logger;
 import com.archimatetool.editor.utils.StringUtils;
 import com.archimatetool.model.IArchimateModel;
+import com.archimatetool.model.IDiagramModel;
+import com.archimatetool.model.util.LazyDiagramContent;
 
 
 
@@ -128,15 +134,27 @@ public class ModelCompatibility {
     }
     
     /**
-     * Fix any compatibility issues in registered handlers
+     * Fix any compatibility issues in registered handlers.
+     * Handlers registered as fixed in a version of the model that is not later than the model's version are not created.
+     * Handlers that are ICompatibilityVisitors are given the objects of the model as the model is walked once for all of them.
      * @throws CompatibilityHandlerException 
      */
     public void fixCompatibility() throws CompatibilityHandlerException {
+        IArchimateModel model = (IArchimateModel)fResource.getContents().get(0);
+        List<ICompatibilityVisitor> visitors = new ArrayList<ICompatibilityVisitor>();
+        
         IExtensionRegistry registry = Platform.getExtensionRegistry();
         for(IConfigurationElement configurationElement : registry.getConfigurationElementsFor(ICompatibilityHandler.EXTENSION_ID)) {
+            if(!isFixedAfterVersion(configurationElement.getAttribute("fixedInVersion"), model.getVersion())) { //$NON-NLS-1$
+                continue;
+            }
+            
             try {
                 ICompatibilityHandler handler = (ICompatibilityHandler)configurationElement.createExecutableExtension("class"); //$NON-NLS-1$
-                if(handler != null) {
+                if(handler instanceof ICompatibilityVisitor) {
+                    visitors.add((ICompatibilityVisitor)handler);
+                }
+                else if(handler != null) {
                     handler.fixCompatibility(fResource);
                 }
             } 
@@ -144,5 +162,76 @@ public class ModelCompatibility {
                 ex.printStackTrace();
             } 
         }
+        
+        visit(model, visitors);
+    }
+    
+    /**
+     * @param fixedInVersion The model version in which an issue was fixed, or null if it applies to all versions
+     * @param modelVersion The model's version, or null if not set
+     * @return true if a model of modelVersion needs fixing for an issue fixed in fixedInVersion
+     */
+    static boolean isFixedAfterVersion(String fixedInVersion, String modelVersion) {
+        return fixedInVersion == null || modelVersion == null || StringUtils.compareVersionNumbers(modelVersion, fixedInVersion) < 0;
+    }
+    
+    /**
+     * Walk a model once and give each object to the visitors of its type
+     * @param model The model
+     * @param visitors The visitors. Those that don't need to fix the model are not given any objects.
+     * @throws CompatibilityHandlerException
+     */
+    public static void visit(IArchimateModel model, List<? extends ICompatibilityVisitor> visitors) throws CompatibilityHandlerException {
+        List<ICompatibilityVisitor> activeVisitors = new ArrayList<ICompatibilityVisitor>();
+        for(ICompatibilityVisitor visitor : visitors) {
+            if(visitor.begin(model)) {
+                activeVisitors.add(visitor);
+            }
+        }
+        
+        // Nothing to fix
+        if(activeVisitors.isEmpty()) {
+            return;
+        }
+        
+        visit(model, activeVisitors, new HashMap<EClass, List<ICompatibilityVisitor>>());
+    }
+    
+    /**
+     * Visit the contents of an object and then the object
+     */
+    private static void visit(EObject eObject, List<ICompatibilityVisitor> visitors, Map<EClass, List<ICompatibilityVisitor>> typeVisitors) throws CompatibilityHandlerException {
+        // Don't load the children of diagram models that have not been loaded yet
+        if(!(eObject instanceof IDiagramModel) || LazyDiagramContent.isLoaded((IDiagramModel)eObject)) {
+            for(EObject child : eObject.eContents()) {
+                visit(child, visitors, typeVisitors);
+            }
+        }
+        
+        for(ICompatibilityVisitor visitor : getVisitors(eObject.eClass(), visitors, typeVisitors)) {
+            visitor.visit(eObject);
+        }
+    }
+    
+    /**
+     * @return The visitors of a type, which are worked out once for each type
+     */
+    private static List<ICompatibilityVisitor> getVisitors(EClass eClass, List<ICompatibilityVisitor> visitors, Map<EClass, List<ICompatibilityVisitor>> typeVisitors) {
+        List<ICompatibilityVisitor> list = typeVisitors.get(eClass);
+        
+        if(list == null) {
+            list = new ArrayList<ICompatibilityVisitor>();
+            for(ICompatibilityVisitor visitor : visitors) {
+                for(EClass type : visitor.getVisitedTypes()) {
+                    if(type.isSuperTypeOf(eClass)) {
+                        list.add(visitor);
+                        break;
+                    }
+                }
+            }
+            typeVisitors.put(eClass, list);
+        }
+        
+        return list;
     }
 }
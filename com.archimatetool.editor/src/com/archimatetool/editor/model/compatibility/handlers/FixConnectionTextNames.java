@@ -5,13 +5,10 @@
  */
 package com.archimatetool.editor.model.compatibility.handlers;
 
-import java.util.Iterator;
-
+import org.eclipse.emf.ecore.EClass;
 import org.eclipse.emf.ecore.EObject;
-import org.eclipse.emf.ecore.resource.Resource;
 
-import com.archimatetool.editor.model.compatibility.CompatibilityHandlerException;
-import com.archimatetool.editor.model.compatibility.ICompatibilityHandler;
+import com.archimatetool.editor.model.compatibility.AbstractCompatibilityVisitor;
 import com.archimatetool.editor.utils.StringUtils;
 import com.archimatetool.model.IArchimateModel;
 import com.archimatetool.model.IArchimatePackage;
@@ -31,50 +28,55 @@ import com.archimatetool.model.IRelationship;
  * 
  * @author Phillip Beauvoir
  */
-public class FixConnectionTextNames implements ICompatibilityHandler {
+public class FixConnectionTextNames extends AbstractCompatibilityVisitor {
+    
+    @Override
+    public EClass[] getVisitedTypes() {
+        return new EClass[] {
+                IArchimatePackage.Literals.RELATIONSHIP,
+                IArchimatePackage.Literals.DIAGRAM_MODEL_CONNECTION
+        };
+    }
     
     @Override
-    public void fixCompatibility(Resource resource) throws CompatibilityHandlerException {
-        IArchimateModel model = (IArchimateModel)resource.getContents().get(0);
+    public boolean begin(IArchimateModel model) {
         String version = model.getVersion();
-        
-        if(version != null && StringUtils.compareVersionNumbers(version, "2.1.0") < 0) { //$NON-NLS-1$
-            for(Iterator<EObject> iter = model.eAllContents(); iter.hasNext();) {
-                EObject element = iter.next();
-                
-                // Set all Relationship names to empty if they have the default name
-                if(element instanceof IRelationship) {
-                    IRelationship relationship = (IRelationship)element;
-                    String name = relationship.getName();
-                    if(name != null && name.equalsIgnoreCase(getRelationshipDefaultName(relationship))) {
-                        relationship.setName(""); //$NON-NLS-1$
-                    }
-                }
-                // If an Archimate connection has a (deprecated) text value then set the Relationship's name to that
-                if(element instanceof IDiagramModelArchimateConnection) {
-                    IDiagramModelArchimateConnection connection = (IDiagramModelArchimateConnection)element;
-                    @SuppressWarnings("deprecation")
-                    String text = connection.getText();
-                    if(text != null && text.length() > 0) {
-                        IRelationship relationship = connection.getRelationship();
-                        relationship.setName(text);
-                    }
-                }
-                // If a diagram connection has a text value set the connection's name to that
-                else if(element instanceof IDiagramModelConnection) {
-                    IDiagramModelConnection connection = (IDiagramModelConnection)element;
-                    // Eliminate old name
-                    String name = connection.getName();
-                    if(name != null && name.equalsIgnoreCase("Connection")) { //$NON-NLS-1$
-                        connection.setName(""); //$NON-NLS-1$
-                    }
-                    
-                    @SuppressWarnings("deprecation")
-                    String text = connection.getText();
-                    if(text != null && text.length() > 0) {
-                        connection.setName(text);
-                    }
-                }
+        return version != null && StringUtils.compareVersionNumbers(version, "2.1.0") < 0; //$NON-NLS-1$
+    }
+    
+    @Override
+    public void visit(EObject element) {
+        // Set all Relationship names to empty if they have the default name
+        if(element instanceof IRelationship) {
+            IRelationship relationship = (IRelationship)element;
+            String name = relationship.getName();
+            if(name != null && name.equalsIgnoreCase(getRelationshipDefaultName(relationship))) {
+                relationship.setName(""); //$NON-NLS-1$
+            }
+        }
+        // If an Archimate connection has a (deprecated) text value then set the Relationship's name to that
+        if(element instanceof IDiagramModelArchimateConnection) {
+            IDiagramModelArchimateConnection connection = (IDiagramModelArchimateConnection)element;
+            @SuppressWarnings("deprecation")
+            String text = connection.getText();
+            if(text != null && text.length() > 0) {
+                IRelationship relationship = connection.getRelationship();
+                relationship.setName(text);
+            }
+        }
+        // If a diagram connection has a text value set the connection's name to that
+        else if(element instanceof IDiagramModelConnection) {
+            IDiagramModelConnection connection = (IDiagramModelConnection)element;
+            // Eliminate old name
+            String name = connection.getName();
+            if(name != null && name.equalsIgnoreCase("Connection")) { //$NON-NLS-1$
+                connection.setName(""); //$NON-NLS-1$
+            }
+            
+            @SuppressWarnings("deprecation")
+            String text = connection.getText();
+            if(text != null && text.length() > 0) {
+                connection.setName(text);
             }
         }
     }
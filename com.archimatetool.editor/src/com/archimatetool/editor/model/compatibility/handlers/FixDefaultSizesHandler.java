@@ -8,15 +8,15 @@ package com.archimatetool.editor.model.compatibility.handlers;
 import java.util.Iterator;
 
 import org.eclipse.draw2d.geometry.Dimension;
+import org.eclipse.emf.ecore.EClass;
 import org.eclipse.emf.ecore.EObject;
-import org.eclipse.emf.ecore.resource.Resource;
 
-import com.archimatetool.editor.model.compatibility.CompatibilityHandlerException;
-import com.archimatetool.editor.model.compatibility.ICompatibilityHandler;
+import com.archimatetool.editor.model.compatibility.AbstractCompatibilityVisitor;
 import com.archimatetool.editor.ui.factory.ElementUIFactory;
 import com.archimatetool.editor.ui.factory.IElementUIProvider;
 import com.archimatetool.editor.utils.StringUtils;
 import com.archimatetool.model.IArchimateModel;
+import com.archimatetool.model.IArchimatePackage;
 import com.archimatetool.model.IBounds;
 import com.archimatetool.model.IDiagramModelArchimateObject;
 import com.archimatetool.model.IDiagramModelContainer;
@@ -32,56 +32,81 @@ import com.archimatetool.model.IJunctionElement;
  * 
  * @author Phillip Beauvoir
  */
-public class FixDefaultSizesHandler implements ICompatibilityHandler {
+public class FixDefaultSizesHandler extends AbstractCompatibilityVisitor {
     
+    private boolean fFixGroupFigureOffset;
+    
+    @Override
+    public EClass[] getVisitedTypes() {
+        return new EClass[] { IArchimatePackage.Literals.DIAGRAM_MODEL_OBJECT };
+    }
+    
+    @Override
+    public boolean begin(IArchimateModel model) {
+        fFixGroupFigureOffset = isGroupFigureOffsetVersion(model.getVersion());
+        return true;
+    }
+    
+    /**
+     * Diagram objects are visited after their children, so the children of a group have been moved
+     * and have their sizes when the group's size is worked out.
+     * Diagram models in a model of the current version that have not been loaded yet are not loaded as they will not have missing sizes.
+     */
     @Override
-    public void fixCompatibility(Resource resource) throws CompatibilityHandlerException {
-        IArchimateModel model = (IArchimateModel)resource.getContents().get(0);
+    public void visit(EObject eObject) {
+        IDiagramModelObject dmo = (IDiagramModelObject)eObject;
         
-        // Fix Group sizes first
-        fixGroupFigureOffset(model);
+        // Fix Group offsets first
+        if(fFixGroupFigureOffset) {
+            fixGroupFigureOffset(dmo);
+        }
         
-        // Then check all widths and heights
-        fixMissingWidthAndHeight(model);
+        // Then check width and height
+        fixMissingWidthAndHeight(dmo);
     }
     
     /**
      * From 3.1.1 onwards we don't have an 18 pixel offset on Group figures
      */
+    private boolean isGroupFigureOffsetVersion(String version) {
+        return version != null && StringUtils.compareVersionNumbers(version, "3.1.1") < 0; //$NON-NLS-1$
+    }
+    
+    /**
+     * Fix the offset of all objects in Groups in a model
+     */
     void fixGroupFigureOffset(IArchimateModel model) {
-        String version = model.getVersion();
-        if(version != null && StringUtils.compareVersionNumbers(version, "3.1.1") < 0) { //$NON-NLS-1$
+        if(isGroupFigureOffsetVersion(model.getVersion())) {
             for(Iterator<EObject> iter = model.eAllContents(); iter.hasNext();) {
                 EObject eObject = iter.next();
-                if(eObject instanceof IDiagramModelObject && eObject.eContainer() instanceof IDiagramModelGroup) {
-                    IBounds bounds = ((IDiagramModelObject)eObject).getBounds();
-                    bounds.setY(bounds.getY() + 18);
+                if(eObject instanceof IDiagramModelObject) {
+                    fixGroupFigureOffset((IDiagramModelObject)eObject);
                 }
             }
         }
     }
     
+    private void fixGroupFigureOffset(IDiagramModelObject dmo) {
+        if(dmo.eContainer() instanceof IDiagramModelGroup) {
+            IBounds bounds = dmo.getBounds();
+            bounds.setY(bounds.getY() + 18);
+        }
+    }
+    
     /**
      * Fix missing width and height values
      */
-    void fixMissingWidthAndHeight(IArchimateModel model) {
-        for(Iterator<EObject> iter = model.eAllContents(); iter.hasNext();) {
-            EObject eObject = iter.next();
-            
-            // An Image width/height of -1, -1 signified the actual width/height of the image.
-            // However, here, Images with -1, -1 would be converted to a default box size of 200, 150. So ignore it.
-            if(eObject instanceof IDiagramModelImage) {
-                continue;
-            }
-            
-            if(eObject instanceof IDiagramModelObject) {
-                IDiagramModelObject dmo = (IDiagramModelObject)eObject;
-                Dimension d = getNewSize(dmo);
-                IBounds bounds = dmo.getBounds();
-                bounds.setWidth(d.width);
-                bounds.setHeight(d.height);
-            }
+    private void fixMissingWidthAndHeight(IDiagramModelObject dmo) {
+        // An Image width/height of -1, -1 signified the actual width/height of the image.
+        // However, here, Images with -1, -1 would be converted to a default box size of 200, 150. So ignore it.
+        if(dmo instanceof IDiagramModelImage) {
+            return;
         }
+        
+        Dimension d = getNewSize(dmo);
+        IBounds bounds = dmo.getBounds();
+        bounds.setWidth(d.width);
+        bounds.setHeight(d.height);
     }
     
     /**
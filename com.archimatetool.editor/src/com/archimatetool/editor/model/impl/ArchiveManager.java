@@ -5,38 +5,41 @@
  */
 package com.archimatetool.editor.model.impl;
 
-import java.io.BufferedOutputStream;
 import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Enumeration;
-import java.util.Iterator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
-import java.util.zip.ZipOutputStream;
 
 import org.eclipse.emf.common.notify.Notification;
-import org.eclipse.emf.common.util.URI;
 import org.eclipse.emf.ecore.EObject;
-import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.emf.ecore.EReference;
 import org.eclipse.emf.ecore.util.EContentAdapter;
 import org.eclipse.emf.ecore.util.EcoreUtil;
 import org.eclipse.swt.graphics.Image;
 import org.eclipse.swt.widgets.Display;
 
 import com.archimatetool.editor.model.IArchiveManager;
-import com.archimatetool.editor.model.IEditorModelManager;
 import com.archimatetool.editor.utils.FileUtils;
-import com.archimatetool.editor.utils.ZipUtils;
 import com.archimatetool.model.IArchimateModel;
 import com.archimatetool.model.IArchimatePackage;
+import com.archimatetool.model.IDiagramModel;
 import com.archimatetool.model.IDiagramModelImageProvider;
-import com.archimatetool.model.util.ArchimateResourceFactory;
+import com.archimatetool.model.util.ArchimateBinaryResource;
+import com.archimatetool.model.util.LazyDiagramContent;
+import com.archimatetool.model.util.ModelWalker;
 
 
 
@@ -48,10 +51,17 @@ import com.archimatetool.model.util.ArchimateResourceFactory;
 public class ArchiveManager implements IArchiveManager {
     
     /**
-     * Raw image bytes loaded for all images in use globally in the app
+     * Raw image bytes, or where they are in archive files, for all images in use globally in the app
      */
     static ByteArrayStorage BYTE_ARRAY_STORAGE = new ByteArrayStorage();
     
+    /**
+     * Walker of the objects in models that can have images. Diagram models that have not been loaded are not loaded,
+     * the image paths of their children are known without loading them.
+     */
+    private static final ModelWalker IMAGE_PROVIDER_WALKER = new ModelWalker(false, IArchimatePackage.Literals.DIAGRAM_MODEL_IMAGE_PROVIDER,
+                                                                                     IArchimatePackage.Literals.DIAGRAM_MODEL);
+    
     /**
      * The ArchiMate model
      */
@@ -63,36 +73,66 @@ public class ArchiveManager implements IArchiveManager {
     private boolean fImagesLoaded = false;
     
     /**
-     * Paths of images loaded
+     * Paths of images loaded. Each one holds a reference to its entry in the ByteArrayStorage until the model is closed
+     * or the image is no longer used in the model.
+     */
+    private Set<String> fLoadedImagePaths = new LinkedHashSet<String>();
+    
+    /**
+     * Image path -> bytes of images that are no longer used in the model, so that they can be put back in the
+     * ByteArrayStorage if the change is undone. They are kept until the model is saved.
      */
-    private List<String> fLoadedImagePaths = new ArrayList<String>();
+    private Map<String, byte[]> fReleasedImages = new HashMap<String, byte[]>();
+    
+    /**
+     * Image path -> number of image providers in the model that use it. A diagram model whose children have not been
+     * loaded yet counts once for each image path used by its children.
+     */
+    private Map<String, Integer> fImagePathCounts = new HashMap<String, Integer>();
     
     /**
      * Adapter monitors added image components added by user (copy & paste, DND, image set, etc)
      * since images were loaded from archive file.
      */
     private EContentAdapter fModelAdapter = new EContentAdapter() {
+        @Override
+        protected boolean resolve() {
+            // Don't load the children of diagram models that have not been loaded yet
+            return false;
+        }
+        
         @Override
         public void notifyChanged(Notification msg) {
             super.notifyChanged(msg);
-
-            // IDiagramModelImageProvider added
-            if(msg.getEventType() == Notification.ADD) {
-                if(msg.getNewValue() instanceof IDiagramModelImageProvider) {
-                    IDiagramModelImageProvider imageProvider = (IDiagramModelImageProvider)msg.getNewValue();
-                    String imagePath = imageProvider.getImagePath();
-                    if(imagePath != null && !fLoadedImagePaths.contains(imagePath)) {
-                        fLoadedImagePaths.add(imagePath);
-                    }
+            
+            // Image path set, replaced or cleared. Undo sets the old value back in the same way.
+            if(msg.getFeature() == IArchimatePackage.Literals.DIAGRAM_MODEL_IMAGE_PROVIDER__IMAGE_PATH) {
+                if(msg.getEventType() == Notification.SET) {
+                    addImagePath((String)msg.getNewValue(), 1);
+                    removeImagePath((String)msg.getOldValue(), 1);
+                    releaseImagePath((String)msg.getOldValue());
                 }
             }
-            // Image path set
-            else if(msg.getEventType() == Notification.SET) {
-                if(msg.getFeature() == IArchimatePackage.Literals.DIAGRAM_MODEL_IMAGE_PROVIDER__IMAGE_PATH) {
-                    String imagePath = (String)msg.getNewValue();
-                    if(imagePath != null && !fLoadedImagePaths.contains(imagePath)) {
-                        fLoadedImagePaths.add(imagePath);
-                    }
+            // Objects added to or removed from the model (copy & paste, DND, delete, undo, etc)
+            else if(msg.getFeature() instanceof EReference && ((EReference)msg.getFeature()).isContainment()) {
+                switch(msg.getEventType()) {
+                    case Notification.ADD:
+                    case Notification.ADD_MANY:
+                        addImagePaths(msg.getNewValue());
+                        break;
+                        
+                    case Notification.REMOVE:
+                    case Notification.REMOVE_MANY:
+                        removeImagePaths(msg.getOldValue());
+                        break;
+                        
+                    case Notification.SET:
+                        removeImagePaths(msg.getOldValue());
+                        addImagePaths(msg.getNewValue());
+                        break;
+
+                    default:
+                        break;
                 }
             }
         }
@@ -104,6 +144,10 @@ public class ArchiveManager implements IArchiveManager {
     public ArchiveManager(IArchimateModel model) {
         fModel = model;
         fModel.eAdapters().add(fModelAdapter);
+        
+        Map<String, Integer> counts = new HashMap<String, Integer>();
+        countImagePaths(fModel, counts);
+        fImagePathCounts.putAll(counts);
     }
 
     @Override
@@ -145,8 +189,10 @@ public class ArchiveManager implements IArchiveManager {
     
     @Override
     public Image createImage(String path) throws Exception {
-        if(BYTE_ARRAY_STORAGE.hasEntry(path)) {
-            return new Image(Display.getCurrent(), BYTE_ARRAY_STORAGE.getInputStream(path));
+        // The entry can be removed on another thread so get its bytes in one step
+        InputStream in = BYTE_ARRAY_STORAGE.getInputStream(path);
+        if(in != null) {
+            return new Image(Display.getCurrent(), in);
         }
         
         return null;
@@ -154,19 +200,27 @@ public class ArchiveManager implements IArchiveManager {
     
     @Override
     public List<String> getImagePaths() {
-        List<String> list = new ArrayList<String>();
+        final Set<String> paths = new LinkedHashSet<String>();
         
-        for(Iterator<EObject> iter = fModel.eAllContents(); iter.hasNext();) {
-            EObject element = iter.next();
-            if(element instanceof IDiagramModelImageProvider) {
-                String imagePath = ((IDiagramModelImageProvider)element).getImagePath();
-                if(imagePath != null && !list.contains(imagePath)) {
-                    list.add(imagePath);
+        IMAGE_PROVIDER_WALKER.walk(fModel, new ModelWalker.IVisitor() {
+            public boolean visit(EObject eObject) {
+                if(eObject instanceof IDiagramModelImageProvider) {
+                    String imagePath = ((IDiagramModelImageProvider)eObject).getImagePath();
+                    if(imagePath != null) {
+                        paths.add(imagePath);
+                    }
                 }
+                if(eObject instanceof IDiagramModel) {
+                    LazyDiagramContent content = LazyDiagramContent.getContent((IDiagramModel)eObject);
+                    if(content != null) {
+                        paths.addAll(content.getImagePaths());
+                    }
+                }
+                return true;
             }
-        }
+        });
         
-        return list;
+        return new ArrayList<String>(paths);
     }
     
     @Override
@@ -174,6 +228,153 @@ public class ArchiveManager implements IArchiveManager {
         return new ArrayList<String>(fLoadedImagePaths);
     }
     
+    /**
+     * Count the image paths used by image providers in objects added to the model and add them as used by the model.
+     * The children of a diagram model that are being loaded were counted once for each image path before they were loaded.
+     */
+    private void addImagePaths(Object value) {
+        Map<String, Integer> counts = new HashMap<String, Integer>();
+        countImagePaths(value, counts);
+        
+        boolean lazyLoading = LazyDiagramContent.isLoading();
+        
+        for(Entry<String, Integer> entry : counts.entrySet()) {
+            addImagePath(entry.getKey(), lazyLoading ? entry.getValue() - 1 : entry.getValue());
+        }
+    }
+    
+    /**
+     * Count the image paths used by image providers in objects removed from the model. Their images are not released so
+     * that they can be pasted into another model or put back if the change is undone.
+     */
+    private void removeImagePaths(Object value) {
+        Map<String, Integer> counts = new HashMap<String, Integer>();
+        countImagePaths(value, counts);
+        
+        for(Entry<String, Integer> entry : counts.entrySet()) {
+            removeImagePath(entry.getKey(), entry.getValue());
+        }
+    }
+    
+    private void addImagePath(String imagePath, int count) {
+        if(imagePath != null && count > 0) {
+            Integer oldCount = fImagePathCounts.get(imagePath);
+            fImagePathCounts.put(imagePath, oldCount == null ? count : oldCount + count);
+            addLoadedImagePath(imagePath);
+        }
+    }
+    
+    private void removeImagePath(String imagePath, int count) {
+        Integer oldCount = imagePath != null ? fImagePathCounts.get(imagePath) : null;
+        if(oldCount != null) {
+            if(oldCount > count) {
+                fImagePathCounts.put(imagePath, oldCount - count);
+            }
+            else {
+                fImagePathCounts.remove(imagePath);
+            }
+        }
+    }
+    
+    /**
+     * Count the image paths used by the image providers in an object, or a collection of objects, and their contents
+     */
+    private void countImagePaths(Object value, final Map<String, Integer> counts) {
+        if(value instanceof Collection) {
+            for(Object o : (Collection<?>)value) {
+                countImagePaths(o, counts);
+            }
+        }
+        else if(value instanceof EObject) {
+            ModelWalker.IVisitor visitor = new ModelWalker.IVisitor() {
+                public boolean visit(EObject eObject) {
+                    if(eObject instanceof IDiagramModelImageProvider) {
+                        countImagePath(((IDiagramModelImageProvider)eObject).getImagePath(), counts);
+                    }
+                    if(eObject instanceof IDiagramModel) {
+                        LazyDiagramContent content = LazyDiagramContent.getContent((IDiagramModel)eObject);
+                        if(content != null) {
+                            for(String imagePath : content.getImagePaths()) {
+                                countImagePath(imagePath, counts);
+                            }
+                        }
+                    }
+                    return true;
+                }
+            };
+            
+            visitor.visit((EObject)value);
+            IMAGE_PROVIDER_WALKER.walk((EObject)value, visitor);
+        }
+    }
+    
+    private void countImagePath(String imagePath, Map<String, Integer> counts) {
+        if(imagePath != null) {
+            Integer count = counts.get(imagePath);
+            counts.put(imagePath, count == null ? 1 : count + 1);
+        }
+    }
+    
+    /**
+     * @return The number of image providers in the model that use an image path
+     */
+    int getImagePathCount(String imagePath) {
+        Integer count = fImagePathCounts.get(imagePath);
+        return count == null ? 0 : count;
+    }
+    
+    /**
+     * Add an image path used by the model, taking a reference to its entry in the ByteArrayStorage.
+     * If the image was released by an earlier change that has been undone its bytes are put back.
+     */
+    private void addLoadedImagePath(String imagePath) {
+        if(imagePath == null) {
+            return;
+        }
+        
+        synchronized(BYTE_ARRAY_STORAGE) {
+            byte[] bytes = fReleasedImages.remove(imagePath);
+            if(bytes != null && !BYTE_ARRAY_STORAGE.hasEntry(imagePath)) {
+                BYTE_ARRAY_STORAGE.addByteContentEntry(imagePath, bytes);
+            }
+            
+            if(fLoadedImagePaths.add(imagePath)) {
+                BYTE_ARRAY_STORAGE.addReference(imagePath);
+            }
+        }
+    }
+    
+    /**
+     * An image path has been replaced or cleared. If nothing else in the model uses it release the reference to
+     * its entry in the ByteArrayStorage, so that the entry is removed if no other model uses it.
+     * The bytes are kept by this model in case the change is undone.
+     */
+    private void releaseImagePath(String imagePath) {
+        if(imagePath == null || !fLoadedImagePaths.contains(imagePath) || fImagePathCounts.containsKey(imagePath)) {
+            return;
+        }
+        
+        synchronized(BYTE_ARRAY_STORAGE) {
+            byte[] bytes = BYTE_ARRAY_STORAGE.getEntry(imagePath);
+            if(bytes != null) {
+                fReleasedImages.put(imagePath, bytes);
+            }
+            
+            fLoadedImagePaths.remove(imagePath);
+            BYTE_ARRAY_STORAGE.removeReference(imagePath);
+        }
+    }
+    
+    /**
+     * Called on the UI thread when the model has been saved.
+     * The bytes of images that are no longer used are not kept for undo after the model has been saved.
+     */
+    void modelSaved() {
+        synchronized(BYTE_ARRAY_STORAGE) {
+            fReleasedImages.clear();
+        }
+    }
+    
     /**
      * Load images from model's archive file
      */
@@ -184,48 +385,112 @@ public class ArchiveManager implements IArchiveManager {
         }
     }
     
+    /**
+     * Load images from the model's archive file that have already been indexed with {@link #readImageIndex(File)}
+     * @param imageIndex Image path -> entry of the image in the archive file, or null if the model file is not an archive file
+     */
+    void loadImages(Map<String, ZipEntry> imageIndex) {
+        if(!fImagesLoaded && imageIndex != null) {
+            addImages(fModel.getFile(), imageIndex);
+            fImagesLoaded = true;
+        }
+    }
+    
     @Override
     public boolean loadImagesFromModelFile(File file) throws IOException {
-        if(file == null || !file.exists() || !FACTORY.isArchiveFile(file)) {
+        Map<String, ZipEntry> imageIndex = readImageIndex(file);
+        if(imageIndex == null) {
             return false;
         }
         
-        ZipFile zipFile = new ZipFile(file);
+        addImages(file, imageIndex);
         
-        for(Enumeration<? extends ZipEntry> enm = zipFile.entries(); enm.hasMoreElements();) {
-            ZipEntry zipEntry = enm.nextElement();
-            String entryName = zipEntry.getName();
-            if(entryName.startsWith("images/")) { //$NON-NLS-1$
+        return true;
+    }
+    
+    /**
+     * Add images to the ByteArrayStorage. Their bytes are left in the archive file until they are needed.
+     * Models can be loaded and closed on other threads, so an entry can't be removed by another model between
+     * finding it and taking a reference to it.
+     */
+    private void addImages(File file, Map<String, ZipEntry> imageIndex) {
+        synchronized(BYTE_ARRAY_STORAGE) {
+            for(Entry<String, ZipEntry> entry : imageIndex.entrySet()) {
+                String entryName = entry.getKey();
+                ZipEntry zipEntry = entry.getValue();
+                
                 // Add to ByteArrayStorage
                 if(!BYTE_ARRAY_STORAGE.hasEntry(entryName)) {
-                    InputStream in = zipFile.getInputStream(zipEntry);
-                    BYTE_ARRAY_STORAGE.addStreamEntry(entryName, in);
+                    BYTE_ARRAY_STORAGE.addZipEntry(entryName, file, zipEntry.getSize(), zipEntry.getCrc());
                 }
                 
                 // Add to list
-                if(!fLoadedImagePaths.contains(entryName)) {
-                    fLoadedImagePaths.add(entryName);
-                }
+                addLoadedImagePath(entryName);
             }
         }
+    }
+    
+    /**
+     * Read the index of the images in a model's archive file, without reading the images.
+     * This does not touch the ByteArrayStorage so it can be called from any thread.
+     * @param file The model file
+     * @return Image path -> entry of the image in the archive file, with its size and CRC-32, or null if the file is not an archive file
+     * @throws IOException
+     */
+    static Map<String, ZipEntry> readImageIndex(File file) throws IOException {
+        if(file == null || !file.exists() || !FACTORY.isArchiveFile(file)) {
+            return null;
+        }
         
-        zipFile.close();
+        Map<String, ZipEntry> imageIndex = new LinkedHashMap<String, ZipEntry>();
         
-        return true;
+        ZipFile zipFile = new ZipFile(file);
+        
+        try {
+            for(Enumeration<? extends ZipEntry> enm = zipFile.entries(); enm.hasMoreElements();) {
+                ZipEntry zipEntry = enm.nextElement();
+                String entryName = zipEntry.getName();
+                if(entryName.startsWith("images/")) { //$NON-NLS-1$
+                    imageIndex.put(entryName, zipEntry);
+                }
+            }
+        }
+        finally {
+            zipFile.close();
+        }
+        
+        return imageIndex;
+    }
+    
+    /**
+     * Called on the UI thread when a snapshot has been saved.
+     * Images that are left in an archive file are read from the saved file from now on, in case the old file is
+     * deleted or changed.
+     * @param snapshot The snapshot
+     */
+    static void snapshotSaved(ModelSnapshot snapshot) {
+        if(snapshot.hasImages()) {
+            for(String imagePath : snapshot.getImagePaths()) {
+                BYTE_ARRAY_STORAGE.setZipFile(imagePath, snapshot.getFile());
+            }
+        }
     }
     
     @Override
     public boolean hasImages() {
-        for(Iterator<EObject> iter = fModel.eAllContents(); iter.hasNext();) {
-            EObject element = iter.next();
-            if(element instanceof IDiagramModelImageProvider) {
-                String imagePath = ((IDiagramModelImageProvider)element).getImagePath();
-                if(imagePath != null) {
-                    return true;
+        // The walk is stopped at the first image
+        return !IMAGE_PROVIDER_WALKER.walk(fModel, new ModelWalker.IVisitor() {
+            public boolean visit(EObject eObject) {
+                if(eObject instanceof IDiagramModelImageProvider && ((IDiagramModelImageProvider)eObject).getImagePath() != null) {
+                    return false;
+                }
+                if(eObject instanceof IDiagramModel) {
+                    LazyDiagramContent content = LazyDiagramContent.getContent((IDiagramModel)eObject);
+                    return content == null || content.getImagePaths().isEmpty();
                 }
+                return true;
             }
-        }
-        return false;
+        });
     }
 
     @Override
@@ -235,20 +500,22 @@ public class ArchiveManager implements IArchiveManager {
 
     @Override
     public String addByteContentEntry(String path, byte[] bytes) throws IOException {
-        // Is this already in the cache?
-        String entryName = BYTE_ARRAY_STORAGE.getKey(bytes);
-        
-        // No
-        if(entryName == null) {
-            // Is this actually a valid Image file? Test it...
-            testImageBytesValid(bytes);
-           
-            // Add it
-            entryName = path;
-            BYTE_ARRAY_STORAGE.addByteContentEntry(path, bytes);
+        synchronized(BYTE_ARRAY_STORAGE) {
+            // Is this already in the cache?
+            String entryName = BYTE_ARRAY_STORAGE.getKey(bytes);
+            
+            // No
+            if(entryName == null) {
+                // Is this actually a valid Image file? Test it...
+                testImageBytesValid(bytes);
+               
+                // Add it
+                entryName = path;
+                BYTE_ARRAY_STORAGE.addByteContentEntry(path, bytes);
+            }
+            
+            return entryName;
         }
-        
-        return entryName;
     }
     
     @Override
@@ -259,102 +526,65 @@ public class ArchiveManager implements IArchiveManager {
             return;
         }
         
-        if(hasImages()) {
-            saveModelToArchiveFile(file);
-        }
-        else {
-            saveModelToXMLFile(file);
-        }
+        ModelSnapshot snapshot = new ModelSnapshot(fModel, file, getImageEntries());
+        snapshot.save(null);
+        snapshotSaved(snapshot);
     }
     
-    /**
-     * Save the model to XML File format
-     */
-    private void saveModelToXMLFile(File file) throws IOException {
-        // For safety, save to temp file first and then copy across
-        File tmpFile = File.createTempFile("archi-", null); //$NON-NLS-1$
-        tmpFile.deleteOnExit();
-        
-        try {
-            saveResource(tmpFile);
-            FileUtils.copyFile(tmpFile, file, false);
-        }
-        finally {
-            tmpFile.delete();
-        }
+    @Override
+    public void saveModelCopy(File file, boolean binary) throws IOException {
+        // Diagram models that have not been loaded are not loaded to copy them
+        IArchimateModel copy = LazyDiagramContent.copy(fModel);
+        ModelSnapshot snapshot = new ModelSnapshot(copy, file, getImageEntries());
+        snapshot.setBinary(binary);
+        snapshot.save(null);
     }
     
     /**
-     * Save the model to Archive File format
+     * Take a snapshot of a copy of the model and its images, so that it can be saved
+     * while the model is edited. This should be called on the UI thread.
+     * @return The snapshot, or null if the model has no file
      */
-    private void saveModelToArchiveFile(File file) throws IOException {
-        // Temp file for xml model file
-        File tmpFile = File.createTempFile("archi-", null); //$NON-NLS-1$
-        tmpFile.deleteOnExit();
-        saveResource(tmpFile);
-        
-        // Create Zip File output stream to model's file
-        BufferedOutputStream out = new BufferedOutputStream(new FileOutputStream(file));
-        ZipOutputStream zOut = new ZipOutputStream(out);
+    ModelSnapshot createSnapshot() {
+        File file = fModel.getFile();
         
-        try {
-            // Add the model xml file
-            ZipUtils.addFileToZip(tmpFile, "model.xml", zOut); //$NON-NLS-1$
-            
-            // Add any images
-            saveImages(zOut);
-        }
-        finally {
-            tmpFile.delete();
-            zOut.close();
+        if(file == null) {
+            return null;
         }
-    }
-    
-    /**
-     * Save the model to Resource
-     */
-    private void saveResource(File file) throws IOException {
-        Resource resource = fModel.eResource();
         
-        // No parent Resource set, so create a new one
-        if(resource == null) {
-            resource = ArchimateResourceFactory.createNewResource(file);
-            resource.getContents().add(fModel);
-        }
-        // We already have a Resource, re-use it but make sure the URI is updated in case the file path has changed
-        else {
-            resource.setURI(URI.createFileURI(file.getAbsolutePath()));
-        }
+        // Diagram models that have not been loaded are not loaded to copy them
+        IArchimateModel copy = LazyDiagramContent.copy(fModel);
+        ModelSnapshot snapshot = new ModelSnapshot(copy, file, getImageEntries());
         
-        // Catch *all* exceptions in case of XML errors
-        try {
-            resource.save(null);
-        }
-        catch(Exception ex) {
-            throw new IOException(ex);
-        }
+        // The copy has no resource so save it in the format of the model's resource
+        snapshot.setBinary(fModel.eResource() instanceof ArchimateBinaryResource);
+        
+        return snapshot;
     }
     
-    private void saveImages(ZipOutputStream zOut) throws IOException {
-        List<String> added = new ArrayList<String>();
+    /**
+     * Images that are still in an archive file are not read here but copied from the archive file when saved
+     * @return Image path -> where to get the image from of the images used in the model
+     */
+    private Map<String, ModelSnapshot.ImageEntry> getImageEntries() {
+        Map<String, ModelSnapshot.ImageEntry> images = new LinkedHashMap<String, ModelSnapshot.ImageEntry>();
         
-        for(Iterator<EObject> iter = fModel.eAllContents(); iter.hasNext();) {
-            EObject eObject = iter.next();
-            if(eObject instanceof IDiagramModelImageProvider) {
-                IDiagramModelImageProvider imageProvider = (IDiagramModelImageProvider)eObject;
-                String imagePath = imageProvider.getImagePath();
-                if(imagePath != null && !added.contains(imagePath)) {
+        for(String imagePath : getImagePaths()) {
+            synchronized(BYTE_ARRAY_STORAGE) {
+                File zipFile = BYTE_ARRAY_STORAGE.getZipFile(imagePath);
+                if(zipFile != null) {
+                    images.put(imagePath, new ModelSnapshot.ImageEntry(zipFile, BYTE_ARRAY_STORAGE.getZipEntryName(imagePath)));
+                }
+                else {
                     byte[] bytes = BYTE_ARRAY_STORAGE.getEntry(imagePath);
                     if(bytes != null) {
-                        ZipEntry zipEntry = new ZipEntry(imagePath);
-                        zOut.putNextEntry(zipEntry);
-                        zOut.write(bytes);
-                        zOut.closeEntry();
-                        added.add(imagePath);
+                        images.put(imagePath, new ModelSnapshot.ImageEntry(bytes));
                     }
                 }
             }
         }
+        
+        return images;
     }
     
     private String createArchiveImagePathname(File file) {
@@ -374,37 +604,14 @@ public class ArchiveManager implements IArchiveManager {
     public void dispose() {
         fModel.eAdapters().remove(fModelAdapter);
         
-        if(!fLoadedImagePaths.isEmpty()) {
-            unloadUnusedImages();
+        // Release the images, those not in use in other models are unloaded
+        for(String imagePath : fLoadedImagePaths) {
+            BYTE_ARRAY_STORAGE.removeReference(imagePath);
         }
         
         fLoadedImagePaths.clear();
+        fReleasedImages.clear();
+        fImagePathCounts.clear();
         fModel = null;
     }
-    
-    /**
-     * Unload any images not in use in other models
-     */
-    private void unloadUnusedImages() {
-        // Gather all image paths that are in use in other models
-        List<String> allPathsInUse = new ArrayList<String>();
-        
-        for(IArchimateModel model : IEditorModelManager.INSTANCE.getModels()) {
-            if(model != fModel) { // don't bother with this model as we no longer use any images
-                ArchiveManager archiveManager = (ArchiveManager)model.getAdapter(IArchiveManager.class);
-                for(String imagePath : archiveManager.fLoadedImagePaths) {
-                    if(!allPathsInUse.contains(imagePath)) {
-                        allPathsInUse.add(imagePath);
-                    }
-                }
-            }
-        }
-        
-        // Release all unused image data and cached images that are not in image paths
-        for(String imagePath : fLoadedImagePaths) {
-            if(!allPathsInUse.contains(imagePath)) {
-                BYTE_ARRAY_STORAGE.removeEntry(imagePath);
-            }
-        }
-    }
 }
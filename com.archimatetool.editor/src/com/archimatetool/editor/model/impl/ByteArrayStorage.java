@@ -11,23 +11,112 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import com.archimatetool.editor.Logger;
 
 /**
- * Byte Array Storage Unit
+ * Byte Array Storage Unit<p>
+ * 
+ * Entries are either held in memory or are left in a zip file, such as an archive model file, until they are needed.
+ * The bytes of zip entries are read when asked for and the most recently used are kept in a cache
+ * of at most {@link #MAX_CACHE_SIZE} bytes. A zip file is opened when an entry is first read from it and is kept open,
+ * so that its index of entries is only read once, until no entry is left in it.<p>
+ * 
+ * Entries are indexed by a SHA-256 hash of their bytes so that the same bytes added again are found without comparing
+ * them with every entry. Zip entries are hashed when they are first read. Until then they are indexed by the size and
+ * CRC-32 given in the zip file's index, so that only those with the same size and CRC-32 as the bytes looked for are read.
+ * Entries are reference counted by the models that use them and are removed when no model uses them any more.<p>
+ * 
+ * There is one instance shared by all models, which may be loaded, closed and rendered on different threads,
+ * so all access to its tables and the cache is synchronized on the instance. Callers that make more than one call that
+ * must not be interleaved with other threads, such as checking for an entry and then adding a reference to it, synchronize
+ * on the instance themselves.
  * 
  * @author Phillip Beauvoir
  */
 public class ByteArrayStorage {
     
+    /**
+     * Maximum number of bytes of zip entries kept in the cache
+     */
+    static final long MAX_CACHE_SIZE = 32 * 1024 * 1024;
+    
+    /**
+     * Where the bytes of an entry are in a zip file
+     */
+    private static class ZipEntryRef {
+        File file;
+        String name;
+        long size;
+        long crc;
+        
+        ZipEntryRef(File file, String name, long size, long crc) {
+            this.file = file;
+            this.name = name;
+            this.size = size;
+            this.crc = crc;
+        }
+    }
+    
     private Map<String, byte[]> fdataTable = new HashMap<String, byte[]>();
     
+    /**
+     * Entries that are still in a zip file
+     */
+    private Map<String, ZipEntryRef> fZipTable = new HashMap<String, ZipEntryRef>();
+    
+    /**
+     * Zip files that entries have been read from, kept open while there are entries in them
+     */
+    private Map<File, ZipFile> fOpenZipFiles = new HashMap<File, ZipFile>();
+    
+    /**
+     * Zip file -> number of entries in fZipTable that are in it
+     */
+    private Map<File, Integer> fZipFileEntryCounts = new HashMap<File, Integer>();
+    
+    /**
+     * Bytes of the zip entries read most recently, least recently used first
+     */
+    private Map<String, byte[]> fCache = new LinkedHashMap<String, byte[]>(16, 0.75f, true);
+    private long fCacheSize;
+    
+    /**
+     * Content hash -> names of the entries with those bytes
+     */
+    private Map<String, Set<String>> fHashTable = new HashMap<String, Set<String>>();
+    
+    /**
+     * Entry name -> content hash, for the entries whose bytes have been hashed
+     */
+    private Map<String, String> fEntryHashes = new HashMap<String, String>();
+    
+    /**
+     * Size and CRC-32 -> names of the zip entries that have not been hashed yet
+     */
+    private Map<String, Set<String>> fUnhashedTable = new HashMap<String, Set<String>>();
+    
+    /**
+     * Entry name -> number of models that use the entry
+     */
+    private Map<String, Integer> fReferenceCounts = new HashMap<String, Integer>();
+    
     InputStream getInputStream(String entryName) {
         if(entryName != null) {
-            byte[] bytes = fdataTable.get(entryName);
+            byte[] bytes = getEntry(entryName);
             if(bytes != null) {
                 return new ByteArrayInputStream(bytes);
             }
@@ -35,45 +124,400 @@ public class ByteArrayStorage {
         return null;
     }
 
-    String getKey(byte[] bytes) {
-        for(Entry<String, byte[]> entry : fdataTable.entrySet()) {
-            byte[] entryBytes = entry.getValue();
-            if(isEqual(bytes, entryBytes)) {
-                return entry.getKey();
+    synchronized String getKey(byte[] bytes) {
+        return getKey(bytes, getHash(bytes));
+    }
+    
+    private String getKey(byte[] bytes, String hash) {
+        Set<String> entryNames = fHashTable.get(hash);
+        if(entryNames != null) {
+            return entryNames.iterator().next();
+        }
+        
+        // Zip entries that have not been read yet with the same size and CRC-32. Reading them hashes them.
+        entryNames = fUnhashedTable.get(getChecksumKey(bytes.length, getCRC(bytes)));
+        if(entryNames != null) {
+            for(String entryName : new ArrayList<String>(entryNames)) {
+                getZipEntry(entryName);
+                if(hash.equals(fEntryHashes.get(entryName))) {
+                    return entryName;
+                }
             }
         }
         
         return null;
     }
     
-    long getEntrySize(String entryName) {
+    synchronized long getEntrySize(String entryName) {
         if(entryName != null) {
             byte[] bytes = fdataTable.get(entryName);
             if(bytes != null) {
                 return bytes.length;
             }
+            ZipEntryRef ref = fZipTable.get(entryName);
+            if(ref != null) {
+                return ref.size;
+            }
         }
         return -1;
     }
     
-    Set<Entry<String, byte[]>> getEntrySet() {
-        return fdataTable.entrySet();
+    /**
+     * @return A copy of the entries held in memory
+     */
+    synchronized Set<Entry<String, byte[]>> getEntrySet() {
+        return new HashMap<String, byte[]>(fdataTable).entrySet();
     }
 
-    boolean hasEntries() {
-        return !fdataTable.isEmpty();
+    synchronized boolean hasEntries() {
+        return !fdataTable.isEmpty() || !fZipTable.isEmpty();
     }
     
-    boolean hasEntry(String entryName) {
-        return fdataTable.containsKey(entryName);
+    synchronized boolean hasEntry(String entryName) {
+        return fdataTable.containsKey(entryName) || fZipTable.containsKey(entryName);
     }
     
-    void removeEntry(String entryName) {
+    synchronized void removeEntry(String entryName) {
         fdataTable.remove(entryName);
+        fReferenceCounts.remove(entryName);
+        removeHash(entryName);
+        
+        ZipEntryRef ref = fZipTable.remove(entryName);
+        if(ref != null) {
+            removeZipFileEntry(ref.file);
+            removeUnhashed(entryName, ref);
+            byte[] bytes = fCache.remove(entryName);
+            if(bytes != null) {
+                fCacheSize -= bytes.length;
+            }
+            closeZipFileIfUnused(ref.file);
+        }
     }
     
-    byte[] getEntry(String entryName) {
-        return fdataTable.get(entryName);
+    synchronized byte[] getEntry(String entryName) {
+        byte[] bytes = fdataTable.get(entryName);
+        if(bytes == null) {
+            bytes = getZipEntry(entryName);
+        }
+        return bytes;
+    }
+    
+    /**
+     * A model has started to use an entry
+     * @param entryName The entry name
+     */
+    synchronized void addReference(String entryName) {
+        Integer count = fReferenceCounts.get(entryName);
+        fReferenceCounts.put(entryName, count == null ? 1 : count + 1);
+    }
+    
+    /**
+     * A model no longer uses an entry. When no model uses the entry it is removed.
+     * @param entryName The entry name
+     */
+    synchronized void removeReference(String entryName) {
+        Integer count = fReferenceCounts.get(entryName);
+        if(count == null || count <= 1) {
+            removeEntry(entryName);
+        }
+        else {
+            fReferenceCounts.put(entryName, count - 1);
+        }
+    }
+    
+    /**
+     * @return The number of models that use an entry
+     */
+    synchronized int getReferenceCount(String entryName) {
+        Integer count = fReferenceCounts.get(entryName);
+        return count == null ? 0 : count;
+    }
+    
+    /**
+     * Add an entry that is left in a zip file until it is needed
+     * @param entryName The entry name, which is also the name of the entry in the zip file
+     * @param zipFile The zip file
+     * @param size The size of the entry's bytes, or -1 if not known
+     */
+    void addZipEntry(String entryName, File zipFile, long size) {
+        addZipEntry(entryName, zipFile, size, -1);
+    }
+    
+    /**
+     * Add an entry that is left in a zip file until it is needed
+     * @param entryName The entry name, which is also the name of the entry in the zip file
+     * @param zipFile The zip file
+     * @param size The size of the entry's bytes, or -1 if not known
+     * @param crc The CRC-32 of the entry's bytes, or -1 if not known. If the size or CRC-32 is not known
+     *        the entry is not found by {@link #getKey(byte[])} until it has been read.
+     */
+    synchronized void addZipEntry(String entryName, File zipFile, long size, long crc) {
+        removeHash(entryName);
+        
+        // Bytes read from where the entry was before
+        byte[] bytes = fCache.remove(entryName);
+        if(bytes != null) {
+            fCacheSize -= bytes.length;
+        }
+        
+        ZipEntryRef ref = new ZipEntryRef(zipFile, entryName, size, crc);
+        ZipEntryRef oldRef = fZipTable.put(entryName, ref);
+        addZipFileEntry(zipFile);
+        if(oldRef != null) {
+            removeZipFileEntry(oldRef.file);
+            removeUnhashed(entryName, oldRef);
+            closeZipFileIfUnused(oldRef.file);
+        }
+        
+        if(size != -1 && crc != -1) {
+            String key = getChecksumKey(size, crc);
+            Set<String> entryNames = fUnhashedTable.get(key);
+            if(entryNames == null) {
+                entryNames = new LinkedHashSet<String>();
+                fUnhashedTable.put(key, entryNames);
+            }
+            entryNames.add(entryName);
+        }
+    }
+    
+    /**
+     * An entry that is left in a zip file has been written to another zip file, so read it from there from now on
+     * @param entryName The entry name, which is also the name of the entry in the zip file
+     * @param zipFile The zip file
+     */
+    synchronized void setZipFile(String entryName, File zipFile) {
+        ZipEntryRef ref = fZipTable.get(entryName);
+        if(ref != null) {
+            File oldFile = ref.file;
+            ref.file = zipFile;
+            ref.name = entryName;
+            addZipFileEntry(zipFile);
+            removeZipFileEntry(oldFile);
+            closeZipFileIfUnused(oldFile);
+        }
+    }
+    
+    /**
+     * @return The zip file that an entry is left in, or null if the entry is held in memory or there is no such entry
+     */
+    synchronized File getZipFile(String entryName) {
+        ZipEntryRef ref = fZipTable.get(entryName);
+        return ref != null && !fdataTable.containsKey(entryName) ? ref.file : null;
+    }
+    
+    /**
+     * @return The name in its zip file of an entry that is left in a zip file, or null
+     */
+    synchronized String getZipEntryName(String entryName) {
+        ZipEntryRef ref = fZipTable.get(entryName);
+        return ref != null && !fdataTable.containsKey(entryName) ? ref.name : null;
+    }
+    
+    /**
+     * @return The bytes of an entry left in a zip file from the cache or the zip file, or null
+     */
+    private byte[] getZipEntry(String entryName) {
+        ZipEntryRef ref = fZipTable.get(entryName);
+        if(ref == null) {
+            return null;
+        }
+        
+        byte[] bytes = fCache.get(entryName);
+        if(bytes != null) {
+            return bytes;
+        }
+        
+        try {
+            bytes = readZipEntry(ref.file, ref.name);
+        }
+        catch(IOException ex) {
+            // Opened again next time in case it has been replaced
+            closeZipFile(ref.file);
+            Logger.logError("Could not read " + ref.name + " from " + ref.file, ex); //$NON-NLS-1$ //$NON-NLS-2$
+            return null;
+        }
+        
+        if(bytes != null) {
+            addToCache(entryName, bytes);
+            
+            if(!fEntryHashes.containsKey(entryName)) {
+                addHash(entryName, getHash(bytes));
+            }
+        }
+        
+        return bytes;
+    }
+    
+    private void addHash(String entryName, String hash) {
+        ZipEntryRef ref = fZipTable.get(entryName);
+        if(ref != null) {
+            removeUnhashed(entryName, ref);
+        }
+        
+        fEntryHashes.put(entryName, hash);
+        
+        Set<String> entryNames = fHashTable.get(hash);
+        if(entryNames == null) {
+            entryNames = new LinkedHashSet<String>();
+            fHashTable.put(hash, entryNames);
+        }
+        entryNames.add(entryName);
+    }
+    
+    private void removeHash(String entryName) {
+        String hash = fEntryHashes.remove(entryName);
+        if(hash != null) {
+            Set<String> entryNames = fHashTable.get(hash);
+            entryNames.remove(entryName);
+            if(entryNames.isEmpty()) {
+                fHashTable.remove(hash);
+            }
+        }
+    }
+    
+    private void removeUnhashed(String entryName, ZipEntryRef ref) {
+        if(ref.size != -1 && ref.crc != -1) {
+            String key = getChecksumKey(ref.size, ref.crc);
+            Set<String> entryNames = fUnhashedTable.get(key);
+            if(entryNames != null) {
+                entryNames.remove(entryName);
+                if(entryNames.isEmpty()) {
+                    fUnhashedTable.remove(key);
+                }
+            }
+        }
+    }
+    
+    private static String getChecksumKey(long size, long crc) {
+        return size + ":" + crc; //$NON-NLS-1$
+    }
+    
+    /**
+     * @return The CRC-32 of some bytes, as kept in a zip file's index
+     */
+    static long getCRC(byte[] bytes) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, bytes.length);
+        return crc.getValue();
+    }
+    
+    /**
+     * @return The SHA-256 hash of some bytes as a hex string
+     */
+    static String getHash(byte[] bytes) {
+        byte[] digest;
+        
+        try {
+            digest = MessageDigest.getInstance("SHA-256").digest(bytes); //$NON-NLS-1$
+        }
+        catch(NoSuchAlgorithmException ex) {
+            // Every Java platform has SHA-256
+            throw new RuntimeException(ex);
+        }
+        
+        StringBuilder sb = new StringBuilder(digest.length * 2);
+        for(byte b : digest) {
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16));
+            sb.append(Character.forDigit(b & 0xF, 16));
+        }
+        
+        return sb.toString();
+    }
+    
+    /**
+     * Add bytes to the cache, removing the least recently used bytes if the cache is full
+     */
+    private void addToCache(String entryName, byte[] bytes) {
+        if(bytes.length > MAX_CACHE_SIZE) {
+            return;
+        }
+        
+        fCache.put(entryName, bytes);
+        fCacheSize += bytes.length;
+        
+        for(Iterator<byte[]> iter = fCache.values().iterator(); fCacheSize > MAX_CACHE_SIZE && iter.hasNext();) {
+            fCacheSize -= iter.next().length;
+            iter.remove();
+        }
+    }
+    
+    /**
+     * @return Number of bytes in the cache
+     */
+    synchronized long getCacheSize() {
+        return fCacheSize;
+    }
+    
+    /**
+     * Read the bytes of an entry in a zip file, opening the zip file if it is not open already
+     * @return The bytes or null if there is no such entry
+     */
+    private byte[] readZipEntry(File file, String entryName) throws IOException {
+        ZipFile zipFile = fOpenZipFiles.get(file);
+        if(zipFile == null) {
+            zipFile = new ZipFile(file);
+            fOpenZipFiles.put(file, zipFile);
+        }
+        
+        ZipEntry zipEntry = zipFile.getEntry(entryName);
+        if(zipEntry == null) {
+            return null;
+        }
+        return getBytesFromStream(zipFile.getInputStream(zipEntry));
+    }
+    
+    /**
+     * Close a zip file if it is open. This is done before the file is replaced, as an open file can't be replaced on
+     * some platforms. It is opened again when an entry is next read from it.
+     * @param file The zip file
+     */
+    synchronized void closeZipFile(File file) {
+        ZipFile zipFile = fOpenZipFiles.remove(file);
+        if(zipFile != null) {
+            try {
+                zipFile.close();
+            }
+            catch(IOException ex) {
+                Logger.logError("Could not close " + file, ex); //$NON-NLS-1$
+            }
+        }
+    }
+    
+    /**
+     * @return true if a zip file is open
+     */
+    synchronized boolean isZipFileOpen(File file) {
+        return fOpenZipFiles.containsKey(file);
+    }
+    
+    /**
+     * Close a zip file if it is open and no entries are left in it
+     */
+    private void closeZipFileIfUnused(File file) {
+        if(file != null && !fZipFileEntryCounts.containsKey(file)) {
+            closeZipFile(file);
+        }
+    }
+    
+    /**
+     * An entry in fZipTable is in a zip file
+     */
+    private void addZipFileEntry(File file) {
+        Integer count = fZipFileEntryCounts.get(file);
+        fZipFileEntryCounts.put(file, count == null ? 1 : count + 1);
+    }
+    
+    /**
+     * An entry in fZipTable is no longer in a zip file
+     */
+    private void removeZipFileEntry(File file) {
+        Integer count = fZipFileEntryCounts.get(file);
+        if(count == null || count <= 1) {
+            fZipFileEntryCounts.remove(file);
+        }
+        else {
+            fZipFileEntryCounts.put(file, count - 1);
+        }
     }
     
     void addFileContentEntry(String entryName, File file) throws IOException {
@@ -85,19 +529,36 @@ public class ByteArrayStorage {
         addByteContentEntry(entryName, bytes);
     }
 
-    void addByteContentEntry(String entryName, byte[] bytes) {
+    synchronized void addByteContentEntry(String entryName, byte[] bytes) {
         // Check if we have these bytes already. If we do then re-reference them
         // We might be adding the same set of bytes but from a different file
-        String key = getKey(bytes);
+        String hash = getHash(bytes);
+        String key = getKey(bytes, hash);
         
+        removeHash(entryName);
+        
+        // Yes we have them in a zip file, so leave them there
+        if(key != null && fZipTable.containsKey(key)) {
+            ZipEntryRef ref = fZipTable.get(key);
+            ZipEntryRef oldRef = fZipTable.put(entryName, new ZipEntryRef(ref.file, ref.name, ref.size, ref.crc));
+            addZipFileEntry(ref.file);
+            if(oldRef != null) {
+                removeZipFileEntry(oldRef.file);
+                removeUnhashed(entryName, oldRef);
+                closeZipFileIfUnused(oldRef.file);
+            }
+            fdataTable.remove(entryName);
+        }
         // Yes we have them, so re-use the bytes
-        if(key != null) {
+        else if(key != null) {
             fdataTable.put(entryName, getEntry(key));
         }
         // No, so add the bytes
         else {
             fdataTable.put(entryName, bytes);
         }
+        
+        addHash(entryName, hash);
     }
     
     byte[] getBytesFromFile(File file) throws IOException {
@@ -109,30 +570,10 @@ public class ByteArrayStorage {
         return null;
     }
     
-    private boolean isEqual(byte[] b1, byte[] b2) {
-        if(b1 == null || b2 == null) {
-            return false;
-        }
-        
-        if(b1.length == b2.length) {
-            int i = 0;
-            int j = 0;
-            int n = b1.length;
-            while(n-- != 0) {
-                if(b1[i++] != b2[j++]) {
-                    return false;
-                }
-            }
-            return true;
-        }
-        
-        return false;
-    }
-    
     /**
      * Read in a stream and return its contents as a byte array
      */
-    private byte[] getBytesFromStream(InputStream in) throws IOException {
+    static byte[] getBytesFromStream(InputStream in) throws IOException {
         ByteArrayOutputStream out = new ByteArrayOutputStream();
         byte[] buf = new byte[8192];
         try {
@@ -11,11 +11,17 @@ import java.beans.PropertyChangeSupport;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
 import org.eclipse.emf.common.notify.Notification;
-import org.eclipse.emf.common.util.URI;
-import org.eclipse.emf.ecore.resource.Resource;
 import org.eclipse.emf.ecore.resource.Resource.Diagnostic;
 import org.eclipse.emf.ecore.util.EContentAdapter;
 import org.eclipse.gef.commands.CommandStack;
@@ -38,11 +44,11 @@ import org.jdom2.JDOMException;
 import com.archimatetool.editor.ArchimateEditorPlugin;
 import com.archimatetool.editor.Logger;
 import com.archimatetool.editor.diagram.util.AnimationUtil;
+import com.archimatetool.editor.metrics.Metrics;
+import com.archimatetool.editor.metrics.Timer;
 import com.archimatetool.editor.model.IArchiveManager;
 import com.archimatetool.editor.model.IEditorModelManager;
 import com.archimatetool.editor.model.ModelChecker;
-import com.archimatetool.editor.model.compatibility.CompatibilityHandlerException;
-import com.archimatetool.editor.model.compatibility.IncompatibleModelException;
 import com.archimatetool.editor.model.compatibility.ModelCompatibility;
 import com.archimatetool.editor.preferences.IPreferenceConstants;
 import com.archimatetool.editor.preferences.Preferences;
@@ -54,7 +60,6 @@ import com.archimatetool.model.IArchimateFactory;
 import com.archimatetool.model.IArchimateModel;
 import com.archimatetool.model.IDiagramModel;
 import com.archimatetool.model.ModelVersion;
-import com.archimatetool.model.util.ArchimateResourceFactory;
 
 
 
@@ -77,11 +82,22 @@ implements IEditorModelManager {
      */
     private PropertyChangeSupport fListeners = new PropertyChangeSupport(this);
     
+    /**
+     * Time taken by the listeners to handle each event
+     */
+    private static final Timer NOTIFICATION_TIMER = Metrics.INSTANCE.getTimer(Metrics.MODEL_NOTIFICATIONS);
+    
     /**
      * Models Open
      */
     private List<IArchimateModel> fModels;
     
+    /**
+     * Models from the saved state that are being loaded in the background, by file.
+     * This is only used on the UI thread.
+     */
+    private Map<File, ModelLoader> fLoaders = new LinkedHashMap<File, ModelLoader>();
+    
     /**
      * Backing File
      */
@@ -92,12 +108,24 @@ implements IEditorModelManager {
      */
     private IWorkbenchListener workBenchListener = new IWorkbenchListener() {
         public void postShutdown(IWorkbench workbench) {
+            // Models have been saved or their changes discarded
+            if(fModels != null) {
+                for(IArchimateModel model : fModels) {
+                    ModelJournal journal = (ModelJournal)model.getAdapter(ModelJournal.class);
+                    if(journal != null) {
+                        journal.dispose();
+                    }
+                }
+            }
         }
 
         public boolean preShutdown(IWorkbench  workbench, boolean forced) {
             // Handle modified models
             if(fModels != null) { // Dont call getModels() - we don't want to call loadState();
                 for(IArchimateModel model : fModels) {
+                    // Finish any save in the background first
+                    waitForSave(model);
+                    
                     if(isModelDirty(model)) {
                         try {
                             boolean result = askSaveModel(model);
@@ -219,7 +247,20 @@ implements IEditorModelManager {
     
     @Override
     public IArchimateModel loadModel(File file) {
-        if(file == null || !file.exists()) {
+        if(file == null) {
+            return null;
+        }
+        
+        // If it is being loaded in the background finish loading it now
+        ModelLoader loader = fLoaders.remove(file);
+        if(loader != null) {
+            loader.load();
+            IArchimateModel model = registerLoadedModel(loader);
+            firePropertyChange(this, PROPERTY_MODELS_LOADING, file, model);
+            return model;
+        }
+        
+        if(!file.exists()) {
             return null;
         }
         
@@ -228,39 +269,39 @@ implements IEditorModelManager {
         if(model != null) {
             return model;
         }
-
-        // Ascertain if this is an archive file
-        boolean useArchiveFormat = IArchiveManager.FACTORY.isArchiveFile(file);
         
-        // Create the Resource
-        Resource resource = ArchimateResourceFactory.createNewResource(useArchiveFormat ?
-                                                       IArchiveManager.FACTORY.createArchiveModelURI(file) :
-                                                       URI.createFileURI(file.getAbsolutePath()));
-
-        // Check model compatibility
-        ModelCompatibility modelCompatibility = new ModelCompatibility(resource);
+        // Load the model file, leaving the contents of diagram models until they are needed if set in Preferences
+        loader = new ModelLoader(file, Preferences.STORE.getBoolean(IPreferenceConstants.LOAD_DIAGRAMS_LAZILY));
+        loader.load();
         
-        // Load the model file
-        try {
-            resource.load(null);
+        return registerLoadedModel(loader);
+    }
+    
+    /**
+     * Ask the user about a model that has been loaded if need be and register it.
+     * This is called on the UI thread.
+     * @param loader The ModelLoader that has loaded the model
+     * @return The model or null if it could not be loaded or the user chose not to load it
+     */
+    private IArchimateModel registerLoadedModel(ModelLoader loader) {
+        File file = loader.getFile();
+        
+        // Was it a disaster?
+        if(loader.getError() != null) {
+            MessageDialog.openError(Display.getCurrent().getActiveShell(),
+                    Messages.EditorModelManager_2,
+                    NLS.bind(Messages.EditorModelManager_3, file)
+                    + "\n" + loader.getError().getMessage()); //$NON-NLS-1$
+            return null;
         }
-        catch(IOException ex) {
-            // Error occured loading model. 
-            try {
-                modelCompatibility.checkErrors();
-            }
-            catch(IncompatibleModelException ex1) {
-                // Was it a disaster?
-                MessageDialog.openError(Display.getCurrent().getActiveShell(),
-                        Messages.EditorModelManager_2,
-                        NLS.bind(Messages.EditorModelManager_3, file)
-                        + "\n" + ex1.getMessage()); //$NON-NLS-1$
-                return null;
-            }
+        
+        IArchimateModel model = loader.getModel();
+        if(model == null) {
+            return null;
         }
         
-        model = (IArchimateModel)resource.getContents().get(0);
-
+        ModelCompatibility modelCompatibility = loader.getModelCompatibility();
+        
         // Once loaded - check for later model version
         boolean isLaterModelVersion = modelCompatibility.isLaterModelVersion(ModelVersion.VERSION);
         if(isLaterModelVersion) {
@@ -295,12 +336,8 @@ implements IEditorModelManager {
             }
         }
 
-        // And then fix any backward compatibility issues
-        try {
-            modelCompatibility.fixCompatibility();
-        }
-        catch(CompatibilityHandlerException ex) {
-        }
+        // And then fix any backward compatibility issues if this was not done when the model was loaded
+        loader.fixCompatibility();
 
         model.setFile(file);
         model.setDefaults();
@@ -310,8 +347,8 @@ implements IEditorModelManager {
         // New Command Stack
         createNewCommandStack(model);
         
-        // New Archive Manager
-        createNewArchiveManager(model);
+        // New Archive Manager with the images indexed when the model was loaded
+        loader.createArchiveManager();
         
         // Initiate all diagram models to be marked as "saved" - this is for the editor view persistence
         markDiagramModelsAsSaved(model);
@@ -319,11 +356,46 @@ implements IEditorModelManager {
         // This last
         firePropertyChange(this, PROPERTY_MODEL_LOADED, null, model);
         
+        // Changes not saved when Archi last closed
+        recoverModel(model);
+        
         return model;
     }
     
+    /**
+     * If the model's journal has changes that were not saved when Archi last closed, ask to recover them
+     */
+    private void recoverModel(IArchimateModel model) {
+        ModelJournal journal = (ModelJournal)model.getAdapter(ModelJournal.class);
+        if(journal == null || !journal.hasUnsavedChanges()) {
+            return;
+        }
+        
+        if(!PlatformUI.isWorkbenchRunning() || MessageDialog.openQuestion(Display.getCurrent().getActiveShell(),
+                Messages.EditorModelManager_17,
+                NLS.bind(Messages.EditorModelManager_18, model.getName()))) {
+            try {
+                journal.recover();
+            }
+            catch(IOException ex) {
+                Logger.logError("Could not recover all changes to model", ex); //$NON-NLS-1$
+                if(PlatformUI.isWorkbenchRunning()) {
+                    MessageDialog.openError(Display.getCurrent().getActiveShell(),
+                            Messages.EditorModelManager_17,
+                            NLS.bind(Messages.EditorModelManager_20, model.getName(), ex.getMessage()));
+                }
+            }
+        }
+        else {
+            journal.discard();
+        }
+    }
+    
     @Override
     public boolean closeModel(IArchimateModel model) throws IOException {
+        // Finish any save in the background first
+        waitForSave(model);
+        
         // Check if model needs saving
         if(isModelDirty(model)) {
             boolean result = askSaveModel(model);
@@ -371,7 +443,8 @@ implements IEditorModelManager {
         
         // Yes
         if(result == 0) {
-            return saveModel(model);
+            // Save now as the model is about to be closed
+            return saveModel(model, false);
         }
         // No
         if(result == 1) {
@@ -383,9 +456,21 @@ implements IEditorModelManager {
 
     @Override
     public boolean saveModel(IArchimateModel model) throws IOException {
-        // Check integrity
+        return saveModel(model, PlatformUI.isWorkbenchRunning() && Display.getCurrent() != null);
+    }
+    
+    /**
+     * Save the model
+     * @param model The model
+     * @param inBackground If true a snapshot of the model is taken and saved in a background Job so that the model can be edited
+     *                     while it is saved. If false the model is saved now.
+     * @return true if the model was saved or the background save was started, false if it was not saved
+     * @throws IOException
+     */
+    private boolean saveModel(IArchimateModel model, boolean inBackground) throws IOException {
+        // Check integrity of what has changed since the last save
         ModelChecker checker = new ModelChecker(model);
-        if(!checker.checkAll()) {
+        if(!checker.checkChanged()) {
             if(PlatformUI.isWorkbenchRunning()) {
                 checker.showErrorDialog(PlatformUI.getWorkbench().getActiveWorkbenchWindow().getShell());
             }
@@ -403,21 +488,75 @@ implements IEditorModelManager {
         
         File file = model.getFile();
         
+        // Set model version
+        model.setVersion(ModelVersion.VERSION);
+        
+        CommandStack stack = (CommandStack)model.getAdapter(CommandStack.class);
+        IArchiveManager archiveManager = (IArchiveManager)model.getAdapter(IArchiveManager.class);
+        
+        // Take a snapshot of the model and save it in the background
+        if(inBackground && archiveManager instanceof ArchiveManager) {
+            ModelSnapshot snapshot = ((ArchiveManager)archiveManager).createSnapshot();
+            snapshot.setBackup(Preferences.STORE.getBoolean(IPreferenceConstants.BACKUP_ON_SAVE));
+            snapshot.setSavePoint(stack.getUndoCommand());
+            snapshot.setJournalMark(getJournalMark(model));
+            
+            SaveModelJob job = (SaveModelJob)model.getAdapter(SaveModelJob.class);
+            if(job == null) {
+                job = new SaveModelJob(this, model);
+                model.setAdapter(SaveModelJob.class, job);
+            }
+            job.save(snapshot);
+            
+            return true;
+        }
+        
+        // Don't let an earlier background save overwrite this one
+        waitForSave(model);
+        
         // Save backup (if set in Preferences)
         if(Preferences.STORE.getBoolean(IPreferenceConstants.BACKUP_ON_SAVE) && file.exists()) {
             FileUtils.copyFile(file, new File(model.getFile().getAbsolutePath() + ".bak"), false); //$NON-NLS-1$
         }
         
-        // Set model version
-        model.setVersion(ModelVersion.VERSION);
-        
         // Use Archive Manager to save contents
-        IArchiveManager archiveManager = (IArchiveManager)model.getAdapter(IArchiveManager.class);
         archiveManager.saveModel();
         
-        // Set CommandStack Save point
+        modelSaved(model, stack.getUndoCommand(), getJournalMark(model));
+        
+        return true;
+    }
+    
+    /**
+     * Called on the UI thread when the model has been saved
+     * @param model The model
+     * @param savePoint The last command executed on the model's CommandStack when the model was saved
+     * @param journalMark The mark of the model's journal when the model was saved
+     */
+    void modelSaved(IArchimateModel model, Object savePoint, int journalMark) {
+        // Closed since
         CommandStack stack = (CommandStack)model.getAdapter(CommandStack.class);
-        stack.markSaveLocation();
+        if(stack == null || !getModels().contains(model)) {
+            return;
+        }
+        
+        // Set CommandStack Save point unless the model was changed since it was saved
+        if(stack.getUndoCommand() == savePoint) {
+            stack.markSaveLocation();
+        }
+        
+        // Changes up to the save are no longer needed in the journal
+        ModelJournal journal = (ModelJournal)model.getAdapter(ModelJournal.class);
+        if(journal != null) {
+            journal.saved(journalMark);
+        }
+        
+        // Images no longer used are not kept any more
+        IArchiveManager archiveManager = (IArchiveManager)model.getAdapter(IArchiveManager.class);
+        if(archiveManager instanceof ArchiveManager) {
+            ((ArchiveManager)archiveManager).modelSaved();
+        }
+        
         // Send notification to Tree
         firePropertyChange(model, COMMAND_STACK_CHANGED, true, false);
         
@@ -425,8 +564,22 @@ implements IEditorModelManager {
         markDiagramModelsAsSaved(model);
         
         firePropertyChange(this, PROPERTY_MODEL_SAVED, null, model);
-        
-        return true;
+    }
+    
+    private int getJournalMark(IArchimateModel model) {
+        ModelJournal journal = (ModelJournal)model.getAdapter(ModelJournal.class);
+        return journal != null ? journal.getMark() : 0;
+    }
+    
+    /**
+     * If the model is being saved in the background wait for it to be saved
+     * @param model The model
+     */
+    private void waitForSave(IArchimateModel model) {
+        SaveModelJob job = (SaveModelJob)model.getAdapter(SaveModelJob.class);
+        if(job != null) {
+            job.waitForSave();
+        }
     }
     
     @Override
@@ -448,6 +601,12 @@ implements IEditorModelManager {
         return locateLoadedModel(file) != null;
     }
     
+    @Override
+    public List<File> getLoadingModelFiles() {
+        getModels(); // Make sure the saved state has been loaded
+        return new ArrayList<File>(fLoaders.keySet());
+    }
+    
     private IArchimateModel locateLoadedModel(File file) {
         if(file != null) {
             for(IArchimateModel model : getModels()) {
@@ -535,6 +694,9 @@ implements IEditorModelManager {
         AnimationUtil.registerCommandStack(cmdStack);
         
         model.setAdapter(CommandStack.class, cmdStack);
+        
+        // Journal of changes made by commands
+        model.setAdapter(ModelJournal.class, new ModelJournal(model, cmdStack));
     }
     
     /**
@@ -546,6 +708,11 @@ implements IEditorModelManager {
         if(stack != null) {
             stack.dispose();
         }
+        
+        ModelJournal journal = (ModelJournal)model.getAdapter(ModelJournal.class);
+        if(journal != null) {
+            journal.dispose();
+        }
     }
     
     /**
@@ -600,10 +767,18 @@ implements IEditorModelManager {
                 rootElement.addContent(modelElement);
             }
         }
+        // Models still loading in the background
+        for(File file : fLoaders.keySet()) {
+            Element modelElement = new Element("model"); //$NON-NLS-1$
+            modelElement.setAttribute("file", file.getAbsolutePath()); //$NON-NLS-1$
+            rootElement.addContent(modelElement);
+        }
         JDOMUtils.write2XMLFile(doc, backingFile);
     }
     
     private void loadState() throws IOException, JDOMException {
+        List<File> files = new ArrayList<File>();
+        
         if(backingFile.exists()) {
             Document doc = JDOMUtils.readXMLFile(backingFile);
             if(doc.hasRootElement()) {
@@ -612,11 +787,100 @@ implements IEditorModelManager {
                     Element modelElement = (Element)e;
                     String filePath = modelElement.getAttributeValue("file"); //$NON-NLS-1$
                     if(filePath != null) {
-                        loadModel(new File(filePath));
+                        files.add(new File(filePath));
                     }
                 }
             }
         }
+        
+        // Load the models in the background so that the workbench isn't held up
+        if(PlatformUI.isWorkbenchRunning() && Display.getCurrent() != null) {
+            loadModelsInBackground(files);
+        }
+        else {
+            for(File file : files) {
+                loadModel(file);
+            }
+        }
+    }
+    
+    /**
+     * Load models in background jobs, as many at once as there are processors.
+     * Each model is registered on the UI thread when it has been loaded.
+     * Until then its file is in the list of loading model files.
+     */
+    private void loadModelsInBackground(List<File> files) {
+        boolean loadLazily = Preferences.STORE.getBoolean(IPreferenceConstants.LOAD_DIAGRAMS_LAZILY);
+        
+        Queue<ModelLoader> queue = new ConcurrentLinkedQueue<ModelLoader>();
+        
+        for(File file : files) {
+            if(file.exists() && !fLoaders.containsKey(file)) {
+                ModelLoader loader = new ModelLoader(file, loadLazily);
+                fLoaders.put(file, loader);
+                queue.add(loader);
+            }
+        }
+        
+        int jobCount = Math.min(queue.size(), Runtime.getRuntime().availableProcessors());
+        for(int i = 0; i < jobCount; i++) {
+            new LoadModelsJob(queue).schedule();
+        }
+    }
+    
+    /**
+     * Called on the UI thread when a model has been loaded in the background
+     */
+    private void modelLoadedInBackground(ModelLoader loader) {
+        // Unless it was registered when it was asked for
+        if(fLoaders.get(loader.getFile()) == loader) {
+            loadModel(loader.getFile());
+        }
+    }
+    
+    /**
+     * Job that takes ModelLoaders from a shared queue and loads them until the queue is empty
+     */
+    private class LoadModelsJob extends Job {
+        private Queue<ModelLoader> fQueue;
+        
+        LoadModelsJob(Queue<ModelLoader> queue) {
+            super(Messages.EditorModelManager_19);
+            fQueue = queue;
+            setSystem(true);
+        }
+        
+        @Override
+        protected IStatus run(IProgressMonitor monitor) {
+            ModelLoader loader;
+            
+            while((loader = fQueue.poll()) != null) {
+                if(monitor.isCanceled()) {
+                    return Status.CANCEL_STATUS;
+                }
+                
+                try {
+                    loader.load();
+                }
+                catch(Exception ex) {
+                    Logger.logError("Could not load model: " + loader.getFile(), ex); //$NON-NLS-1$
+                }
+                
+                Display display = Display.getDefault();
+                if(display.isDisposed()) {
+                    return Status.CANCEL_STATUS;
+                }
+                
+                final ModelLoader loaded = loader;
+                display.asyncExec(new Runnable() {
+                    public void run() {
+                        modelLoadedInBackground(loaded);
+                    }
+                });
+            }
+            
+            return Status.OK_STATUS;
+        }
     }
     
     //========================== Model Listener events  ==========================
@@ -630,7 +894,13 @@ implements IEditorModelManager {
     }
     
     public void firePropertyChange(Object source, String prop, Object oldValue, Object newValue) {
-        fListeners.firePropertyChange(new PropertyChangeEvent(source, prop, oldValue, newValue));
+        long start = NOTIFICATION_TIMER.start();
+        try {
+            fListeners.firePropertyChange(new PropertyChangeEvent(source, prop, oldValue, newValue));
+        }
+        finally {
+            NOTIFICATION_TIMER.stop(start);
+        }
     }
     
     // ======================= ECore Adapter =========================================
@@ -640,6 +910,12 @@ implements IEditorModelManager {
      * Forwards on messages so that listeners don't have to adapt to ECore objects
      */
     private class ECoreAdapter extends EContentAdapter {
+        @Override
+        protected boolean resolve() {
+            // Don't load the children of diagram models that have not been loaded yet
+            return false;
+        }
+        
         @Override
         public void notifyChanged(Notification msg) {
             super.notifyChanged(msg);
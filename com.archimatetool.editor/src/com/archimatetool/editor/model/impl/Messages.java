@@ -23,8 +23,22 @@ public class Messages extends NLS {
 
     public static String EditorModelManager_13;
 
+    public static String EditorModelManager_14;
+
+    public static String EditorModelManager_15;
+
+    public static String EditorModelManager_16;
+
+    public static String EditorModelManager_17;
+
+    public static String EditorModelManager_18;
+
+    public static String EditorModelManager_19;
+
     public static String EditorModelManager_2;
 
+    public static String EditorModelManager_20;
+
     public static String EditorModelManager_3;
 
     public static String EditorModelManager_4;
@@ -38,6 +52,8 @@ public class Messages extends NLS {
     public static String EditorModelManager_8;
 
     public static String EditorModelManager_9;
+
+    public static String ModelJournal_0;
     static {
         // initialize resource bundle
         NLS.initializeMessages(BUNDLE_NAME, Messages.class);
@@ -0,0 +1,940 @@
+/**
+ * This program and the accompanying materials
+ * are made available under the terms of the License
+ * which accompanies this distribution in the file LICENSE.txt
+ */
+package com.archimatetool.editor.model.impl;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.emf.common.notify.Notification;
+import org.eclipse.emf.common.util.EList;
+import org.eclipse.emf.ecore.EAttribute;
+import org.eclipse.emf.ecore.EClass;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.EPackage;
+import org.eclipse.emf.ecore.EReference;
+import org.eclipse.emf.ecore.EStructuralFeature;
+import org.eclipse.emf.ecore.util.EContentAdapter;
+import org.eclipse.emf.ecore.util.EcoreUtil;
+import org.eclipse.gef.commands.Command;
+import org.eclipse.gef.commands.CommandStack;
+import org.eclipse.gef.commands.CommandStackEvent;
+import org.eclipse.gef.commands.CommandStackEventListener;
+import org.eclipse.osgi.util.NLS;
+
+import com.archimatetool.editor.ArchimateEditorPlugin;
+import com.archimatetool.editor.Logger;
+import com.archimatetool.model.IArchimateModel;
+import com.archimatetool.model.IArchimatePackage;
+import com.archimatetool.model.IDiagramModelReference;
+import com.archimatetool.model.IIdentifier;
+import com.archimatetool.model.util.IDAdapter;
+import com.archimatetool.model.util.LazyDiagramContent;
+
+
+
+/**
+ * Journal of the changes made to a model by the commands executed, undone and redone on its CommandStack since it was last saved.<p>
+ *
+ * The changes made by each command are recorded from the model's notifications and appended to a journal file in the user data folder
+ * as one entry, so the cost of journaling a command depends on the size of its changes and not on the size of the model.
+ * When the model is saved the entries up to the save are removed, and when the model is closed the journal file is deleted.
+ * Entries are numbered in sequence and a save removes only the entries up to the number it was taken at, so saves of
+ * snapshots that overlap don't remove changes made after them.
+ * If Archi does not close normally the journal file is still there when the model is next opened, and its changes can be replayed
+ * on the model as it was last saved. The journal file is moved aside while it is replayed and is only deleted once all of its
+ * changes have been replayed, so changes that could not be replayed are not lost.<p>
+ *
+ * Objects are identified by their IDs, or by the path to them from the nearest object with an ID.
+ *
+ * @author Phillip Beauvoir
+ */
+class ModelJournal extends EContentAdapter implements CommandStackEventListener {
+    
+    private static final String MAGIC = "ArchiJournal1"; //$NON-NLS-1$
+    
+    /**
+     * Kinds of value
+     */
+    private static final byte VALUE_NULL = 0;
+    private static final byte VALUE_ATTRIBUTE = 1;
+    private static final byte VALUE_OBJECT = 2;
+    private static final byte VALUE_REFERENCE = 3;
+    
+    private IArchimateModel fModel;
+    private CommandStack fCommandStack;
+    
+    /**
+     * The changes made by the command that is being executed, undone or redone
+     */
+    private ByteArrayOutputStream fBuffer = new ByteArrayOutputStream();
+    private DataOutputStream fBufferOut = new DataOutputStream(fBuffer);
+    private int fChangeCount;
+    private boolean fRecording;
+    
+    /**
+     * Entries since the model was last saved
+     */
+    private List<byte[]> fEntries = new ArrayList<byte[]>();
+    
+    /**
+     * Number of entries that have been removed because they were saved.
+     * The sequence number of an entry is this plus its index in fEntries plus one.
+     */
+    private int fRemovedCount;
+    
+    /**
+     * The journal file being written to and its output stream
+     */
+    private File fJournalFile;
+    private DataOutputStream fOut;
+    
+    ModelJournal(IArchimateModel model, CommandStack commandStack) {
+        fModel = model;
+        fCommandStack = commandStack;
+        fCommandStack.addCommandStackEventListener(this);
+        fModel.eAdapters().add(this);
+    }
+    
+    /**
+     * @param modelFile The model file
+     * @return The journal file for the model file
+     */
+    static File getJournalFile(File modelFile) {
+        File folder = new File(ArchimateEditorPlugin.INSTANCE.getUserDataFolder(), "journal"); //$NON-NLS-1$
+        String path = modelFile.getAbsolutePath();
+        return new File(folder, Integer.toHexString(path.hashCode()) + ".journal"); //$NON-NLS-1$
+    }
+    
+    /**
+     * @param modelFile The model file
+     * @return The file that the journal file for the model file is moved to while it is replayed, and kept as if not all of it could be
+     */
+    static File getFailedJournalFile(File modelFile) {
+        File journalFile = getJournalFile(modelFile);
+        return new File(journalFile.getParentFile(), journalFile.getName() + ".failed"); //$NON-NLS-1$
+    }
+    
+    @Override
+    protected boolean resolve() {
+        // Don't load the children of diagram models that have not been loaded yet
+        return false;
+    }
+    
+    // ============================ Record ============================
+    
+    public void stackChanged(CommandStackEvent event) {
+        int detail = event.getDetail();
+        
+        if(detail == CommandStack.PRE_EXECUTE || detail == CommandStack.PRE_UNDO || detail == CommandStack.PRE_REDO) {
+            fBuffer.reset();
+            fChangeCount = 0;
+            fRecording = true;
+        }
+        else if(detail == CommandStack.POST_EXECUTE || detail == CommandStack.POST_UNDO || detail == CommandStack.POST_REDO) {
+            fRecording = false;
+            if(fChangeCount > 0) {
+                addEntry();
+            }
+        }
+    }
+    
+    @Override
+    public void notifyChanged(Notification msg) {
+        super.notifyChanged(msg);
+        
+        // Only changes made by commands, and not the children of diagram models as they are loaded
+        if(!fRecording || msg.isTouch() || LazyDiagramContent.isLoading()) {
+            return;
+        }
+        
+        if(msg.getNotifier() instanceof EObject && msg.getFeature() instanceof EStructuralFeature
+                && isJournaled((EStructuralFeature)msg.getFeature())) {
+            try {
+                record(msg);
+            }
+            catch(IOException ex) { // Can't happen when writing to a byte array
+                Logger.logError("Could not record change", ex); //$NON-NLS-1$
+            }
+        }
+    }
+    
+    private void record(Notification msg) throws IOException {
+        int type = msg.getEventType();
+        
+        switch(type) {
+            case Notification.SET:
+            case Notification.UNSET:
+            case Notification.ADD:
+            case Notification.ADD_MANY:
+            case Notification.REMOVE:
+            case Notification.REMOVE_MANY:
+            case Notification.MOVE:
+                break;
+            
+            default:
+                return;
+        }
+        
+        EObject eObject = (EObject)msg.getNotifier();
+        EStructuralFeature feature = (EStructuralFeature)msg.getFeature();
+        
+        String path = getPath(eObject);
+        if(path == null) {
+            return;
+        }
+        
+        DataOutputStream out = fBufferOut;
+        out.writeByte(type);
+        writeString(out, path);
+        writeString(out, feature.getName());
+        out.writeInt(msg.getPosition());
+        
+        switch(type) {
+            case Notification.SET:
+            case Notification.ADD:
+                writeValue(out, feature, msg.getNewValue());
+                break;
+            
+            case Notification.ADD_MANY:
+                List<?> values = (List<?>)msg.getNewValue();
+                out.writeInt(values.size());
+                for(Object value : values) {
+                    writeValue(out, feature, value);
+                }
+                break;
+            
+            case Notification.REMOVE_MANY:
+                int[] positions = (int[])msg.getNewValue();
+                // All removed
+                if(positions == null) {
+                    positions = new int[((List<?>)msg.getOldValue()).size()];
+                    for(int i = 0; i < positions.length; i++) {
+                        positions[i] = i;
+                    }
+                }
+                out.writeInt(positions.length);
+                for(int position : positions) {
+                    out.writeInt(position);
+                }
+                break;
+            
+            case Notification.MOVE:
+                out.writeInt((Integer)msg.getOldValue());
+                break;
+            
+            default:
+                break;
+        }
+        
+        fChangeCount++;
+    }
+    
+    private void writeValue(DataOutputStream out, EStructuralFeature feature, Object value) throws IOException {
+        if(value == null) {
+            out.writeByte(VALUE_NULL);
+        }
+        else if(feature instanceof EAttribute) {
+            out.writeByte(VALUE_ATTRIBUTE);
+            writeString(out, EcoreUtil.convertToString(((EAttribute)feature).getEAttributeType(), value));
+        }
+        else if(((EReference)feature).isContainment()) {
+            out.writeByte(VALUE_OBJECT);
+            writeObject(out, (EObject)value);
+        }
+        else {
+            out.writeByte(VALUE_REFERENCE);
+            writeString(out, getPath((EObject)value));
+        }
+    }
+    
+    /**
+     * Write an object and everything it contains
+     */
+    private void writeObject(DataOutputStream out, EObject eObject) throws IOException {
+        EClass eClass = eObject.eClass();
+        writeString(out, eClass.getEPackage().getNsURI());
+        writeString(out, eClass.getName());
+        writeString(out, eObject instanceof IIdentifier ? ((IIdentifier)eObject).getId() : null);
+        
+        List<EStructuralFeature> features = new ArrayList<EStructuralFeature>();
+        for(EStructuralFeature feature : eClass.getEAllStructuralFeatures()) {
+            if(isJournaled(eObject, feature) && eObject.eIsSet(feature)) {
+                features.add(feature);
+            }
+        }
+        
+        out.writeInt(features.size());
+        
+        for(EStructuralFeature feature : features) {
+            writeString(out, feature.getName());
+            
+            Object value = eObject.eGet(feature);
+            if(feature.isMany()) {
+                List<?> list = (List<?>)value;
+                out.writeInt(list.size());
+                for(Object o : list) {
+                    writeValue(out, feature, o);
+                }
+            }
+            else {
+                writeValue(out, feature, value);
+            }
+        }
+    }
+    
+    /**
+     * @return The path to eObject in the model, or null if it is not in the model and has no ID
+     */
+    private String getPath(EObject eObject) {
+        if(eObject == fModel) {
+            return ""; //$NON-NLS-1$
+        }
+        
+        if(eObject instanceof IIdentifier && ((IIdentifier)eObject).getId() != null) {
+            return ((IIdentifier)eObject).getId();
+        }
+        
+        EObject container = eObject.eContainer();
+        if(container == null) {
+            return null;
+        }
+        
+        String path = getPath(container);
+        if(path == null) {
+            return null;
+        }
+        
+        EReference reference = eObject.eContainmentFeature();
+        path += "/" + reference.getName(); //$NON-NLS-1$
+        if(reference.isMany()) {
+            path += "." + ((List<?>)container.eGet(reference, false)).indexOf(eObject); //$NON-NLS-1$
+        }
+        
+        return path;
+    }
+    
+    private boolean isJournaled(EStructuralFeature feature) {
+        return feature.isChangeable() && !feature.isTransient() && !feature.isDerived();
+    }
+    
+    /**
+     * @return true if the value of feature is held by eObject and is journaled
+     */
+    private boolean isJournaled(EObject eObject, EStructuralFeature feature) {
+        // The name of a diagram model reference is the name of the diagram model that it refers to
+        if(eObject instanceof IDiagramModelReference && feature == IArchimatePackage.Literals.NAMEABLE__NAME) {
+            return false;
+        }
+        
+        return isJournaled(feature);
+    }
+    
+    // ============================ Write ============================
+    
+    private void addEntry() {
+        byte[] entry = new byte[fBuffer.size() + 4];
+        entry[0] = (byte)(fChangeCount >>> 24);
+        entry[1] = (byte)(fChangeCount >>> 16);
+        entry[2] = (byte)(fChangeCount >>> 8);
+        entry[3] = (byte)fChangeCount;
+        System.arraycopy(fBuffer.toByteArray(), 0, entry, 4, fBuffer.size());
+        fBuffer.reset();
+        
+        fEntries.add(entry);
+        
+        // Not saved to file yet
+        if(fModel.getFile() == null) {
+            return;
+        }
+        
+        try {
+            if(fOut == null) {
+                open();
+            }
+            else {
+                writeEntry(fOut, entry);
+                fOut.flush();
+            }
+        }
+        catch(IOException ex) {
+            Logger.logError("Could not write to journal", ex); //$NON-NLS-1$
+            close();
+        }
+    }
+    
+    /**
+     * Create the journal file for the model's file and write all entries since the model was saved
+     */
+    private void open() throws IOException {
+        File modelFile = fModel.getFile();
+        fJournalFile = getJournalFile(modelFile);
+        fJournalFile.getParentFile().mkdirs();
+        
+        fOut = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(fJournalFile)));
+        fOut.writeUTF(MAGIC);
+        writeString(fOut, modelFile.getAbsolutePath());
+        
+        for(byte[] entry : fEntries) {
+            writeEntry(fOut, entry);
+        }
+        
+        fOut.flush();
+    }
+    
+    private void writeEntry(DataOutputStream out, byte[] entry) throws IOException {
+        out.writeInt(entry.length);
+        out.write(entry);
+    }
+    
+    private void close() {
+        if(fOut != null) {
+            try {
+                fOut.close();
+            }
+            catch(IOException ex) {
+            }
+            fOut = null;
+        }
+    }
+    
+    /**
+     * @return The sequence number of the last entry, or 0 if there have been no entries. This only ever increases.
+     */
+    int getMark() {
+        return fRemovedCount + fEntries.size();
+    }
+    
+    /**
+     * @return The number of entries since the model was last saved. For tests.
+     */
+    int getEntryCount() {
+        return fEntries.size();
+    }
+    
+    /**
+     * The model has been saved with the changes in the journal up to mark
+     * @param mark The value of {@link #getMark()} when the model was saved
+     */
+    void saved(int mark) {
+        // Already removed by a later save
+        int count = Math.min(mark - fRemovedCount, fEntries.size());
+        if(count <= 0) {
+            return;
+        }
+        
+        fEntries = new ArrayList<byte[]>(fEntries.subList(count, fEntries.size()));
+        fRemovedCount += count;
+        
+        close();
+        if(fJournalFile != null) {
+            fJournalFile.delete();
+            fJournalFile = null;
+        }
+        
+        // Changes since the model was saved
+        if(!fEntries.isEmpty() && fModel.getFile() != null) {
+            try {
+                open();
+            }
+            catch(IOException ex) {
+                Logger.logError("Could not write to journal", ex); //$NON-NLS-1$
+                close();
+            }
+        }
+    }
+    
+    /**
+     * Stop journaling and delete the journal file
+     */
+    void dispose() {
+        fCommandStack.removeCommandStackEventListener(this);
+        fModel.eAdapters().remove(this);
+        
+        close();
+        if(fJournalFile != null) {
+            fJournalFile.delete();
+            fJournalFile = null;
+        }
+        
+        fEntries.clear();
+    }
+    
+    // ============================ Recover ============================
+    
+    /**
+     * @return true if there is a journal file for the model's file with changes made since it was saved
+     */
+    boolean hasUnsavedChanges() {
+        return !readEntries().isEmpty();
+    }
+    
+    /**
+     * Delete the journal file for the model's file without recovering its changes
+     */
+    void discard() {
+        if(fModel.getFile() != null && fJournalFile == null) {
+            getJournalFile(fModel.getFile()).delete();
+        }
+    }
+    
+    /**
+     * Replay the changes in the journal file for the model's file on the model in a Command.
+     * The Command can't be undone and the model is left dirty.<p>
+     * 
+     * The journal file is moved to {@link #getFailedJournalFile(File)} first, since the replayed changes are journaled again in its place.
+     * It is deleted when all of its changes have been replayed and is kept there if not.
+     * @return true if there were changes to replay
+     * @throws IOException if not all of the changes could be replayed. The ones before the change that failed have been replayed.
+     */
+    boolean recover() throws IOException {
+        List<byte[]> entries = readEntries();
+        
+        if(entries.isEmpty()) {
+            discard();
+            return false;
+        }
+        
+        File journalFile = getJournalFile(fModel.getFile());
+        File failedFile = getFailedJournalFile(fModel.getFile());
+        failedFile.delete();
+        if(!journalFile.renameTo(failedFile)) {
+            throw new IOException("Could not move journal to " + failedFile); //$NON-NLS-1$
+        }
+        
+        // Load all diagram models now so that their children can be found
+        if(fModel.eResource() != null) {
+            LazyDiagramContent.loadAll(fModel.eResource());
+        }
+        
+        RecoverCommand command = new RecoverCommand(entries);
+        fCommandStack.execute(command);
+        
+        if(command.error != null) {
+            throw new IOException(NLS.bind(Messages.ModelJournal_0, new Object[] { command.count, entries.size(), failedFile }), command.error);
+        }
+        
+        failedFile.delete();
+        
+        return true;
+    }
+    
+    /**
+     * @return The entries in the journal file for the model's file. A last entry that was not written in full is left out.
+     */
+    private List<byte[]> readEntries() {
+        List<byte[]> entries = new ArrayList<byte[]>();
+        
+        File modelFile = fModel.getFile();
+        if(modelFile == null) {
+            return entries;
+        }
+        
+        File file = getJournalFile(modelFile);
+        if(!file.exists() || file.equals(fJournalFile)) {
+            return entries;
+        }
+        
+        DataInputStream in = null;
+        
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            
+            // Not a journal, or a journal for another file with the same hash
+            if(!MAGIC.equals(in.readUTF()) || !modelFile.getAbsolutePath().equals(readString(in))) {
+                return entries;
+            }
+            
+            while(true) {
+                byte[] entry = new byte[in.readInt()];
+                in.readFully(entry);
+                entries.add(entry);
+            }
+        }
+        catch(EOFException ex) {
+            // End of journal
+        }
+        catch(IOException ex) {
+            Logger.logError("Could not read journal", ex); //$NON-NLS-1$
+        }
+        finally {
+            if(in != null) {
+                try {
+                    in.close();
+                }
+                catch(IOException ex) {
+                }
+            }
+        }
+        
+        return entries;
+    }
+    
+    /**
+     * Command that replays journal entries on the model
+     */
+    private class RecoverCommand extends Command {
+        private List<byte[]> entries;
+        
+        /**
+         * Objects removed from the model while replaying, by ID. An object that is added back is the same object.
+         */
+        private Map<String, EObject> removed = new HashMap<String, EObject>();
+        
+        /**
+         * References from new objects, set when the entry has been replayed
+         */
+        private List<Object[]> references = new ArrayList<Object[]>();
+        
+        /**
+         * The number of entries replayed, and why the next one could not be replayed if not all of them were
+         */
+        private int count;
+        private Exception error;
+        
+        RecoverCommand(List<byte[]> entries) {
+            super(Messages.EditorModelManager_16);
+            this.entries = entries;
+        }
+        
+        @Override
+        public void execute() {
+            try {
+                for(byte[] entry : entries) {
+                    replay(entry);
+                    count++;
+                }
+            }
+            catch(Exception ex) {
+                error = ex;
+            }
+            
+            entries = null;
+            removed = null;
+            references = null;
+        }
+        
+        @Override
+        public boolean canUndo() {
+            return false;
+        }
+        
+        private void replay(byte[] entry) throws IOException {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(entry));
+            
+            int count = in.readInt();
+            for(int i = 0; i < count; i++) {
+                replayChange(in);
+            }
+            
+            for(Object[] reference : references) {
+                EObject eObject = (EObject)reference[0];
+                EStructuralFeature feature = (EStructuralFeature)reference[1];
+                EObject target = resolvePath((String)reference[2]);
+                if(target != null) {
+                    if(feature.isMany()) {
+                        getList(eObject, feature).add(target);
+                    }
+                    else {
+                        eObject.eSet(feature, target);
+                    }
+                }
+            }
+            
+            references.clear();
+        }
+        
+        private void replayChange(DataInputStream in) throws IOException {
+            int type = in.readByte();
+            String path = readString(in);
+            String featureName = readString(in);
+            int position = in.readInt();
+            
+            EObject eObject = resolvePath(path);
+            if(eObject == null) {
+                throw new IOException("Object not found: " + path); //$NON-NLS-1$
+            }
+            
+            EStructuralFeature feature = eObject.eClass().getEStructuralFeature(featureName);
+            if(feature == null) {
+                throw new IOException("Feature not found: " + featureName); //$NON-NLS-1$
+            }
+            
+            switch(type) {
+                case Notification.SET:
+                    Object value = readValue(in, eObject, feature, true);
+                    if(feature.isMany()) {
+                        addRemoved(getList(eObject, feature).set(position, value));
+                    }
+                    else {
+                        Object oldValue = eObject.eGet(feature);
+                        eObject.eSet(feature, value);
+                        addRemoved(oldValue);
+                    }
+                    break;
+                
+                case Notification.UNSET:
+                    unset(eObject, feature);
+                    break;
+                
+                case Notification.ADD:
+                    value = readValue(in, eObject, feature, true);
+                    if(position == Notification.NO_INDEX) {
+                        getList(eObject, feature).add(value);
+                    }
+                    else {
+                        getList(eObject, feature).add(position, value);
+                    }
+                    break;
+                
+                case Notification.ADD_MANY:
+                    List<Object> values = new ArrayList<Object>();
+                    for(int count = in.readInt(); count > 0; count--) {
+                        values.add(readValue(in, eObject, feature, true));
+                    }
+                    if(position == Notification.NO_INDEX) {
+                        getList(eObject, feature).addAll(values);
+                    }
+                    else {
+                        getList(eObject, feature).addAll(position, values);
+                    }
+                    break;
+                
+                case Notification.REMOVE:
+                    addRemoved(getList(eObject, feature).remove(position));
+                    break;
+                
+                case Notification.REMOVE_MANY:
+                    int[] positions = new int[in.readInt()];
+                    for(int i = 0; i < positions.length; i++) {
+                        positions[i] = in.readInt();
+                    }
+                    Arrays.sort(positions);
+                    for(int i = positions.length - 1; i >= 0; i--) {
+                        addRemoved(getList(eObject, feature).remove(positions[i]));
+                    }
+                    break;
+                
+                case Notification.MOVE:
+                    int oldPosition = in.readInt();
+                    getList(eObject, feature).move(position, oldPosition);
+                    break;
+                
+                default:
+                    throw new IOException("Unknown change: " + type); //$NON-NLS-1$
+            }
+        }
+        
+        /**
+         * Read a value
+         * @param owner The object that the value is for
+         * @param resolve If true references are resolved now if they can be, else they are resolved when the entry has been replayed
+         */
+        private Object readValue(DataInputStream in, EObject owner, EStructuralFeature feature, boolean resolve) throws IOException {
+            byte kind = in.readByte();
+            
+            switch(kind) {
+                case VALUE_NULL:
+                    return null;
+                
+                case VALUE_ATTRIBUTE:
+                    return EcoreUtil.createFromString(((EAttribute)feature).getEAttributeType(), readString(in));
+                
+                case VALUE_OBJECT:
+                    return readObject(in);
+                
+                case VALUE_REFERENCE:
+                    String path = readString(in);
+                    EObject target = resolve ? resolvePath(path) : null;
+                    if(target == null) {
+                        if(feature.isMany() && resolve) {
+                            throw new IOException("Object not found: " + path); //$NON-NLS-1$
+                        }
+                        references.add(new Object[] { owner, feature, path });
+                    }
+                    return target;
+                
+                default:
+                    throw new IOException("Unknown value: " + kind); //$NON-NLS-1$
+            }
+        }
+        
+        private EObject readObject(DataInputStream in) throws IOException {
+            String nsURI = readString(in);
+            String className = readString(in);
+            String id = readString(in);
+            
+            EPackage ePackage = EPackage.Registry.INSTANCE.getEPackage(nsURI);
+            if(ePackage == null || !(ePackage.getEClassifier(className) instanceof EClass)) {
+                throw new IOException("Class not found: " + className); //$NON-NLS-1$
+            }
+            EClass eClass = (EClass)ePackage.getEClassifier(className);
+            
+            // An object removed earlier is added back
+            EObject eObject = id != null ? removed.remove(id) : null;
+            if(eObject != null && eObject.eClass() == eClass) {
+                for(EStructuralFeature feature : eClass.getEAllStructuralFeatures()) {
+                    if(isJournaled(eObject, feature)) {
+                        unset(eObject, feature);
+                    }
+                }
+            }
+            else {
+                eObject = EcoreUtil.create(eClass);
+            }
+            
+            for(int count = in.readInt(); count > 0; count--) {
+                String featureName = readString(in);
+                EStructuralFeature feature = eClass.getEStructuralFeature(featureName);
+                if(feature == null) {
+                    throw new IOException("Feature not found: " + featureName); //$NON-NLS-1$
+                }
+                
+                if(feature.isMany()) {
+                    EList<Object> list = getList(eObject, feature);
+                    for(int size = in.readInt(); size > 0; size--) {
+                        Object value = readValue(in, eObject, feature, false);
+                        if(value != null) {
+                            list.add(value);
+                        }
+                    }
+                }
+                else {
+                    Object value = readValue(in, eObject, feature, false);
+                    if(value != null) {
+                        eObject.eSet(feature, value);
+                    }
+                }
+            }
+            
+            return eObject;
+        }
+        
+        /**
+         * Unset a feature, keeping any objects removed by it
+         */
+        private void unset(EObject eObject, EStructuralFeature feature) {
+            Object oldValue = eObject.eGet(feature);
+            if(oldValue instanceof List) {
+                oldValue = new ArrayList<Object>((List<?>)oldValue);
+            }
+            eObject.eUnset(feature);
+            addRemoved(oldValue);
+        }
+        
+        /**
+         * Keep objects removed from the model, and the objects in them, by ID
+         */
+        private void addRemoved(Object value) {
+            if(value instanceof EObject && ((EObject)value).eContainer() == null) {
+                EObject eObject = (EObject)value;
+                if(eObject instanceof IIdentifier && ((IIdentifier)eObject).getId() != null) {
+                    removed.put(((IIdentifier)eObject).getId(), eObject);
+                }
+                for(Iterator<EObject> iter = eObject.eAllContents(); iter.hasNext();) {
+                    EObject child = iter.next();
+                    if(child instanceof IIdentifier && ((IIdentifier)child).getId() != null) {
+                        removed.put(((IIdentifier)child).getId(), child);
+                    }
+                }
+            }
+            else if(value instanceof List) {
+                for(Object o : (List<?>)value) {
+                    addRemoved(o);
+                }
+            }
+        }
+        
+        private EObject resolvePath(String path) {
+            if(path == null) {
+                return null;
+            }
+            
+            String[] segments = path.split("/"); //$NON-NLS-1$
+            EObject eObject;
+            
+            if(segments.length == 0 || segments[0].length() == 0) {
+                eObject = fModel;
+            }
+            else {
+                IDAdapter idAdapter = (IDAdapter)fModel.getAdapter(IDAdapter.class);
+                eObject = idAdapter != null ? idAdapter.getObject(segments[0]) : null;
+                if(eObject == null) {
+                    eObject = removed.get(segments[0]);
+                }
+            }
+            
+            for(int i = 1; i < segments.length && eObject != null; i++) {
+                String segment = segments[i];
+                int index = -1;
+                
+                int dot = segment.lastIndexOf('.');
+                if(dot != -1) {
+                    index = Integer.parseInt(segment.substring(dot + 1));
+                    segment = segment.substring(0, dot);
+                }
+                
+                EStructuralFeature feature = eObject.eClass().getEStructuralFeature(segment);
+                if(feature == null) {
+                    return null;
+                }
+                
+                Object value = eObject.eGet(feature);
+                if(feature.isMany()) {
+                    List<?> list = (List<?>)value;
+                    value = index >= 0 && index < list.size() ? list.get(index) : null;
+                }
+                
+                eObject = value instanceof EObject ? (EObject)value : null;
+            }
+            
+            return eObject;
+        }
+        
+        @SuppressWarnings("unchecked")
+        private EList<Object> getList(EObject eObject, EStructuralFeature feature) {
+            return (EList<Object>)eObject.eGet(feature);
+        }
+    }
+    
+    // ============================ Strings ============================
+    
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        if(s == null) {
+            out.writeInt(-1);
+        }
+        else {
+            byte[] bytes = s.getBytes("UTF-8"); //$NON-NLS-1$
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+    
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if(length < 0) {
+            return null;
+        }
+        
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, "UTF-8"); //$NON-NLS-1$
+    }
+}
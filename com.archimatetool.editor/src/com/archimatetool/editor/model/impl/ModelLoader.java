@@ -0,0 +1,229 @@
+/**
+ * This program and the accompanying materials
+ * are made available under the terms of the License
+ * which accompanies this distribution in the file LICENSE.txt
+ */
+package com.archimatetool.editor.model.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+
+import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.ecore.resource.Resource;
+
+import com.archimatetool.editor.Logger;
+import com.archimatetool.editor.metrics.Metrics;
+import com.archimatetool.editor.metrics.Timer;
+import com.archimatetool.editor.model.IArchiveManager;
+import com.archimatetool.editor.model.compatibility.CompatibilityHandlerException;
+import com.archimatetool.editor.model.compatibility.IncompatibleModelException;
+import com.archimatetool.editor.model.compatibility.ModelCompatibility;
+import com.archimatetool.model.IArchimateModel;
+import com.archimatetool.model.ModelVersion;
+import com.archimatetool.model.util.ArchimateResource;
+import com.archimatetool.model.util.ArchimateResourceFactory;
+import com.archimatetool.model.util.LazyDiagramContent;
+
+
+
+/**
+ * Loads a model file without touching the UI or the EditorModelManager's list of models.<p>
+ *
+ * This does the parsing, compatibility fixes and image indexing for a model so that it can be done in a background thread.
+ * Asking the user about the model and registering it in the EditorModelManager is then done on the UI thread.
+ * If the user has to confirm loading the model the compatibility fixes are left until the user has done so.<p>
+ *
+ * load() can be called from more than one thread but the model is loaded only once.
+ * This is also used to load models without the workbench by the BatchApplication.
+ *
+ * @author Phillip Beauvoir
+ */
+public class ModelLoader {
+    
+    private static final Timer LOAD_TIMER = Metrics.INSTANCE.getTimer(Metrics.MODEL_LOAD);
+    
+    private File fFile;
+    private boolean fLoadLazily;
+    
+    private boolean fLoaded;
+    private ModelCompatibility fModelCompatibility;
+    private IArchimateModel fModel;
+    private IncompatibleModelException fError;
+    private boolean fCompatibilityFixed;
+    private Map<String, ZipEntry> fImageIndex;
+    
+    /**
+     * @param file The model file
+     * @param loadLazily If true the contents of diagram models are left until they are needed
+     */
+    public ModelLoader(File file, boolean loadLazily) {
+        fFile = file;
+        fLoadLazily = loadLazily;
+    }
+    
+    /**
+     * @return The model file
+     */
+    public File getFile() {
+        return fFile;
+    }
+    
+    /**
+     * Load the model if it has not been loaded already.
+     * If another thread is loading the model this waits until it has finished.
+     */
+    public synchronized void load() {
+        if(fLoaded) {
+            return;
+        }
+        
+        fLoaded = true;
+        
+        long start = LOAD_TIMER.start();
+        try {
+            doLoad();
+        }
+        finally {
+            LOAD_TIMER.stop(start);
+        }
+    }
+    
+    private void doLoad() {
+        // Ascertain if this is an archive file
+        boolean useArchiveFormat = IArchiveManager.FACTORY.isArchiveFile(fFile);
+        
+        // Create the Resource
+        Resource resource = ArchimateResourceFactory.createNewResource(useArchiveFormat ?
+                                                       IArchiveManager.FACTORY.createArchiveModelURI(fFile) :
+                                                       URI.createFileURI(fFile.getAbsolutePath()));
+        
+        // Check model compatibility
+        fModelCompatibility = new ModelCompatibility(resource);
+        
+        // Load the model file, leaving the contents of diagram models until they are needed if set
+        Map<Object, Object> options = new HashMap<Object, Object>();
+        if(fLoadLazily) {
+            options.put(ArchimateResource.OPTION_LOAD_DIAGRAMS_LAZILY, Boolean.TRUE);
+        }
+        
+        try {
+            resource.load(options);
+        }
+        catch(IOException ex) {
+            // Error occured loading model.
+            try {
+                fModelCompatibility.checkErrors();
+            }
+            catch(IncompatibleModelException ex1) {
+                // Was it a disaster?
+                fError = ex1;
+                return;
+            }
+        }
+        
+        fModel = (IArchimateModel)resource.getContents().get(0);
+        
+        // Models from other versions are loaded in full so that compatibility handlers can fix all diagram models
+        if(!ModelVersion.VERSION.equals(fModel.getVersion())) {
+            LazyDiagramContent.loadAll(resource);
+        }
+        
+        // Fix any backward compatibility issues now unless the user has to be asked first
+        if(!needsConfirmation()) {
+            fixCompatibility();
+        }
+        
+        // Read the index of the images, the images are read when they are needed
+        try {
+            fImageIndex = ArchiveManager.readImageIndex(fFile);
+        }
+        catch(IOException ex) {
+            Logger.logError("Could not load images", ex); //$NON-NLS-1$
+            ex.printStackTrace();
+        }
+    }
+    
+    /**
+     * @return true if the user should be asked whether to load the model, because it is a later version
+     *         or has unknown features
+     */
+    public boolean needsConfirmation() {
+        return fModelCompatibility.isLaterModelVersion(ModelVersion.VERSION) || !fModelCompatibility.getAcceptableExceptions().isEmpty();
+    }
+    
+    /**
+     * Fix any backward compatibility issues if they have not been fixed already
+     */
+    public void fixCompatibility() {
+        if(fCompatibilityFixed) {
+            return;
+        }
+        
+        fCompatibilityFixed = true;
+        
+        try {
+            fModelCompatibility.fixCompatibility();
+        }
+        catch(CompatibilityHandlerException ex) {
+        }
+    }
+    
+    /**
+     * @return The ModelCompatibility of the model's resource
+     */
+    ModelCompatibility getModelCompatibility() {
+        return fModelCompatibility;
+    }
+    
+    /**
+     * @return The loaded model, or null if it could not be loaded
+     */
+    public IArchimateModel getModel() {
+        return fModel;
+    }
+    
+    /**
+     * @return The error if the model could not be loaded, or null
+     */
+    public IncompatibleModelException getError() {
+        return fError;
+    }
+    
+    /**
+     * @return Image path -> entry of the image in the model's archive file of the images in the model,
+     *         or null if the file is not an archive file
+     */
+    Map<String, ZipEntry> getImageIndex() {
+        return fImageIndex;
+    }
+    
+    /**
+     * Create the ArchiveManager of the loaded model, set it as an adapter of the model and load the model's images
+     * with the image index read when the model was loaded
+     * @return The ArchiveManager
+     */
+    public IArchiveManager createArchiveManager() {
+        IArchiveManager archiveManager = IArchiveManager.FACTORY.createArchiveManager(fModel);
+        fModel.setAdapter(IArchiveManager.class, archiveManager);
+        
+        // Images have been indexed already
+        if(fImageIndex != null && archiveManager instanceof ArchiveManager) {
+            ((ArchiveManager)archiveManager).loadImages(fImageIndex);
+            return archiveManager;
+        }
+        
+        // Load images now
+        try {
+            archiveManager.loadImages();
+        }
+        catch(IOException ex) {
+            Logger.logError("Could not load images", ex); //$NON-NLS-1$
+            ex.printStackTrace();
+        }
+        
+        return archiveManager;
+    }
+}
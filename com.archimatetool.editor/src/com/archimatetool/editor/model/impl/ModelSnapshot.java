@@ -0,0 +1,430 @@
+/**
+ * This program and the accompanying materials
+ * are made available under the terms of the License
+ * which accompanies this distribution in the file LICENSE.txt
+ */
+package com.archimatetool.editor.model.impl;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
+import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.osgi.util.NLS;
+
+import com.archimatetool.editor.Logger;
+import com.archimatetool.editor.metrics.Metrics;
+import com.archimatetool.editor.metrics.Timer;
+import com.archimatetool.editor.utils.FileUtils;
+import com.archimatetool.model.IArchimateModel;
+import com.archimatetool.model.util.ArchimateBinaryResource;
+import com.archimatetool.model.util.ArchimateResourceFactory;
+
+
+
+/**
+ * The state of a model to be saved to file.<p>
+ *
+ * This is either the model itself, when it is saved straight away, or a copy of it taken on the UI thread
+ * so that it can be written to file in the background while the model is edited.
+ * The bytes of images held in memory are kept with the snapshot so that they can't be unloaded before they are written.
+ * Images that are still in an archive file are copied from that file as they are, without being read into memory first.<p>
+ *
+ * The model is written to a temporary file in the same folder as the model file which then replaces
+ * the model file, so that the model file is left as it was if saving fails.
+ * In an archive file the model xml is written straight into its zip entry, and PNG, JPEG and GIF images,
+ * which are compressed already, are stored without being compressed again.
+ *
+ * @author Phillip Beauvoir
+ */
+class ModelSnapshot {
+    
+    private static final Timer SAVE_TIMER = Metrics.INSTANCE.getTimer(Metrics.MODEL_SAVE);
+    
+    /**
+     * Where to get the bytes of an image from, either bytes in memory or an entry in a zip file
+     */
+    static class ImageEntry {
+        private byte[] bytes;
+        private File zipFile;
+        private String zipEntryName;
+        
+        ImageEntry(byte[] bytes) {
+            this.bytes = bytes;
+        }
+        
+        ImageEntry(File zipFile, String zipEntryName) {
+            this.zipFile = zipFile;
+            this.zipEntryName = zipEntryName;
+        }
+    }
+    
+    private IArchimateModel fModel;
+    private File fFile;
+    private Map<String, ImageEntry> fImages;
+    private boolean fBackup;
+    private Object fSavePoint;
+    private int fJournalMark;
+    private boolean fBinary;
+    
+    /**
+     * @param model The model, or a copy of it, to save
+     * @param file The file to save to
+     * @param images Image path -> where to get the image from of the images used in the model
+     */
+    ModelSnapshot(IArchimateModel model, File file, Map<String, ImageEntry> images) {
+        fModel = model;
+        fFile = file;
+        fImages = images;
+        fBinary = model.eResource() instanceof ArchimateBinaryResource;
+    }
+    
+    /**
+     * @return The file to save to
+     */
+    File getFile() {
+        return fFile;
+    }
+    
+    /**
+     * @return true if the snapshot has images, so the model is saved to an archive file
+     */
+    boolean hasImages() {
+        return !fImages.isEmpty();
+    }
+    
+    /**
+     * @return The paths of the images saved with the model
+     */
+    Set<String> getImagePaths() {
+        return fImages.keySet();
+    }
+    
+    /**
+     * @param backup If true the existing model file is copied to a ".bak" file before it is replaced
+     */
+    void setBackup(boolean backup) {
+        fBackup = backup;
+    }
+    
+    /**
+     * @param savePoint The last command executed on the model's CommandStack when the snapshot was taken
+     */
+    void setSavePoint(Object savePoint) {
+        fSavePoint = savePoint;
+    }
+    
+    /**
+     * @return The last command executed on the model's CommandStack when the snapshot was taken
+     */
+    Object getSavePoint() {
+        return fSavePoint;
+    }
+    
+    /**
+     * @param journalMark The mark of the model's journal when the snapshot was taken
+     */
+    void setJournalMark(int journalMark) {
+        fJournalMark = journalMark;
+    }
+    
+    /**
+     * @return The mark of the model's journal when the snapshot was taken
+     */
+    int getJournalMark() {
+        return fJournalMark;
+    }
+    
+    /**
+     * @param binary If true the model is saved in the binary format. This is set from the model's resource when the
+     *        snapshot is created, and must be set for a copy of the model as a copy has no resource.
+     */
+    void setBinary(boolean binary) {
+        fBinary = binary;
+    }
+    
+    /**
+     * @return true if the model is saved in the binary format
+     */
+    boolean isBinary() {
+        return fBinary;
+    }
+    
+    /**
+     * Save the snapshot to file
+     * @param monitor Progress monitor, or null
+     * @throws IOException
+     * @throws OperationCanceledException If the monitor was cancelled before the model file was replaced
+     */
+    void save(IProgressMonitor monitor) throws IOException {
+        if(monitor == null) {
+            monitor = new NullProgressMonitor();
+        }
+        
+        monitor.beginTask(NLS.bind(Messages.EditorModelManager_14, fFile.getName()), fImages.size() + 3);
+        
+        // Temp file in the same folder so that it can be moved to the model file in one step
+        File folder = fFile.getAbsoluteFile().getParentFile();
+        if(folder != null) {
+            folder.mkdirs();
+        }
+        File tmpFile = File.createTempFile("~archi-", ".tmp", folder); //$NON-NLS-1$ //$NON-NLS-2$
+        tmpFile.deleteOnExit();
+        
+        long start = SAVE_TIMER.start();
+        
+        try {
+            if(fImages.isEmpty()) {
+                saveResource(tmpFile);
+                monitor.worked(1);
+            }
+            else {
+                saveArchive(tmpFile, monitor);
+            }
+            
+            checkCanceled(monitor);
+            
+            // Save backup
+            if(fBackup && fFile.exists()) {
+                FileUtils.copyFile(fFile, new File(fFile.getAbsolutePath() + ".bak"), false); //$NON-NLS-1$
+            }
+            monitor.worked(1);
+            
+            checkCanceled(monitor);
+            
+            // Images are read from the model file through a zip file that is kept open, which is closed to replace the file
+            // and can't be opened again until it has been replaced
+            synchronized(ArchiveManager.BYTE_ARRAY_STORAGE) {
+                ArchiveManager.BYTE_ARRAY_STORAGE.closeZipFile(fFile);
+                replaceFile(tmpFile, fFile);
+            }
+            monitor.worked(1);
+        }
+        finally {
+            tmpFile.delete();
+            monitor.done();
+            SAVE_TIMER.stop(start);
+        }
+    }
+    
+    /**
+     * Save the model xml to file
+     */
+    private void saveResource(File file) throws IOException {
+        saveResource(file, null);
+    }
+    
+    /**
+     * Save the model xml to an output stream, or to file if the output stream is null.
+     * The output stream is not closed.
+     */
+    private void saveResource(File file, OutputStream out) throws IOException {
+        Resource resource = fModel.eResource();
+        
+        // No parent Resource set, so create a new one in the format of the model's resource
+        if(resource == null) {
+            resource = fBinary ? ArchimateResourceFactory.createNewBinaryResource(file) : ArchimateResourceFactory.createNewXMLResource(file);
+            resource.getContents().add(fModel);
+        }
+        // We already have a Resource, re-use it but save it to the temp file
+        else {
+            resource.setURI(URI.createFileURI(file.getAbsolutePath()));
+        }
+        
+        // Catch *all* exceptions in case of XML errors
+        try {
+            if(out != null) {
+                resource.save(out, null);
+            }
+            else {
+                resource.save(null);
+            }
+        }
+        catch(Exception ex) {
+            throw new IOException(ex);
+        }
+        finally {
+            resource.setURI(URI.createFileURI(fFile.getAbsolutePath()));
+        }
+    }
+    
+    /**
+     * Save the model xml and the images to an archive file
+     */
+    private void saveArchive(File file, IProgressMonitor monitor) throws IOException {
+        ZipOutputStream zOut = new ZipOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+        
+        // Zip files that images are copied from, each opened once
+        Map<File, ZipFile> zipFiles = new HashMap<File, ZipFile>();
+        
+        try {
+            // Write the model xml straight into its entry, stopping the Resource from closing the zip stream
+            zOut.putNextEntry(new ZipEntry("model.xml")); //$NON-NLS-1$
+            saveResource(file, new FilterOutputStream(zOut) {
+                @Override
+                public void write(byte[] b, int off, int len) throws IOException {
+                    out.write(b, off, len);
+                }
+                
+                @Override
+                public void close() throws IOException {
+                    flush();
+                }
+            });
+            zOut.closeEntry();
+            monitor.worked(1);
+            
+            // Add the images
+            for(Entry<String, ImageEntry> entry : fImages.entrySet()) {
+                checkCanceled(monitor);
+                
+                ImageEntry imageEntry = entry.getValue();
+                if(imageEntry.bytes != null) {
+                    writeImage(entry.getKey(), imageEntry.bytes, zOut);
+                }
+                else {
+                    copyImage(entry.getKey(), imageEntry, zipFiles, zOut);
+                }
+                
+                monitor.worked(1);
+            }
+        }
+        finally {
+            zOut.close();
+            for(ZipFile zipFile : zipFiles.values()) {
+                zipFile.close();
+            }
+        }
+    }
+    
+    /**
+     * Write the bytes of an image to a zip entry
+     */
+    private void writeImage(String imagePath, byte[] bytes, ZipOutputStream zOut) throws IOException {
+        ZipEntry zipEntry = new ZipEntry(imagePath);
+        
+        if(isCompressedImage(imagePath, bytes)) {
+            CRC32 crc = new CRC32();
+            crc.update(bytes);
+            setStored(zipEntry, bytes.length, crc.getValue());
+        }
+        
+        zOut.putNextEntry(zipEntry);
+        zOut.write(bytes);
+        zOut.closeEntry();
+    }
+    
+    /**
+     * Copy an image from the zip file it is in to a zip entry.
+     * The size and CRC are known from the zip file so images that are stored are copied without reading them first.
+     */
+    private void copyImage(String imagePath, ImageEntry imageEntry, Map<File, ZipFile> zipFiles, ZipOutputStream zOut) throws IOException {
+        ZipFile zipFile = zipFiles.get(imageEntry.zipFile);
+        if(zipFile == null) {
+            zipFile = new ZipFile(imageEntry.zipFile);
+            zipFiles.put(imageEntry.zipFile, zipFile);
+        }
+        
+        ZipEntry sourceEntry = zipFile.getEntry(imageEntry.zipEntryName);
+        if(sourceEntry == null) {
+            Logger.logError("Could not find " + imageEntry.zipEntryName + " in " + imageEntry.zipFile); //$NON-NLS-1$ //$NON-NLS-2$
+            return;
+        }
+        
+        ZipEntry zipEntry = new ZipEntry(imagePath);
+        
+        if(sourceEntry.getSize() != -1 && sourceEntry.getCrc() != -1
+                && (sourceEntry.getMethod() == ZipEntry.STORED || isCompressedImage(imagePath, null))) {
+            setStored(zipEntry, sourceEntry.getSize(), sourceEntry.getCrc());
+        }
+        
+        zOut.putNextEntry(zipEntry);
+        
+        InputStream in = zipFile.getInputStream(sourceEntry);
+        try {
+            byte[] buf = new byte[8192];
+            int size;
+            while((size = in.read(buf)) != -1) {
+                zOut.write(buf, 0, size);
+            }
+        }
+        finally {
+            in.close();
+        }
+        
+        zOut.closeEntry();
+    }
+    
+    private void setStored(ZipEntry zipEntry, long size, long crc) {
+        zipEntry.setMethod(ZipEntry.STORED);
+        zipEntry.setSize(size);
+        zipEntry.setCompressedSize(size);
+        zipEntry.setCrc(crc);
+    }
+    
+    /**
+     * @param imagePath The image path
+     * @param bytes The image bytes, or null if not known
+     * @return true if the image is a PNG, JPEG or GIF image, which are compressed already
+     */
+    static boolean isCompressedImage(String imagePath, byte[] bytes) {
+        String path = imagePath.toLowerCase();
+        if(path.endsWith(".png") || path.endsWith(".jpg") || path.endsWith(".jpeg") || path.endsWith(".gif")) { //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+            return true;
+        }
+        
+        if(bytes == null || bytes.length < 4) {
+            return false;
+        }
+        
+        // PNG
+        if((bytes[0] & 0xFF) == 0x89 && bytes[1] == 'P' && bytes[2] == 'N' && bytes[3] == 'G') {
+            return true;
+        }
+        
+        // JPEG
+        if((bytes[0] & 0xFF) == 0xFF && (bytes[1] & 0xFF) == 0xD8 && (bytes[2] & 0xFF) == 0xFF) {
+            return true;
+        }
+        
+        // GIF
+        return bytes[0] == 'G' && bytes[1] == 'I' && bytes[2] == 'F' && bytes[3] == '8';
+    }
+    
+    /**
+     * Replace target with source, in one step if the file system can do that
+     */
+    private void replaceFile(File source, File target) throws IOException {
+        try {
+            Files.move(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        catch(AtomicMoveNotSupportedException ex) {
+            Files.move(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+    
+    private void checkCanceled(IProgressMonitor monitor) {
+        if(monitor.isCanceled()) {
+            throw new OperationCanceledException();
+        }
+    }
+}
@@ -0,0 +1,131 @@
+/**
+ * This program and the accompanying materials
+ * are made available under the terms of the License
+ * which accompanies this distribution in the file LICENSE.txt
+ */
+package com.archimatetool.editor.model.impl;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.OperationCanceledException;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.osgi.util.NLS;
+import org.eclipse.swt.widgets.Display;
+
+import com.archimatetool.editor.ArchimateEditorPlugin;
+import com.archimatetool.model.IArchimateModel;
+
+
+
+/**
+ * Saves snapshots of a model in the background.<p>
+ *
+ * There is one job for each model. If a save is asked for while the job is running the job runs again
+ * when it has finished, saving only the latest snapshot, so repeated saves are coalesced.
+ * When a snapshot has been saved the EditorModelManager is told on the UI thread. Snapshots are saved one at a time
+ * in the order they were taken, so the EditorModelManager is told in that order too. A snapshot that is saved before
+ * the EditorModelManager has been told about the one before it replaces it.
+ *
+ * @author Phillip Beauvoir
+ */
+class SaveModelJob extends Job {
+    
+    /**
+     * The family of all SaveModelJobs
+     */
+    static final Object FAMILY = SaveModelJob.class;
+    
+    private EditorModelManager fManager;
+    private IArchimateModel fModel;
+    
+    /**
+     * The snapshot waiting to be saved
+     */
+    private AtomicReference<ModelSnapshot> fPending = new AtomicReference<ModelSnapshot>();
+    
+    /**
+     * The last snapshot saved that the EditorModelManager has not been told about
+     */
+    private AtomicReference<ModelSnapshot> fSaved = new AtomicReference<ModelSnapshot>();
+    
+    SaveModelJob(EditorModelManager manager, IArchimateModel model) {
+        super(NLS.bind(Messages.EditorModelManager_14, model.getName()));
+        fManager = manager;
+        fModel = model;
+        setUser(false);
+    }
+    
+    /**
+     * Save a snapshot. Any snapshot of the model waiting to be saved is replaced by this one.
+     * @param snapshot The snapshot
+     */
+    void save(ModelSnapshot snapshot) {
+        setName(NLS.bind(Messages.EditorModelManager_14, fModel.getName()));
+        fPending.set(snapshot);
+        schedule();
+    }
+    
+    /**
+     * Wait for the job to finish and tell the EditorModelManager if a snapshot was saved.
+     * This is called on the UI thread.
+     */
+    void waitForSave() {
+        try {
+            join();
+        }
+        catch(InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        
+        notifySaved();
+    }
+    
+    @Override
+    protected IStatus run(IProgressMonitor monitor) {
+        ModelSnapshot snapshot = fPending.getAndSet(null);
+        if(snapshot == null) {
+            return Status.OK_STATUS;
+        }
+        
+        try {
+            snapshot.save(monitor);
+        }
+        catch(OperationCanceledException ex) {
+            return Status.CANCEL_STATUS;
+        }
+        catch(IOException ex) {
+            return new Status(IStatus.ERROR, ArchimateEditorPlugin.PLUGIN_ID,
+                    NLS.bind(Messages.EditorModelManager_15, snapshot.getFile()), ex);
+        }
+        
+        fSaved.set(snapshot);
+        
+        Display display = Display.getDefault();
+        if(!display.isDisposed()) {
+            display.asyncExec(new Runnable() {
+                public void run() {
+                    notifySaved();
+                }
+            });
+        }
+        
+        return Status.OK_STATUS;
+    }
+    
+    private void notifySaved() {
+        ModelSnapshot snapshot = fSaved.getAndSet(null);
+        if(snapshot != null) {
+            ArchiveManager.snapshotSaved(snapshot);
+            fManager.modelSaved(fModel, snapshot.getSavePoint(), snapshot.getJournalMark());
+        }
+    }
+    
+    @Override
+    public boolean belongsTo(Object family) {
+        return family == FAMILY;
+    }
+}
@@ -51,6 +51,7 @@ implements IWorkbenchPreferencePage, IPreferenceConstants {
     
     private Button fOpenDiagramsOnLoadButton;
     private Button fBackupOnSaveButton;
+    private Button fLoadDiagramsLazilyButton;
     
     private Spinner fMRUSizeSpinner;
     private Button fAnimateVisualiserNodesButton;
@@ -98,6 +99,13 @@ implements IWorkbenchPreferencePage, IPreferenceConstants {
         gd.horizontalSpan = 2;
         fBackupOnSaveButton.setLayoutData(gd);
         
+        // Load the contents of Views when they are first needed
+        fLoadDiagramsLazilyButton = new Button(fileGroup, SWT.CHECK);
+        fLoadDiagramsLazilyButton.setText(Messages.GeneralPreferencePage_12);
+        gd = new GridData(GridData.FILL_HORIZONTAL);
+        gd.horizontalSpan = 2;
+        fLoadDiagramsLazilyButton.setLayoutData(gd);
+        
         // Size of recently opened file list
         Label label = new Label(fileGroup, SWT.NULL);
         label.setText(Messages.GeneralPreferencePage_2);
@@ -194,6 +202,7 @@ implements IWorkbenchPreferencePage, IPreferenceConstants {
     private void setValues() {
         setSpinnerValues();
         fBackupOnSaveButton.setSelection(getPreferenceStore().getBoolean(BACKUP_ON_SAVE));
+        fLoadDiagramsLazilyButton.setSelection(getPreferenceStore().getBoolean(LOAD_DIAGRAMS_LAZILY));
         fOpenDiagramsOnLoadButton.setSelection(getPreferenceStore().getBoolean(OPEN_DIAGRAMS_ON_LOAD));
         fAnimateVisualiserNodesButton.setSelection(getPreferenceStore().getBoolean(ANIMATE_VISUALISER_NODES));
         fShowStatusLineButton.setSelection(getPreferenceStore().getBoolean(SHOW_STATUS_LINE));
@@ -215,6 +224,7 @@ implements IWorkbenchPreferencePage, IPreferenceConstants {
     @Override
     public boolean performOk() {
         getPreferenceStore().setValue(BACKUP_ON_SAVE, fBackupOnSaveButton.getSelection());
+        getPreferenceStore().setValue(LOAD_DIAGRAMS_LAZILY, fLoadDiagramsLazilyButton.getSelection());
         getPreferenceStore().setValue(OPEN_DIAGRAMS_ON_LOAD, fOpenDiagramsOnLoadButton.getSelection());
         getPreferenceStore().setValue(MRU_MAX, fMRUSizeSpinner.getSelection());
         getPreferenceStore().setValue(ANIMATE_VISUALISER_NODES, fAnimateVisualiserNodesButton.getSelection());
@@ -233,6 +243,7 @@ implements IWorkbenchPreferencePage, IPreferenceConstants {
     @Override
     protected void performDefaults() {
         fBackupOnSaveButton.setSelection(getPreferenceStore().getDefaultBoolean(BACKUP_ON_SAVE));
+        fLoadDiagramsLazilyButton.setSelection(getPreferenceStore().getDefaultBoolean(LOAD_DIAGRAMS_LAZILY));
         fOpenDiagramsOnLoadButton.setSelection(getPreferenceStore().getDefaultBoolean(OPEN_DIAGRAMS_ON_LOAD));
         fMRUSizeSpinner.setSelection(getPreferenceStore().getDefaultInt(MRU_MAX));
         fAnimateVisualiserNodesButton.setSelection(getPreferenceStore().getDefaultBoolean(ANIMATE_VISUALISER_NODES));
@@ -203,6 +203,8 @@ public class Messages extends NLS {
 
     public static String GeneralPreferencePage_11;
 
+    public static String GeneralPreferencePage_12;
+
     public static String GeneralPreferencePage_2;
 
     public static String GeneralPreferencePage_3;
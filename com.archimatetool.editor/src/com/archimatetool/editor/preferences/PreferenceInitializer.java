@@ -46,6 +46,7 @@ implements IPreferenceConstants {
         
         store.setDefault(OPEN_DIAGRAMS_ON_LOAD, false);
         store.setDefault(BACKUP_ON_SAVE, true);
+        store.setDefault(LOAD_DIAGRAMS_LAZILY, false);
         
         store.setDefault(SKETCH_DEFAULT_BACKGROUND, 1);
         
@@ -5,8 +5,9 @@
  */
 package com.archimatetool.editor.propertysections;
 
+import java.util.HashMap;
 import java.util.Hashtable;
-import java.util.Iterator;
+import java.util.Map;
 import java.util.Map.Entry;
 
 import org.eclipse.draw2d.ColorConstants;
@@ -59,8 +60,10 @@ import org.eclipse.ui.PlatformUI;
 import com.archimatetool.editor.ui.IArchimateImages;
 import com.archimatetool.editor.ui.components.ExtendedTitleAreaDialog;
 import com.archimatetool.model.IArchimateModel;
+import com.archimatetool.model.IArchimatePackage;
 import com.archimatetool.model.IProperties;
 import com.archimatetool.model.IProperty;
+import com.archimatetool.model.util.ModelWalker;
 
 
 
@@ -73,6 +76,8 @@ public class UserPropertiesManagerDialog extends ExtendedTitleAreaDialog {
 
     private static String HELP_ID = "com.archimatetool.help.userProperties"; //$NON-NLS-1$
 
+    private static final ModelWalker PROPERTY_WALKER = new ModelWalker(IArchimatePackage.Literals.PROPERTY);
+
     private static class KeyEntry {
         String newName;
         int usedTimes = 1;
@@ -302,9 +307,8 @@ public class UserPropertiesManagerDialog extends ExtendedTitleAreaDialog {
     }
 
     private void getAllUniquePropertyKeysForModel() {
-        for(Iterator<EObject> iter = fArchimateModel.eAllContents(); iter.hasNext();) {
-            EObject element = iter.next();
-            if(element instanceof IProperty) {
+        PROPERTY_WALKER.walk(fArchimateModel, new ModelWalker.IVisitor() {
+            public boolean visit(EObject element) {
                 String key = ((IProperty)element).getKey();
                 if(key != null) {
                     if(fKeysTable.containsKey(key)) {
@@ -314,8 +318,9 @@ public class UserPropertiesManagerDialog extends ExtendedTitleAreaDialog {
                         fKeysTable.put(key, new KeyEntry(key));
                     }
                 }
+                return true;
             }
-        }
+        });
     }
 
     @Override
@@ -373,47 +378,50 @@ public class UserPropertiesManagerDialog extends ExtendedTitleAreaDialog {
     /**
      * Check for deletions
      */
-    private void checkDeletions(CompoundCommand compoundCmd) {
-        for(Iterator<EObject> iter = fArchimateModel.eAllContents(); iter.hasNext();) {
-            EObject element = iter.next();
-            if(element instanceof IProperty) {
+    private void checkDeletions(final CompoundCommand compoundCmd) {
+        PROPERTY_WALKER.walk(fArchimateModel, new ModelWalker.IVisitor() {
+            public boolean visit(EObject element) {
                 IProperty property = (IProperty)element;
                 String key = property.getKey();
                 if(key != null && !fKeysTable.containsKey(key)) {
                     Command cmd = new DeletePropertyKeyCommand(((IProperties)property.eContainer()).getProperties(), property);
                     compoundCmd.add(cmd);
                 }
+                return true;
             }
-        }
+        });
     }
 
     /**
      * Check for renames
      */
-    private void checkRenames(CompoundCommand compoundCmd) {
+    private void checkRenames(final CompoundCommand compoundCmd) {
+        // Old name -> new name
+        final Map<String, String> renames = new HashMap<String, String>();
+
         for(Entry<String, KeyEntry> entry : fKeysTable.entrySet()) {
             String oldName = entry.getKey();
             String newName = entry.getValue().newName;
             if(!oldName.equals(newName)) {
-                addKeyNameChangeCommands(compoundCmd, oldName, newName);
+                renames.put(oldName, newName);
             }
         }
-    }
 
-    /**
-     * Change all instances of key to new name
-     */
-    private void addKeyNameChangeCommands(CompoundCommand compoundCmd, String oldName, String newName) {
-        for(Iterator<EObject> iter = fArchimateModel.eAllContents(); iter.hasNext();) {
-            EObject element = iter.next();
-            if(element instanceof IProperty) {
+        if(renames.isEmpty()) {
+            return;
+        }
+
+        // Change all instances of the keys to their new names
+        PROPERTY_WALKER.walk(fArchimateModel, new ModelWalker.IVisitor() {
+            public boolean visit(EObject element) {
                 String key = ((IProperty)element).getKey();
-                if(key != null && key.equals(oldName)) {
-                    Command cmd = new RenamePropertyKeyCommand((IProperty)element, oldName, newName);
+                if(key != null && renames.containsKey(key)) {
+                    Command cmd = new RenamePropertyKeyCommand((IProperty)element, key, renames.get(key));
                     compoundCmd.add(cmd);
                 }
+                return true;
             }
-        }
+        });
     }
 
     @Override
@@ -8,8 +8,9 @@ package com.archimatetool.editor.propertysections;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Comparator;
-import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.regex.Matcher;
 
 import org.eclipse.draw2d.ColorConstants;
@@ -96,6 +97,7 @@ import com.archimatetool.model.IArchimatePackage;
 import com.archimatetool.model.IDiagramModelComponent;
 import com.archimatetool.model.IProperties;
 import com.archimatetool.model.IProperty;
+import com.archimatetool.model.util.ModelWalker;
 
 
 
@@ -108,6 +110,8 @@ public class UserPropertiesSection extends AbstractArchimatePropertySection {
 
     private static final String HELP_ID = "com.archimatetool.help.userProperties"; //$NON-NLS-1$
 
+    private static final ModelWalker PROPERTY_WALKER = new ModelWalker(IArchimatePackage.Literals.PROPERTY);
+
     /**
      * Filter to show or reject this section depending on input value
      */
@@ -465,19 +469,19 @@ public class UserPropertiesSection extends AbstractArchimatePropertySection {
     private String[] getAllUniquePropertyKeysForModel() {
         IArchimateModel model = getArchimateModel();
 
-        List<String> list = new ArrayList<String>();
+        final Set<String> keys = new LinkedHashSet<String>();
 
-        for(Iterator<EObject> iter = model.eAllContents(); iter.hasNext();) {
-            EObject element = iter.next();
-            if(element instanceof IProperty) {
+        PROPERTY_WALKER.walk(model, new ModelWalker.IVisitor() {
+            public boolean visit(EObject element) {
                 String key = ((IProperty)element).getKey();
-                if(StringUtils.isSetAfterTrim(key) && !list.contains(key)) {
-                    list.add(key);
+                if(StringUtils.isSetAfterTrim(key)) {
+                    keys.add(key);
                 }
+                return true;
             }
-        }
+        });
 
-        String[] items = list.toArray(new String[list.size()]);
+        String[] items = keys.toArray(new String[keys.size()]);
         Arrays.sort(items, new Comparator<String>() {
             @Override
             public int compare(String s1, String s2) {
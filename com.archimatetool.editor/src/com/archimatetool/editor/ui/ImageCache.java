@@ -0,0 +1,270 @@
+/**
+ * This program and the accompanying materials
+ * are made available under the terms of the License
+ * which accompanies this distribution in the file LICENSE.txt
+ */
+package com.archimatetool.editor.ui;
+
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.eclipse.swt.graphics.Image;
+import org.eclipse.swt.graphics.Rectangle;
+
+import com.archimatetool.editor.model.IArchiveManager;
+
+
+
+/**
+ * Cache of the images in models decoded and scaled for the figures that draw them.<p>
+ *
+ * Images are keyed by image path and size, so an image is decoded once and shared by every figure that shows it
+ * at the same size. Scaled images are made from the shared image at its own size rather than decoding it again.<p>
+ *
+ * Images are reference counted. A figure that gets an image from the cache must not dispose of it but release it
+ * with {@link #release(Image)} when it no longer needs it. Released images are kept in case they are needed again,
+ * such as when a figure is resized back or a view is opened again, and the least recently used are disposed
+ * when released images take more than the maximum amount of native memory.<p>
+ *
+ * Images are at the size of the figure in the model. Zooming is done by Draw2D when painting, so it is not part of the key.
+ * This is used on the UI thread only.
+ *
+ * @author Phillip Beauvoir
+ */
+public class ImageCache {
+    
+    /**
+     * Maximum native memory in bytes taken by images that have been released
+     */
+    static final long MAX_UNUSED_SIZE = 64 * 1024 * 1024;
+    
+    public static final ImageCache INSTANCE = new ImageCache(MAX_UNUSED_SIZE);
+    
+    /**
+     * Image path and size, or -1 for the image at its own size. The size is that of the figure's bounds, which are in model
+     * coordinates and stay the same at any zoom level. The zoomed viewer's ScaledGraphics scales the image as it is drawn.
+     */
+    private static class Key {
+        String imagePath;
+        int width, height;
+        
+        Key(String imagePath, int width, int height) {
+            this.imagePath = imagePath;
+            this.width = width;
+            this.height = height;
+        }
+        
+        @Override
+        public boolean equals(Object obj) {
+            if(!(obj instanceof Key)) {
+                return false;
+            }
+            Key key = (Key)obj;
+            return imagePath.equals(key.imagePath) && width == key.width && height == key.height;
+        }
+        
+        @Override
+        public int hashCode() {
+            return (imagePath.hashCode() * 31 + width) * 31 + height;
+        }
+    }
+    
+    private static class Entry {
+        Key key;
+        Image image;
+        int count;
+        long size;
+        
+        Entry(Key key, Image image) {
+            this.key = key;
+            this.image = image;
+            Rectangle bounds = image.getBounds();
+            size = (long)bounds.width * bounds.height * 4;
+        }
+    }
+    
+    private Map<Key, Entry> fEntries = new HashMap<Key, Entry>();
+    
+    /**
+     * Image -> Entry, to release images
+     */
+    private Map<Image, Entry> fImageEntries = new IdentityHashMap<Image, Entry>();
+    
+    /**
+     * Entries that have been released by all figures, least recently used first
+     */
+    private Map<Key, Entry> fUnused = new LinkedHashMap<Key, Entry>(16, 0.75f, true);
+    private long fUnusedSize;
+    private long fMaxUnusedSize;
+    
+    ImageCache(long maxUnusedSize) {
+        fMaxUnusedSize = maxUnusedSize;
+    }
+    
+    /**
+     * Get a shared image at its own size
+     * @param archiveManager The ArchiveManager of the model with the image
+     * @param imagePath The image path
+     * @return The image or null if it could not be created. Release it with {@link #release(Image)}.
+     */
+    public Image getImage(IArchiveManager archiveManager, String imagePath) {
+        if(archiveManager == null || imagePath == null) {
+            return null;
+        }
+        
+        Key key = new Key(imagePath, -1, -1);
+        
+        Entry entry = fEntries.get(key);
+        if(entry == null) {
+            Image image = null;
+            try {
+                image = archiveManager.createImage(imagePath);
+            }
+            catch(Exception ex) {
+                ex.printStackTrace();
+            }
+            
+            if(image == null) {
+                return null;
+            }
+            
+            entry = addEntry(key, image);
+        }
+        
+        return acquire(entry);
+    }
+    
+    /**
+     * Get a shared image scaled to a size
+     * @param archiveManager The ArchiveManager of the model with the image
+     * @param imagePath The image path
+     * @param width The width
+     * @param height The height
+     * @return The image or null if it could not be created. Release it with {@link #release(Image)}.
+     */
+    public Image getImage(IArchiveManager archiveManager, String imagePath, int width, int height) {
+        Image original = getImage(archiveManager, imagePath);
+        if(original == null) {
+            return null;
+        }
+        
+        // Same size as the original
+        Rectangle bounds = original.getBounds();
+        if(width == bounds.width && height == bounds.height) {
+            return original;
+        }
+        
+        Key key = new Key(imagePath, width, height);
+        
+        Entry entry = fEntries.get(key);
+        if(entry == null) {
+            entry = addEntry(key, ImageFactory.getScaledImage(original, width, height));
+        }
+        
+        release(original);
+        
+        return acquire(entry);
+    }
+    
+    /**
+     * Get a shared image scaled down to a maximum width or height if it is bigger than that
+     * @param archiveManager The ArchiveManager of the model with the image
+     * @param imagePath The image path
+     * @param maxSize The maximum width or height
+     * @return The image or null if it could not be created. Release it with {@link #release(Image)}.
+     */
+    public Image getImage(IArchiveManager archiveManager, String imagePath, int maxSize) {
+        Image original = getImage(archiveManager, imagePath);
+        if(original == null) {
+            return null;
+        }
+        
+        Rectangle bounds = original.getBounds();
+        if(bounds.width <= maxSize && bounds.height <= maxSize) {
+            return original;
+        }
+        
+        // Same calculation as ImageFactory#getScaledImage(Image, int)
+        int width = bounds.width;
+        int height = bounds.height;
+        
+        if(height > maxSize) {
+            width *= ((float)maxSize / height);
+            height = maxSize;
+        }
+        if(width > maxSize) {
+            height *= ((float)maxSize / width);
+            width = maxSize;
+        }
+        
+        Image image = getImage(archiveManager, imagePath, width, height);
+        release(original);
+        
+        return image;
+    }
+    
+    /**
+     * Release an image got from the cache
+     * @param image The image, may be null
+     */
+    public void release(Image image) {
+        Entry entry = image != null ? fImageEntries.get(image) : null;
+        if(entry == null || entry.count == 0) {
+            return;
+        }
+        
+        if(--entry.count == 0) {
+            fUnused.put(entry.key, entry);
+            fUnusedSize += entry.size;
+            trim();
+        }
+    }
+    
+    /**
+     * @return The number of images in the cache, in use or not
+     */
+    int size() {
+        return fEntries.size();
+    }
+    
+    /**
+     * Dispose of all images that are not in use
+     */
+    public void clear() {
+        long max = fMaxUnusedSize;
+        fMaxUnusedSize = 0;
+        trim();
+        fMaxUnusedSize = max;
+    }
+    
+    private Entry addEntry(Key key, Image image) {
+        Entry entry = new Entry(key, image);
+        fEntries.put(key, entry);
+        fImageEntries.put(image, entry);
+        return entry;
+    }
+    
+    private Image acquire(Entry entry) {
+        if(entry.count++ == 0 && fUnused.remove(entry.key) != null) {
+            fUnusedSize -= entry.size;
+        }
+        return entry.image;
+    }
+    
+    /**
+     * Dispose of the least recently used images that are not in use until they take no more than the maximum size
+     */
+    private void trim() {
+        for(Iterator<Entry> iter = fUnused.values().iterator(); fUnusedSize > fMaxUnusedSize && iter.hasNext();) {
+            Entry entry = iter.next();
+            iter.remove();
+            fUnusedSize -= entry.size;
+            fEntries.remove(entry.key);
+            fImageEntries.remove(entry.image);
+            entry.image.dispose();
+        }
+    }
+}
@@ -0,0 +1,20 @@
+/**
+ * This program and the accompanying materials
+ * are made available under the terms of the License
+ * which accompanies this distribution in the file LICENSE.txt
+ */
+package com.archimatetool.editor.views.performance;
+
+
+
+/**
+ * Interface for Performance View
+ * 
+ * @author Phillip Beauvoir
+ */
+public interface IPerformanceView {
+    
+    String ID = "com.archimatetool.editor.performanceView"; //$NON-NLS-1$
+    String NAME = Messages.IPerformanceView_0;
+
+}
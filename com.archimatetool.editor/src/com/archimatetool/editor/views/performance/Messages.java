@@ -0,0 +1,38 @@
+/**
+ * This program and the accompanying materials
+ * are made available under the terms of the License
+ * which accompanies this distribution in the file LICENSE.txt
+ */
+package com.archimatetool.editor.views.performance;
+
+import org.eclipse.osgi.util.NLS;
+
+public class Messages extends NLS {
+
+    private static final String BUNDLE_NAME = "com.archimatetool.editor.views.performance.messages"; //$NON-NLS-1$
+
+    public static String IPerformanceView_0;
+
+    public static String PerformanceView_0;
+
+    public static String PerformanceView_1;
+
+    public static String PerformanceView_2;
+
+    public static String PerformanceView_3;
+
+    public static String PerformanceView_4;
+
+    public static String PerformanceView_5;
+
+    public static String PerformanceView_6;
+
+    public static String PerformanceView_7;
+    static {
+        // initialize resource bundle
+        NLS.initializeMessages(BUNDLE_NAME, Messages.class);
+    }
+
+    private Messages() {
+    }
+}
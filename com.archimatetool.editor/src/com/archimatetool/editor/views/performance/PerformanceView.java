@@ -0,0 +1,180 @@
+/**
+ * This program and the accompanying materials
+ * are made available under the terms of the License
+ * which accompanies this distribution in the file LICENSE.txt
+ */
+package com.archimatetool.editor.views.performance;
+
+import org.eclipse.jface.action.Action;
+import org.eclipse.jface.action.IAction;
+import org.eclipse.jface.action.IToolBarManager;
+import org.eclipse.jface.layout.TableColumnLayout;
+import org.eclipse.jface.viewers.ColumnWeightData;
+import org.eclipse.jface.viewers.IStructuredContentProvider;
+import org.eclipse.jface.viewers.ITableLabelProvider;
+import org.eclipse.jface.viewers.LabelProvider;
+import org.eclipse.jface.viewers.TableViewer;
+import org.eclipse.jface.viewers.Viewer;
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.graphics.Image;
+import org.eclipse.swt.widgets.Composite;
+import org.eclipse.swt.widgets.Table;
+import org.eclipse.swt.widgets.TableColumn;
+import org.eclipse.ui.ISharedImages;
+import org.eclipse.ui.PlatformUI;
+import org.eclipse.ui.part.ViewPart;
+
+import com.archimatetool.editor.metrics.Counter;
+import com.archimatetool.editor.metrics.Histogram;
+import com.archimatetool.editor.metrics.IMetric;
+import com.archimatetool.editor.metrics.Metrics;
+import com.archimatetool.editor.metrics.Timer;
+
+
+
+/**
+ * Performance View shows the metrics in the {@link Metrics} registry and updates them every second
+ * 
+ * @author Phillip Beauvoir
+ */
+public class PerformanceView extends ViewPart implements IPerformanceView {
+    
+    private static final int UPDATE_INTERVAL = 1000;
+    
+    private TableViewer fTableViewer;
+    
+    private IAction fActionReset;
+    
+    private Runnable fUpdater = new Runnable() {
+        public void run() {
+            if(fTableViewer.getControl().isDisposed()) {
+                return;
+            }
+            
+            if(fTableViewer.getControl().isVisible()) {
+                fTableViewer.refresh();
+            }
+            
+            fTableViewer.getControl().getDisplay().timerExec(UPDATE_INTERVAL, this);
+        }
+    };
+    
+    @Override
+    public void createPartControl(Composite parent) {
+        Composite tableComp = new Composite(parent, SWT.NULL);
+        tableComp.setLayout(new TableColumnLayout());
+        
+        fTableViewer = new TableViewer(tableComp, SWT.FULL_SELECTION);
+        setColumns(fTableViewer.getTable());
+        fTableViewer.setContentProvider(new MetricsContentProvider());
+        fTableViewer.setLabelProvider(new MetricsLabelProvider());
+        fTableViewer.setInput(Metrics.INSTANCE);
+        
+        fActionReset = new Action(Messages.PerformanceView_6) {
+            @Override
+            public void run() {
+                Metrics.INSTANCE.reset();
+                fTableViewer.refresh();
+            }
+        };
+        fActionReset.setToolTipText(Messages.PerformanceView_7);
+        fActionReset.setImageDescriptor(PlatformUI.getWorkbench().getSharedImages().getImageDescriptor(ISharedImages.IMG_ETOOL_CLEAR));
+        
+        IToolBarManager manager = getViewSite().getActionBars().getToolBarManager();
+        manager.add(fActionReset);
+        
+        fTableViewer.getControl().getDisplay().timerExec(UPDATE_INTERVAL, fUpdater);
+    }
+    
+    private void setColumns(Table table) {
+        table.setHeaderVisible(true);
+        table.setLinesVisible(true);
+        
+        // Use layout from parent container
+        TableColumnLayout layout = (TableColumnLayout)table.getParent().getLayout();
+        
+        String[] columnNames = {
+            Messages.PerformanceView_0,
+            Messages.PerformanceView_1,
+            Messages.PerformanceView_2,
+            Messages.PerformanceView_3,
+            Messages.PerformanceView_4,
+            Messages.PerformanceView_5
+        };
+        
+        for(int i = 0; i < columnNames.length; i++) {
+            TableColumn column = new TableColumn(table, i == 0 ? SWT.NONE : SWT.RIGHT);
+            column.setText(columnNames[i]);
+            layout.setColumnData(column, new ColumnWeightData(i == 0 ? 30 : 14, true));
+        }
+    }
+    
+    @Override
+    public void setFocus() {
+        fTableViewer.getControl().setFocus();
+    }
+    
+    private static class MetricsContentProvider implements IStructuredContentProvider {
+        public void inputChanged(Viewer v, Object oldInput, Object newInput) {
+        }
+        
+        public void dispose() {
+        }
+        
+        public Object[] getElements(Object parent) {
+            return ((Metrics)parent).getMetrics().toArray();
+        }
+    }
+    
+    private static class MetricsLabelProvider extends LabelProvider implements ITableLabelProvider {
+        public Image getColumnImage(Object element, int columnIndex) {
+            return null;
+        }
+        
+        public String getColumnText(Object element, int columnIndex) {
+            IMetric metric = (IMetric)element;
+            
+            switch(columnIndex) {
+                case 0:
+                    return metric.getName();
+                
+                case 1:
+                    return Long.toString(metric.getCount());
+                
+                default:
+                    if(metric instanceof Counter) {
+                        return ""; //$NON-NLS-1$
+                    }
+                    return getValueText((Histogram)metric, columnIndex);
+            }
+        }
+        
+        private String getValueText(Histogram histogram, int columnIndex) {
+            double value;
+            
+            switch(columnIndex) {
+                case 2:
+                    value = histogram.getTotal();
+                    break;
+                
+                case 3:
+                    value = histogram.getMean();
+                    break;
+                
+                case 4:
+                    value = histogram.getMax();
+                    break;
+                
+                default:
+                    value = histogram.getPercentile(0.95);
+                    break;
+            }
+            
+            if(histogram instanceof Timer) {
+                return String.format("%.2f ms", Timer.toMillis(value)); //$NON-NLS-1$
+            }
+            
+            return String.format("%.0f", value); //$NON-NLS-1$
+        }
+    }
+}
@@ -60,6 +60,7 @@ import com.archimatetool.editor.ui.services.UIRequestManager;
 import com.archimatetool.editor.ui.services.ViewManager;
 import com.archimatetool.editor.views.AbstractModelView;
 import com.archimatetool.editor.views.tree.actions.CloseModelAction;
+import com.archimatetool.editor.views.tree.actions.ComputeDerivedRelationsAction;
 import com.archimatetool.editor.views.tree.actions.DeleteAction;
 import com.archimatetool.editor.views.tree.actions.DuplicateAction;
 import com.archimatetool.editor.views.tree.actions.FindReplaceAction;
@@ -119,6 +120,7 @@ implements ITreeModelView, IUIRequestListener {
     private IViewerAction fActionDuplicate;
     
     private IViewerAction fActionGenerateView;
+    private IViewerAction fActionComputeDerivedRelations;
     
     private TreeModelViewerFindReplaceProvider fFindReplaceProvider;
     
@@ -305,6 +307,8 @@ implements ITreeModelView, IUIRequestListener {
         
         fActionGenerateView = new GenerateViewAction(getSelectionProvider());
         
+        fActionComputeDerivedRelations = new ComputeDerivedRelationsAction(getSelectionProvider());
+        
         fActionToggleSearchField = new Action("", IAction.AS_CHECK_BOX) { //$NON-NLS-1$
             @Override
             public void run() {
@@ -471,6 +475,9 @@ implements ITreeModelView, IUIRequestListener {
             
             manager.add(new Separator("start_extensions")); //$NON-NLS-1$
             manager.add(fActionGenerateView);
+            if(selected instanceof IArchimateModel) {
+                manager.add(fActionComputeDerivedRelations);
+            }
             manager.add(new GroupMarker("append_extensions")); //$NON-NLS-1$
             manager.add(new Separator("end_extensions")); //$NON-NLS-1$
             
@@ -499,6 +506,7 @@ implements ITreeModelView, IUIRequestListener {
         fActionProperties.update(selection);
         fActionNewFolder.update(selection);
         fActionGenerateView.update(selection);
+        fActionComputeDerivedRelations.update(selection);
         
         updateUndoActions();
     }
@@ -598,6 +606,15 @@ implements ITreeModelView, IUIRequestListener {
             getViewer().refresh();
         }
         
+        // Model finished loading in the background so replace its placeholder
+        else if(propertyName == IEditorModelManager.PROPERTY_MODELS_LOADING) {
+            getViewer().refresh();
+            
+            if(evt.getNewValue() instanceof IArchimateModel) {
+                TreeStateHelper.INSTANCE.restoreExpandedTreeElements((IArchimateModel)evt.getNewValue());
+            }
+        }
+        
         // Model dirty state, so update Actions and modified state of source (asterisk on model node)
         else if(propertyName == IEditorModelManager.COMMAND_STACK_CHANGED) {
             updateActions();
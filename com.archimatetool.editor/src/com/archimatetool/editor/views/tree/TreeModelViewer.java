@@ -5,6 +5,7 @@
  */
 package com.archimatetool.editor.views.tree;
 
+import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -20,6 +21,7 @@ import org.eclipse.jface.viewers.TreeViewer;
 import org.eclipse.jface.viewers.Viewer;
 import org.eclipse.jface.viewers.ViewerComparator;
 import org.eclipse.jface.viewers.ViewerFilter;
+import org.eclipse.osgi.util.NLS;
 import org.eclipse.swt.SWT;
 import org.eclipse.swt.events.DisposeEvent;
 import org.eclipse.swt.events.DisposeListener;
@@ -35,6 +37,7 @@ import com.archimatetool.editor.model.IEditorModelManager;
 import com.archimatetool.editor.preferences.IPreferenceConstants;
 import com.archimatetool.editor.preferences.Preferences;
 import com.archimatetool.editor.ui.ArchimateLabelProvider;
+import com.archimatetool.editor.ui.IArchimateImages;
 import com.archimatetool.editor.views.tree.search.SearchFilter;
 import com.archimatetool.model.FolderType;
 import com.archimatetool.model.IArchimateComponent;
@@ -117,6 +120,10 @@ public class TreeModelViewer extends TreeViewer {
                 if(element instanceof EObject) {
                     return 1;
                 }
+                // Model still loading
+                if(element instanceof File) {
+                    return 2;
+                }
                 return 0;
             }
         });
@@ -236,7 +243,11 @@ public class TreeModelViewer extends TreeViewer {
 
         public Object[] getChildren(Object parentElement) {
             if(parentElement instanceof IEditorModelManager) {
-            	return ((IEditorModelManager)parentElement).getModels().toArray();
+                // Models, and the files of models still loading as placeholders
+                List<Object> list = new ArrayList<Object>();
+                list.addAll(((IEditorModelManager)parentElement).getModels());
+                list.addAll(((IEditorModelManager)parentElement).getLoadingModelFiles());
+                return list.toArray();
             }
             
             if(parentElement instanceof IArchimateModel) {
@@ -278,6 +289,11 @@ public class TreeModelViewer extends TreeViewer {
         
         @Override
         public String getText(Object element) {
+            // Model still loading
+            if(element instanceof File) {
+                return NLS.bind(Messages.TreeModelViewer_0, ((File)element).getName());
+            }
+            
             String name = ArchimateLabelProvider.INSTANCE.getLabel(element);
             
             // If a dirty model show asterisk
@@ -302,6 +318,11 @@ public class TreeModelViewer extends TreeViewer {
         
         @Override
         public Image getImage(Object element) {
+            // Model still loading
+            if(element instanceof File) {
+                return IArchimateImages.ImageFactory.getImage(IArchimateImages.ICON_MODELS_16);
+            }
+            
             return ArchimateLabelProvider.INSTANCE.getImage(element);
         }
         
@@ -312,6 +333,11 @@ public class TreeModelViewer extends TreeViewer {
                 return fontBold;
             }
             
+            // Model still loading
+            if(element instanceof File) {
+                return fontItalic;
+            }
+            
             // Italicise unused elements
             if(Preferences.STORE.getBoolean(IPreferenceConstants.HIGHLIGHT_UNUSED_ELEMENTS_IN_MODEL_TREE) && element instanceof IArchimateComponent) {
                 if(!DiagramModelUtils.isArchimateComponentReferencedInDiagrams((IArchimateComponent)element)) {
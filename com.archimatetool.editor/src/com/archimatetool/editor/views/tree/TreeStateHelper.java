@@ -100,27 +100,45 @@ public class TreeStateHelper {
             
             // String ids
             if(o instanceof FileMap) {
-                try {
-                    File file = ((FileMap)o).file;
-                    String[] elements = ((FileMap)o).elements;
-                    for(IArchimateModel model : IEditorModelManager.INSTANCE.getModels()) {
-                        if(file.equals(model.getFile())) {
-                            for(String id : elements) {
-                                EObject element = ArchimateModelUtils.getObjectByID(model, id);
-                                if(element != null) {
-                                    fTreeViewer.expandToLevel(element, 1);
-                                }
-                            }
-                            break; // found model
-                        }
+                for(IArchimateModel model : IEditorModelManager.INSTANCE.getModels()) {
+                    if(((FileMap)o).file.equals(model.getFile())) {
+                        restoreExpandedTreeElements((FileMap)o, model);
+                        break; // found model
                     }
                 }
-                catch(Exception ex) {
-                    // We don't want to fail just for some stupid string operation
-                    ex.printStackTrace();
+            }
+        }
+    }
+    
+    /**
+     * Restore expanded elements of a model that has finished loading after the TreeView was created
+     */
+    void restoreExpandedTreeElements(IArchimateModel model) {
+        if(fTreeViewer == null || fTreeViewer.getTree().isDisposed()) {
+            return;
+        }
+        
+        for(Object o : fExpandedElements) {
+            if(o instanceof FileMap && ((FileMap)o).file.equals(model.getFile())) {
+                restoreExpandedTreeElements((FileMap)o, model);
+                break;
+            }
+        }
+    }
+    
+    private void restoreExpandedTreeElements(FileMap fm, IArchimateModel model) {
+        try {
+            for(String id : fm.elements) {
+                EObject element = ArchimateModelUtils.getObjectByID(model, id);
+                if(element != null) {
+                    fTreeViewer.expandToLevel(element, 1);
                 }
             }
         }
+        catch(Exception ex) {
+            // We don't want to fail just for some stupid string operation
+            ex.printStackTrace();
+        }
     }
     
     /**
@@ -165,6 +183,14 @@ public class TreeStateHelper {
             }
         }
         
+        // Models still loading keep the expanded elements they were restored with
+        List<File> loadingFiles = IEditorModelManager.INSTANCE.getLoadingModelFiles();
+        for(Object o : fExpandedElements) {
+            if(o instanceof FileMap && loadingFiles.contains(((FileMap)o).file) && !map.containsKey(((FileMap)o).file)) {
+                map.put(((FileMap)o).file, String.join(ELEMENT_SEP_CHAR, ((FileMap)o).elements));
+            }
+        }
+        
         for(File file : map.keySet()) {
             IMemento elementMem = expandedMem.createChild(MEMENTO_MODEL);
             elementMem.putString(MEMENTO_FILE, file.getAbsolutePath());
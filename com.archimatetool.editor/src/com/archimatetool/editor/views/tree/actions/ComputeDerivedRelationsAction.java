@@ -0,0 +1,185 @@
+/**
+ * This program and the accompanying materials
+ * are made available under the terms of the License
+ * which accompanies this distribution in the file LICENSE.txt
+ */
+package com.archimatetool.editor.views.tree.actions;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.SubMonitor;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.gef.commands.Command;
+import org.eclipse.gef.commands.CommandStack;
+import org.eclipse.gef.commands.CompoundCommand;
+import org.eclipse.jface.dialogs.MessageDialog;
+import org.eclipse.jface.dialogs.ProgressMonitorDialog;
+import org.eclipse.jface.operation.IRunnableWithProgress;
+import org.eclipse.jface.viewers.ISelectionProvider;
+import org.eclipse.jface.viewers.IStructuredSelection;
+import org.eclipse.osgi.util.NLS;
+import org.eclipse.swt.widgets.Display;
+import org.eclipse.swt.widgets.Shell;
+
+import com.archimatetool.editor.Logger;
+import com.archimatetool.editor.model.commands.NonNotifyingCompoundCommand;
+import com.archimatetool.model.FolderType;
+import com.archimatetool.model.IArchimateModel;
+import com.archimatetool.model.IFolder;
+import com.archimatetool.model.IRelationship;
+import com.archimatetool.model.util.DerivedRelationsCalculator;
+
+
+
+/**
+ * Compute all Derived Relations of a Model and add them to the Derived Relations folder
+ *
+ * @author Phillip Beauvoir
+ */
+public class ComputeDerivedRelationsAction extends ViewerAction {
+    
+    public ComputeDerivedRelationsAction(ISelectionProvider selectionProvider) {
+        super(selectionProvider);
+        setText(Messages.ComputeDerivedRelationsAction_0);
+        setEnabled(false);
+    }
+    
+    @Override
+    public void run() {
+        Object selected = getSelection().getFirstElement();
+        if(!(selected instanceof IArchimateModel)) {
+            return;
+        }
+        
+        final IArchimateModel model = (IArchimateModel)selected;
+        final List<IRelationship> relationships = new ArrayList<IRelationship>();
+        final DerivedRelationsCalculator calculator = new DerivedRelationsCalculator(model);
+        
+        Shell shell = Display.getCurrent().getActiveShell();
+        
+        try {
+            ProgressMonitorDialog dialog = new ProgressMonitorDialog(shell);
+            dialog.run(true, true, new IRunnableWithProgress() {
+                @Override
+                public void run(IProgressMonitor monitor) throws InvocationTargetException, InterruptedException {
+                    SubMonitor progress = SubMonitor.convert(monitor, Messages.ComputeDerivedRelationsAction_1, 1);
+                    relationships.addAll(calculator.calculate(progress.newChild(1)));
+                }
+            });
+        }
+        catch(InvocationTargetException ex) {
+            Throwable cause = ex.getCause();
+            Logger.logError("Could not compute derived relations", cause); //$NON-NLS-1$
+            
+            // Such as a RuntimeException from the calculator, which may have no message
+            String message = cause.getMessage() != null ? cause.getMessage() : cause.toString();
+            MessageDialog.openError(shell, Messages.ComputeDerivedRelationsAction_0, message);
+            return;
+        }
+        catch(InterruptedException ex) {
+            // Cancelled
+            return;
+        }
+        
+        // Say if some derived relations may not have been found
+        String incomplete = calculator.isComplete() ? "" : "\n\n" + Messages.ComputeDerivedRelationsAction_5; //$NON-NLS-1$
+        
+        if(relationships.isEmpty()) {
+            MessageDialog.openInformation(shell, Messages.ComputeDerivedRelationsAction_0, Messages.ComputeDerivedRelationsAction_2 + incomplete);
+            return;
+        }
+        
+        // One undoable command that doesn't send notifications to listeners for each new relationship
+        CompoundCommand compoundCommand = new NonNotifyingCompoundCommand(Messages.ComputeDerivedRelationsAction_3);
+        compoundCommand.add(new AddDerivedRelationsCommand(model, relationships));
+        
+        CommandStack commandStack = (CommandStack)model.getAdapter(CommandStack.class);
+        commandStack.execute(compoundCommand);
+        
+        MessageDialog.openInformation(shell, Messages.ComputeDerivedRelationsAction_0,
+                NLS.bind(Messages.ComputeDerivedRelationsAction_4, relationships.size()) + incomplete);
+    }
+    
+    @Override
+    public void update(IStructuredSelection selection) {
+        Object selected = selection.getFirstElement();
+        setEnabled(selected instanceof IArchimateModel);
+    }
+    
+    /**
+     * Add the relationships to the Derived Relations folder, creating the folder if needed
+     */
+    private static class AddDerivedRelationsCommand extends Command {
+        private IArchimateModel fModel;
+        private List<IRelationship> fRelationships;
+        private IFolder fFolder;
+        private boolean fDerivedFolderWasCreated;
+        private int fFolderIndex;
+        
+        AddDerivedRelationsCommand(IArchimateModel model, List<IRelationship> relationships) {
+            fModel = model;
+            fRelationships = relationships;
+            setLabel(Messages.ComputeDerivedRelationsAction_3);
+        }
+        
+        @Override
+        public void execute() {
+            fFolder = fModel.getFolder(FolderType.DERIVED);
+            
+            // We need to create the Derived Relations folder
+            if(fFolder == null) {
+                fFolder = fModel.addDerivedRelationsFolder();
+                fDerivedFolderWasCreated = true;
+            }
+            
+            addRelationships();
+        }
+        
+        @Override
+        public void redo() {
+            // Put back the same Derived Relations folder
+            if(fDerivedFolderWasCreated) {
+                fModel.getFolders().add(fFolderIndex, fFolder);
+            }
+            
+            addRelationships();
+        }
+        
+        @Override
+        public void undo() {
+            // Remove from the end of the folder where they were added
+            Set<IRelationship> set = new HashSet<IRelationship>(fRelationships);
+            List<EObject> elements = fFolder.getElements();
+            for(int i = elements.size() - 1; i >= 0; i--) {
+                if(set.contains(elements.get(i))) {
+                    elements.remove(i);
+                }
+            }
+            
+            // If the Derived Relations folder was created, remove it
+            if(fDerivedFolderWasCreated) {
+                fFolderIndex = fModel.getFolders().indexOf(fFolder);
+                fModel.getFolders().remove(fFolder);
+            }
+        }
+        
+        // Add one at a time so that new IDs are allocated and because adding a large list in one go is slow
+        private void addRelationships() {
+            for(IRelationship relationship : fRelationships) {
+                fFolder.getElements().add(relationship);
+            }
+        }
+        
+        @Override
+        public void dispose() {
+            fModel = null;
+            fRelationships = null;
+            fFolder = null;
+        }
+    }
+}
@@ -13,6 +13,18 @@ public class Messages extends NLS {
 
     public static String CloseModelAction_0;
 
+    public static String ComputeDerivedRelationsAction_0;
+
+    public static String ComputeDerivedRelationsAction_1;
+
+    public static String ComputeDerivedRelationsAction_2;
+
+    public static String ComputeDerivedRelationsAction_3;
+
+    public static String ComputeDerivedRelationsAction_4;
+
+    public static String ComputeDerivedRelationsAction_5;
+
     public static String DeleteAction_0;
 
     public static String DeleteAction_1;
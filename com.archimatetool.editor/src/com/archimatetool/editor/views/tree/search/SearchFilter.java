@@ -6,7 +6,9 @@
 package com.archimatetool.editor.views.tree.search;
 
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import org.eclipse.emf.ecore.EClass;
 import org.eclipse.emf.ecore.EObject;
@@ -18,12 +20,14 @@ import org.eclipse.jface.viewers.ViewerFilter;
 import org.eclipse.swt.widgets.Display;
 
 import com.archimatetool.editor.utils.StringUtils;
+import com.archimatetool.model.IArchimateModel;
 import com.archimatetool.model.IDocumentable;
 import com.archimatetool.model.IFolder;
 import com.archimatetool.model.IFolderContainer;
 import com.archimatetool.model.INameable;
 import com.archimatetool.model.IProperties;
 import com.archimatetool.model.IProperty;
+import com.archimatetool.model.util.ArchimateModelUtils;
 
 
 /**
@@ -39,7 +43,7 @@ public class SearchFilter extends ViewerFilter {
     private boolean fFilterName;
     private boolean fFilterDocumentation;
 
-    private List<EClass> fObjectFilter = new ArrayList<EClass>();
+    private Set<EClass> fObjectFilter = new HashSet<EClass>();
     private List<String> fPropertiesFilter = new ArrayList<String>();
 
     private boolean fShowAllFolders = false;
@@ -118,6 +122,11 @@ public class SearchFilter extends ViewerFilter {
      * @return
      */
     private boolean isElementVisible(Object parentElement, Object element) {
+        // If the model has no objects of the filtered types then nothing in it can be shown
+        if(element instanceof IArchimateModel && !isShowAllFolders() && !hasObjectsOfFilteredTypes((IArchimateModel)element)) {
+            return false;
+        }
+        
         if(element instanceof IFolderContainer) {
             for(IFolder folder : ((IFolderContainer)element).getFolders()) {
                 if(isElementVisible(parentElement, folder)) {
@@ -197,6 +206,20 @@ public class SearchFilter extends ViewerFilter {
         return !isObjectFiltered(element);
     }
 
+    private boolean hasObjectsOfFilteredTypes(IArchimateModel model) {
+        if(fObjectFilter.isEmpty()) {
+            return true;
+        }
+        
+        for(EClass eClass : fObjectFilter) {
+            if(ArchimateModelUtils.getObjectCount(model, eClass) > 0) {
+                return true;
+            }
+        }
+        
+        return false;
+    }
+
     private boolean isObjectFiltered(Object element) {
         return !fObjectFilter.isEmpty() && !fObjectFilter.contains(((EObject)element).eClass());
     }
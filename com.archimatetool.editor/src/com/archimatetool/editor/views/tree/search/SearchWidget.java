@@ -6,7 +6,6 @@
 package com.archimatetool.editor.views.tree.search;
 
 import java.util.ArrayList;
-import java.util.Iterator;
 import java.util.List;
 
 import org.eclipse.emf.ecore.EClass;
@@ -35,8 +34,10 @@ import com.archimatetool.editor.ui.components.CellEditorGlobalActionHandler;
 import com.archimatetool.editor.utils.PlatformUtils;
 import com.archimatetool.editor.utils.StringUtils;
 import com.archimatetool.model.IArchimateModel;
+import com.archimatetool.model.IArchimatePackage;
 import com.archimatetool.model.IProperty;
 import com.archimatetool.model.util.ArchimateModelUtils;
+import com.archimatetool.model.util.ModelWalker;
 
 
 
@@ -47,6 +48,8 @@ import com.archimatetool.model.util.ArchimateModelUtils;
  */
 public class SearchWidget extends Composite {
 
+    private static final ModelWalker PROPERTY_WALKER = new ModelWalker(IArchimatePackage.Literals.PROPERTY);
+    
     private Text fSearchText;
     
     private SearchFilter fSearchFilter;
@@ -307,15 +310,15 @@ public class SearchWidget extends Composite {
 	    propertiesMenu.update(true);
 	}
 
-    private void getAllUniquePropertyKeysForModel(IArchimateModel model, List<String> list) {
-        for(Iterator<EObject> iter = model.eAllContents(); iter.hasNext();) {
-            EObject element = iter.next();
-            if(element instanceof IProperty) {
-            	String key = ((IProperty)element).getKey();
-            	if(StringUtils.isSetAfterTrim(key) && !list.contains(key)) {
-            		list.add(key);
-            	}
+    private void getAllUniquePropertyKeysForModel(IArchimateModel model, final List<String> list) {
+        PROPERTY_WALKER.walk(model, new ModelWalker.IVisitor() {
+            public boolean visit(EObject element) {
+                String key = ((IProperty)element).getKey();
+                if(StringUtils.isSetAfterTrim(key) && !list.contains(key)) {
+                    list.add(key);
+                }
+                return true;
             }
-        }
+        });
     }
 }
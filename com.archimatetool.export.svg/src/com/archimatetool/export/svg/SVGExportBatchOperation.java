@@ -0,0 +1,50 @@
+/**
+ * This program and the accompanying materials
+ * are made available under the terms of the License
+ * which accompanies this distribution in the file LICENSE.txt
+ */
+package com.archimatetool.export.svg;
+
+import java.io.File;
+
+import org.eclipse.draw2d.IFigure;
+import org.eclipse.gef.GraphicalViewer;
+import org.eclipse.gef.LayerConstants;
+import org.eclipse.gef.editparts.LayerManager;
+import org.eclipse.swt.layout.FillLayout;
+import org.eclipse.swt.widgets.Shell;
+
+import com.archimatetool.editor.batch.IBatchOperation;
+import com.archimatetool.editor.diagram.util.DiagramUtils;
+import com.archimatetool.model.IArchimateModel;
+import com.archimatetool.model.IDiagramModel;
+
+
+
+/**
+ * Batch Operation to save each View in a model as an SVG image named after the View's ID
+ *
+ * @author Phillip Beauvoir
+ */
+public class SVGExportBatchOperation implements IBatchOperation, IPreferenceConstants {
+    
+    public void run(IArchimateModel model, File outputFolder, String argument) throws Exception {
+        SVGExportProvider provider = new SVGExportProvider();
+        boolean embedFonts = ExportSVGPlugin.getDefault().getPreferenceStore().getBoolean(SVG_EXPORT_PREFS_EMBED_FONTS);
+        
+        for(IDiagramModel dm : model.getDiagramModels()) {
+            Shell shell = new Shell();
+            shell.setLayout(new FillLayout());
+            
+            try {
+                GraphicalViewer viewer = DiagramUtils.createViewer(dm, shell);
+                LayerManager layerManager = (LayerManager)viewer.getEditPartRegistry().get(LayerManager.ID);
+                IFigure figure = layerManager.getLayer(LayerConstants.PRINTABLE_LAYERS);
+                provider.export(figure, new File(outputFolder, dm.getId() + ".svg"), embedFonts, null); //$NON-NLS-1$
+            }
+            finally {
+                shell.dispose();
+            }
+        }
+    }
+}
@@ -48,30 +48,49 @@ public class SVGExportProvider extends AbstractExportProvider implements IPrefer
     
     @Override
     public void export(String providerID, File file) throws Exception {
+        int[] viewBox = null;
+        if(fSetViewboxButton.getSelection()) {
+            viewBox = new int[] { fSpinner1.getSelection(), fSpinner2.getSelection(), fSpinner3.getSelection(), fSpinner4.getSelection() };
+        }
+        
+        export(fFigure, file, fEmbedFontsButton.getSelection(), viewBox);
+        
+        // Save Preferences
+        savePreferences();
+    }
+    
+    /**
+     * Export a figure as SVG without the controls, so that it can also be used by the batch application
+     * @param figure The figure to paint
+     * @param file The SVG file
+     * @param embedFonts Whether to embed fonts
+     * @param viewBox The min_x, min_y, width and height of the viewBox attribute, or null to not set it
+     */
+    void export(IFigure figure, File file, boolean embedFonts, int[] viewBox) throws Exception {
         // Create a DOM Document
         Document document = createDocument();
         
         // Create a context for customisation
-        SVGGeneratorContext ctx = createContext(document, fEmbedFontsButton.getSelection());
+        SVGGeneratorContext ctx = createContext(document, embedFonts);
         
         // Create a Batik SVGGraphics2D instance
         SVGGraphics2D svgGenerator = new SVGGraphics2D(ctx, false);
         
         // Get the outer bounds of the figure
-        Rectangle bounds = getViewportBounds(fFigure);
+        Rectangle bounds = getViewportBounds(figure);
 
         // Create a Graphiti wrapper adapter
         GraphicsToGraphics2DAdaptor graphicsAdaptor = createGraphicsToGraphics2DAdaptor(svgGenerator, bounds);
         
         // Paint the figure onto the graphics instance
-        fFigure.paint(graphicsAdaptor);
+        figure.paint(graphicsAdaptor);
         
         // Get the Element root from the SVGGraphics2D instance
         Element root = svgGenerator.getRoot();
         
         // And set some attributes on the root element
-        if(fSetViewboxButton.getSelection()) {
-            setViewBoxAttribute(root, fSpinner1.getSelection(), fSpinner2.getSelection(), fSpinner3.getSelection(), fSpinner4.getSelection());
+        if(viewBox != null) {
+            setViewBoxAttribute(root, viewBox[0], viewBox[1], viewBox[2], viewBox[3]);
         }
         
         // Save the root element
@@ -81,9 +100,6 @@ public class SVGExportProvider extends AbstractExportProvider implements IPrefer
         // Close
         graphicsAdaptor.dispose();
         out.close();
-        
-        // Save Preferences
-        savePreferences();
     }
 
     @Override
@@ -6,10 +6,8 @@
 package com.archimatetool.hammer.validation;
 
 import java.util.ArrayList;
-import java.util.Iterator;
 import java.util.List;
 
-import org.eclipse.emf.ecore.EObject;
 import org.eclipse.jface.preference.IPreferenceStore;
 
 import com.archimatetool.hammer.ArchiHammerPlugin;
@@ -34,7 +32,9 @@ import com.archimatetool.hammer.validation.issues.WarningsCategory;
 import com.archimatetool.model.IArchimateDiagramModel;
 import com.archimatetool.model.IArchimateElement;
 import com.archimatetool.model.IArchimateModel;
+import com.archimatetool.model.IArchimatePackage;
 import com.archimatetool.model.IRelationship;
+import com.archimatetool.model.util.ArchimateModelUtils;
 
 
 /**
@@ -67,24 +67,10 @@ public class Validator {
             return null;
         }
         
-        // Collect interesting objects
-        fElements = new ArrayList<IArchimateElement>();
-        fRelations = new ArrayList<IRelationship>();
-        fViews = new ArrayList<IArchimateDiagramModel>();
-        
-        for(Iterator<EObject> iter = fModel.eAllContents(); iter.hasNext();) {
-            EObject eObject = iter.next();
-            
-            if(eObject instanceof IRelationship) {
-                fRelations.add((IRelationship)eObject);
-            }
-            else if(eObject instanceof IArchimateElement) {
-                fElements.add((IArchimateElement)eObject);
-            }
-            else if(eObject instanceof IArchimateDiagramModel) {
-                fViews.add((IArchimateDiagramModel)eObject);
-            }
-        }
+        // Collect interesting objects from the model's type index rather than walking the whole model
+        fElements = ArchimateModelUtils.getObjectsOfKind(fModel, IArchimatePackage.Literals.ARCHIMATE_ELEMENT);
+        fRelations = ArchimateModelUtils.getObjectsOfKind(fModel, IArchimatePackage.Literals.RELATIONSHIP);
+        fViews = ArchimateModelUtils.getObjectsOfType(fModel, IArchimatePackage.Literals.ARCHIMATE_DIAGRAM_MODEL);
         
         // Analyse
         List<Object> result = new ArrayList<Object>();
@@ -0,0 +1,60 @@
+/**
+ * This program and the accompanying materials
+ * are made available under the terms of the License
+ * which accompanies this distribution in the file LICENSE.txt
+ */
+package com.archimatetool.hammer.validation;
+
+import java.io.File;
+import java.io.PrintWriter;
+
+import com.archimatetool.editor.batch.BatchOperationException;
+import com.archimatetool.editor.batch.IBatchOperation;
+import com.archimatetool.hammer.validation.issues.ErrorsCategory;
+import com.archimatetool.hammer.validation.issues.IIssue;
+import com.archimatetool.hammer.validation.issues.IIssueCategory;
+import com.archimatetool.model.IArchimateModel;
+
+
+
+/**
+ * Batch Operation to validate a model with the checks selected in the Validator preferences.
+ * The issues are written to "validation.txt" and the operation fails if there are any errors.
+ *
+ * @author Phillip Beauvoir
+ */
+public class ValidatorBatchOperation implements IBatchOperation {
+    
+    public void run(IArchimateModel model, File outputFolder, String argument) throws Exception {
+        int errors = 0;
+        
+        PrintWriter writer = new PrintWriter(new File(outputFolder, "validation.txt"), "UTF-8"); //$NON-NLS-1$ //$NON-NLS-2$
+        
+        try {
+            for(Object object : new Validator(model).validate()) {
+                if(object instanceof IIssueCategory) {
+                    IIssueCategory category = (IIssueCategory)object;
+                    writer.println(category.getName());
+                    
+                    for(IIssue issue : category.getIssues()) {
+                        writer.println("    " + issue.getName() + ": " + issue.getDescription()); //$NON-NLS-1$ //$NON-NLS-2$
+                    }
+                    
+                    if(category instanceof ErrorsCategory) {
+                        errors = category.getIssues().size();
+                    }
+                }
+                else if(object instanceof IIssue) {
+                    writer.println(((IIssue)object).getName());
+                }
+            }
+        }
+        finally {
+            writer.close();
+        }
+        
+        if(errors > 0) {
+            throw new BatchOperationException(errors + " errors"); //$NON-NLS-1$
+        }
+    }
+}
@@ -0,0 +1,29 @@
+/**
+ * This program and the accompanying materials
+ * are made available under the terms of the License
+ * which accompanies this distribution in the file LICENSE.txt
+ */
+package com.archimatetool.jasperreports;
+
+import java.io.File;
+
+import com.archimatetool.editor.batch.IBatchOperation;
+import com.archimatetool.model.IArchimateModel;
+
+
+
+/**
+ * Batch Operation to create the Standard Jasper Report of a model as HTML and PDF
+ *
+ * @author Phillip Beauvoir
+ */
+public class JasperReportsBatchOperation implements IBatchOperation {
+    
+    public void run(IArchimateModel model, File outputFolder, String argument) throws Exception {
+        File mainTemplateFile = new File(JasperReportsPlugin.INSTANCE.getJasperReportsFolder(), "Standard Report/main.jrxml"); //$NON-NLS-1$
+        
+        JasperReportsExporter exporter = new JasperReportsExporter(model, outputFolder, "report", mainTemplateFile, //$NON-NLS-1$
+                model.getName(), JasperReportsExporter.EXPORT_HTML | JasperReportsExporter.EXPORT_PDF);
+        exporter.export(null);
+    }
+}
@@ -32,6 +32,8 @@ import org.eclipse.swt.graphics.ImageData;
 import org.eclipse.swt.graphics.ImageLoader;
 
 import com.archimatetool.editor.diagram.util.DiagramUtils;
+import com.archimatetool.editor.metrics.Metrics;
+import com.archimatetool.editor.metrics.Timer;
 import com.archimatetool.editor.utils.FileUtils;
 import com.archimatetool.jasperreports.data.ArchimateModelDataSource;
 import com.archimatetool.model.IArchimateModel;
@@ -55,6 +57,8 @@ public class JasperReportsExporter {
     public static int EXPORT_RTF = 1 << 4;
     public static int EXPORT_ODT = 1 << 5;
     
+    private static final Timer REPORT_TIMER = Metrics.INSTANCE.getTimer(Metrics.REPORT_JASPER);
+    
     private boolean DELETE_TEMP_FILES = true;
     
     private IArchimateModel fModel;
@@ -93,6 +97,16 @@ public class JasperReportsExporter {
      * @throws JRException
      */
     public void export(IProgressMonitor monitor) throws IOException, JRException {
+        long start = REPORT_TIMER.start();
+        try {
+            doExport(monitor);
+        }
+        finally {
+            REPORT_TIMER.stop(start);
+        }
+    }
+    
+    private void doExport(IProgressMonitor monitor) throws IOException, JRException {
         if(monitor != null) {
             monitor.beginTask(Messages.JasperReportsExporter_0, 11);
         }
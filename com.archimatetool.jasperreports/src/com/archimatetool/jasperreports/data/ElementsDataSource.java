@@ -21,6 +21,7 @@ import com.archimatetool.model.IArchimateComponent;
 import com.archimatetool.model.IArchimateModel;
 import com.archimatetool.model.IArchimatePackage;
 import com.archimatetool.model.IFolder;
+import com.archimatetool.model.util.ArchimateModelUtils;
 
 
 
@@ -53,76 +54,71 @@ public class ElementsDataSource implements JRRewindableDataSource, IPropertiesDa
     private int currentIndex = -1;
 
     public ElementsDataSource(IArchimateModel model, String type) {
-        IFolder businessFolder = model.getFolder(FolderType.BUSINESS);
-        IFolder applicationFolder = model.getFolder(FolderType.APPLICATION);
-        IFolder technologyFolder = model.getFolder(FolderType.TECHNOLOGY);
-        IFolder motivationFolder = model.getFolder(FolderType.MOTIVATION);
-        IFolder implmigrationFolder = model.getFolder(FolderType.IMPLEMENTATION_MIGRATION);
         IFolder connectorsFolder = model.getFolder(FolderType.CONNECTORS);
         IFolder relationsFolder = model.getFolder(FolderType.RELATIONS);
 
         if(ELEMENTS_BUSINESS_ACTORS.equals(type)) { 
-            getComponents(businessFolder, IArchimatePackage.eINSTANCE.getBusinessActor());
-            getComponents(businessFolder, IArchimatePackage.eINSTANCE.getBusinessRole());
-            getComponents(businessFolder, IArchimatePackage.eINSTANCE.getBusinessInterface());
-            getComponents(businessFolder, IArchimatePackage.eINSTANCE.getBusinessCollaboration());
-            getComponents(businessFolder, IArchimatePackage.eINSTANCE.getLocation());
+            getComponents(model, IArchimatePackage.eINSTANCE.getBusinessActor());
+            getComponents(model, IArchimatePackage.eINSTANCE.getBusinessRole());
+            getComponents(model, IArchimatePackage.eINSTANCE.getBusinessInterface());
+            getComponents(model, IArchimatePackage.eINSTANCE.getBusinessCollaboration());
+            getComponents(model, IArchimatePackage.eINSTANCE.getLocation());
         }
         else if(ELEMENTS_BUSINESS_FUNCTIONS.equals(type)) {
-            getComponents(businessFolder, IArchimatePackage.eINSTANCE.getBusinessFunction());
+            getComponents(model, IArchimatePackage.eINSTANCE.getBusinessFunction());
         }
         else if(ELEMENTS_BUSINESS_INFORMATION.equals(type)) {
-            getComponents(businessFolder, IArchimatePackage.eINSTANCE.getBusinessObject());
-            getComponents(businessFolder, IArchimatePackage.eINSTANCE.getRepresentation());
-            getComponents(businessFolder, IArchimatePackage.eINSTANCE.getMeaning());
+            getComponents(model, IArchimatePackage.eINSTANCE.getBusinessObject());
+            getComponents(model, IArchimatePackage.eINSTANCE.getRepresentation());
+            getComponents(model, IArchimatePackage.eINSTANCE.getMeaning());
         }
         else if(ELEMENTS_BUSINESS_PROCESSES.equals(type)) {
-            getComponents(businessFolder, IArchimatePackage.eINSTANCE.getBusinessEvent());
-            getComponents(businessFolder, IArchimatePackage.eINSTANCE.getBusinessInteraction());
-            getComponents(businessFolder, IArchimatePackage.eINSTANCE.getBusinessProcess());
+            getComponents(model, IArchimatePackage.eINSTANCE.getBusinessEvent());
+            getComponents(model, IArchimatePackage.eINSTANCE.getBusinessInteraction());
+            getComponents(model, IArchimatePackage.eINSTANCE.getBusinessProcess());
         }
         else if(ELEMENTS_BUSINESS_PRODUCTS.equals(type)) {
-            getComponents(businessFolder, IArchimatePackage.eINSTANCE.getContract());
-            getComponents(businessFolder, IArchimatePackage.eINSTANCE.getProduct());
-            getComponents(businessFolder, IArchimatePackage.eINSTANCE.getBusinessService());
-            getComponents(businessFolder, IArchimatePackage.eINSTANCE.getValue());
+            getComponents(model, IArchimatePackage.eINSTANCE.getContract());
+            getComponents(model, IArchimatePackage.eINSTANCE.getProduct());
+            getComponents(model, IArchimatePackage.eINSTANCE.getBusinessService());
+            getComponents(model, IArchimatePackage.eINSTANCE.getValue());
         }
         else if(ELEMENTS_APPLICATIONS.equals(type)) {
-            getComponents(applicationFolder, IArchimatePackage.eINSTANCE.getApplicationCollaboration());
-            getComponents(applicationFolder, IArchimatePackage.eINSTANCE.getApplicationComponent());
-            getComponents(applicationFolder, IArchimatePackage.eINSTANCE.getApplicationFunction());
-            getComponents(applicationFolder, IArchimatePackage.eINSTANCE.getApplicationInteraction());
-            getComponents(applicationFolder, IArchimatePackage.eINSTANCE.getApplicationInterface());
-            getComponents(applicationFolder, IArchimatePackage.eINSTANCE.getApplicationService());
+            getComponents(model, IArchimatePackage.eINSTANCE.getApplicationCollaboration());
+            getComponents(model, IArchimatePackage.eINSTANCE.getApplicationComponent());
+            getComponents(model, IArchimatePackage.eINSTANCE.getApplicationFunction());
+            getComponents(model, IArchimatePackage.eINSTANCE.getApplicationInteraction());
+            getComponents(model, IArchimatePackage.eINSTANCE.getApplicationInterface());
+            getComponents(model, IArchimatePackage.eINSTANCE.getApplicationService());
         }
         else if(ELEMENTS_APPLICATION_DATA.equals(type)) {
-            getComponents(applicationFolder, IArchimatePackage.eINSTANCE.getDataObject());
+            getComponents(model, IArchimatePackage.eINSTANCE.getDataObject());
         }
         else if(ELEMENTS_INFRASTRUCTURES.equals(type)) {
-            getComponents(technologyFolder, IArchimatePackage.eINSTANCE.getArtifact());
-            getComponents(technologyFolder, IArchimatePackage.eINSTANCE.getCommunicationPath());
-            getComponents(technologyFolder, IArchimatePackage.eINSTANCE.getDevice());
-            getComponents(technologyFolder, IArchimatePackage.eINSTANCE.getNode());
-            getComponents(technologyFolder, IArchimatePackage.eINSTANCE.getInfrastructureFunction());
-            getComponents(technologyFolder, IArchimatePackage.eINSTANCE.getInfrastructureInterface());
-            getComponents(technologyFolder, IArchimatePackage.eINSTANCE.getNetwork());
-            getComponents(technologyFolder, IArchimatePackage.eINSTANCE.getInfrastructureService());
-            getComponents(technologyFolder, IArchimatePackage.eINSTANCE.getSystemSoftware());
+            getComponents(model, IArchimatePackage.eINSTANCE.getArtifact());
+            getComponents(model, IArchimatePackage.eINSTANCE.getCommunicationPath());
+            getComponents(model, IArchimatePackage.eINSTANCE.getDevice());
+            getComponents(model, IArchimatePackage.eINSTANCE.getNode());
+            getComponents(model, IArchimatePackage.eINSTANCE.getInfrastructureFunction());
+            getComponents(model, IArchimatePackage.eINSTANCE.getInfrastructureInterface());
+            getComponents(model, IArchimatePackage.eINSTANCE.getNetwork());
+            getComponents(model, IArchimatePackage.eINSTANCE.getInfrastructureService());
+            getComponents(model, IArchimatePackage.eINSTANCE.getSystemSoftware());
         }
         else if(ELEMENTS_MOTIVATION.equals(type)) {
-            getComponents(motivationFolder, IArchimatePackage.eINSTANCE.getStakeholder());
-            getComponents(motivationFolder, IArchimatePackage.eINSTANCE.getDriver());
-            getComponents(motivationFolder, IArchimatePackage.eINSTANCE.getAssessment());
-            getComponents(motivationFolder, IArchimatePackage.eINSTANCE.getGoal());
-            getComponents(motivationFolder, IArchimatePackage.eINSTANCE.getPrinciple());
-            getComponents(motivationFolder, IArchimatePackage.eINSTANCE.getRequirement());
-            getComponents(motivationFolder, IArchimatePackage.eINSTANCE.getConstraint());
+            getComponents(model, IArchimatePackage.eINSTANCE.getStakeholder());
+            getComponents(model, IArchimatePackage.eINSTANCE.getDriver());
+            getComponents(model, IArchimatePackage.eINSTANCE.getAssessment());
+            getComponents(model, IArchimatePackage.eINSTANCE.getGoal());
+            getComponents(model, IArchimatePackage.eINSTANCE.getPrinciple());
+            getComponents(model, IArchimatePackage.eINSTANCE.getRequirement());
+            getComponents(model, IArchimatePackage.eINSTANCE.getConstraint());
         }
         else if(ELEMENTS_IMPLEMENTATION_MIGRATION.equals(type)) {
-            getComponents(implmigrationFolder, IArchimatePackage.eINSTANCE.getWorkPackage());
-            getComponents(implmigrationFolder, IArchimatePackage.eINSTANCE.getDeliverable());
-            getComponents(implmigrationFolder, IArchimatePackage.eINSTANCE.getPlateau());
-            getComponents(implmigrationFolder, IArchimatePackage.eINSTANCE.getGap());
+            getComponents(model, IArchimatePackage.eINSTANCE.getWorkPackage());
+            getComponents(model, IArchimatePackage.eINSTANCE.getDeliverable());
+            getComponents(model, IArchimatePackage.eINSTANCE.getPlateau());
+            getComponents(model, IArchimatePackage.eINSTANCE.getGap());
         }
         else if(ELEMENTS_CONNECTORS.equals(type)) {
             getComponents(connectorsFolder, null);
@@ -173,8 +169,11 @@ public class ElementsDataSource implements JRRewindableDataSource, IPropertiesDa
     }
     
     private void getComponents(IArchimateModel model, EClass type) {
-        for(IFolder folder : model.getFolders()) {
-            getComponents(folder, type);
+        // Use the model's index of types rather than walking the folders for each type
+        for(EObject object : ArchimateModelUtils.getObjectsOfType(model, type)) {
+            if(object instanceof IArchimateComponent) {
+                fElements.add((IArchimateComponent)object);
+            }
         }
     }
 
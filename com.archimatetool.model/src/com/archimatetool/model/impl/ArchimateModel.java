@@ -43,6 +43,7 @@ import com.archimatetool.model.IProperty;
 import com.archimatetool.model.IRelationship;
 import com.archimatetool.model.ITechnologyLayerElement;
 import com.archimatetool.model.util.IDAdapter;
+import com.archimatetool.model.util.RelationshipsAdapter;
 
 
 /**
@@ -194,6 +195,11 @@ public class ArchimateModel extends EObjectImpl implements IArchimateModel {
      * ID Adapter
      */
     private IDAdapter fIDAdapter = new IDAdapter();
+    
+    /**
+     * Relationships Adapter
+     */
+    private RelationshipsAdapter fRelationshipsAdapter = new RelationshipsAdapter();
 
 
     /**
@@ -204,6 +210,9 @@ public class ArchimateModel extends EObjectImpl implements IArchimateModel {
     protected ArchimateModel() {
         super();
         eAdapters().add(fIDAdapter);
+        eAdapters().add(fRelationshipsAdapter);
+        setAdapter(IDAdapter.class, fIDAdapter);
+        setAdapter(RelationshipsAdapter.class, fRelationshipsAdapter);
     }
     
     /**
@@ -36,6 +36,7 @@ import com.archimatetool.model.IIdentifier;
 import com.archimatetool.model.INameable;
 import com.archimatetool.model.IProperties;
 import com.archimatetool.model.IProperty;
+import com.archimatetool.model.util.LazyDiagramContent;
 
 
 /**
@@ -246,10 +247,28 @@ public abstract class DiagramModel extends EObjectImpl implements IDiagramModel
 
     /**
      * <!-- begin-user-doc -->
+     * If the children were not loaded with the model they are loaded now.
      * <!-- end-user-doc -->
-     * @generated
+     * @generated NOT
      */
     public EList<IDiagramModelObject> getChildren() {
+        EList<IDiagramModelObject> list = basicGetChildren();
+        
+        LazyDiagramContent content = (LazyDiagramContent)fAdapterMap.remove(LazyDiagramContent.class);
+        if(content != null) {
+            content.load(this);
+        }
+        
+        return list;
+    }
+
+    /**
+     * <!-- begin-user-doc -->
+     * @return The children without loading them if they were not loaded with the model
+     * <!-- end-user-doc -->
+     * @generated NOT
+     */
+    protected EList<IDiagramModelObject> basicGetChildren() {
         if (children == null) {
             children = new EObjectContainmentEList<IDiagramModelObject>(IDiagramModelObject.class, this, IArchimatePackage.DIAGRAM_MODEL__CHILDREN);
         }
@@ -363,8 +382,9 @@ public abstract class DiagramModel extends EObjectImpl implements IDiagramModel
 
     /**
      * <!-- begin-user-doc -->
+     * Children that were not loaded with the model are not loaded if resolve is false
      * <!-- end-user-doc -->
-     * @generated
+     * @generated NOT
      */
     @Override
     public Object eGet(int featureID, boolean resolve, boolean coreType) {
@@ -374,7 +394,7 @@ public abstract class DiagramModel extends EObjectImpl implements IDiagramModel
             case IArchimatePackage.DIAGRAM_MODEL__NAME:
                 return getName();
             case IArchimatePackage.DIAGRAM_MODEL__CHILDREN:
-                return getChildren();
+                return resolve ? getChildren() : basicGetChildren();
             case IArchimatePackage.DIAGRAM_MODEL__DOCUMENTATION:
                 return getDocumentation();
             case IArchimatePackage.DIAGRAM_MODEL__PROPERTIES:
@@ -450,8 +470,9 @@ public abstract class DiagramModel extends EObjectImpl implements IDiagramModel
 
     /**
      * <!-- begin-user-doc -->
+     * Children that were not loaded with the model are set
      * <!-- end-user-doc -->
-     * @generated
+     * @generated NOT
      */
     @Override
     public boolean eIsSet(int featureID) {
@@ -461,7 +482,7 @@ public abstract class DiagramModel extends EObjectImpl implements IDiagramModel
             case IArchimatePackage.DIAGRAM_MODEL__NAME:
                 return NAME_EDEFAULT == null ? name != null : !NAME_EDEFAULT.equals(name);
             case IArchimatePackage.DIAGRAM_MODEL__CHILDREN:
-                return children != null && !children.isEmpty();
+                return (children != null && !children.isEmpty()) || fAdapterMap.containsKey(LazyDiagramContent.class);
             case IArchimatePackage.DIAGRAM_MODEL__DOCUMENTATION:
                 return DOCUMENTATION_EDEFAULT == null ? documentation != null : !DOCUMENTATION_EDEFAULT.equals(documentation);
             case IArchimatePackage.DIAGRAM_MODEL__PROPERTIES:
@@ -124,6 +124,17 @@ public class DiagramModelArchimateConnection extends DiagramModelConnection impl
             Logger.logError("setRelationship() setting null", new Throwable()); //$NON-NLS-1$
         }
         
+        // If this is already in a diagram update the references to this in the Archimate Relationships.
+        // This happens when references are resolved at the end of loading a model
+        if(eInternalContainer() != null && relationship != fRelationship) {
+            if(fRelationship != null) {
+                fRelationship.getReferencingDiagramConnections().remove(this);
+            }
+            if(relationship != null) {
+                relationship.getReferencingDiagramConnections().add(this);
+            }
+        }
+        
         fRelationship = relationship;
     }
 
@@ -145,6 +145,17 @@ public class DiagramModelArchimateObject extends DiagramModelObject implements I
         if(archimateElement == null) {
             Logger.logError("setArchimateElement() setting null", new Throwable()); //$NON-NLS-1$
         }
+        
+        // If this is already in a diagram update the references to this in the Archimate Elements.
+        // This happens when references are resolved at the end of loading a model
+        if(eInternalContainer() != null && archimateElement != fArchimateElement) {
+            if(fArchimateElement != null) {
+                fArchimateElement.getReferencingDiagramObjects().remove(this);
+            }
+            if(archimateElement != null) {
+                archimateElement.getReferencingDiagramObjects().add(this);
+            }
+        }
 
         fArchimateElement = archimateElement;
     }
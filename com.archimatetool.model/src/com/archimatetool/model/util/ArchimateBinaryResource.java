@@ -0,0 +1,76 @@
+/**
+ * This program and the accompanying materials
+ * are made available under the terms of the License
+ * which accompanies this distribution in the file LICENSE.txt
+ */
+package com.archimatetool.model.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.resource.impl.BinaryResourceImpl;
+
+import com.archimatetool.model.IDiagramModel;
+
+
+/**
+ * Resource for the binary model format.
+ * 
+ * This is EMF's compact binary serialization of the model. References are written as indexes to objects already
+ * written rather than as ID strings, so there is no XML parsing or lookup of IDs when loading. The content is exactly
+ * the same as the XML format so a model can be converted between the two with no loss.
+ * 
+ * @see ArchimateResourceFactory#isBinaryResource(URI)
+ * @see ArchimateResourceConverter
+ * @author Phillip Beauvoir
+ */
+public class ArchimateBinaryResource extends BinaryResourceImpl {
+    
+    /**
+     * Bytes at the start of a binary resource
+     */
+    static final byte[] SIGNATURE = { (byte)0x89, 'e', 'm', 'f' };
+    
+    public ArchimateBinaryResource(URI uri) {
+        super(uri);
+    }
+    
+    /**
+     * Register all IDs with the model's IDAdapter in one pass once the model has been loaded.
+     * Strings can't be interned as they are read in the binary format so they are interned afterwards.
+     */
+    @Override
+    public void doLoad(InputStream inputStream, Map<?, ?> options) throws IOException {
+        super.doLoad(inputStream, options);
+        ArchimateResource.registerIDs(this);
+        
+        StringPool stringPool = options != null ? (StringPool)options.get(ArchimateResource.OPTION_STRING_POOL) : null;
+        if(stringPool == null) {
+            stringPool = new StringPool();
+        }
+        
+        for(EObject eObject : getContents()) {
+            stringPool.internAll(eObject);
+        }
+        
+        ArchimateResource.setStringPool(this, stringPool);
+    }
+    
+    /**
+     * Diagram models that were loaded lazily are loaded before saving. If any can't be loaded the save fails
+     * rather than saving them with no children.
+     */
+    @Override
+    public void doSave(OutputStream outputStream, Map<?, ?> options) throws IOException {
+        List<IDiagramModel> failed = LazyDiagramContent.loadAll(this);
+        if(!failed.isEmpty()) {
+            throw new IOException("Could not load the children of diagram model " + failed.get(0).getId()); //$NON-NLS-1$
+        }
+        super.doSave(outputStream, options);
+    }
+}
@@ -85,15 +85,17 @@ public class ArchimateModelUtils {
      * @return All valid relationship types between sourceType and targetType
      */
     public static EClass[] getValidRelationships(EClass sourceType, EClass targetType) {
-        List<EClass> list = new ArrayList<EClass>();
-        
-        for(EClass eClass : getRelationsClasses()) {
-            if(isValidRelationship(sourceType, targetType, eClass)) {
-                list.add(eClass); 
-            }
-        }
-        
-        return list.toArray(new EClass[list.size()]);
+        return RelationshipsMatrix.INSTANCE.getValidRelationships(sourceType, targetType);
+    }
+    
+    /**
+     * Get an array of all Archimate class types that are valid targets for a relationship type from a source Archimate class type
+     * @param sourceType The source type
+     * @param relationshipType The relationship type
+     * @return All class types that relationshipType is allowed to connect to from sourceType
+     */
+    public static EClass[] getValidRelationshipTargets(EClass sourceType, EClass relationshipType) {
+        return RelationshipsMatrix.INSTANCE.getValidTargets(sourceType, relationshipType);
     }
     
     /**
@@ -123,11 +125,32 @@ public class ArchimateModelUtils {
     private static List<IRelationship> __getRelationships(IArchimateElement element, int type) {
         List<IRelationship> relationships = new ArrayList<IRelationship>();
         
-        if(element.getArchimateModel() != null) { // An important guard because the element might have been deleted
-            IFolder folder = element.getArchimateModel().getFolder(FolderType.RELATIONS);
+        IArchimateModel model = element.getArchimateModel();
+        if(model == null) { // An important guard because the element might have been deleted
+            return relationships;
+        }
+        
+        // Use the model's relationships index if it has one
+        RelationshipsAdapter adapter = (RelationshipsAdapter)model.getAdapter(RelationshipsAdapter.class);
+        if(adapter != null) {
+            if((type & SOURCE_RELATIONSHIPS) != 0) {
+                relationships.addAll(adapter.getSourceRelationships(element));
+            }
+            if((type & TARGET_RELATIONSHIPS) != 0) {
+                for(IRelationship relationship : adapter.getTargetRelationships(element)) {
+                    // A relationship can have the same source and target element
+                    if(relationship.getSource() != element || (type & SOURCE_RELATIONSHIPS) == 0) {
+                        relationships.add(relationship);
+                    }
+                }
+            }
+        }
+        // Else walk the relations folders
+        else {
+            IFolder folder = model.getFolder(FolderType.RELATIONS);
             __getRelationshipsForElement(folder, element, type, relationships);
             
-            folder = element.getArchimateModel().getFolder(FolderType.DERIVED);
+            folder = model.getFolder(FolderType.DERIVED);
             __getRelationshipsForElement(folder, element, type, relationships);
         }
         
@@ -176,6 +199,12 @@ public class ArchimateModelUtils {
             return model;
         }
         
+        // Use the model's ID map if it has one
+        IDAdapter adapter = (IDAdapter)model.getAdapter(IDAdapter.class);
+        if(adapter != null) {
+            return adapter.getObject(id);
+        }
+        
         // This is an expensive iteration!
         for(Iterator<EObject> iter = model.eAllContents(); iter.hasNext();) {
             EObject element = iter.next();
@@ -186,6 +215,51 @@ public class ArchimateModelUtils {
 
         return null;
     }
+    
+    /**
+     * Get the objects of a given type in the folders of an Archimate model. These are elements, relationships and diagram models.
+     * This uses an index of types that is made for the model when it is first needed and then kept up to date.
+     * @param model The Archimate Model
+     * @param eClass The type of object. Sub-classes of this type are not included.
+     * @return A new list of the objects of type eClass in the order that they were added to the model
+     */
+    @SuppressWarnings("unchecked")
+    public static <T extends EObject> List<T> getObjectsOfType(IArchimateModel model, EClass eClass) {
+        return (List<T>)getTypeIndex(model).getObjectsOfType(eClass);
+    }
+    
+    /**
+     * Get the objects of a given type, or a sub-class of that type, in the folders of an Archimate model.
+     * For example using IArchimatePackage.Literals.RELATIONSHIP will return all relationships.
+     * @param model The Archimate Model
+     * @param eClass The type of object including sub-classes
+     * @return A new list of the objects of type eClass and its sub-classes in the order that they were added to the model
+     */
+    @SuppressWarnings("unchecked")
+    public static <T extends EObject> List<T> getObjectsOfKind(IArchimateModel model, EClass eClass) {
+        return (List<T>)getTypeIndex(model).getObjectsOfKind(eClass);
+    }
+    
+    /**
+     * @param model The Archimate Model
+     * @param eClass The type of object. Sub-classes of this type are not included.
+     * @return The number of objects of type eClass in the folders of the model
+     */
+    public static int getObjectCount(IArchimateModel model, EClass eClass) {
+        return getTypeIndex(model).getCount(eClass);
+    }
+    
+    /**
+     * @return The model's index of types, making it if it doesn't exist yet
+     */
+    private static TypeIndexAdapter getTypeIndex(IArchimateModel model) {
+        TypeIndexAdapter adapter = (TypeIndexAdapter)model.getAdapter(TypeIndexAdapter.class);
+        if(adapter == null) {
+            adapter = new TypeIndexAdapter(model);
+            model.setAdapter(TypeIndexAdapter.class, adapter);
+        }
+        return adapter;
+    }
 
     
     /**
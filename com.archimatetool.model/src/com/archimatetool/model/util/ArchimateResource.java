@@ -5,8 +5,33 @@
  */
 package com.archimatetool.model.util;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
 import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.common.util.WrappedException;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.EStructuralFeature;
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.emf.ecore.xmi.XMLHelper;
+import org.eclipse.emf.ecore.xmi.XMLLoad;
+import org.eclipse.emf.ecore.xmi.XMLSave;
+import org.eclipse.emf.ecore.xmi.impl.XMLHelperImpl;
+import org.eclipse.emf.ecore.xmi.impl.XMLLoadImpl;
 import org.eclipse.emf.ecore.xmi.impl.XMLResourceImpl;
+import org.eclipse.emf.ecore.xmi.impl.XMLSaveImpl;
+import org.xml.sax.helpers.DefaultHandler;
+
+import com.archimatetool.model.IAdapter;
+import com.archimatetool.model.IArchimateModel;
+import com.archimatetool.model.IArchimatePackage;
+import com.archimatetool.model.IDiagramModel;
 
 /**
  * <!-- begin-user-doc -->
@@ -16,6 +41,34 @@ import org.eclipse.emf.ecore.xmi.impl.XMLResourceImpl;
  * @generated
  */
 public class ArchimateResource extends XMLResourceImpl {
+    
+    /**
+     * Load option. If this is Boolean.TRUE the children of diagram models are not loaded until they are first needed.
+     * @see LazyDiagramContent
+     * @generated NOT
+     */
+    public static final String OPTION_LOAD_DIAGRAMS_LAZILY = "LOAD_DIAGRAMS_LAZILY"; //$NON-NLS-1$
+    
+    /**
+     * Load option. The StringPool to intern property keys, property values and documentation with.
+     * If this is not set a new StringPool is used and it becomes the pool of the loaded model.
+     * @see StringPool
+     * @generated NOT
+     */
+    public static final String OPTION_STRING_POOL = "STRING_POOL"; //$NON-NLS-1$
+    
+    /**
+     * Approximate number of bytes of XML for each object with an ID, used to size the map of ID to object when loading
+     * @generated NOT
+     */
+    private static final int BYTES_PER_OBJECT = 128;
+    
+    /**
+     * The StringPool used while loading
+     * @generated NOT
+     */
+    private StringPool fStringPool;
+    
     /**
      * Creates an instance of the resource.
      * <!-- begin-user-doc -->
@@ -27,4 +80,188 @@ public class ArchimateResource extends XMLResourceImpl {
         super(uri);
     }
 
+    /**
+     * <!-- begin-user-doc -->
+     * ID references are resolved through a map of ID to object that is only kept while loading.
+     * Register all IDs with the model's IDAdapter in one pass once the model has been loaded
+     * <!-- end-user-doc -->
+     * @generated NOT
+     */
+    @Override
+    public void doLoad(InputStream inputStream, Map<?, ?> options) throws IOException {
+        long length = getInputLength();
+        setIntrinsicIDToEObjectMap(length > 0 ? new HashMap<String, EObject>((int)Math.min(length / BYTES_PER_OBJECT, 1 << 24))
+                                              : new HashMap<String, EObject>());
+        
+        StringPool stringPool = options != null ? (StringPool)options.get(OPTION_STRING_POOL) : null;
+        if(stringPool == null) {
+            stringPool = new StringPool();
+        }
+        fStringPool = stringPool;
+        
+        try {
+            super.doLoad(inputStream, options);
+        }
+        finally {
+            setIntrinsicIDToEObjectMap(null);
+            fStringPool = null;
+        }
+        
+        registerIDs(this);
+        setStringPool(this, stringPool);
+    }
+    
+    /**
+     * <!-- begin-user-doc -->
+     * The length of the XML that is loaded from this resource's URI. The length of an entry in an archive file is read from
+     * the archive's central directory because an entry written as a stream has no length before its data.
+     * <!-- end-user-doc -->
+     * @return The length in bytes, or -1 if it is not known, as when loading from a stream
+     * @generated NOT
+     */
+    private long getInputLength() {
+        URI uri = getURI();
+        if(uri == null) {
+            return -1;
+        }
+        
+        if(uri.isFile()) {
+            File file = new File(uri.toFileString());
+            return file.isFile() ? file.length() : -1;
+        }
+        
+        // "archive:file:/path/file.archimate!/model.xml"
+        if(uri.isArchive() && uri.authority() != null && uri.authority().endsWith("!")) { //$NON-NLS-1$
+            URI archiveURI = URI.createURI(uri.authority().substring(0, uri.authority().length() - 1));
+            if(archiveURI.isFile() && uri.path() != null) {
+                try(ZipFile zipFile = new ZipFile(archiveURI.toFileString())) {
+                    ZipEntry zipEntry = zipFile.getEntry(uri.path().substring(1));
+                    return zipEntry != null ? zipEntry.getSize() : -1;
+                }
+                catch(IOException ex) {
+                    return -1;
+                }
+            }
+        }
+        
+        return -1;
+    }
+    
+    /**
+     * <!-- begin-user-doc -->
+     * An IOException thrown while the children of a diagram model are saved is thrown from here
+     * <!-- end-user-doc -->
+     * @generated NOT
+     */
+    @Override
+    public void doSave(OutputStream outputStream, Map<?, ?> options) throws IOException {
+        try {
+            super.doSave(outputStream, options);
+        }
+        catch(WrappedException ex) {
+            if(ex.exception() instanceof IOException) {
+                throw (IOException)ex.exception();
+            }
+            throw ex;
+        }
+    }
+    
+    /**
+     * <!-- begin-user-doc -->
+     * The children of diagram models that have not been loaded yet are written from their kept XML so that saving
+     * doesn't load them. If the kept XML can't be written as it is the children are loaded and saved as usual.
+     * If they can't be loaded either the save fails rather than saving the diagram model with no children.
+     * <!-- end-user-doc -->
+     * @generated NOT
+     */
+    @Override
+    protected XMLSave createXMLSave() {
+        return new XMLSaveImpl(createXMLHelper()) {
+            @Override
+            protected void saveContainedMany(EObject o, EStructuralFeature f) {
+                if(f == IArchimatePackage.Literals.DIAGRAM_MODEL_CONTAINER__CHILDREN && o instanceof IDiagramModel) {
+                    IDiagramModel dm = (IDiagramModel)o;
+                    LazyDiagramContent content = LazyDiagramContent.getContent(dm);
+                    String xml = content != null ? content.getChildrenXML(helper) : null;
+                    if(xml != null) {
+                        doc.addText(xml);
+                        return;
+                    }
+                    if(content != null) {
+                        dm.getChildren(); // This will load them
+                        if(!LazyDiagramContent.isLoaded(dm)) {
+                            throw new WrappedException(new IOException("Could not load the children of diagram model " + dm.getId())); //$NON-NLS-1$
+                        }
+                    }
+                }
+                super.saveContainedMany(o, f);
+            }
+        };
+    }
+    
+    /**
+     * <!-- begin-user-doc -->
+     * Use a handler that doesn't load the children of diagram models if {@link #OPTION_LOAD_DIAGRAMS_LAZILY} is set
+     * <!-- end-user-doc -->
+     * @generated NOT
+     */
+    @Override
+    protected XMLLoad createXMLLoad() {
+        return new XMLLoadImpl(createXMLHelper()) {
+            @Override
+            protected DefaultHandler makeDefaultHandler() {
+                if(Boolean.TRUE.equals(options.get(OPTION_LOAD_DIAGRAMS_LAZILY))) {
+                    return new LazyDiagramXMLHandler(resource, helper, options);
+                }
+                return super.makeDefaultHandler();
+            }
+        };
+    }
+    
+    /**
+     * <!-- begin-user-doc -->
+     * Property keys, property values and documentation are interned in the StringPool as they are read
+     * <!-- end-user-doc -->
+     * @generated NOT
+     */
+    @Override
+    protected XMLHelper createXMLHelper() {
+        return new XMLHelperImpl(this) {
+            @Override
+            public void setValue(EObject object, EStructuralFeature feature, Object value, int position) {
+                if(fStringPool != null && value instanceof String && StringPool.isPooled(feature)) {
+                    value = fStringPool.intern((String)value);
+                }
+                super.setValue(object, feature, value, position);
+            }
+        };
+    }
+    
+    /**
+     * Set the StringPool of the models in the contents of a loaded resource if they don't have one already
+     * @generated NOT
+     */
+    static void setStringPool(Resource resource, StringPool stringPool) {
+        for(EObject eObject : resource.getContents()) {
+            if(eObject instanceof IArchimateModel && ((IArchimateModel)eObject).getAdapter(StringPool.class) == null) {
+                ((IArchimateModel)eObject).setAdapter(StringPool.class, stringPool);
+            }
+        }
+    }
+    
+    /**
+     * Register all IDs in the contents of a loaded resource with the model's IDAdapter
+     * @generated NOT
+     */
+    static void registerIDs(Resource resource) {
+        for(EObject eObject : resource.getContents()) {
+            if(eObject instanceof IAdapter) {
+                IDAdapter adapter = (IDAdapter)((IAdapter)eObject).getAdapter(IDAdapter.class);
+                if(adapter != null) {
+                    adapter.registerModel(eObject);
+                }
+            }
+        }
+    }
+
 } //ArchimateResource
@@ -0,0 +1,66 @@
+/**
+ * This program and the accompanying materials
+ * are made available under the terms of the License
+ * which accompanies this distribution in the file LICENSE.txt
+ */
+package com.archimatetool.model.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.resource.Resource;
+
+
+/**
+ * Converts a model file between the XML format and the binary format.
+ * 
+ * The format of the input file is found from its content. This converts plain model files. Archive files with images
+ * are converted by loading the model and saving a copy of it in the new format with its images, which the "convert"
+ * operation of the batch application does for both kinds of file.
+ * 
+ * @author Phillip Beauvoir
+ */
+public final class ArchimateResourceConverter {
+    
+    private ArchimateResourceConverter() {
+    }
+    
+    /**
+     * Convert a model file to the binary format
+     * @param inFile The model file in either format
+     * @param outFile The file to save to. This can be the same as inFile.
+     * @throws IOException
+     */
+    public static void convertToBinary(File inFile, File outFile) throws IOException {
+        convert(inFile, ArchimateResourceFactory.createNewBinaryResource(outFile));
+    }
+    
+    /**
+     * Convert a model file to the XML format
+     * @param inFile The model file in either format
+     * @param outFile The file to save to. This can be the same as inFile.
+     * @throws IOException
+     */
+    public static void convertToXML(File inFile, File outFile) throws IOException {
+        convert(inFile, ArchimateResourceFactory.createNewXMLResource(outFile));
+    }
+    
+    private static void convert(File inFile, Resource outResource) throws IOException {
+        Resource inResource = ArchimateResourceFactory.createNewResource(inFile);
+        
+        // Catch *all* exceptions in case of XML errors
+        try {
+            inResource.load(null);
+            outResource.getContents().addAll(new ArrayList<EObject>(inResource.getContents()));
+            outResource.save(null);
+        }
+        catch(IOException ex) {
+            throw ex;
+        }
+        catch(Exception ex) {
+            throw new IOException(ex);
+        }
+    }
+}
@@ -6,17 +6,26 @@
 package com.archimatetool.model.util;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
 
 import org.eclipse.emf.common.util.URI;
 import org.eclipse.emf.ecore.EClassifier;
 import org.eclipse.emf.ecore.EPackage;
 import org.eclipse.emf.ecore.resource.Resource;
 import org.eclipse.emf.ecore.resource.ResourceSet;
+import org.eclipse.emf.ecore.resource.URIConverter;
 import org.eclipse.emf.ecore.resource.impl.ResourceFactoryImpl;
 import org.eclipse.emf.ecore.resource.impl.ResourceSetImpl;
 import org.eclipse.emf.ecore.util.BasicExtendedMetaData;
 import org.eclipse.emf.ecore.util.ExtendedMetaData;
+import org.eclipse.emf.ecore.xmi.XMLParserPool;
 import org.eclipse.emf.ecore.xmi.XMLResource;
+import org.eclipse.emf.ecore.xmi.impl.XMLParserPoolImpl;
 
 import com.archimatetool.model.IArchimatePackage;
 
@@ -30,6 +39,16 @@ import com.archimatetool.model.IArchimatePackage;
  */
 public class ArchimateResourceFactory extends ResourceFactoryImpl {
     
+    /**
+     * SAX parsers shared by all loads so that a new parser isn't made each time
+     */
+    private static final XMLParserPool PARSER_POOL = new XMLParserPoolImpl();
+    
+    /**
+     * Cache of XML names to features shared by all loads so that features are looked up once for each name
+     */
+    private static final Map<Object, Object> NAME_TO_FEATURE_MAP = Collections.synchronizedMap(new HashMap<Object, Object>());
+    
     /**
      * Creates an instance of the resource factory.
      * <!-- begin-user-doc -->
@@ -58,6 +77,73 @@ public class ArchimateResourceFactory extends ResourceFactoryImpl {
         return resourceSet.createResource(uri);
     }
 
+    /**
+     * @return a new Resource that saves in the binary format, added to a new ResourceSet
+     */
+    public static Resource createNewBinaryResource(File file) {
+        return createNewBinaryResource(URI.createFileURI(file.getAbsolutePath()));
+    }
+
+    /**
+     * @return a new Resource that saves in the binary format, added to a new ResourceSet
+     */
+    public static Resource createNewBinaryResource(URI uri) {
+        ResourceSet resourceSet = createResourceSet();
+        Resource resource = new ArchimateBinaryResource(uri);
+        resourceSet.getResources().add(resource);
+        return resource;
+    }
+
+    /**
+     * @return a new Resource that saves in the XML format, added to a new ResourceSet
+     */
+    public static Resource createNewXMLResource(File file) {
+        ResourceSet resourceSet = createResourceSet();
+        Resource resource = new ArchimateResourceFactory().createXMLResource(URI.createFileURI(file.getAbsolutePath()));
+        resourceSet.getResources().add(resource);
+        return resource;
+    }
+
+    /**
+     * @param uri The URI of a model file or a model entry in an archive file
+     * @return true if the URI exists and its content is in the binary format
+     */
+    public static boolean isBinaryResource(URI uri) {
+        URIConverter converter = URIConverter.INSTANCE;
+        
+        if(uri == null || !converter.exists(uri, null)) {
+            return false;
+        }
+        
+        InputStream in = null;
+        
+        try {
+            in = converter.createInputStream(uri);
+            byte[] bytes = new byte[ArchimateBinaryResource.SIGNATURE.length];
+            int count = 0;
+            while(count < bytes.length) {
+                int read = in.read(bytes, count, bytes.length - count);
+                if(read == -1) {
+                    return false;
+                }
+                count += read;
+            }
+            return Arrays.equals(bytes, ArchimateBinaryResource.SIGNATURE);
+        }
+        catch(IOException ex) {
+            return false;
+        }
+        finally {
+            try {
+                if(in != null) {
+                    in.close();
+                }
+            }
+            catch(IOException ex) {
+            }
+        }
+    }
+
     /**
      * @return a ResourceSet that allows saving and loading files with any type of extension
      */
@@ -77,11 +163,25 @@ public class ArchimateResourceFactory extends ResourceFactoryImpl {
     /**
      * Creates an instance of the resource.
      * <!-- begin-user-doc -->
+     * If the URI is an existing file in the binary format an ArchimateBinaryResource is returned,
+     * otherwise an ArchimateResource for the XML format.
      * <!-- end-user-doc -->
      * @generated NOT
      */
     @Override
     public Resource createResource(URI uri) {
+        // An existing file in the binary format
+        if(isBinaryResource(uri)) {
+            return new ArchimateBinaryResource(uri);
+        }
+        
+        return createXMLResource(uri);
+    }
+    
+    /**
+     * @return a new ArchimateResource for the XML format
+     */
+    XMLResource createXMLResource(URI uri) {
         XMLResource result = new ArchimateResource(uri);
         
         // Ensure we have ExtendedMetaData for both Saving and Loading
@@ -104,6 +204,13 @@ public class ArchimateResourceFactory extends ResourceFactoryImpl {
         result.getDefaultSaveOptions().put(XMLResource.OPTION_ENCODING, "UTF-8"); //$NON-NLS-1$
         result.getDefaultLoadOptions().put(XMLResource.OPTION_ENCODING, "UTF-8"); //$NON-NLS-1$
         
+        // Faster loading. Parsers and feature look ups are re-used and ID references are resolved in one pass at the end
+        // (the ArchimateResource provides a map of ID to object for this while loading)
+        result.getDefaultLoadOptions().put(XMLResource.OPTION_USE_PARSER_POOL, PARSER_POOL);
+        result.getDefaultLoadOptions().put(XMLResource.OPTION_USE_XML_NAME_TO_FEATURE_MAP, NAME_TO_FEATURE_MAP);
+        result.getDefaultLoadOptions().put(XMLResource.OPTION_DEFER_IDREF_RESOLUTION, Boolean.TRUE);
+        result.getDefaultLoadOptions().put(XMLResource.OPTION_USE_DEPRECATED_METHODS, Boolean.FALSE);
+        
         // Not sure about this
         // result.getDefaultSaveOptions().put(XMLResource.OPTION_SCHEMA_LOCATION, Boolean.TRUE);
 
@@ -0,0 +1,343 @@
+/**
+ * This program and the accompanying materials
+ * are made available under the terms of the License
+ * which accompanies this distribution in the file LICENSE.txt
+ */
+package com.archimatetool.model.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
+import org.eclipse.emf.ecore.EClass;
+import org.eclipse.emf.ecore.EObject;
+
+import com.archimatetool.model.IArchimateElement;
+import com.archimatetool.model.IArchimateFactory;
+import com.archimatetool.model.IArchimateModel;
+import com.archimatetool.model.IArchimatePackage;
+import com.archimatetool.model.IRelationship;
+
+
+
+/**
+ * Derived Relations Calculator
+ *
+ * Calculates all of the derived relationships in a model. The structural relationships are walked once from each
+ * element of the model and the source elements are shared out over the available processors with fork/join.
+ * The tasks read the structural relationships of the elements from a snapshot taken on the calling thread, not from the model.
+ *
+ * For each pair of elements that are joined by a chain of structural relationships the weakest type of relationship
+ * is used for the derived relationship if it is a valid relationship between the two elements. The chains are the same
+ * as the ones that {@link DerivedRelationsUtils#createDerivedRelationship(IArchimateElement, IArchimateElement)} finds.
+ * No derived relationship is made for a pair of elements that already have a direct structural relationship, or an
+ * association in either direction, so derived relationships that were added to the model before are not made again.
+ *
+ * The walk from each source element has the default time and cost budget of {@link DerivedRelationsEngine}. If it runs out
+ * the chains found so far are used and {@link #isComplete()} returns false.
+ *
+ * The model must not be changed while the calculation is running.
+ *
+ * @author Phillip Beauvoir
+ */
+public class DerivedRelationsCalculator {
+    
+    /**
+     * Number of source elements below which a task is not split any further
+     */
+    static final int THRESHOLD = 16;
+    
+    private static final ModelWalker ELEMENT_WALKER = new ModelWalker(IArchimatePackage.Literals.ARCHIMATE_ELEMENT);
+    
+    private IArchimateModel fModel;
+    private ForkJoinPool fPool;
+    private boolean fComplete = true;
+    
+    public DerivedRelationsCalculator(IArchimateModel model) {
+        this(model, ForkJoinPool.commonPool());
+    }
+    
+    /**
+     * @param model The model
+     * @param pool The fork/join pool to use
+     */
+    public DerivedRelationsCalculator(IArchimateModel model, ForkJoinPool pool) {
+        fModel = model;
+        fPool = pool;
+    }
+    
+    /**
+     * Calculate the derived relationships of the model.
+     * The new relationships have their source and target elements set but are not added to the model.
+     * @param monitor A progress monitor, or null. The calculation is stopped if the monitor is cancelled.
+     * @return The new derived relationships, ordered by the position of their source element in the model
+     * @throws OperationCanceledException if the monitor was cancelled
+     */
+    public List<IRelationship> calculate(IProgressMonitor monitor) {
+        if(monitor == null) {
+            monitor = new NullProgressMonitor();
+        }
+        
+        List<IArchimateElement> elements = getElements();
+        
+        monitor.beginTask("", elements.size()); //$NON-NLS-1$
+        
+        try {
+            if(monitor.isCanceled()) {
+                throw new OperationCanceledException();
+            }
+            
+            Task task = new Task(elements, new Snapshot(elements));
+            ForkJoinTask<Void> future = fPool.submit(task);
+            
+            // Report progress and check for cancellation while the tasks run
+            int reported = 0;
+            while(!future.isDone()) {
+                try {
+                    future.get(100, TimeUnit.MILLISECONDS);
+                }
+                catch(TimeoutException ex) {
+                    // Not finished yet
+                }
+                catch(InterruptedException ex) {
+                    task.cancelled = true;
+                    throw new OperationCanceledException();
+                }
+                catch(ExecutionException ex) {
+                    throw new RuntimeException(ex.getCause());
+                }
+                
+                int done = task.done.get();
+                monitor.worked(done - reported);
+                reported = done;
+                
+                if(monitor.isCanceled()) {
+                    task.cancelled = true;
+                    throw new OperationCanceledException();
+                }
+            }
+            
+            // Create the relationships on this thread in a repeatable order
+            List<IRelationship> relationships = new ArrayList<IRelationship>();
+            
+            for(int i = 0; i < elements.size(); i++) {
+                List<Pair> pairs = task.results[i];
+                if(pairs != null) {
+                    for(Pair pair : pairs) {
+                        IRelationship relationship = (IRelationship)IArchimateFactory.eINSTANCE.create(pair.type);
+                        relationship.setSource(elements.get(i));
+                        relationship.setTarget(pair.target);
+                        relationships.add(relationship);
+                    }
+                }
+            }
+            
+            fComplete = !task.incomplete;
+            
+            return relationships;
+        }
+        finally {
+            monitor.done();
+        }
+    }
+    
+    /**
+     * @return false if the budget ran out when walking from any source element in the last calculation,
+     *         so not all of the derived relationships from it may have been found
+     */
+    public boolean isComplete() {
+        return fComplete;
+    }
+    
+    /**
+     * @return All elements in the model
+     */
+    List<IArchimateElement> getElements() {
+        final List<IArchimateElement> elements = new ArrayList<IArchimateElement>();
+        
+        ELEMENT_WALKER.walk(fModel, new ModelWalker.IVisitor() {
+            public boolean visit(EObject eObject) {
+                elements.add((IArchimateElement)eObject);
+                return true;
+            }
+        });
+        
+        return elements;
+    }
+    
+    /**
+     * Find the derived relationships from one source element from the result of walking from it
+     */
+    static List<Pair> calculate(IArchimateElement source, DerivedRelationsEngine.Result result, DerivedRelationsEngine engine) {
+        List<Pair> pairs = null;
+        
+        Map<IArchimateElement, EClass> weakestTypes = result.getWeakestTypes();
+        
+        for(Map.Entry<IArchimateElement, EClass> entry : weakestTypes.entrySet()) {
+            IArchimateElement target = entry.getKey();
+            EClass relationshipClass = entry.getValue();
+            
+            if(target != source && ArchimateModelUtils.isValidRelationship(source, target, relationshipClass)
+                    && !hasDirectStructuralRelationship(source, target, engine)) {
+                if(pairs == null) {
+                    pairs = new ArrayList<Pair>();
+                }
+                pairs.add(new Pair(target, relationshipClass));
+            }
+        }
+        
+        return pairs;
+    }
+    
+    /**
+     * @return True if source has a direct structural relationship to target, or target has a bi-directional relationship
+     *         to source, in the relationships read by engine
+     */
+    static boolean hasDirectStructuralRelationship(IArchimateElement source, IArchimateElement target, DerivedRelationsEngine engine) {
+        for(IRelationship relation : engine.getRelationships().getSourceRelationships(source)) {
+            if(relation.getTarget() == target && DerivedRelationsUtils.isStructuralRelationship(relation)) {
+                return true;
+            }
+        }
+        
+        for(IRelationship relation : engine.getRelationships().getTargetRelationships(source)) {
+            if(relation.getSource() == target && DerivedRelationsUtils.isBidirectionalRelationship(relation)) {
+                return true;
+            }
+        }
+        
+        return false;
+    }
+    
+    /**
+     * The structural relationships of the elements of a model at the time that it is made.
+     * This is not changed after it is made, so it can be read from any number of threads.
+     */
+    static class Snapshot extends DerivedRelationsEngine.Relationships {
+        private Map<IArchimateElement, List<IRelationship>> sourceRelationships = new HashMap<IArchimateElement, List<IRelationship>>();
+        private Map<IArchimateElement, List<IRelationship>> targetRelationships = new HashMap<IArchimateElement, List<IRelationship>>();
+        
+        Snapshot(List<IArchimateElement> elements) {
+            for(IArchimateElement element : elements) {
+                copyStructuralRelationships(element, ArchimateModelUtils.getSourceRelationships(element), sourceRelationships);
+                copyStructuralRelationships(element, ArchimateModelUtils.getTargetRelationships(element), targetRelationships);
+            }
+        }
+        
+        private void copyStructuralRelationships(IArchimateElement element, List<IRelationship> relationships, Map<IArchimateElement, List<IRelationship>> map) {
+            List<IRelationship> copy = null;
+            
+            for(IRelationship relationship : relationships) {
+                if(DerivedRelationsUtils.isStructuralRelationship(relationship)) {
+                    if(copy == null) {
+                        copy = new ArrayList<IRelationship>();
+                    }
+                    copy.add(relationship);
+                }
+            }
+            
+            if(copy != null) {
+                map.put(element, copy);
+            }
+        }
+        
+        @Override
+        List<IRelationship> getSourceRelationships(IArchimateElement element) {
+            return getRelationships(sourceRelationships, element);
+        }
+        
+        @Override
+        List<IRelationship> getTargetRelationships(IArchimateElement element) {
+            return getRelationships(targetRelationships, element);
+        }
+        
+        private List<IRelationship> getRelationships(Map<IArchimateElement, List<IRelationship>> map, IArchimateElement element) {
+            List<IRelationship> list = map.get(element);
+            return list == null ? Collections.<IRelationship>emptyList() : list;
+        }
+    }
+    
+    /**
+     * A target element and the type of derived relationship to it
+     */
+    static class Pair {
+        IArchimateElement target;
+        EClass type;
+        
+        Pair(IArchimateElement target, EClass type) {
+            this.target = target;
+            this.type = type;
+        }
+    }
+    
+    /**
+     * Fork/join task that finds the derived relationships from a range of source elements
+     */
+    @SuppressWarnings("serial")
+    private static class Task extends RecursiveAction {
+        List<IArchimateElement> elements;
+        int start, end;
+        
+        // Shared by all sub-tasks
+        List<Pair>[] results;
+        AtomicInteger done;
+        volatile boolean cancelled;
+        volatile boolean incomplete;
+        Task root;
+        
+        DerivedRelationsEngine engine;
+        
+        @SuppressWarnings("unchecked")
+        Task(List<IArchimateElement> elements, Snapshot snapshot) {
+            this.elements = elements;
+            start = 0;
+            end = elements.size();
+            results = new List[elements.size()];
+            done = new AtomicInteger();
+            root = this;
+            // A budget for each source element, cancellation is checked between source elements
+            engine = new DerivedRelationsEngine(DerivedRelationsEngine.DEFAULT_TIME_LIMIT, DerivedRelationsEngine.DEFAULT_COST_LIMIT, 0, snapshot);
+        }
+        
+        Task(Task parent, int start, int end) {
+            elements = parent.elements;
+            this.start = start;
+            this.end = end;
+            results = parent.results;
+            done = parent.done;
+            root = parent.root;
+            engine = parent.engine;
+        }
+        
+        @Override
+        protected void compute() {
+            if(end - start <= THRESHOLD) {
+                for(int i = start; i < end && !root.cancelled; i++) {
+                    IArchimateElement source = elements.get(i);
+                    DerivedRelationsEngine.Result result = engine.findWeakestTypes(source);
+                    if(!result.isComplete()) {
+                        root.incomplete = true;
+                    }
+                    results[i] = calculate(source, result, engine);
+                    done.incrementAndGet();
+                }
+            }
+            else {
+                int middle = (start + end) >>> 1;
+                invokeAll(new Task(this, start, middle), new Task(this, middle, end));
+            }
+        }
+    }
+}
@@ -0,0 +1,513 @@
+/**
+ * This program and the accompanying materials
+ * are made available under the terms of the License
+ * which accompanies this distribution in the file LICENSE.txt
+ */
+package com.archimatetool.model.util;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.emf.ecore.EClass;
+
+import com.archimatetool.model.IArchimateElement;
+import com.archimatetool.model.IRelationship;
+
+
+
+/**
+ * Derived Relations Engine
+ *
+ * Finds the chains of structural relationships between two elements from which a derived relationship can be made.
+ *
+ * All traversal state is held in a context for each call so calls on the same instance don't share any state. The
+ * relationships of elements are read from the model's relationships index, so calls can be made from more than one
+ * thread at the same time only as long as the model is not changed while they run. {@link DerivedRelationsCalculator}
+ * reads from a snapshot of the relationships instead. Instead of giving up after a fixed number of iterations a call
+ * has a time and cost budget. If the budget runs out the chains found so far are returned in a Result that is marked
+ * as not complete.
+ *
+ * Traversal is pruned to the elements from which the target element can be reached, and a relationship is never used
+ * twice in the same chain.
+ *
+ * @author Phillip Beauvoir
+ */
+public class DerivedRelationsEngine {
+    
+    /**
+     * Default time limit in milliseconds
+     */
+    public static final long DEFAULT_TIME_LIMIT = 3000;
+    
+    /**
+     * Default cost limit as the number of traversal steps
+     */
+    public static final int DEFAULT_COST_LIMIT = 5000000;
+    
+    /**
+     * Default maximum number of chains to collect
+     */
+    public static final int DEFAULT_MAX_CHAINS = 1000;
+    
+    /**
+     * Result of a call
+     */
+    public static class Result {
+        private List<List<IRelationship>> chains;
+        private EClass weakestType;
+        private Map<IArchimateElement, EClass> weakestTypes;
+        private boolean complete;
+        
+        Result(List<List<IRelationship>> chains, EClass weakestType, boolean complete) {
+            this(chains, weakestType, Collections.<IArchimateElement, EClass>emptyMap(), complete);
+        }
+        
+        Result(List<List<IRelationship>> chains, EClass weakestType, Map<IArchimateElement, EClass> weakestTypes, boolean complete) {
+            this.chains = chains;
+            this.weakestType = weakestType;
+            this.weakestTypes = weakestTypes;
+            this.complete = complete;
+        }
+        
+        /**
+         * @return The valid chains found. This will be empty if no chains were found or chains were not collected.
+         */
+        public List<List<IRelationship>> getChains() {
+            return chains;
+        }
+        
+        /**
+         * @return The weakest type of relationship over all chains found, or null if no chains were found
+         */
+        public EClass getWeakestType() {
+            return weakestType;
+        }
+        
+        /**
+         * @return Map of each element reached from the source element -> the weakest type of relationship over all chains to it.
+         *         This will be empty if the call was not for all target elements.
+         */
+        public Map<IArchimateElement, EClass> getWeakestTypes() {
+            return weakestTypes;
+        }
+        
+        /**
+         * @return false if the budget ran out before traversal finished and so this is a partial result
+         */
+        public boolean isComplete() {
+            return complete;
+        }
+    }
+    
+    /**
+     * Source and target relationships of elements as read by the engine.
+     * By default these are read from the model's relationships index.
+     */
+    static class Relationships {
+        List<IRelationship> getSourceRelationships(IArchimateElement element) {
+            return ArchimateModelUtils.getSourceRelationships(element);
+        }
+        
+        List<IRelationship> getTargetRelationships(IArchimateElement element) {
+            return ArchimateModelUtils.getTargetRelationships(element);
+        }
+    }
+    
+    private long timeLimit;
+    private int costLimit;
+    private int maxChains;
+    private Relationships relationships;
+    
+    public DerivedRelationsEngine() {
+        this(DEFAULT_TIME_LIMIT, DEFAULT_COST_LIMIT, DEFAULT_MAX_CHAINS);
+    }
+    
+    /**
+     * @param timeLimit Time limit for each call in milliseconds, or 0 for no limit
+     * @param costLimit Maximum number of traversal steps for each call, or 0 for no limit
+     * @param maxChains Maximum number of chains to collect when collecting chains, or 0 for no limit
+     */
+    public DerivedRelationsEngine(long timeLimit, int costLimit, int maxChains) {
+        this(timeLimit, costLimit, maxChains, new Relationships());
+    }
+    
+    /**
+     * @param relationships Where the relationships of elements are read from
+     */
+    DerivedRelationsEngine(long timeLimit, int costLimit, int maxChains, Relationships relationships) {
+        this.timeLimit = timeLimit;
+        this.costLimit = costLimit;
+        this.maxChains = maxChains;
+        this.relationships = relationships;
+    }
+    
+    Relationships getRelationships() {
+        return relationships;
+    }
+    
+    /**
+     * Find all valid chains of relationships from sourceElement to targetElement.
+     * A chain is valid if the weakest relationship in the chain is a valid relationship between sourceElement and targetElement.
+     * @param sourceElement The source element
+     * @param targetElement The target element
+     * @return The Result
+     */
+    public Result findChains(IArchimateElement sourceElement, IArchimateElement targetElement) {
+        Context context = traverse(sourceElement, targetElement, true);
+        
+        List<List<IRelationship>> result = new ArrayList<List<IRelationship>>();
+        
+        // Check validity of weakest relationship in each chain and remove chain if the weakest relationship is not valid
+        for(List<IRelationship> chain : context.chains) {
+            EClass relationshipClass = DerivedRelationsUtils.getWeakestType(chain);
+            if(ArchimateModelUtils.isValidRelationship(sourceElement, targetElement, relationshipClass)) {
+                result.add(chain);
+            }
+        }
+        
+        return new Result(result, context.getWeakestType(), context.complete);
+    }
+    
+    /**
+     * Find the weakest type of relationship over all chains from sourceElement to targetElement without collecting the chains.
+     * This is faster than {@link #findChains(IArchimateElement, IArchimateElement)} because traversal stops as soon as
+     * a chain with the weakest type of the relationships that lead to targetElement is found, and a chain that comes back
+     * to an element that is still being traversed is not followed unless it is weaker than when it first got there.
+     * @param sourceElement The source element
+     * @param targetElement The target element
+     * @return The Result
+     */
+    public Result findWeakestType(IArchimateElement sourceElement, IArchimateElement targetElement) {
+        Context context = traverse(sourceElement, targetElement, false);
+        List<List<IRelationship>> chains = Collections.emptyList();
+        return new Result(chains, context.getWeakestType(), context.complete);
+    }
+    
+    /**
+     * Find the weakest type of relationship over all chains from sourceElement to every element that can be reached from it,
+     * walking the structural relationships from sourceElement once.
+     * 
+     * The chains are the ones that {@link #findWeakestType(IArchimateElement, IArchimateElement)} finds for each element.
+     * A relationship is never used twice in the same chain and a chain to an element does not pass through that element
+     * before it gets there. As in findWeakestType a chain that comes back to an element that is still being walked is not
+     * followed unless it is weaker than when it first got there.
+     * 
+     * @param sourceElement The source element
+     * @return The Result. The weakest types are available from {@link Result#getWeakestTypes()} in the order that the elements were reached.
+     */
+    public Result findWeakestTypes(IArchimateElement sourceElement) {
+        Context context = new Context();
+        context.deadline = System.nanoTime() + timeLimit * 1000000L;
+        
+        Map<IArchimateElement, EClass> weakestTypes = new LinkedHashMap<IArchimateElement, EClass>();
+        
+        if(sourceElement != null) {
+            context.sourceElement = sourceElement;
+            context.weakestTo = new LinkedHashMap<IArchimateElement, Integer>();
+            
+            walk(sourceElement, DerivedRelationsUtils.weaklist.size() - 1, context);
+            
+            for(Map.Entry<IArchimateElement, Integer> entry : context.weakestTo.entrySet()) {
+                weakestTypes.put(entry.getKey(), DerivedRelationsUtils.weaklist.get(entry.getValue()));
+            }
+        }
+        
+        List<List<IRelationship>> chains = Collections.emptyList();
+        return new Result(chains, null, weakestTypes, context.complete);
+    }
+    
+    private void walk(IArchimateElement element, int weakestSoFar, Context context) {
+        if(context.isOverBudget()) {
+            return;
+        }
+        
+        // Source relationships
+        for(IRelationship rel : relationships.getSourceRelationships(element)) {
+            if(DerivedRelationsUtils.isStructuralRelationship(rel)) {
+                walkRelationship(rel, rel.getTarget(), weakestSoFar, context);
+            }
+        }
+        
+        // Bi-directional target relationships
+        for(IRelationship rel : relationships.getTargetRelationships(element)) {
+            if(DerivedRelationsUtils.isBidirectionalRelationship(rel)) {
+                walkRelationship(rel, rel.getSource(), weakestSoFar, context);
+            }
+        }
+    }
+    
+    private void walkRelationship(IRelationship relation, IArchimateElement element, int weakestSoFar, Context context) {
+        if(!context.complete || element == null || context.onChain.contains(relation)) {
+            return;
+        }
+        
+        int weakest = Math.min(weakestSoFar, DerivedRelationsUtils.weaklist.indexOf(relation.eClass()));
+        
+        // Elements being walked are not reached by this chain since it has already passed through them
+        Integer traversing = context.traversing.get(element);
+        
+        // A chain of more than one relationship to an element that it hasn't passed through is a derived relationship
+        if(!context.tempChain.isEmpty() && traversing == null && element != context.sourceElement) {
+            Integer weakestTo = context.weakestTo.get(element);
+            if(weakestTo == null || weakest < weakestTo) {
+                context.weakestTo.put(element, weakest);
+            }
+        }
+        
+        // Back at an element that is still being walked and not any weaker so nothing new can be found from here.
+        // The first time that the chain comes back to the source element is walked because its own relationships
+        // make chains of more than one relationship from there.
+        if(traversing != null && traversing <= weakest) {
+            return;
+        }
+        
+        context.tempChain.add(relation);
+        context.onChain.add(relation);
+        context.traversing.put(element, weakest);
+        
+        walk(element, weakest, context);
+        
+        if(traversing != null) {
+            context.traversing.put(element, traversing);
+        }
+        else {
+            context.traversing.remove(element);
+        }
+        context.tempChain.remove(context.tempChain.size() - 1); // back up
+        context.onChain.remove(relation);
+    }
+    
+    // ===================================================================================
+    // TRAVERSE PATHS
+    // ===================================================================================
+    
+    /**
+     * Traversal state for one call
+     */
+    private class Context {
+        IArchimateElement finalTarget;
+        boolean collectChains;
+        
+        // When finding the weakest types to all elements, the source element and the weakest index to each element reached
+        IArchimateElement sourceElement;
+        Map<IArchimateElement, Integer> weakestTo;
+        
+        // Elements from which finalTarget can be reached
+        Set<IArchimateElement> canReachTarget;
+        
+        // The current chain and its relationships
+        List<IRelationship> tempChain = new ArrayList<IRelationship>();
+        Set<IRelationship> onChain = new HashSet<IRelationship>();
+        
+        List<List<IRelationship>> chains = new ArrayList<List<IRelationship>>();
+        int weakestFound = DerivedRelationsUtils.weaklist.size();
+        
+        // Weakest index of the relationships that lead to finalTarget
+        int weakestPossible = DerivedRelationsUtils.weaklist.size();
+        
+        // Elements being traversed, except the source element -> weakest index of the chain when it got there
+        Map<IArchimateElement, Integer> traversing = new HashMap<IArchimateElement, Integer>();
+        
+        long deadline;
+        int cost;
+        boolean complete = true;
+        
+        EClass getWeakestType() {
+            return weakestFound < DerivedRelationsUtils.weaklist.size() ? DerivedRelationsUtils.weaklist.get(weakestFound) : null;
+        }
+        
+        /**
+         * @return true if the budget has run out
+         */
+        boolean isOverBudget() {
+            if(!complete) {
+                return true;
+            }
+            
+            cost++;
+            
+            // Check the time every 256 steps
+            if((costLimit > 0 && cost > costLimit) || (timeLimit > 0 && (cost & 0xFF) == 0 && System.nanoTime() > deadline)) {
+                complete = false;
+            }
+            
+            return !complete;
+        }
+    }
+    
+    private Context traverse(IArchimateElement sourceElement, IArchimateElement targetElement, boolean collectChains) {
+        Context context = new Context();
+        context.finalTarget = targetElement;
+        context.collectChains = collectChains;
+        context.deadline = System.nanoTime() + timeLimit * 1000000L;
+        
+        if(sourceElement == null || targetElement == null) {
+            return context;
+        }
+        
+        context.canReachTarget = getElementsThatCanReach(targetElement, context);
+        
+        // Easy win check
+        if(context.canReachTarget.contains(sourceElement)) {
+            traverse(sourceElement, DerivedRelationsUtils.weaklist.size() - 1, context);
+        }
+        
+        return context;
+    }
+    
+    private void traverse(IArchimateElement element, int weakestSoFar, Context context) {
+        // We found the lowest weakest so no point going on
+        if(context.weakestFound == 0) {
+            return;
+        }
+        
+        // If only the weakest type is needed and it's the weakest type that leads to the target there's nothing weaker to find
+        if(!context.collectChains && context.weakestFound <= context.weakestPossible) {
+            return;
+        }
+        
+        if(context.isOverBudget()) {
+            return;
+        }
+        
+        // If only the weakest type is needed and the chain came back to an element that is still being traversed without
+        // getting weaker then nothing can be found from here that isn't found from where it first got there, since fewer
+        // relationships can be used from here. The source element is not included because a chain from it to the target
+        // element needs another relationship.
+        if(!context.collectChains) {
+            Integer traversing = context.traversing.get(element);
+            if(traversing != null && traversing <= weakestSoFar) {
+                return;
+            }
+            
+            if(!context.tempChain.isEmpty()) {
+                context.traversing.put(element, weakestSoFar);
+                try {
+                    traverseRelationships(element, weakestSoFar, context);
+                }
+                finally {
+                    if(traversing != null) {
+                        context.traversing.put(element, traversing);
+                    }
+                    else {
+                        context.traversing.remove(element);
+                    }
+                }
+                return;
+            }
+        }
+        
+        traverseRelationships(element, weakestSoFar, context);
+    }
+    
+    private void traverseRelationships(IArchimateElement element, int weakestSoFar, Context context) {
+        /*
+         * Traverse thru source relationships first
+         */
+        for(IRelationship rel : relationships.getSourceRelationships(element)) {
+            if(DerivedRelationsUtils.isStructuralRelationship(rel)) {
+                addRelationshipToTempChain(rel, rel.getTarget(), weakestSoFar, context);
+            }
+        }
+        
+        /*
+         * Then thru the Bi-directional target relationships
+         */
+        for(IRelationship rel : relationships.getTargetRelationships(element)) {
+            if(DerivedRelationsUtils.isBidirectionalRelationship(rel)) {
+                addRelationshipToTempChain(rel, rel.getSource(), weakestSoFar, context);
+            }
+        }
+    }
+    
+    private void addRelationshipToTempChain(IRelationship relation, IArchimateElement element, int weakestSoFar, Context context) {
+        // Out of budget or reached the same relationship so go back one (this guards against a loop)
+        if(!context.complete || context.onChain.contains(relation)) {
+            return;
+        }
+        
+        int weakest = Math.min(weakestSoFar, DerivedRelationsUtils.weaklist.indexOf(relation.eClass()));
+        
+        // Arrived at target
+        if(context.finalTarget == element) {
+            if(!context.tempChain.isEmpty()) { // Only chains of length 2 or greater
+                if(weakest < context.weakestFound) {
+                    context.weakestFound = weakest;
+                }
+                
+                if(context.collectChains) {
+                    List<IRelationship> chain = new ArrayList<IRelationship>(context.tempChain);
+                    chain.add(relation);
+                    context.chains.add(chain);
+                    
+                    if(maxChains > 0 && context.chains.size() >= maxChains) {
+                        context.complete = false;
+                    }
+                }
+            }
+        }
+        // Move onto next element in chain if the target can be reached from it
+        else if(element != null && context.canReachTarget.contains(element)) {
+            context.tempChain.add(relation);
+            context.onChain.add(relation);
+            
+            traverse(element, weakest, context);
+            
+            context.tempChain.remove(context.tempChain.size() - 1); // back up
+            context.onChain.remove(relation);
+        }
+    }
+    
+    /**
+     * Walk backwards from targetElement to find the elements from which it can be reached.
+     * This is also an easy win check. If the target element has no incoming or bi-directional relationships then nothing is traversed.
+     */
+    private Set<IArchimateElement> getElementsThatCanReach(IArchimateElement targetElement, Context context) {
+        Set<IArchimateElement> result = new HashSet<IArchimateElement>();
+        Deque<IArchimateElement> queue = new ArrayDeque<IArchimateElement>();
+        
+        result.add(targetElement);
+        queue.add(targetElement);
+        
+        while(!queue.isEmpty() && !context.isOverBudget()) {
+            IArchimateElement element = queue.poll();
+            
+            // Structural relationships coming in to this element
+            for(IRelationship rel : relationships.getTargetRelationships(element)) {
+                if(DerivedRelationsUtils.isStructuralRelationship(rel) && rel.getSource() != null) {
+                    addWeakestPossible(rel, context);
+                    if(result.add(rel.getSource())) {
+                        queue.add(rel.getSource());
+                    }
+                }
+            }
+            
+            // Bi-directional relationships going out from this element
+            for(IRelationship rel : relationships.getSourceRelationships(element)) {
+                if(DerivedRelationsUtils.isBidirectionalRelationship(rel) && rel.getTarget() != null) {
+                    addWeakestPossible(rel, context);
+                    if(result.add(rel.getTarget())) {
+                        queue.add(rel.getTarget());
+                    }
+                }
+            }
+        }
+        
+        return result;
+    }
+    
+    private void addWeakestPossible(IRelationship rel, Context context) {
+        int index = DerivedRelationsUtils.weaklist.indexOf(rel.eClass());
+        if(index < context.weakestPossible) {
+            context.weakestPossible = index;
+        }
+    }
+}
@@ -27,6 +27,8 @@ import com.archimatetool.model.IUsedByRelationship;
 /**
  * Derived Relations Utils
  * 
+ * Chains are found with a new {@link DerivedRelationsEngine} for each call so these methods can be called from any thread.
+ * 
  * @author Phillip Beauvoir
  */
 public class DerivedRelationsUtils {
@@ -147,7 +149,7 @@ public class DerivedRelationsUtils {
      * @param element1
      * @param element2
      * @return The list of chains
-     * @throws TooComplicatedException 
+     * @throws TooComplicatedException If there were too many possibilities to compute and no chains were found
      */
     public static List<List<IRelationship>> getDerivedRelationshipChains(IArchimateElement element1, IArchimateElement element2) throws TooComplicatedException {
         if(element1 == null || element2 == null) {
@@ -155,28 +157,16 @@ public class DerivedRelationsUtils {
         }
         
         // Traverse from element1 to element2
-        List<List<IRelationship>> chains = findChains(element1, element2);
-        
-        if(chains.isEmpty()) {
-            return null;
-        }
-        
-        List<List<IRelationship>> result = new ArrayList<List<IRelationship>>(); 
+        DerivedRelationsEngine.Result result = new DerivedRelationsEngine().findChains(element1, element2);
         
-        // Check validity of weakest relationship in each chain and remove chain if the weakest relationship is not valid
-        for(List<IRelationship> chain : chains) {
-            EClass relationshipClass = getWeakestType(chain);
-            boolean isValid = ArchimateModelUtils.isValidRelationship(element1, element2, relationshipClass);
-            if(isValid) {
-                result.add(chain);
-            }
-            else {
-                System.err.println("Found invalid chain:"); //$NON-NLS-1$
-                _printChain(chain, element2);
+        if(result.getChains().isEmpty()) {
+            if(!result.isComplete()) {
+                throw new TooComplicatedException();
             }
+            return null;
         }
         
-        return result.isEmpty() ? null : result;
+        return result.getChains();
     }
     
     /**
@@ -184,40 +174,26 @@ public class DerivedRelationsUtils {
      * @param element1
      * @param element2
      * @return the derived relationship or null
-     * @throws TooComplicatedException 
+     * @throws TooComplicatedException If there were too many possibilities to compute and no chains were found
      */
     public static IRelationship createDerivedRelationship(IArchimateElement element1, IArchimateElement element2) throws TooComplicatedException {
         if(element1 == null || element2 == null) {
             return null;
         }
         
-        //System.out.println("-----------------------------------");
-        //System.out.println("Starting hunt from " + element1.getName() + " --> " + element2.getName());
-        //System.out.println("-----------------------------------");
-        
         // Traverse from element1 to element2
-        List<List<IRelationship>> chains = findChains(element1, element2);
-        
-        if(chains.isEmpty()) {
-            return null;
-        }
-        
-        int weakest = weaklist.size() - 1;
+        DerivedRelationsEngine.Result result = new DerivedRelationsEngine().findWeakestType(element1, element2);
         
         // You are the weakest link...goodbye.
-        for(List<IRelationship> chain : chains) {
-            for(IRelationship rel : chain) {
-                //printChain(chain);
-                int index = weaklist.indexOf(rel.eClass());
-                if(index < weakest) {
-                    weakest = index;
-                }
+        EClass relationshipClass = result.getWeakestType();
+        
+        if(relationshipClass == null) {
+            if(!result.isComplete()) {
+                throw new TooComplicatedException();
             }
+            return null;
         }
         
-        EClass relationshipClass = weaklist.get(weakest);
-        //System.out.println("Weakest is: " + relationshipClass);
-        
         /*
          * Check the validity of the relationship.
          */
@@ -245,195 +221,4 @@ public class DerivedRelationsUtils {
         
         return weaklist.get(weakest);
     }
-    
-   
-    // =================================================================================== 
-    // TRAVERSE PATHS
-    // ===================================================================================
-    
-    // Too complicated
-    private static final int ITERATION_LIMIT = 20000;
-    
-    private static IArchimateElement finalTarget;
-    private static List<IRelationship> temp_chain;
-    private static List<List<IRelationship>> chains;
-    private static int weakestFound;
-    private static int iterations;
-    
-    /**
-     * @param sourceElement
-     * @param targetElement
-     * @return Find all the chains between element and finalTarget
-     * @throws TooComplicatedException 
-     */
-    private static List<List<IRelationship>> findChains(IArchimateElement sourceElement, IArchimateElement targetElement) throws TooComplicatedException {
-        finalTarget = targetElement;
-        temp_chain = new ArrayList<IRelationship>();
-        chains = new ArrayList<List<IRelationship>>();
-        weakestFound = weaklist.size();
-        iterations = 0;
-        
-        // Easy win check
-        if(!_hasTargetElementValidRelations(targetElement)) {
-            return chains;
-        }
-        
-        _traverse(sourceElement);
-        
-        return chains;
-    }
-    
-    private static void _traverse(IArchimateElement element) throws TooComplicatedException {
-        // We found the lowest weakest so no point going on
-        if(weakestFound == 0) {
-            return;
-        }
-        
-        // Too deep
-        if(++iterations > ITERATION_LIMIT) {
-            throw new TooComplicatedException();
-        }
-        
-        //System.out.println("TRAVERSING FROM: " + element.getName());
-        
-        /*
-         * Traverse thru source relationships first
-         */
-        for(IRelationship rel : ArchimateModelUtils.getSourceRelationships(element)) {
-            if(isStructuralRelationship(rel)) {
-                _addRelationshipToTempChain(rel, true);
-            }
-        }
-        
-        /*
-         * Then thru the Bi-directional target relationships
-         */
-        for(IRelationship rel : ArchimateModelUtils.getTargetRelationships(element)) {
-            if(isBidirectionalRelationship(rel)) {
-                _addRelationshipToTempChain(rel, false);
-            }
-        }
-    }
-
-    private static void _addRelationshipToTempChain(IRelationship relation, boolean forwards) throws TooComplicatedException {
-        // Reached the same relationship so go back one (this guards against a loop)
-        if(temp_chain.contains(relation)) {
-            //System.out.println("Reached same relationship in chain: " + relation.getName());
-            return;
-        }
-        
-        // If we get the target element we are traversing fowards, otherwise backwards from a bi-directional check
-        IArchimateElement element = forwards ? relation.getTarget() : relation.getSource();
-        
-        // Arrived at target
-        if(finalTarget == element) {
-            if(temp_chain.size() > 0) { // Only chains of length 2 or greater
-                //System.out.println("Reached target from: " + element.getName());
-                List<IRelationship> chain = new ArrayList<IRelationship>(temp_chain); // make a copy because temp_chain will have relation removed, below
-                chain.add(relation);
-                
-                // Duplicate check - there must be a loop?
-                if(_containsChain(chain, chains)) {
-                    System.err.println("Duplicate chain:"); //$NON-NLS-1$
-                    _printChain(chain, finalTarget);
-                }
-
-                EClass weakest = getWeakestType(chain);
-                int index = weaklist.indexOf(weakest);
-                if(index < weakestFound) {
-                    weakestFound = index;
-                }
-
-                chains.add(chain);
-            }
-        }
-        // Move onto next element in chain
-        else {
-            //System.out.println("Adding to temp chain: " + relation.getName());
-            temp_chain.add(relation);
-            _traverse(element);
-            temp_chain.remove(relation); // back up
-        }
-    }
-    
-    /*
-     * This is an easy win check. Traversing will soon find if the source Element has no connections but it may take some
-     * time to traverse to eventually find out that the target element had none. If the targte element has no incoming or 
-     * bi-directional relationships then don't bother traversing.
-     */
-    private static boolean _hasTargetElementValidRelations(IArchimateElement targetElement) {
-        for(IRelationship relation : ArchimateModelUtils.getSourceRelationships(targetElement)) {
-            if(isBidirectionalRelationship(relation)) {
-                return true;
-            }
-        }
-        
-        for(IRelationship relation : ArchimateModelUtils.getTargetRelationships(targetElement)) {
-            if(isStructuralRelationship(relation)) {
-                return true;
-            }
-        }
-        
-        return false;
-    }
-    
-    /**
-     * Check if chain already exists in list of collected chains
-     */
-    private static boolean _containsChain(List<IRelationship> chain, List<List<IRelationship>> chains) {
-        for(List<IRelationship> stored_chain : chains) {
-            if(stored_chain.size() == chain.size()) { // check only on same length
-                boolean result = true; // assume the same
-                for(int i = 0; i < chain.size(); i++) {
-                    if(stored_chain.get(i) != chain.get(i)) { // relation is different so not the same
-                        result = false;
-                        break;
-                    }
-                }
-                if(result) { // was the same
-                    return true;
-                }
-            }
-        }
-        
-        return false;
-    }
-    
-    // =================================================================================== 
-    // DEBUGGING PRINT
-    // =================================================================================== 
-    
-    private static void _printChain(List<IRelationship> chain, IArchimateElement finalTarget) {
-        String s = chain.get(0).getSource().getName();
-        s += " --> "; //$NON-NLS-1$
-        for(int i = 1; i < chain.size(); i++) {
-            IRelationship relation = chain.get(i);
-            s += _getRelationshipText(chain, relation);
-            if(isBidirectionalRelationship(relation)) {
-                s += " <-> "; //$NON-NLS-1$
-            }
-            else {
-                s += " --> "; //$NON-NLS-1$
-            }
-        }
-        s += finalTarget.getName();
-        
-        System.out.println(s);
-    }
-    
-    private static String _getRelationshipText(List<IRelationship> chain, IRelationship relation) {
-        if(isBidirectionalRelationship(relation)) {
-            int index = chain.indexOf(relation);
-            if(index > 0) {
-                IRelationship previous = chain.get(index - 1);
-                if(relation.getTarget() == previous.getTarget()) {
-                    return relation.getTarget().getName();
-                }
-            }
-            return relation.getSource().getName();
-        }
-        else {
-            return relation.getSource().getName();
-        }
-    }
 }
@@ -6,12 +6,24 @@
 package com.archimatetool.model.util;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
-import java.util.UUID;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
 
 import org.eclipse.emf.common.notify.Notification;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.EReference;
+import org.eclipse.emf.ecore.resource.Resource;
 import org.eclipse.emf.ecore.util.EContentAdapter;
+import org.eclipse.emf.ecore.util.EcoreUtil;
 
+import com.archimatetool.model.IArchimatePackage;
+import com.archimatetool.model.IDiagramModel;
 import com.archimatetool.model.IIdentifier;
 
 
@@ -27,6 +39,19 @@ import com.archimatetool.model.IIdentifier;
  * 
  * IDs are not removed from the cache if an element is deleted in case the user performs an Undo operation.
  * 
+ * A map of ID to object is also kept for objects that are contained in the model so that objects can be
+ * looked up by ID without iterating through the model. Entries are removed from this map when objects are
+ * removed from the model and added back again if they are restored. If more than one object has the same ID
+ * the first one mapped is kept.
+ * 
+ * While the model is being loaded by an ArchimateResource notifications are not processed one by one.
+ * Instead the ArchimateResource calls {@link #registerModel(EObject)} when loading has finished so that
+ * all IDs are registered in one pass.
+ * 
+ * The children of diagram models that have not been loaded yet (see {@link LazyDiagramContent}) are not loaded by this adapter.
+ * Their IDs are registered so that new IDs are unique and are mapped to the diagram model until the children are loaded.
+ * Looking up one of these IDs with {@link #getObject(String)} loads the children of the diagram model.
+ * 
  * @author Phillip Beauvoir
  */
 public class IDAdapter extends EContentAdapter {
@@ -34,41 +59,185 @@ public class IDAdapter extends EContentAdapter {
     /**
      * Keep track of unique IDs. An element's ID has to be unique.
      */
-    private List<String> fUsedIDs = new ArrayList<String>();
+    private Set<String> fUsedIDs = new HashSet<String>();
+    
+    /**
+     * Map of ID -> object for objects that are currently contained in the model
+     */
+    private Map<String, EObject> fObjectMap = new HashMap<String, EObject>();
+    
+    /**
+     * Random number generator for new IDs
+     */
+    private Random fRandom = new Random();
+    
+    private static final char[] HEX_CHARS = "0123456789abcdef".toCharArray(); //$NON-NLS-1$
 
+    @Override
+    protected boolean resolve() {
+        // Don't load the children of diagram models that have not been loaded yet
+        return false;
+    }
+    
     @Override
     public void notifyChanged(Notification msg) {
         super.notifyChanged(msg);
+        
+        // IDs are registered in bulk when loading has finished
+        if(isLoading(msg)) {
+            return;
+        }
 
-        if(msg.getEventType() == Notification.ADD) {
-            if(msg.getNewValue() instanceof IIdentifier) {
-                IIdentifier element = (IIdentifier)msg.getNewValue();
-                String id = element.getId();
-                // Element has no ID so allocate one
-                if(id == null) {
-                    element.setId(getNewID());
+        switch(msg.getEventType()) {
+            case Notification.ADD:
+                if(msg.getNewValue() instanceof IIdentifier) {
+                    IIdentifier element = (IIdentifier)msg.getNewValue();
+                    String id = element.getId();
+                    // Element has no ID so allocate one
+                    if(id == null) {
+                        element.setId(getNewID());
+                    }
+                    // Register the ID to the list when loading in from file
+                    else {
+                        registerID(id);
+                    }
                 }
-                // Register the ID to the list when loading in from file
-                else {
-                    registerID(id);
+                if(isContainment(msg)) {
+                    addObjects(msg.getNewValue());
                 }
-            }
+                break;
+
+            case Notification.ADD_MANY:
+                if(isContainment(msg)) {
+                    for(Object o : (Collection<?>)msg.getNewValue()) {
+                        addObjects(o);
+                    }
+                }
+                break;
+
+            case Notification.REMOVE:
+                if(isContainment(msg)) {
+                    removeObjects(msg.getOldValue());
+                }
+                break;
+
+            case Notification.REMOVE_MANY:
+                if(isContainment(msg)) {
+                    for(Object o : (Collection<?>)msg.getOldValue()) {
+                        removeObjects(o);
+                    }
+                }
+                break;
+
+            case Notification.SET:
+            case Notification.UNSET:
+                // Object in the model was re-identified
+                if(msg.getFeature() == IArchimatePackage.Literals.IDENTIFIER__ID) {
+                    EObject object = (EObject)msg.getNotifier();
+                    unmapID((String)msg.getOldValue(), object);
+                    registerID((String)msg.getNewValue());
+                    mapID((String)msg.getNewValue(), object);
+                }
+                else if(isContainment(msg)) {
+                    removeObjects(msg.getOldValue());
+                    addObjects(msg.getNewValue());
+                }
+                break;
+
+            default:
+                break;
         }
     }
 
     public void registerID(String id) {
-        if(id != null && !fUsedIDs.contains(id)) {
+        if(id != null) {
             fUsedIDs.add(id); 
         }
     }
     
+    /**
+     * Register the IDs of a root object and all of its child objects in one pass and allocate new IDs to those objects that don't have one.
+     * This is called after a model has been loaded from file.
+     * @param root The root object, normally the Archimate model
+     */
+    public void registerModel(EObject root) {
+        List<IIdentifier> noIDs = new ArrayList<IIdentifier>();
+        
+        if(root instanceof IIdentifier) {
+            registerObject((IIdentifier)root, noIDs);
+        }
+        registerLazyIDs(root);
+        
+        for(Iterator<EObject> iter = getAllContents(root); iter.hasNext();) {
+            EObject eObject = iter.next();
+            if(eObject instanceof IIdentifier) {
+                registerObject((IIdentifier)eObject, noIDs);
+            }
+            registerLazyIDs(eObject);
+        }
+        
+        // Now that all existing IDs are known allocate new ones
+        for(IIdentifier element : noIDs) {
+            String id = getNewID();
+            element.setId(id);
+            mapID(id, element);
+        }
+    }
+    
+    private void registerObject(IIdentifier element, List<IIdentifier> noIDs) {
+        String id = element.getId();
+        if(id == null) {
+            noIDs.add(element);
+        }
+        else {
+            registerID(id);
+            mapID(id, element);
+        }
+    }
+    
+    /**
+     * Register the IDs of the children of a diagram model that have not been loaded yet and map them to the diagram model
+     */
+    private void registerLazyIDs(EObject eObject) {
+        if(eObject instanceof IDiagramModel) {
+            LazyDiagramContent content = LazyDiagramContent.getContent((IDiagramModel)eObject);
+            if(content != null) {
+                fUsedIDs.addAll(content.getIDs());
+                for(String id : content.getIDs()) {
+                    mapID(id, eObject);
+                }
+            }
+        }
+    }
+    
+    /**
+     * Un-map the IDs of the children of a diagram model that have not been loaded yet
+     */
+    private void unmapLazyIDs(EObject eObject) {
+        if(eObject instanceof IDiagramModel) {
+            LazyDiagramContent content = LazyDiagramContent.getContent((IDiagramModel)eObject);
+            if(content != null) {
+                for(String id : content.getIDs()) {
+                    unmapID(id, eObject);
+                }
+            }
+        }
+    }
+    
+    /**
+     * @return All contents of eObject without loading the children of diagram models that have not been loaded yet
+     */
+    private Iterator<EObject> getAllContents(EObject eObject) {
+        return EcoreUtil.getAllProperContents(eObject, false);
+    }
+    
     /**
      * @return A new unique ID to be used for objects in the model
      */
     public String getNewID() {
         String id;
         do {
-            id = UUID.randomUUID().toString().split("-")[0]; //$NON-NLS-1$
+            id = createRandomID();
         }
         while(fUsedIDs.contains(id));
         
@@ -76,4 +245,138 @@ public class IDAdapter extends EContentAdapter {
         
         return id;
     }
-}
\ No newline at end of file
+    
+    /**
+     * @return A random 8 character hex String
+     */
+    private String createRandomID() {
+        int value = fRandom.nextInt();
+        char[] chars = new char[8];
+        for(int i = 7; i >= 0; i--) {
+            chars[i] = HEX_CHARS[value & 0xF];
+            value >>>= 4;
+        }
+        return new String(chars);
+    }
+    
+    /**
+     * If the object is a child of a diagram model that has not been loaded yet the children of the diagram model are loaded.
+     * @param id The ID of the object
+     * @return The object contained in the model that has the given ID, or null if not found
+     */
+    public EObject getObject(String id) {
+        return getObject(id, true);
+    }
+    
+    /**
+     * @param id The ID of the object
+     * @param load If true load the children of a diagram model that has not been loaded yet if the object is one of them
+     * @return The object contained in the model that has the given ID, or null if not found or not loaded
+     */
+    EObject getObject(String id, boolean load) {
+        if(id == null) {
+            return null;
+        }
+        
+        EObject eObject = fObjectMap.get(id);
+        
+        if(isUnloadedChild(id, eObject)) {
+            if(load) {
+                // Loading the children maps their IDs
+                ((IDiagramModel)eObject).getChildren();
+                eObject = fObjectMap.get(id);
+            }
+            
+            // Not loaded or could not be loaded
+            if(isUnloadedChild(id, eObject)) {
+                return null;
+            }
+        }
+        
+        return eObject;
+    }
+    
+    /**
+     * @return true if the ID is mapped to the diagram model that has a child with the ID that has not been loaded yet
+     */
+    private boolean isUnloadedChild(String id, EObject eObject) {
+        return eObject instanceof IDiagramModel && !id.equals(((IDiagramModel)eObject).getId());
+    }
+    
+    /**
+     * @return true if the notifier belongs to an ArchimateResource or ArchimateBinaryResource that is loading
+     */
+    private boolean isLoading(Notification msg) {
+        if(msg.getNotifier() instanceof EObject) {
+            Resource resource = ((EObject)msg.getNotifier()).eResource();
+            return (resource instanceof ArchimateResource || resource instanceof ArchimateBinaryResource) && ((Resource.Internal)resource).isLoading();
+        }
+        return false;
+    }
+    
+    private boolean isContainment(Notification msg) {
+        Object feature = msg.getFeature();
+        return feature instanceof EReference && ((EReference)feature).isContainment();
+    }
+    
+    /**
+     * Map the IDs of an object and its child objects added to the model
+     */
+    private void addObjects(Object object) {
+        if(object instanceof EObject) {
+            EObject eObject = (EObject)object;
+            if(eObject instanceof IIdentifier) {
+                mapID(((IIdentifier)eObject).getId(), eObject);
+            }
+            registerLazyIDs(eObject);
+            for(Iterator<EObject> iter = getAllContents(eObject); iter.hasNext();) {
+                EObject child = iter.next();
+                if(child instanceof IIdentifier) {
+                    String id = ((IIdentifier)child).getId();
+                    registerID(id);
+                    mapID(id, child);
+                }
+                registerLazyIDs(child);
+            }
+        }
+    }
+    
+    /**
+     * Un-map the IDs of an object and its child objects removed from the model
+     */
+    private void removeObjects(Object object) {
+        if(object instanceof EObject) {
+            EObject eObject = (EObject)object;
+            if(eObject instanceof IIdentifier) {
+                unmapID(((IIdentifier)eObject).getId(), eObject);
+            }
+            unmapLazyIDs(eObject);
+            for(Iterator<EObject> iter = getAllContents(eObject); iter.hasNext();) {
+                EObject child = iter.next();
+                if(child instanceof IIdentifier) {
+                    unmapID(((IIdentifier)child).getId(), child);
+                }
+                unmapLazyIDs(child);
+            }
+        }
+    }
+    
+    private void mapID(String id, EObject object) {
+        if(id == null) {
+            return;
+        }
+        
+        // Keep the first object mapped to a duplicate ID unless the ID is mapped to the diagram model of an unloaded child
+        EObject mapped = fObjectMap.get(id);
+        if(mapped == null || isUnloadedChild(id, mapped)) {
+            fObjectMap.put(id, object);
+        }
+    }
+    
+    private void unmapID(String id, EObject object) {
+        // Only remove it if it's the same object in case of duplicate IDs
+        if(id != null && fObjectMap.get(id) == object) {
+            fObjectMap.remove(id);
+        }
+    }
+}
@@ -0,0 +1,433 @@
+/**
+ * This program and the accompanying materials
+ * are made available under the terms of the License
+ * which accompanies this distribution in the file LICENSE.txt
+ */
+package com.archimatetool.model.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.EPackage;
+import org.eclipse.emf.ecore.EReference;
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.emf.ecore.resource.ResourceSet;
+import org.eclipse.emf.ecore.util.EcoreUtil.Copier;
+import org.eclipse.emf.ecore.xmi.XMLHelper;
+import org.eclipse.emf.ecore.xmi.XMLResource;
+
+import com.archimatetool.model.IArchimateModel;
+import com.archimatetool.model.IArchimatePackage;
+import com.archimatetool.model.IDiagramModel;
+import com.archimatetool.model.IDiagramModelObject;
+import com.archimatetool.model.IFolder;
+
+
+/**
+ * The children of a diagram model that were not loaded with the model.
+ *
+ * When a model is loaded with {@link ArchimateResource#OPTION_LOAD_DIAGRAMS_LAZILY} the XML of the children of each diagram model
+ * is kept and is only parsed when the children are first asked for by {@link IDiagramModel#getChildren()}. Until then the IDs of the
+ * children, the IDs of the elements and relationships that they reference and the paths of the images that they use are known so that
+ * new IDs are still unique, a diagram model that references an element or relationship can be found and the images that a model
+ * uses are known without loading it. The children are written from the kept XML when the model is saved and are copied with the
+ * diagram model by {@link #copy(EObject)} without being loaded, so that only the diagram models that are used take up memory.
+ *
+ * If the children can't be loaded from the kept XML the content stays with the diagram model, so that the kept XML is saved
+ * as it was loaded rather than the diagram model being saved with no children.
+ *
+ * @author Phillip Beauvoir
+ */
+public final class LazyDiagramContent {
+    
+    /**
+     * Index of ID of referenced element or relationship -> diagram models not loaded yet that reference it.
+     * There is one for each model, registered with the model as an IAdapter.
+     */
+    private static class Index {
+        Map<String, Set<IDiagramModel>> diagramModels = new HashMap<String, Set<IDiagramModel>>();
+    }
+    
+    /**
+     * A namespace declaration in the root element of the kept XML
+     */
+    private static final Pattern NAMESPACE = Pattern.compile("xmlns(?::([^=\\s]+))?=\"([^\"]*)\""); //$NON-NLS-1$
+    
+    /**
+     * Number of loads in progress on each thread
+     */
+    private static final ThreadLocal<Integer> LOADING = new ThreadLocal<Integer>() {
+        @Override
+        protected Integer initialValue() {
+            return 0;
+        }
+    };
+    
+    private byte[] fXML;
+    private Set<String> fIDs;
+    private Set<String> fReferencedIDs;
+    private Map<String, String> fElementReferences;
+    private Map<String, String> fRelationshipReferences;
+    private Set<String> fImagePaths;
+    private Index fIndex;
+    private boolean fLoadFailed;
+    
+    LazyDiagramContent(byte[] xml, Set<String> ids, Set<String> referencedIDs, Map<String, String> elementReferences,
+            Map<String, String> relationshipReferences, Set<String> imagePaths) {
+        fXML = xml;
+        fIDs = ids;
+        fReferencedIDs = referencedIDs;
+        fElementReferences = elementReferences.isEmpty() ? Collections.<String, String>emptyMap() : elementReferences;
+        fRelationshipReferences = relationshipReferences.isEmpty() ? Collections.<String, String>emptyMap() : relationshipReferences;
+        fImagePaths = imagePaths.isEmpty() ? Collections.<String>emptySet() : imagePaths;
+    }
+    
+    /**
+     * @param diagramModel The diagram model
+     * @return The content of diagramModel that has not been loaded yet, or null if it has been loaded
+     */
+    public static LazyDiagramContent getContent(IDiagramModel diagramModel) {
+        Object content = diagramModel.getAdapter(LazyDiagramContent.class);
+        return content instanceof LazyDiagramContent ? (LazyDiagramContent)content : null;
+    }
+    
+    /**
+     * @param diagramModel The diagram model
+     * @return true if the children of diagramModel have been loaded
+     */
+    public static boolean isLoaded(IDiagramModel diagramModel) {
+        return getContent(diagramModel) == null;
+    }
+    
+    /**
+     * @param model The model
+     * @param id The ID of an element or relationship
+     * @return The diagram models in model that have not been loaded yet that reference the element or relationship with the given id
+     */
+    public static List<IDiagramModel> getUnloadedDiagramModels(IArchimateModel model, String id) {
+        Index index = (Index)model.getAdapter(Index.class);
+        if(index == null || id == null) {
+            return Collections.emptyList();
+        }
+        
+        Set<IDiagramModel> set = index.diagramModels.get(id);
+        return set == null ? Collections.<IDiagramModel>emptyList() : new ArrayList<IDiagramModel>(set);
+    }
+    
+    /**
+     * @return true if the children of a diagram model are being loaded on this thread. Changes made to the model while
+     *         they are loaded are not changes made by the user.
+     */
+    public static boolean isLoading() {
+        return LOADING.get() > 0;
+    }
+    
+    /**
+     * Load the children of all diagram models in a resource that have not been loaded yet
+     * @param resource The resource
+     * @return The diagram models whose children could not be loaded
+     */
+    public static List<IDiagramModel> loadAll(Resource resource) {
+        List<IDiagramModel> failed = new ArrayList<IDiagramModel>();
+        
+        for(EObject eObject : resource.getContents()) {
+            if(eObject instanceof IArchimateModel) {
+                for(IFolder folder : ((IArchimateModel)eObject).getFolders()) {
+                    loadAll(folder, failed);
+                }
+            }
+        }
+        
+        return failed;
+    }
+    
+    private static void loadAll(IFolder folder, List<IDiagramModel> failed) {
+        for(EObject eObject : folder.getElements()) {
+            if(eObject instanceof IDiagramModel) {
+                IDiagramModel dm = (IDiagramModel)eObject;
+                dm.getChildren(); // This will load them
+                if(!isLoaded(dm)) {
+                    failed.add(dm);
+                }
+            }
+        }
+        for(IFolder child : folder.getFolders()) {
+            loadAll(child, failed);
+        }
+    }
+    
+    /**
+     * Copy an object and its contents as EcoreUtil.copy(EObject) does, but without loading the children of diagram models
+     * that have not been loaded yet. The copies of those diagram models load the same children when they are needed.
+     * @param eObject The object to copy
+     * @return The copy
+     */
+    @SuppressWarnings("unchecked")
+    public static <T extends EObject> T copy(T eObject) {
+        final List<IDiagramModel> copiedDiagramModels = new ArrayList<IDiagramModel>();
+        
+        Copier copier = new Copier() {
+            private static final long serialVersionUID = 1L;
+            
+            @Override
+            protected void copyContainment(EReference eReference, EObject eObject, EObject copyEObject) {
+                if(eReference == IArchimatePackage.Literals.DIAGRAM_MODEL_CONTAINER__CHILDREN && eObject instanceof IDiagramModel) {
+                    LazyDiagramContent content = LazyDiagramContent.getContent((IDiagramModel)eObject);
+                    byte[] xml = content != null ? content.fXML : null;
+                    if(xml != null) {
+                        LazyDiagramContent.setContent((IDiagramModel)copyEObject, new LazyDiagramContent(xml, content.fIDs, content.fReferencedIDs,
+                                content.fElementReferences, content.fRelationshipReferences, content.fImagePaths));
+                        copiedDiagramModels.add((IDiagramModel)copyEObject);
+                        return;
+                    }
+                }
+                super.copyContainment(eReference, eObject, copyEObject);
+            }
+        };
+        
+        EObject result = copier.copy(eObject);
+        copier.copyReferences();
+        
+        // Set again now that the copied diagram models are in the copied model so that they are indexed
+        for(IDiagramModel dm : copiedDiagramModels) {
+            setContent(dm, getContent(dm));
+        }
+        
+        return (T)result;
+    }
+    
+    /**
+     * Set the content of diagramModel that is not loaded yet
+     */
+    static void setContent(IDiagramModel diagramModel, LazyDiagramContent content) {
+        diagramModel.setAdapter(LazyDiagramContent.class, content);
+        
+        IArchimateModel model = diagramModel.getArchimateModel();
+        if(model != null) {
+            Index index = (Index)model.getAdapter(Index.class);
+            if(index == null) {
+                index = new Index();
+                model.setAdapter(Index.class, index);
+            }
+            
+            for(String id : content.fReferencedIDs) {
+                Set<IDiagramModel> set = index.diagramModels.get(id);
+                if(set == null) {
+                    set = new LinkedHashSet<IDiagramModel>();
+                    index.diagramModels.put(id, set);
+                }
+                set.add(diagramModel);
+            }
+            
+            content.fIndex = index;
+        }
+    }
+    
+    /**
+     * @return true if the children could not be loaded from the kept XML. The kept XML is still saved.
+     */
+    public boolean isLoadFailed() {
+        return fLoadFailed;
+    }
+    
+    /**
+     * @return The IDs of the children
+     */
+    public Set<String> getIDs() {
+        return Collections.unmodifiableSet(fIDs);
+    }
+    
+    /**
+     * @return The IDs of the elements and relationships referenced by the children
+     */
+    public Set<String> getReferencedIDs() {
+        return Collections.unmodifiableSet(fReferencedIDs);
+    }
+    
+    /**
+     * @return ID of child -> ID of the element that it references, for the children that reference an element
+     */
+    public Map<String, String> getElementReferences() {
+        return Collections.unmodifiableMap(fElementReferences);
+    }
+    
+    /**
+     * @return ID of connection -> ID of the relationship that it references, for the connections that reference a relationship
+     */
+    public Map<String, String> getRelationshipReferences() {
+        return Collections.unmodifiableMap(fRelationshipReferences);
+    }
+    
+    /**
+     * @return The image paths of the children that have images
+     */
+    public Set<String> getImagePaths() {
+        return Collections.unmodifiableSet(fImagePaths);
+    }
+    
+    /**
+     * The kept XML of the children, to be written as it is when the diagram model is saved. The namespaces used in it
+     * are declared with the helper of the resource being saved.
+     * @param helper The XMLHelper of the resource being saved
+     * @return The XML of the children, or null if the children have been loaded or a namespace used in the kept XML
+     *         has a different prefix in the resource being saved
+     */
+    String getChildrenXML(XMLHelper helper) {
+        byte[] xml = fXML;
+        if(xml == null) {
+            return null;
+        }
+        
+        String document = new String(xml, StandardCharsets.UTF_8);
+        
+        // The document is the XML declaration, the diagram model's element with the namespace declarations and the children
+        int rootStart = document.indexOf("?>") + 2; //$NON-NLS-1$
+        int rootEnd = document.indexOf('>', rootStart);
+        int childrenEnd = document.lastIndexOf("</"); //$NON-NLS-1$
+        if(rootStart < 2 || rootEnd == -1 || childrenEnd < rootEnd) {
+            return null;
+        }
+        
+        ResourceSet resourceSet = helper.getResource() != null ? helper.getResource().getResourceSet() : null;
+        EPackage.Registry registry = resourceSet != null ? resourceSet.getPackageRegistry() : EPackage.Registry.INSTANCE;
+        
+        Matcher matcher = NAMESPACE.matcher(document.substring(rootStart, rootEnd));
+        while(matcher.find()) {
+            String prefix = matcher.group(1);
+            String nsURI = matcher.group(2);
+            
+            if(prefix == null) {
+                return null;
+            }
+            
+            // Declared by the resource for the xsi:type of the diagram model
+            if(XMLResource.XSI_URI.equals(nsURI)) {
+                if(!XMLResource.XSI_NS.equals(prefix)) {
+                    return null;
+                }
+                continue;
+            }
+            
+            // Getting the prefix of a package declares its namespace in the resource
+            EPackage ePackage = registry.getEPackage(nsURI);
+            if(ePackage == null || !prefix.equals(helper.getPrefix(ePackage))) {
+                return null;
+            }
+        }
+        
+        return document.substring(rootEnd + 1, childrenEnd);
+    }
+    
+    /**
+     * Load the children into diagramModel. This is called by the diagram model when its children are first asked for
+     * and after it has removed this content. If the children can't be loaded this content is set on the diagram model again.
+     * @param diagramModel The diagram model
+     */
+    public void load(IDiagramModel diagramModel) {
+        // Already loaded
+        if(fXML == null) {
+            return;
+        }
+        
+        // Don't try again
+        if(fLoadFailed) {
+            diagramModel.setAdapter(LazyDiagramContent.class, this);
+            return;
+        }
+        
+        removeFromIndex(diagramModel);
+        
+        boolean loaded = false;
+        
+        LOADING.set(LOADING.get() + 1);
+        try {
+            loaded = load(diagramModel, fXML);
+        }
+        finally {
+            LOADING.set(LOADING.get() - 1);
+            
+            if(loaded) {
+                fXML = null;
+            }
+            // Keep the XML with the diagram model so that it is saved
+            else {
+                fLoadFailed = true;
+                setContent(diagramModel, this);
+            }
+        }
+    }
+    
+    /**
+     * @return true if the children were loaded
+     */
+    private boolean load(IDiagramModel diagramModel, byte[] xml) {
+        IArchimateModel model = diagramModel.getArchimateModel();
+        final IDAdapter idAdapter = model != null ? (IDAdapter)model.getAdapter(IDAdapter.class) : null;
+        
+        // References to objects outside of the diagram model are found in the model first
+        ArchimateResource resource = new ArchimateResource(URI.createURI("lazy.xml")) { //$NON-NLS-1$
+            @Override
+            public EObject getEObject(String uriFragment) {
+                EObject eObject = idAdapter != null ? idAdapter.getObject(uriFragment, false) : null;
+                return eObject != null ? eObject : super.getEObject(uriFragment);
+            }
+        };
+        
+        resource.getDefaultLoadOptions().putAll(new ArchimateResourceFactory().createXMLResource(resource.getURI()).getDefaultLoadOptions());
+        
+        // Share the model's strings
+        if(model != null) {
+            resource.getDefaultLoadOptions().put(ArchimateResource.OPTION_STRING_POOL, StringPool.getStringPool(model));
+        }
+        
+        try {
+            resource.load(new ByteArrayInputStream(xml), null);
+        }
+        catch(IOException ex) {
+            Logger.logError("Could not load diagram model children", ex); //$NON-NLS-1$
+            return false;
+        }
+        
+        if(resource.getContents().isEmpty() || !(resource.getContents().get(0) instanceof IDiagramModel)) {
+            Logger.logError("Could not load diagram model children"); //$NON-NLS-1$
+            return false;
+        }
+        
+        // Referenced elements and relationships keep their references to the children as they are moved
+        IDiagramModel tmpDiagramModel = (IDiagramModel)resource.getContents().get(0);
+        List<IDiagramModelObject> children = new ArrayList<IDiagramModelObject>(tmpDiagramModel.getChildren());
+        diagramModel.getChildren().addAll(children);
+        
+        return true;
+    }
+    
+    private void removeFromIndex(IDiagramModel diagramModel) {
+        if(fIndex == null) {
+            return;
+        }
+        
+        for(String id : fReferencedIDs) {
+            Set<IDiagramModel> set = fIndex.diagramModels.get(id);
+            if(set != null) {
+                set.remove(diagramModel);
+                if(set.isEmpty()) {
+                    fIndex.diagramModels.remove(id);
+                }
+            }
+        }
+        
+        fIndex = null;
+    }
+}
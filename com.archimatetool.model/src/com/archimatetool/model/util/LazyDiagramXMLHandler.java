@@ -0,0 +1,263 @@
+/**
+ * This program and the accompanying materials
+ * are made available under the terms of the License
+ * which accompanies this distribution in the file LICENSE.txt
+ */
+package com.archimatetool.model.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.util.ExtendedMetaData;
+import org.eclipse.emf.ecore.xmi.XMLHelper;
+import org.eclipse.emf.ecore.xmi.XMLResource;
+import org.eclipse.emf.ecore.xmi.impl.SAXXMLHandler;
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+
+import com.archimatetool.model.IArchimatePackage;
+import com.archimatetool.model.IDiagramModel;
+
+
+/**
+ * SAX Handler that doesn't load the children of diagram models.
+ *
+ * The XML of the "child" elements of each diagram model is kept as it is read and the children are loaded from it
+ * when they are first needed.
+ *
+ * @see LazyDiagramContent
+ * @author Phillip Beauvoir
+ */
+class LazyDiagramXMLHandler extends SAXXMLHandler {
+    
+    private static final String CHILD_ELEMENT = ExtendedMetaData.INSTANCE.getName(IArchimatePackage.Literals.DIAGRAM_MODEL_CONTAINER__CHILDREN);
+    private static final String ID_ATTRIBUTE = ExtendedMetaData.INSTANCE.getName(IArchimatePackage.Literals.IDENTIFIER__ID);
+    private static final String ELEMENT_ATTRIBUTE = ExtendedMetaData.INSTANCE.getName(IArchimatePackage.Literals.DIAGRAM_MODEL_ARCHIMATE_OBJECT__ARCHIMATE_ELEMENT);
+    private static final String RELATIONSHIP_ATTRIBUTE = ExtendedMetaData.INSTANCE.getName(IArchimatePackage.Literals.DIAGRAM_MODEL_ARCHIMATE_CONNECTION__RELATIONSHIP);
+    private static final String IMAGE_PATH_ATTRIBUTE = ExtendedMetaData.INSTANCE.getName(IArchimatePackage.Literals.DIAGRAM_MODEL_IMAGE_PROVIDER__IMAGE_PATH);
+    
+    /**
+     * The XML kept for a diagram model
+     */
+    private static class Fragment {
+        StringBuilder xml = new StringBuilder();
+        Set<String> ids = new HashSet<String>();
+        Set<String> referencedIDs = new HashSet<String>();
+        Map<String, String> elementReferences = new LinkedHashMap<String, String>();
+        Map<String, String> relationshipReferences = new LinkedHashMap<String, String>();
+        Set<String> imagePaths = new HashSet<String>();
+    }
+    
+    /**
+     * Namespace URI -> prefix
+     */
+    private Map<String, String> fNamespaces = new LinkedHashMap<String, String>();
+    
+    private Map<IDiagramModel, Fragment> fFragments = new LinkedHashMap<IDiagramModel, Fragment>();
+    
+    /**
+     * The fragment being kept and the depth of elements in it
+     */
+    private Fragment fFragment;
+    private int fDepth;
+    
+    LazyDiagramXMLHandler(XMLResource xmlResource, XMLHelper helper, Map<?, ?> options) {
+        super(xmlResource, helper, options);
+    }
+    
+    @Override
+    public void reset() {
+        super.reset();
+        fNamespaces.clear();
+        fFragments.clear();
+        fFragment = null;
+        fDepth = 0;
+    }
+
+    @Override
+    public void startPrefixMapping(String prefix, String uri) {
+        fNamespaces.put(uri, prefix);
+        super.startPrefixMapping(prefix, uri);
+    }
+    
+    @Override
+    public void startElement(String uri, String localName, String name, Attributes attributes) throws SAXException {
+        if(fFragment == null) {
+            // Namespaces declared as attributes
+            for(int i = 0; i < attributes.getLength(); i++) {
+                String attName = attributes.getQName(i);
+                if(attName != null && attName.startsWith("xmlns:")) { //$NON-NLS-1$
+                    fNamespaces.put(attributes.getValue(i), attName.substring(6));
+                }
+            }
+            
+            // Start of a child of a diagram model
+            if(CHILD_ELEMENT.equals(getName(localName, name)) && !objects.isEmpty() && objects.peekEObject() instanceof IDiagramModel) {
+                IDiagramModel dm = (IDiagramModel)objects.peekEObject();
+                fFragment = fFragments.get(dm);
+                if(fFragment == null) {
+                    fFragment = new Fragment();
+                    fFragments.put(dm, fFragment);
+                }
+            }
+            else {
+                super.startElement(uri, localName, name, attributes);
+                return;
+            }
+        }
+        
+        fDepth++;
+        
+        StringBuilder xml = fFragment.xml;
+        xml.append('<').append(getName(localName, name));
+        
+        String id = null;
+        String elementID = null;
+        String relationshipID = null;
+        
+        for(int i = 0; i < attributes.getLength(); i++) {
+            String attName = getName(attributes.getLocalName(i), attributes.getQName(i));
+            String value = attributes.getValue(i);
+            
+            if(ID_ATTRIBUTE.equals(attName)) {
+                fFragment.ids.add(value);
+                id = value;
+            }
+            else if(ELEMENT_ATTRIBUTE.equals(attName)) {
+                fFragment.referencedIDs.add(value);
+                elementID = value;
+            }
+            else if(RELATIONSHIP_ATTRIBUTE.equals(attName)) {
+                fFragment.referencedIDs.add(value);
+                relationshipID = value;
+            }
+            else if(IMAGE_PATH_ATTRIBUTE.equals(attName)) {
+                fFragment.imagePaths.add(value);
+            }
+            
+            xml.append(' ').append(attName).append("=\""); //$NON-NLS-1$
+            escape(xml, value, true);
+            xml.append('"');
+        }
+        
+        xml.append('>');
+        
+        if(elementID != null) {
+            fFragment.elementReferences.put(id, elementID);
+        }
+        if(relationshipID != null) {
+            fFragment.relationshipReferences.put(id, relationshipID);
+        }
+    }
+    
+    @Override
+    public void endElement(String uri, String localName, String name) {
+        if(fFragment == null) {
+            super.endElement(uri, localName, name);
+            return;
+        }
+        
+        fFragment.xml.append("</").append(getName(localName, name)).append('>'); //$NON-NLS-1$
+        
+        if(--fDepth == 0) {
+            fFragment = null;
+        }
+    }
+    
+    @Override
+    public void characters(char[] ch, int start, int length) {
+        if(fFragment == null) {
+            super.characters(ch, start, length);
+            return;
+        }
+        
+        escape(fFragment.xml, new String(ch, start, length), false);
+    }
+    
+    @Override
+    public void endDocument() {
+        super.endDocument();
+        
+        for(Entry<IDiagramModel, Fragment> entry : fFragments.entrySet()) {
+            IDiagramModel dm = entry.getKey();
+            Fragment fragment = entry.getValue();
+            
+            byte[] bytes = createDocument(dm, fragment).getBytes(StandardCharsets.UTF_8);
+            LazyDiagramContent.setContent(dm, new LazyDiagramContent(bytes, fragment.ids, fragment.referencedIDs,
+                    fragment.elementReferences, fragment.relationshipReferences, fragment.imagePaths));
+        }
+        
+        fFragments.clear();
+    }
+    
+    /**
+     * @return A document with a diagram model as the root element and the kept children
+     */
+    private String createDocument(EObject dm, Fragment fragment) {
+        String prefix = fNamespaces.get(dm.eClass().getEPackage().getNsURI());
+        String name = ExtendedMetaData.INSTANCE.getName(dm.eClass());
+        if(prefix != null && prefix.length() > 0) {
+            name = prefix + ":" + name; //$NON-NLS-1$
+        }
+        
+        StringBuilder sb = new StringBuilder();
+        sb.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>"); //$NON-NLS-1$
+        sb.append('<').append(name);
+        
+        for(Entry<String, String> ns : fNamespaces.entrySet()) {
+            sb.append(' ').append(ns.getValue().length() > 0 ? "xmlns:" + ns.getValue() : "xmlns").append("=\""); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+            escape(sb, ns.getKey(), true);
+            sb.append('"');
+        }
+        
+        sb.append('>');
+        sb.append(fragment.xml);
+        sb.append("</").append(name).append('>'); //$NON-NLS-1$
+        
+        return sb.toString();
+    }
+    
+    private String getName(String localName, String qName) {
+        return qName != null && qName.length() > 0 ? qName : localName;
+    }
+    
+    /**
+     * Append text to sb, escaping characters for an attribute value or for element content
+     */
+    private void escape(StringBuilder sb, String text, boolean isAttribute) {
+        for(int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch(c) {
+                case '&':
+                    sb.append("&amp;"); //$NON-NLS-1$
+                    break;
+                case '<':
+                    sb.append("&lt;"); //$NON-NLS-1$
+                    break;
+                case '>':
+                    sb.append("&gt;"); //$NON-NLS-1$
+                    break;
+                case '"':
+                    sb.append(isAttribute ? "&quot;" : "\""); //$NON-NLS-1$ //$NON-NLS-2$
+                    break;
+                case '\r':
+                    sb.append("&#xD;"); //$NON-NLS-1$
+                    break;
+                case '\n':
+                    sb.append(isAttribute ? "&#xA;" : "\n"); //$NON-NLS-1$ //$NON-NLS-2$
+                    break;
+                case '\t':
+                    sb.append(isAttribute ? "&#x9;" : "\t"); //$NON-NLS-1$ //$NON-NLS-2$
+                    break;
+                default:
+                    sb.append(c);
+                    break;
+            }
+        }
+    }
+}
@@ -0,0 +1,434 @@
+/**
+ * This program and the accompanying materials
+ * are made available under the terms of the License
+ * which accompanies this distribution in the file LICENSE.txt
+ */
+package com.archimatetool.model.util;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.eclipse.emf.ecore.EClass;
+import org.eclipse.emf.ecore.EClassifier;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.EPackage;
+import org.eclipse.emf.ecore.EReference;
+import org.eclipse.emf.ecore.EcorePackage;
+
+import com.archimatetool.model.IArchimateModel;
+import com.archimatetool.model.IArchimatePackage;
+import com.archimatetool.model.IDiagramModel;
+import com.archimatetool.model.IFolder;
+
+
+/**
+ * Walks the contents of a model, or of any object in it, and gives the objects of some types to a visitor.<p>
+ *
+ * Objects are visited in the same order as {@link EObject#eAllContents()} but a containment reference is only followed if it can hold
+ * an object of one of the types, directly or further down. This is worked out once for each reference from the classes in the EMF packages
+ * that are loaded. So the bounds, bendpoints and properties of diagram objects are not walked when only diagram models are wanted, and
+ * diagram models are not walked at all when only elements and relationships are wanted.<p>
+ *
+ * The contents of a diagram model that has not been loaded yet (see {@link LazyDiagramContent}) are loaded when they are walked,
+ * as they are by eAllContents(), unless the walker is made not to load them in which case they are not walked.<p>
+ *
+ * The model must not be changed by the visitor. A ModelWalker can be kept and used again, from more than one thread.
+ *
+ * @author Phillip Beauvoir
+ */
+public class ModelWalker {
+    
+    /**
+     * Visitor of the objects found by a ModelWalker
+     */
+    public interface IVisitor {
+        
+        /**
+         * @param eObject An object that is an instance of one of the walker's types
+         * @return true to carry on walking, false to stop
+         */
+        boolean visit(EObject eObject);
+    }
+    
+    /**
+     * What is known about the classes in a set of packages
+     */
+    private static class State {
+        Set<EPackage> packages;
+        
+        /**
+         * Classes that are instances of one of the types
+         */
+        Set<EClass> types = new HashSet<EClass>();
+        
+        /**
+         * Classes that can contain an instance of one of the types
+         */
+        Set<EClass> containers = new HashSet<EClass>();
+        
+        /**
+         * Containment references that can hold an instance of one of the types, directly or further down
+         */
+        Set<EReference> references = new HashSet<EReference>();
+        
+        State(Set<EPackage> packages) {
+            this.packages = packages;
+        }
+    }
+    
+    private EClass[] fTypes;
+    private boolean fLoadDiagramModels;
+    
+    private volatile State fState;
+    
+    /**
+     * @param types The types of object to visit. Sub-classes of these types are included.
+     */
+    public ModelWalker(EClass... types) {
+        this(true, types);
+    }
+    
+    /**
+     * @param loadDiagramModels If true the contents of diagram models that have not been loaded yet are loaded and walked,
+     *        if false they are not walked
+     * @param types The types of object to visit. Sub-classes of these types are included.
+     */
+    public ModelWalker(boolean loadDiagramModels, EClass... types) {
+        fTypes = types;
+        fLoadDiagramModels = loadDiagramModels;
+    }
+    
+    /**
+     * Walk the contents of an object. The object itself is not visited.
+     * @param eObject The object
+     * @param visitor The visitor
+     * @return true if all the objects were visited, false if the visitor stopped the walk
+     */
+    public boolean walk(EObject eObject, IVisitor visitor) {
+        return walkContents(eObject, visitor, null);
+    }
+    
+    /**
+     * @param reference A containment reference
+     * @return true if reference is walked because it can hold an object of one of the types, directly or further down
+     */
+    boolean isWalked(EReference reference) {
+        return getState(reference.getEContainingClass()).references.contains(reference);
+    }
+    
+    /**
+     * Walk the contents of a model in the common ForkJoinPool
+     * @see #walkParallel(IArchimateModel, IVisitor, ForkJoinPool)
+     */
+    public boolean walkParallel(IArchimateModel model, IVisitor visitor) {
+        return walkParallel(model, visitor, ForkJoinPool.commonPool());
+    }
+    
+    /**
+     * Walk the contents of a model, with the objects in each folder and each diagram model walked as a separate task in a ForkJoinPool.
+     * The folders are walked and any diagram models that have to be loaded are loaded on the calling thread,
+     * which waits until all the tasks have finished.<p>
+     *
+     * Objects are visited on more than one thread and not in any order, so the visitor has to be thread safe.
+     * If the visitor stops the walk, objects that are being visited on other threads at the time are still visited.
+     * @param model The model
+     * @param visitor The visitor
+     * @param pool The pool to run the tasks in
+     * @return true if all the objects were visited, false if the visitor stopped the walk
+     */
+    public boolean walkParallel(IArchimateModel model, IVisitor visitor, ForkJoinPool pool) {
+        AtomicBoolean stopped = new AtomicBoolean();
+        List<Callable<Boolean>> tasks = new ArrayList<Callable<Boolean>>();
+        
+        State state = getState(model.eClass());
+        
+        for(EReference reference : model.eClass().getEAllContainments()) {
+            if(!state.references.contains(reference)) {
+                continue;
+            }
+            if(reference == IArchimatePackage.Literals.FOLDER_CONTAINER__FOLDERS) {
+                for(IFolder folder : model.getFolders()) {
+                    if(!addTasks(folder, visitor, stopped, tasks)) {
+                        return false;
+                    }
+                }
+            }
+            // Anything else in the model, such as its properties
+            else if(!walkReference(model, reference, visitor, stopped)) {
+                return false;
+            }
+        }
+        
+        if(tasks.size() == 1 || pool.getParallelism() == 1) {
+            for(Callable<Boolean> task : tasks) {
+                try {
+                    if(!task.call()) {
+                        return false;
+                    }
+                }
+                catch(Exception ex) {
+                    throw new RuntimeException(ex);
+                }
+            }
+        }
+        else {
+            for(Future<Boolean> future : pool.invokeAll(tasks)) {
+                try {
+                    future.get();
+                }
+                catch(InterruptedException ex) {
+                    throw new RuntimeException(ex);
+                }
+                catch(ExecutionException ex) {
+                    throw new RuntimeException(ex.getCause());
+                }
+            }
+        }
+        
+        return !stopped.get();
+    }
+    
+    /**
+     * Visit a folder and add a task to walk the objects in it that are not diagram models, and a task to walk each diagram model in it.
+     * Then do the same for its sub-folders.
+     */
+    private boolean addTasks(final IFolder folder, final IVisitor visitor, final AtomicBoolean stopped, List<Callable<Boolean>> tasks) {
+        State state = getState(folder.eClass());
+        
+        if(state.types.contains(folder.eClass()) && !visitor.visit(folder)) {
+            return false;
+        }
+        
+        for(EReference reference : folder.eClass().getEAllContainments()) {
+            if(!state.references.contains(reference)) {
+                continue;
+            }
+            
+            if(reference == IArchimatePackage.Literals.FOLDER_CONTAINER__FOLDERS) {
+                for(IFolder child : folder.getFolders()) {
+                    if(!addTasks(child, visitor, stopped, tasks)) {
+                        return false;
+                    }
+                }
+            }
+            else if(reference == IArchimatePackage.Literals.FOLDER__ELEMENTS) {
+                final List<EObject> elements = new ArrayList<EObject>();
+                
+                for(EObject eObject : folder.getElements()) {
+                    if(!(eObject instanceof IDiagramModel)) {
+                        elements.add(eObject);
+                        continue;
+                    }
+                    
+                    final IDiagramModel dm = (IDiagramModel)eObject;
+                    
+                    // Load it here as loading changes the model
+                    if(fLoadDiagramModels && !LazyDiagramContent.isLoaded(dm) && getState(dm.eClass()).containers.contains(dm.eClass())) {
+                        dm.getChildren();
+                    }
+                    
+                    tasks.add(new Callable<Boolean>() {
+                        public Boolean call() {
+                            return walkObject(dm, visitor, stopped);
+                        }
+                    });
+                }
+                
+                if(!elements.isEmpty()) {
+                    tasks.add(new Callable<Boolean>() {
+                        public Boolean call() {
+                            for(EObject eObject : elements) {
+                                if(!walkObject(eObject, visitor, stopped)) {
+                                    return false;
+                                }
+                            }
+                            return true;
+                        }
+                    });
+                }
+            }
+            // Anything else in the folder, such as its properties
+            else if(!walkReference(folder, reference, visitor, stopped)) {
+                return false;
+            }
+        }
+        
+        return true;
+    }
+    
+    /**
+     * Visit an object if it is one of the types and walk its contents
+     */
+    private boolean walkObject(EObject eObject, IVisitor visitor, AtomicBoolean stopped) {
+        if(stopped != null && stopped.get()) {
+            return false;
+        }
+        
+        if(getState(eObject.eClass()).types.contains(eObject.eClass()) && !visitor.visit(eObject)) {
+            if(stopped != null) {
+                stopped.set(true);
+            }
+            return false;
+        }
+        
+        return walkContents(eObject, visitor, stopped);
+    }
+    
+    private boolean walkContents(EObject eObject, IVisitor visitor, AtomicBoolean stopped) {
+        if(!fLoadDiagramModels && eObject instanceof IDiagramModel && !LazyDiagramContent.isLoaded((IDiagramModel)eObject)) {
+            return true;
+        }
+        
+        State state = getState(eObject.eClass());
+        
+        for(EReference reference : eObject.eClass().getEAllContainments()) {
+            if(state.references.contains(reference) && !walkReference(eObject, reference, visitor, stopped)) {
+                return false;
+            }
+        }
+        
+        return true;
+    }
+    
+    @SuppressWarnings("unchecked")
+    private boolean walkReference(EObject eObject, EReference reference, IVisitor visitor, AtomicBoolean stopped) {
+        Object value = eObject.eGet(reference);
+        
+        if(reference.isMany()) {
+            for(EObject child : (List<EObject>)value) {
+                if(!walkObject(child, visitor, stopped)) {
+                    return false;
+                }
+            }
+        }
+        else if(value != null) {
+            return walkObject((EObject)value, visitor, stopped);
+        }
+        
+        return true;
+    }
+    
+    /**
+     * @return The State for the packages loaded so far and the package of eClass
+     */
+    private State getState(EClass eClass) {
+        State state = fState;
+        
+        if(state == null || !state.packages.contains(eClass.getEPackage())) {
+            synchronized(this) {
+                state = fState;
+                if(state == null || !state.packages.contains(eClass.getEPackage())) {
+                    Set<EPackage> packages = state == null ? getLoadedPackages() : new HashSet<EPackage>(state.packages);
+                    packages.add(eClass.getEPackage());
+                    state = createState(packages);
+                    fState = state;
+                }
+            }
+        }
+        
+        return state;
+    }
+    
+    /**
+     * @return The packages that have been loaded, the Archimate package and the packages of the types
+     */
+    private Set<EPackage> getLoadedPackages() {
+        Set<EPackage> packages = new HashSet<EPackage>();
+        
+        packages.add(IArchimatePackage.eINSTANCE);
+        
+        for(EClass type : fTypes) {
+            packages.add(type.getEPackage());
+        }
+        
+        // Packages that have not been loaded yet are registered as descriptors. There can't be any instances of their classes.
+        for(Object value : new ArrayList<Object>(EPackage.Registry.INSTANCE.values())) {
+            if(value instanceof EPackage) {
+                packages.add((EPackage)value);
+            }
+        }
+        
+        return packages;
+    }
+    
+    private State createState(Set<EPackage> packages) {
+        State state = new State(packages);
+        
+        // The classes that objects can be instances of
+        List<EClass> classes = new ArrayList<EClass>();
+        for(EPackage ePackage : packages) {
+            for(EClassifier eClassifier : ePackage.getEClassifiers()) {
+                if(eClassifier instanceof EClass && !((EClass)eClassifier).isAbstract() && !((EClass)eClassifier).isInterface()) {
+                    classes.add((EClass)eClassifier);
+                }
+            }
+        }
+        
+        for(EClass eClass : classes) {
+            for(EClass type : fTypes) {
+                if(isSuperTypeOf(type, eClass)) {
+                    state.types.add(eClass);
+                    break;
+                }
+            }
+        }
+        
+        // A class is a container if it has a reference that can hold a type or a container.
+        // Go round until no more are found, since classes can contain each other.
+        boolean changed = true;
+        while(changed) {
+            changed = false;
+            for(EClass eClass : classes) {
+                if(state.containers.contains(eClass)) {
+                    continue;
+                }
+                for(EReference reference : eClass.getEAllContainments()) {
+                    if(canHold(reference, classes, state)) {
+                        state.containers.add(eClass);
+                        changed = true;
+                        break;
+                    }
+                }
+            }
+        }
+        
+        for(EClass eClass : classes) {
+            for(EReference reference : eClass.getEAllContainments()) {
+                if(!state.references.contains(reference) && canHold(reference, classes, state)) {
+                    state.references.add(reference);
+                }
+            }
+        }
+        
+        return state;
+    }
+    
+    /**
+     * @return true if reference can hold an instance of a class that is one of the types or a container of them
+     */
+    private boolean canHold(EReference reference, List<EClass> classes, State state) {
+        EClass referenceType = reference.getEReferenceType();
+        
+        for(EClass eClass : classes) {
+            if((state.types.contains(eClass) || state.containers.contains(eClass)) && isSuperTypeOf(referenceType, eClass)) {
+                return true;
+            }
+        }
+        
+        return false;
+    }
+    
+    /**
+     * EObject is not a super type of generated classes as far as EClass#isSuperTypeOf() is concerned
+     */
+    private static boolean isSuperTypeOf(EClass superType, EClass eClass) {
+        return superType == EcorePackage.Literals.EOBJECT || superType.isSuperTypeOf(eClass);
+    }
+}
@@ -0,0 +1,531 @@
+/**
+ * This program and the accompanying materials
+ * are made available under the terms of the License
+ * which accompanies this distribution in the file LICENSE.txt
+ */
+package com.archimatetool.model.util;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.emf.common.notify.Adapter;
+import org.eclipse.emf.common.notify.Notification;
+import org.eclipse.emf.common.notify.Notifier;
+import org.eclipse.emf.common.notify.impl.AdapterImpl;
+import org.eclipse.emf.common.util.EList;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.EReference;
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.emf.ecore.util.EContentAdapter;
+
+import com.archimatetool.model.FolderType;
+import com.archimatetool.model.IArchimateElement;
+import com.archimatetool.model.IArchimateModel;
+import com.archimatetool.model.IArchimatePackage;
+import com.archimatetool.model.IFolder;
+import com.archimatetool.model.IRelationship;
+
+
+/**
+ * Adapter to maintain an index of the source and target relationships of each Archimate element in an Archimate model.
+ *
+ * The index is kept up to date as relationships (or folders containing relationships) are added to and removed from the model,
+ * and as the source or target of a relationship in the model is changed.
+ * This means that looking up the relationships of an element costs the number of relationships connected to it rather
+ * than a walk of all the relationships in the model.
+ *
+ * Relationships are returned in the order of the model's Relations and Derived Relations folders, as a walk of those folders
+ * would return them. A relationship that is added or moved is inserted at its place in the lists of its source and target.
+ * While a resource is loading, and when a folder or many relationships are added or a folder is moved, the affected lists
+ * are sorted once with a single walk of the folders when loading or the change has finished.
+ *
+ * Looking up relationships doesn't change the index, so lookups can be made from more than one thread at a time as long
+ * as the model isn't changed at the same time.
+ *
+ * The entries of an element are removed when its last relationship is removed or when the element is removed from the model.
+ * Relationships still in the model that reference a removed element are kept aside and indexed again if the element is
+ * added back (undo).
+ *
+ * This adapter is registered with the model as an IAdapter under its own class key.
+ *
+ * @author Phillip Beauvoir
+ */
+public class RelationshipsAdapter extends EContentAdapter {
+
+    /**
+     * Map of element -> relationships that have the element as source
+     */
+    private Map<IArchimateElement, List<IRelationship>> fSourceRelationships = new HashMap<IArchimateElement, List<IRelationship>>();
+
+    /**
+     * Map of element -> relationships that have the element as target
+     */
+    private Map<IArchimateElement, List<IRelationship>> fTargetRelationships = new HashMap<IArchimateElement, List<IRelationship>>();
+
+    /**
+     * Lists that might not be in folder order any more. These are sorted when loading or the current change has finished.
+     */
+    private Set<List<IRelationship>> fUnsortedLists = Collections.newSetFromMap(new IdentityHashMap<List<IRelationship>, Boolean>());
+
+    /**
+     * Relationships in the model whose source or target element has been removed from the model
+     */
+    private Set<IRelationship> fDanglingRelationships = new HashSet<IRelationship>();
+
+    /**
+     * The model
+     */
+    private IArchimateModel fModel;
+
+    /**
+     * If true relationships are added to the end of the lists, which are then sorted later
+     */
+    private boolean fAppendEntries;
+
+    /**
+     * Sorts the lists when the resource that the model is loaded from has finished loading
+     */
+    private Adapter fLoadListener = new AdapterImpl() {
+        @Override
+        public void notifyChanged(Notification msg) {
+            if(msg.getFeatureID(Resource.class) == Resource.RESOURCE__IS_LOADED) {
+                ((Notifier)msg.getNotifier()).eAdapters().remove(this);
+                sortUnsortedLists();
+            }
+        }
+    };
+
+    @Override
+    public void setTarget(Notifier target) {
+        // Children are set as targets as well so keep the model
+        if(target instanceof IArchimateModel) {
+            fModel = (IArchimateModel)target;
+        }
+        super.setTarget(target);
+    }
+
+    @Override
+    protected boolean resolve() {
+        // Don't load the children of diagram models that have not been loaded yet
+        return false;
+    }
+
+    @Override
+    public void notifyChanged(Notification msg) {
+        super.notifyChanged(msg);
+
+        if(msg.isTouch()) {
+            return;
+        }
+
+        boolean loading = isLoading(msg);
+        fAppendEntries = loading || isBulkChange(msg);
+
+        try {
+            indexChange(msg);
+        }
+        finally {
+            fAppendEntries = false;
+        }
+
+        if(!loading && !fUnsortedLists.isEmpty()) {
+            sortUnsortedLists();
+        }
+    }
+
+    private void indexChange(Notification msg) {
+        Object feature = msg.getFeature();
+
+        // Source or target of a relationship in the model was set
+        if(feature == IArchimatePackage.Literals.RELATIONSHIP__SOURCE) {
+            IRelationship relationship = (IRelationship)msg.getNotifier();
+            removeEntry(fSourceRelationships, (IArchimateElement)msg.getOldValue(), relationship);
+            addEntry(fSourceRelationships, (IArchimateElement)msg.getNewValue(), relationship);
+        }
+        else if(feature == IArchimatePackage.Literals.RELATIONSHIP__TARGET) {
+            IRelationship relationship = (IRelationship)msg.getNotifier();
+            removeEntry(fTargetRelationships, (IArchimateElement)msg.getOldValue(), relationship);
+            addEntry(fTargetRelationships, (IArchimateElement)msg.getNewValue(), relationship);
+        }
+
+        // Containment change
+        else if(feature instanceof EReference && ((EReference)feature).isContainment()) {
+            switch(msg.getEventType()) {
+                case Notification.ADD:
+                    added(msg.getNewValue());
+                    break;
+
+                case Notification.ADD_MANY:
+                    for(Object o : (Collection<?>)msg.getNewValue()) {
+                        added(o);
+                    }
+                    break;
+
+                case Notification.REMOVE:
+                    removed(msg.getOldValue());
+                    break;
+
+                case Notification.REMOVE_MANY:
+                    for(Object o : (Collection<?>)msg.getOldValue()) {
+                        removed(o);
+                    }
+                    break;
+
+                case Notification.SET:
+                case Notification.UNSET:
+                    removed(msg.getOldValue());
+                    added(msg.getNewValue());
+                    break;
+
+                case Notification.MOVE:
+                    moved(msg.getNewValue());
+                    break;
+
+                default:
+                    break;
+            }
+        }
+    }
+
+    /**
+     * @param element The Archimate element
+     * @return The relationships that have element as their source. This list should not be modified.
+     */
+    public List<IRelationship> getSourceRelationships(IArchimateElement element) {
+        return getRelationships(fSourceRelationships, element);
+    }
+
+    /**
+     * @param element The Archimate element
+     * @return The relationships that have element as their target. This list should not be modified.
+     */
+    public List<IRelationship> getTargetRelationships(IArchimateElement element) {
+        return getRelationships(fTargetRelationships, element);
+    }
+
+    /**
+     * @return true if the element has source or target relationship entries. For tests.
+     */
+    boolean hasEntries(IArchimateElement element) {
+        return fSourceRelationships.containsKey(element) || fTargetRelationships.containsKey(element);
+    }
+
+    private List<IRelationship> getRelationships(Map<IArchimateElement, List<IRelationship>> map, IArchimateElement element) {
+        List<IRelationship> list = map.get(element);
+        return list == null ? Collections.<IRelationship>emptyList() : Collections.unmodifiableList(list);
+    }
+
+    /**
+     * @return true if the notifier belongs to a resource that is loading. If so the lists are sorted when it has finished.
+     */
+    private boolean isLoading(Notification msg) {
+        if(msg.getNotifier() instanceof EObject) {
+            Resource resource = ((EObject)msg.getNotifier()).eResource();
+            if(resource instanceof Resource.Internal && ((Resource.Internal)resource).isLoading()) {
+                if(!resource.eAdapters().contains(fLoadListener)) {
+                    resource.eAdapters().add(fLoadListener);
+                }
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return true if the change adds many objects or a folder, or moves a folder.
+     * Then it's cheaper to sort the affected lists with one walk of the folders than to insert each relationship in its place.
+     */
+    private boolean isBulkChange(Notification msg) {
+        switch(msg.getEventType()) {
+            case Notification.ADD_MANY:
+                return true;
+
+            case Notification.ADD:
+            case Notification.SET:
+            case Notification.MOVE:
+                return msg.getNewValue() instanceof IFolder;
+
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Sort all the lists that might be out of order with one walk of the relations folders
+     */
+    private void sortUnsortedLists() {
+        final Map<IRelationship, Integer> order = new HashMap<IRelationship, Integer>();
+
+        if(fModel != null) {
+            addFolderOrder(fModel.getFolder(FolderType.RELATIONS), order);
+            addFolderOrder(fModel.getFolder(FolderType.DERIVED), order);
+        }
+
+        Comparator<IRelationship> comparator = new Comparator<IRelationship>() {
+            @Override
+            public int compare(IRelationship r1, IRelationship r2) {
+                return Integer.compare(getPosition(r1), getPosition(r2));
+            }
+
+            private int getPosition(IRelationship relationship) {
+                Integer position = order.get(relationship);
+                return position != null ? position : Integer.MAX_VALUE;
+            }
+        };
+
+        for(List<IRelationship> list : fUnsortedLists) {
+            Collections.sort(list, comparator);
+        }
+
+        fUnsortedLists.clear();
+    }
+
+    /**
+     * Number the relationships in folder in the order that a walk of the folder returns them
+     */
+    private void addFolderOrder(IFolder folder, Map<IRelationship, Integer> order) {
+        if(folder == null) {
+            return;
+        }
+
+        for(EObject object : folder.getElements()) {
+            if(object instanceof IRelationship) {
+                order.put((IRelationship)object, order.size());
+            }
+        }
+
+        for(IFolder child : folder.getFolders()) {
+            addFolderOrder(child, order);
+        }
+    }
+
+    /**
+     * An object was added to the model. If it's a relationship index it, if it's a folder index its relationships.
+     */
+    private void added(Object object) {
+        if(object instanceof IRelationship) {
+            IRelationship relationship = (IRelationship)object;
+            addEntry(fSourceRelationships, relationship.getSource(), relationship);
+            addEntry(fTargetRelationships, relationship.getTarget(), relationship);
+        }
+        else if(object instanceof IArchimateElement) {
+            if(!fDanglingRelationships.isEmpty()) {
+                elementAddedBack((IArchimateElement)object);
+            }
+        }
+        else if(object instanceof IFolder) {
+            IFolder folder = (IFolder)object;
+            for(EObject child : folder.getElements()) {
+                added(child);
+            }
+            for(IFolder child : folder.getFolders()) {
+                added(child);
+            }
+        }
+    }
+
+    /**
+     * An object was removed from the model. If it's a relationship remove it, if it's a folder remove its relationships.
+     */
+    private void removed(Object object) {
+        if(object instanceof IRelationship) {
+            IRelationship relationship = (IRelationship)object;
+            removeEntry(fSourceRelationships, relationship.getSource(), relationship);
+            removeEntry(fTargetRelationships, relationship.getTarget(), relationship);
+            fDanglingRelationships.remove(relationship);
+        }
+        else if(object instanceof IArchimateElement) {
+            IArchimateElement element = (IArchimateElement)object;
+            removeEntries(fSourceRelationships, element);
+            removeEntries(fTargetRelationships, element);
+        }
+        else if(object instanceof IFolder) {
+            IFolder folder = (IFolder)object;
+            for(EObject child : folder.getElements()) {
+                removed(child);
+            }
+            for(IFolder child : folder.getFolders()) {
+                removed(child);
+            }
+        }
+    }
+
+    /**
+     * An object was moved in its folder. If it's a relationship or a folder of relationships the order has changed.
+     */
+    private void moved(Object object) {
+        if(object instanceof IRelationship) {
+            IRelationship relationship = (IRelationship)object;
+            if(fAppendEntries) {
+                orderChanged(fSourceRelationships.get(relationship.getSource()));
+                orderChanged(fTargetRelationships.get(relationship.getTarget()));
+            }
+            else {
+                removeEntry(fSourceRelationships, relationship.getSource(), relationship);
+                addEntry(fSourceRelationships, relationship.getSource(), relationship);
+                removeEntry(fTargetRelationships, relationship.getTarget(), relationship);
+                addEntry(fTargetRelationships, relationship.getTarget(), relationship);
+            }
+        }
+        else if(object instanceof IFolder) {
+            IFolder folder = (IFolder)object;
+            for(EObject child : folder.getElements()) {
+                moved(child);
+            }
+            for(IFolder child : folder.getFolders()) {
+                moved(child);
+            }
+        }
+    }
+
+    private void orderChanged(List<IRelationship> list) {
+        if(list != null && list.size() > 1) {
+            fUnsortedLists.add(list);
+        }
+    }
+
+    private void addEntry(Map<IArchimateElement, List<IRelationship>> map, IArchimateElement element, IRelationship relationship) {
+        if(element == null) {
+            return;
+        }
+
+        List<IRelationship> list = map.get(element);
+        if(list == null) {
+            list = new ArrayList<IRelationship>(2);
+            map.put(element, list);
+        }
+
+        if(list.contains(relationship)) {
+            return;
+        }
+
+        if(fAppendEntries) {
+            list.add(relationship);
+            orderChanged(list);
+        }
+        else {
+            // Most relationships go after the others of the element so start from the end
+            int index = list.size();
+            while(index > 0 && compareOrder(list.get(index - 1), relationship) > 0) {
+                index--;
+            }
+            list.add(index, relationship);
+        }
+    }
+
+    /**
+     * Compare the positions of two relationships in a walk of the relations folders without walking the folders
+     */
+    private int compareOrder(IRelationship r1, IRelationship r2) {
+        EObject container1 = r1.eContainer();
+        EObject container2 = r2.eContainer();
+
+        if(!(container1 instanceof IFolder) || !(container2 instanceof IFolder)) {
+            return Boolean.compare(!(container1 instanceof IFolder), !(container2 instanceof IFolder));
+        }
+
+        // In the same folder. The relationship being added is usually the last one so check that before looking up indexes.
+        if(container1 == container2) {
+            EList<EObject> elements = ((IFolder)container1).getElements();
+            EObject last = elements.isEmpty() ? null : elements.get(elements.size() - 1);
+            if(last == r2) {
+                return -1;
+            }
+            if(last == r1) {
+                return 1;
+            }
+            return Integer.compare(elements.indexOf(r1), elements.indexOf(r2));
+        }
+
+        int[] path1 = getFolderPath((IFolder)container1);
+        int[] path2 = getFolderPath((IFolder)container2);
+
+        for(int i = 0; i < path1.length && i < path2.length; i++) {
+            if(path1[i] != path2[i]) {
+                return Integer.compare(path1[i], path2[i]);
+            }
+        }
+
+        // The elements of a folder come before the elements of its sub-folders
+        return Integer.compare(path1.length, path2.length);
+    }
+
+    /**
+     * @return The position of each folder from the top folder down to folder. The top folders are ordered Relations, Derived Relations, others.
+     */
+    private int[] getFolderPath(IFolder folder) {
+        List<Integer> positions = new ArrayList<Integer>();
+
+        EObject object = folder;
+        while(object.eContainer() instanceof IFolder) {
+            IFolder parent = (IFolder)object.eContainer();
+            positions.add(parent.getFolders().indexOf(object));
+            object = parent;
+        }
+
+        FolderType type = ((IFolder)object).getType();
+        positions.add(type == FolderType.RELATIONS ? 0 : type == FolderType.DERIVED ? 1 : 2);
+
+        int[] path = new int[positions.size()];
+        for(int i = 0; i < path.length; i++) {
+            path[i] = positions.get(path.length - 1 - i);
+        }
+
+        return path;
+    }
+
+    private void removeEntry(Map<IArchimateElement, List<IRelationship>> map, IArchimateElement element, IRelationship relationship) {
+        if(element == null) {
+            return;
+        }
+
+        List<IRelationship> list = map.get(element);
+        if(list != null) {
+            list.remove(relationship);
+            if(list.isEmpty()) {
+                map.remove(element);
+                fUnsortedLists.remove(list);
+            }
+        }
+    }
+
+    /**
+     * The element was removed from the model. Remove its entries and keep aside its relationships that are still in the model.
+     */
+    private void removeEntries(Map<IArchimateElement, List<IRelationship>> map, IArchimateElement element) {
+        List<IRelationship> list = map.remove(element);
+        if(list != null) {
+            fUnsortedLists.remove(list);
+            fDanglingRelationships.addAll(list);
+        }
+    }
+
+    /**
+     * The element was added back to the model. Index again the relationships in the model that reference it.
+     */
+    private void elementAddedBack(IArchimateElement element) {
+        for(IRelationship relationship : new ArrayList<IRelationship>(fDanglingRelationships)) {
+            if(relationship.getSource() == element) {
+                addEntry(fSourceRelationships, element, relationship);
+            }
+            if(relationship.getTarget() == element) {
+                addEntry(fTargetRelationships, element, relationship);
+            }
+            if(isInModel(relationship.getSource()) && isInModel(relationship.getTarget())) {
+                fDanglingRelationships.remove(relationship);
+            }
+        }
+    }
+
+    private boolean isInModel(IArchimateElement element) {
+        return element == null || element.getArchimateModel() != null;
+    }
+}
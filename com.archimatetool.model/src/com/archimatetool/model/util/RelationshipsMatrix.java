@@ -7,14 +7,17 @@ package com.archimatetool.model.util;
 
 import java.net.URL;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
 
 import org.eclipse.core.runtime.Platform;
 import org.eclipse.emf.ecore.EClass;
+import org.eclipse.emf.ecore.EClassifier;
 import org.jdom2.Document;
 import org.jdom2.Element;
 import org.jdom2.input.SAXBuilder;
@@ -92,6 +95,43 @@ public class RelationshipsMatrix {
      * Mapping of relationships to key letters
      */
     private Map<EClass, Character> relationsValueMap = new LinkedHashMap<EClass, Character>();
+    
+    /*
+     * The matrix compiled into tables indexed by EClass classifier ID for fast look up.
+     * Each relationship class is assigned a bit in a bitmask in preferred order.
+     */
+    
+    /**
+     * Relationship bit index for each classifier ID, or -1 if the classifier is not a relationship
+     */
+    private int[] relationshipBits;
+    
+    /**
+     * Classifier ID of the actual super EClass for each classifier ID
+     */
+    private int[] superClassIDs;
+    
+    /**
+     * Bitmask of valid relationships for [source classifier ID][target classifier ID]
+     */
+    private int[][] validRelationshipsTable;
+    
+    /**
+     * Bitmask of valid relationships for a source classifier ID and any target
+     */
+    private int[] validStartTable;
+    
+    /**
+     * Cached valid relationship classes in preferred order for [source classifier ID][target classifier ID]
+     */
+    private EClass[][][] validRelationshipsCache;
+    
+    /**
+     * Cached valid target classes for [source classifier ID][relationship bit]
+     */
+    private EClass[][][] validTargetsCache;
+    
+    private static final EClass[] EMPTY_ECLASSES = new EClass[0];
 
     private RelationshipsMatrix() {
         // Load Key letters file
@@ -99,6 +139,9 @@ public class RelationshipsMatrix {
         
         // Load Relationships file
         loadRelationships();
+        
+        // Compile the tables
+        compile();
     }
     
     public Map<EClass, List<TargetMatrix>> getRelationshipsMatrix() {
@@ -110,42 +153,168 @@ public class RelationshipsMatrix {
     }
 
     boolean isValidRelationshipStart(IArchimateElement sourceElement, EClass relationshipType) {
-        EClass sourceType = getSuperEClass(sourceElement.eClass());
+        int sourceID = getSuperClassID(sourceElement.eClass());
+        int bit = getRelationshipBit(relationshipType);
         
-        List<TargetMatrix> listMatrix = matrixMap.get(sourceType);
-        if(listMatrix != null) {
-            for(TargetMatrix targetMatrix : listMatrix) {
-                if(targetMatrix.getRelationships().contains(relationshipType)) {
-                    return true;
-                }
-            }
+        if(sourceID == -1 || bit == -1) {
+            return false;
         }
         
-        return false;
+        return (validStartTable[sourceID] & (1 << bit)) != 0;
     }
     
     boolean isValidRelationship(EClass sourceType, EClass targetType, EClass relationshipType) {
-        if(relationshipType == null) {
+        int sourceID = getSuperClassID(sourceType);
+        int targetID = getSuperClassID(targetType);
+        int bit = getRelationshipBit(relationshipType);
+        
+        if(sourceID == -1 || targetID == -1 || bit == -1) {
             return false;
         }
         
-        if(!IArchimatePackage.eINSTANCE.getRelationship().isSuperTypeOf(relationshipType)) {
-            return false;
+        return (validRelationshipsTable[sourceID][targetID] & (1 << bit)) != 0;
+    }
+    
+    /**
+     * @param sourceType The source type
+     * @param targetType The target type
+     * @return All valid relationship types between sourceType and targetType in preferred order
+     */
+    EClass[] getValidRelationships(EClass sourceType, EClass targetType) {
+        int sourceID = getSuperClassID(sourceType);
+        int targetID = getSuperClassID(targetType);
+        
+        if(sourceID == -1 || targetID == -1) {
+            return EMPTY_ECLASSES;
         }
         
-        sourceType = getSuperEClass(sourceType);
-        targetType = getSuperEClass(targetType);
+        return validRelationshipsCache[sourceID][targetID].clone();
+    }
+    
+    /**
+     * @param sourceType The source type
+     * @param relationshipType The relationship type
+     * @return All target types that relationshipType is valid for with sourceType as the source
+     */
+    EClass[] getValidTargets(EClass sourceType, EClass relationshipType) {
+        int sourceID = getSuperClassID(sourceType);
+        int bit = getRelationshipBit(relationshipType);
+        
+        if(sourceID == -1 || bit == -1) {
+            return EMPTY_ECLASSES;
+        }
         
-        List<TargetMatrix> listMatrix = matrixMap.get(sourceType);
-        if(listMatrix != null) {
-            for(TargetMatrix targetMatrix : listMatrix) {
-                if(targetMatrix.getTargetClass() == targetType && targetMatrix.getRelationships().contains(relationshipType)) {
-                    return true;
+        return validTargetsCache[sourceID][bit].clone();
+    }
+    
+    /**
+     * @return The classifier ID of the actual super EClass of an EClass, or -1 if not an EClass in the Archimate package
+     */
+    private int getSuperClassID(EClass eClass) {
+        if(eClass == null || eClass.getEPackage() != IArchimatePackage.eINSTANCE) {
+            return -1;
+        }
+        return superClassIDs[eClass.getClassifierID()];
+    }
+    
+    /**
+     * @return The bit index of a relationship EClass, or -1 if not a relationship in the matrix
+     */
+    private int getRelationshipBit(EClass eClass) {
+        if(eClass == null || eClass.getEPackage() != IArchimatePackage.eINSTANCE) {
+            return -1;
+        }
+        return relationshipBits[eClass.getClassifierID()];
+    }
+    
+    /**
+     * Compile the loaded matrix into tables indexed by classifier ID
+     */
+    private void compile() {
+        List<EClassifier> classifiers = IArchimatePackage.eINSTANCE.getEClassifiers();
+        int count = classifiers.size();
+        
+        // Assign relationship bits in preferred order
+        List<EClass> relations = new ArrayList<EClass>();
+        for(EClass eClass : ArchimateModelUtils.getRelationsClasses()) {
+            if(relationsValueMap.containsKey(eClass)) {
+                relations.add(eClass);
+            }
+        }
+        for(EClass eClass : relationsValueMap.keySet()) {
+            if(!relations.contains(eClass) && IArchimatePackage.eINSTANCE.getRelationship().isSuperTypeOf(eClass)) {
+                relations.add(eClass);
+            }
+        }
+        
+        relationshipBits = new int[count];
+        Arrays.fill(relationshipBits, -1);
+        for(int i = 0; i < relations.size(); i++) {
+            relationshipBits[relations.get(i).getClassifierID()] = i;
+        }
+        
+        // Super classes
+        superClassIDs = new int[count];
+        for(EClassifier classifier : classifiers) {
+            int id = classifier.getClassifierID();
+            superClassIDs[id] = classifier instanceof EClass ? getSuperEClass((EClass)classifier).getClassifierID() : id;
+        }
+        
+        // Bitmask tables
+        validRelationshipsTable = new int[count][count];
+        validStartTable = new int[count];
+        
+        for(Entry<EClass, List<TargetMatrix>> entry : matrixMap.entrySet()) {
+            int sourceID = entry.getKey().getClassifierID();
+            for(TargetMatrix targetMatrix : entry.getValue()) {
+                int targetID = targetMatrix.getTargetClass().getClassifierID();
+                for(EClass relationship : targetMatrix.getRelationships()) {
+                    int bit = relationshipBits[relationship.getClassifierID()];
+                    if(bit != -1) {
+                        validRelationshipsTable[sourceID][targetID] |= 1 << bit;
+                        validStartTable[sourceID] |= 1 << bit;
+                    }
+                }
+            }
+        }
+        
+        // Cached valid relationships, shared between pairs with the same bitmask
+        Map<Integer, EClass[]> maskCache = new HashMap<Integer, EClass[]>();
+        validRelationshipsCache = new EClass[count][count][];
+        for(int sourceID = 0; sourceID < count; sourceID++) {
+            for(int targetID = 0; targetID < count; targetID++) {
+                int mask = validRelationshipsTable[superClassIDs[sourceID]][superClassIDs[targetID]];
+                EClass[] result = maskCache.get(mask);
+                if(result == null) {
+                    List<EClass> list = new ArrayList<EClass>();
+                    for(int bit = 0; bit < relations.size(); bit++) {
+                        if((mask & (1 << bit)) != 0) {
+                            list.add(relations.get(bit));
+                        }
+                    }
+                    result = list.toArray(new EClass[list.size()]);
+                    maskCache.put(mask, result);
                 }
+                validRelationshipsCache[sourceID][targetID] = result;
             }
         }
         
-        return false;
+        // Cached valid targets. Concrete sub-classes are included where the matrix target is a super class (i.e. Junctions)
+        validTargetsCache = new EClass[count][relations.size()][];
+        for(int sourceID = 0; sourceID < count; sourceID++) {
+            for(int bit = 0; bit < relations.size(); bit++) {
+                List<EClass> list = new ArrayList<EClass>();
+                for(EClassifier classifier : classifiers) {
+                    if(classifier instanceof EClass && !((EClass)classifier).isAbstract() && !((EClass)classifier).isInterface()) {
+                        int targetID = classifier.getClassifierID();
+                        if((validRelationshipsTable[superClassIDs[sourceID]][superClassIDs[targetID]] & (1 << bit)) != 0) {
+                            list.add((EClass)classifier);
+                        }
+                    }
+                }
+                validTargetsCache[sourceID][bit] = list.isEmpty() ? EMPTY_ECLASSES : list.toArray(new EClass[list.size()]);
+            }
+        }
     }
     
     /**
@@ -160,9 +329,20 @@ public class RelationshipsMatrix {
         return eClass;
     }
     
+    /**
+     * @return The URL of a file in this bundle.
+     *         If the Platform is not running (plain Java, such as benchmarks) the file is found on the class path.
+     */
+    private URL getEntry(String path) {
+        if(Platform.isRunning()) {
+            return Platform.getBundle(BUNDLE_ID).getEntry(path);
+        }
+        return getClass().getResource("/" + path); //$NON-NLS-1$
+    }
+    
     private void loadKeyLetters() {
         //URL url = Platform.getBundle(BUNDLE_ID).getResource(RELATIONSHIPS_KEYS_FILE);
-        URL url = Platform.getBundle(BUNDLE_ID).getEntry(RELATIONSHIPS_KEYS_FILE);
+        URL url = getEntry(RELATIONSHIPS_KEYS_FILE);
 
         // Load the JDOM Document from XML
         Document doc = null;
@@ -202,7 +382,7 @@ public class RelationshipsMatrix {
 
     private void loadRelationships() {
         //URL url = Platform.getBundle(BUNDLE_ID).getResource(RELATIONSHIPS_FILE);
-        URL url = Platform.getBundle(BUNDLE_ID).getEntry(RELATIONSHIPS_FILE);
+        URL url = getEntry(RELATIONSHIPS_FILE);
         
         // Load the JDOM Document from XML
         Document doc = null;
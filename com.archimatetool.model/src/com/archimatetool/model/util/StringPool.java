@@ -0,0 +1,179 @@
+/**
+ * This program and the accompanying materials
+ * are made available under the terms of the License
+ * which accompanies this distribution in the file LICENSE.txt
+ */
+package com.archimatetool.model.util;
+
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.EStructuralFeature;
+
+import com.archimatetool.model.IArchimateModel;
+import com.archimatetool.model.IArchimatePackage;
+import com.archimatetool.model.IDocumentable;
+import com.archimatetool.model.IProperty;
+
+
+/**
+ * Pool of the property keys, property values and documentation strings of a model.
+ *
+ * The same property keys ("Owner", "Status") and many of the values are repeated thousands of times in a large model.
+ * When a model is loaded or data is imported or pasted into it each of these is a separate String. Interning them
+ * through the model's pool means that equal strings are stored only once.
+ *
+ * The pool only holds weak references so strings that are no longer used by the model can be garbage collected.
+ * Unlike String.intern() the pool belongs to one model and is garbage collected with it.
+ *
+ * The pool also counts the strings that were replaced by ones already in the pool and estimates the heap saved.
+ *
+ * @author Phillip Beauvoir
+ */
+public class StringPool {
+    
+    /**
+     * Walker for the objects that have pooled strings. Diagram models that have not been loaded yet are not loaded.
+     */
+    private static final ModelWalker WALKER = new ModelWalker(false, IArchimatePackage.Literals.PROPERTY, IArchimatePackage.Literals.DOCUMENTABLE);
+    
+    /**
+     * String -> Weak reference to the same String
+     */
+    private Map<String, WeakReference<String>> fStrings = new WeakHashMap<String, WeakReference<String>>();
+    
+    private long fLookups;
+    private long fDuplicates;
+    private long fBytesSaved;
+    
+    /**
+     * @param model The model
+     * @return The StringPool of the model. This is created if the model does not have one yet.
+     */
+    public static StringPool getStringPool(IArchimateModel model) {
+        synchronized(model) {
+            StringPool pool = (StringPool)model.getAdapter(StringPool.class);
+            if(pool == null) {
+                pool = new StringPool();
+                model.setAdapter(StringPool.class, pool);
+            }
+            return pool;
+        }
+    }
+    
+    /**
+     * @param feature A feature
+     * @return true if the String values of feature are pooled
+     */
+    public static boolean isPooled(EStructuralFeature feature) {
+        return feature == IArchimatePackage.Literals.PROPERTY__KEY
+                || feature == IArchimatePackage.Literals.PROPERTY__VALUE
+                || feature == IArchimatePackage.Literals.DOCUMENTABLE__DOCUMENTATION;
+    }
+    
+    /**
+     * @param s A String, may be null
+     * @return The String in the pool that is equal to s, or s if there is none and it is added to the pool. Null if s is null.
+     */
+    public synchronized String intern(String s) {
+        if(s == null) {
+            return null;
+        }
+        
+        fLookups++;
+        
+        WeakReference<String> ref = fStrings.get(s);
+        String pooled = ref != null ? ref.get() : null;
+        
+        if(pooled == null) {
+            fStrings.put(s, new WeakReference<String>(s));
+            return s;
+        }
+        
+        if(pooled != s) {
+            fDuplicates++;
+            fBytesSaved += getSize(s);
+        }
+        
+        return pooled;
+    }
+    
+    /**
+     * Intern the property keys, property values and documentation of eObject and all of its contents.
+     * This is used for objects that are added to the model, such as pasted copies, before they are added.
+     * The children of diagram models that have not been loaded yet are interned when they are loaded.
+     * @param eObject The object
+     */
+    public void internAll(EObject eObject) {
+        internStrings(eObject);
+        
+        WALKER.walk(eObject, new ModelWalker.IVisitor() {
+            public boolean visit(EObject child) {
+                internStrings(child);
+                return true;
+            }
+        });
+    }
+    
+    private void internStrings(EObject eObject) {
+        if(eObject instanceof IProperty) {
+            IProperty property = (IProperty)eObject;
+            
+            String key = intern(property.getKey());
+            if(key != property.getKey()) {
+                property.setKey(key);
+            }
+            
+            String value = intern(property.getValue());
+            if(value != property.getValue()) {
+                property.setValue(value);
+            }
+        }
+        
+        if(eObject instanceof IDocumentable) {
+            IDocumentable documentable = (IDocumentable)eObject;
+            
+            String documentation = intern(documentable.getDocumentation());
+            if(documentation != documentable.getDocumentation()) {
+                documentable.setDocumentation(documentation);
+            }
+        }
+    }
+    
+    /**
+     * @return The number of different strings in the pool that have not been garbage collected
+     */
+    public synchronized int size() {
+        return fStrings.size();
+    }
+    
+    /**
+     * @return The number of strings that have been interned
+     */
+    public synchronized long getLookupCount() {
+        return fLookups;
+    }
+    
+    /**
+     * @return The number of strings that have been replaced by an equal string in the pool
+     */
+    public synchronized long getDuplicateCount() {
+        return fDuplicates;
+    }
+    
+    /**
+     * @return An estimate of the bytes of heap saved by the strings that have been replaced by an equal string in the pool
+     */
+    public synchronized long getBytesSaved() {
+        return fBytesSaved;
+    }
+    
+    /**
+     * @return An estimate of the bytes of heap used by a String and its char array on a 64-bit JVM with compressed references
+     */
+    static long getSize(String s) {
+        return 24 + ((16 + 2L * s.length() + 7) & ~7);
+    }
+}
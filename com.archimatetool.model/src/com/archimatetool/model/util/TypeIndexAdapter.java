@@ -0,0 +1,222 @@
+/**
+ * This program and the accompanying materials
+ * are made available under the terms of the License
+ * which accompanies this distribution in the file LICENSE.txt
+ */
+package com.archimatetool.model.util;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.emf.common.notify.Notification;
+import org.eclipse.emf.common.notify.Notifier;
+import org.eclipse.emf.ecore.EClass;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.util.EContentAdapter;
+
+import com.archimatetool.model.IArchimateModel;
+import com.archimatetool.model.IArchimatePackage;
+import com.archimatetool.model.IFolder;
+import com.archimatetool.model.IFolderContainer;
+
+
+/**
+ * Adapter to maintain an index of EClass -> instances for the objects in the folders of an Archimate model
+ * (elements, relationships and diagram models).
+ *
+ * The instances are kept in the order that they were added to the index, which is folder order
+ * when the index is first made, both for each EClass and across all EClasses. The index is kept up to date as objects and folders are added to and removed
+ * from the model. Only the model and its folders are listened to.
+ *
+ * This adapter is made when it is first needed by {@link ArchimateModelUtils} and is registered with the model as an
+ * IAdapter under its own class key.
+ *
+ * @author Phillip Beauvoir
+ */
+public class TypeIndexAdapter extends EContentAdapter {
+    
+    /**
+     * Map of EClass -> instances, in the order that each EClass was first added
+     */
+    private Map<EClass, Set<EObject>> fIndex = new LinkedHashMap<EClass, Set<EObject>>();
+    
+    /**
+     * All instances, in the order that they were added
+     */
+    private Set<EObject> fObjects = new LinkedHashSet<EObject>();
+    
+    /**
+     * Make the index for model and start listening to it
+     * @param model The model
+     */
+    public TypeIndexAdapter(IArchimateModel model) {
+        for(IFolder folder : model.getFolders()) {
+            added(folder);
+        }
+        model.eAdapters().add(this);
+    }
+    
+    @Override
+    protected void addAdapter(Notifier notifier) {
+        // Only the model and folders need to be listened to
+        if(notifier instanceof IFolderContainer) {
+            super.addAdapter(notifier);
+        }
+    }
+    
+    @Override
+    public void notifyChanged(Notification msg) {
+        super.notifyChanged(msg);
+        
+        if(msg.isTouch()) {
+            return;
+        }
+        
+        Object feature = msg.getFeature();
+        
+        if(feature == IArchimatePackage.Literals.FOLDER__ELEMENTS || feature == IArchimatePackage.Literals.FOLDER_CONTAINER__FOLDERS) {
+            switch(msg.getEventType()) {
+                case Notification.ADD:
+                    added(msg.getNewValue());
+                    break;
+                
+                case Notification.ADD_MANY:
+                    for(Object o : (Collection<?>)msg.getNewValue()) {
+                        added(o);
+                    }
+                    break;
+                
+                case Notification.REMOVE:
+                    removed(msg.getOldValue());
+                    break;
+                
+                case Notification.REMOVE_MANY:
+                    for(Object o : (Collection<?>)msg.getOldValue()) {
+                        removed(o);
+                    }
+                    break;
+                
+                case Notification.SET:
+                case Notification.UNSET:
+                    removed(msg.getOldValue());
+                    added(msg.getNewValue());
+                    break;
+                
+                default:
+                    break;
+            }
+        }
+    }
+    
+    /**
+     * @param eClass The EClass
+     * @return A new list of the instances of eClass, not including sub-classes
+     */
+    public List<EObject> getObjectsOfType(EClass eClass) {
+        Set<EObject> set = fIndex.get(eClass);
+        return set != null ? new ArrayList<EObject>(set) : new ArrayList<EObject>();
+    }
+    
+    /**
+     * @param eClass The EClass
+     * @return A new list of the instances of eClass and its sub-classes, in the order that they were added
+     */
+    public List<EObject> getObjectsOfKind(EClass eClass) {
+        Set<EClass> types = new HashSet<EClass>();
+        
+        for(EClass type : fIndex.keySet()) {
+            if(eClass.isSuperTypeOf(type)) {
+                types.add(type);
+            }
+        }
+        
+        // Only one type so its instances are already in order
+        if(types.size() < 2) {
+            return types.isEmpty() ? new ArrayList<EObject>() : getObjectsOfType(types.iterator().next());
+        }
+        
+        List<EObject> list = new ArrayList<EObject>();
+        
+        for(EObject eObject : fObjects) {
+            if(types.contains(eObject.eClass())) {
+                list.add(eObject);
+            }
+        }
+        
+        return list;
+    }
+    
+    /**
+     * @param eClass The EClass
+     * @return The number of instances of eClass, not including sub-classes
+     */
+    public int getCount(EClass eClass) {
+        Set<EObject> set = fIndex.get(eClass);
+        return set != null ? set.size() : 0;
+    }
+    
+    /**
+     * @return The EClasses that have instances in the model
+     */
+    public Set<EClass> getTypes() {
+        return Collections.unmodifiableSet(fIndex.keySet());
+    }
+    
+    /**
+     * An object was added to a folder. If it's a folder index its contents.
+     */
+    private void added(Object object) {
+        if(object instanceof IFolder) {
+            IFolder folder = (IFolder)object;
+            for(EObject child : folder.getElements()) {
+                added(child);
+            }
+            for(IFolder child : folder.getFolders()) {
+                added(child);
+            }
+        }
+        else if(object instanceof EObject) {
+            EObject eObject = (EObject)object;
+            Set<EObject> set = fIndex.get(eObject.eClass());
+            if(set == null) {
+                set = new LinkedHashSet<EObject>();
+                fIndex.put(eObject.eClass(), set);
+            }
+            set.add(eObject);
+            fObjects.add(eObject);
+        }
+    }
+    
+    /**
+     * An object was removed from a folder. If it's a folder remove its contents.
+     */
+    private void removed(Object object) {
+        if(object instanceof IFolder) {
+            IFolder folder = (IFolder)object;
+            for(EObject child : folder.getElements()) {
+                removed(child);
+            }
+            for(IFolder child : folder.getFolders()) {
+                removed(child);
+            }
+        }
+        else if(object instanceof EObject) {
+            EObject eObject = (EObject)object;
+            fObjects.remove(eObject);
+            Set<EObject> set = fIndex.get(eObject.eClass());
+            if(set != null) {
+                set.remove(eObject);
+                if(set.isEmpty()) {
+                    fIndex.remove(eObject.eClass());
+                }
+            }
+        }
+    }
+}
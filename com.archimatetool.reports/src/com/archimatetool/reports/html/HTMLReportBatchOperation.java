@@ -0,0 +1,25 @@
+/**
+ * This program and the accompanying materials
+ * are made available under the terms of the License
+ * which accompanies this distribution in the file LICENSE.txt
+ */
+package com.archimatetool.reports.html;
+
+import java.io.File;
+
+import com.archimatetool.editor.batch.IBatchOperation;
+import com.archimatetool.model.IArchimateModel;
+
+
+
+/**
+ * Batch Operation to create the HTML report of a model
+ *
+ * @author Phillip Beauvoir
+ */
+public class HTMLReportBatchOperation implements IBatchOperation {
+    
+    public void run(IArchimateModel model, File outputFolder, String argument) throws Exception {
+        new HTMLReportExporter(model).createReport(outputFolder, "index.html"); //$NON-NLS-1$
+    }
+}
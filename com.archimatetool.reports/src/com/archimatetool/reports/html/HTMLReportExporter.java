@@ -40,6 +40,8 @@ import com.archimatetool.editor.ArchimateEditorPlugin;
 import com.archimatetool.editor.browser.BrowserEditorInput;
 import com.archimatetool.editor.browser.IBrowserEditor;
 import com.archimatetool.editor.diagram.util.DiagramUtils;
+import com.archimatetool.editor.metrics.Metrics;
+import com.archimatetool.editor.metrics.Timer;
 import com.archimatetool.editor.ui.services.EditorManager;
 import com.archimatetool.editor.utils.FileUtils;
 import com.archimatetool.editor.utils.StringUtils;
@@ -63,6 +65,8 @@ public class HTMLReportExporter extends AbstractUIPlugin {
     
     public static File PREVIEW_FOLDER = new File(ArchimateEditorPlugin.INSTANCE.getUserDataFolder(), "html-report-preview"); //$NON-NLS-1$
     
+    private static final Timer REPORT_TIMER = Metrics.INSTANCE.getTimer(Metrics.REPORT_HTML);
+    
     private IArchimateModel fModel;
     
     public HTMLReportExporter(IArchimateModel model) {
@@ -127,6 +131,16 @@ public class HTMLReportExporter extends AbstractUIPlugin {
     }
 
     File createReport(File targetFolder, String indexFileName) throws IOException {
+        long start = REPORT_TIMER.start();
+        try {
+            return doCreateReport(targetFolder, indexFileName);
+        }
+        finally {
+            REPORT_TIMER.stop(start);
+        }
+    }
+    
+    private File doCreateReport(File targetFolder, String indexFileName) throws IOException {
         // Copy HTML skeleton to target
         copyHTMLSkeleton(targetFolder);
         
@@ -8,7 +8,9 @@ package com.archimatetool.editor;
 import junit.framework.TestSuite;
 
 import com.archimatetool.editor.actions.AllActionsTests;
+import com.archimatetool.editor.batch.BatchApplicationTests;
 import com.archimatetool.editor.diagram.AllDiagramTests;
+import com.archimatetool.editor.metrics.MetricsTests;
 import com.archimatetool.editor.model.AllModelTests;
 import com.archimatetool.editor.propertysections.AllPropertySectionsTests;
 import com.archimatetool.editor.ui.AllUITests;
@@ -24,8 +26,14 @@ public class AllTests {
 		// actions
 		suite.addTest(AllActionsTests.suite());
 		
+        // batch
+        suite.addTest(BatchApplicationTests.suite());
+        
         // diagram
         suite.addTest(AllDiagramTests.suite());
+        
+        // metrics
+        suite.addTest(MetricsTests.suite());
 
 		// model
         suite.addTest(AllModelTests.suite());
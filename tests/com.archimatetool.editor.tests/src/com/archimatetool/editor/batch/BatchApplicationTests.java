@@ -0,0 +1,146 @@
+/**
+ * This program and the accompanying materials
+ * are made available under the terms of the License
+ * which accompanies this distribution in the file LICENSE.txt
+ */
+package com.archimatetool.editor.batch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.archimatetool.editor.TestSupport;
+import com.archimatetool.editor.model.IArchiveManager;
+import com.archimatetool.editor.model.impl.ModelLoader;
+import com.archimatetool.model.IArchimateModel;
+import com.archimatetool.model.util.ArchimateResourceFactory;
+import com.archimatetool.tests.TestData;
+import com.archimatetool.tests.TestUtils;
+
+import junit.framework.JUnit4TestAdapter;
+
+
+@SuppressWarnings("nls")
+public class BatchApplicationTests {
+    
+    public static junit.framework.Test suite() {
+        return new JUnit4TestAdapter(BatchApplicationTests.class);
+    }
+    
+    @Test
+    public void testOperationsRegistered() {
+        assertNotNull(BatchOperationExtensionHandler.INSTANCE.getOperation("check"));
+        assertEquals("format", BatchOperationExtensionHandler.INSTANCE.getOperation("convert").getArgument());
+        
+        BatchOperationExtensionHandler.Descriptor descriptor = BatchOperationExtensionHandler.INSTANCE.getOperation("pngExport");
+        assertNotNull(descriptor);
+        assertTrue(descriptor.needsDisplay());
+    }
+    
+    @Test
+    public void testParseArguments() throws Exception {
+        BatchApplication application = new BatchApplication();
+        assertTrue(application.parseArguments(new String[] { "-output", "out", "-check", TestData.TEST_MODEL_FILE_ARCHISURANCE.getPath() }));
+        
+        List<?> files = (List<?>)TestUtils.getPrivateField(application, "fFiles");
+        assertEquals(1, files.size());
+    }
+    
+    @Test
+    public void testParseArguments_Folder() throws Exception {
+        BatchApplication application = new BatchApplication();
+        assertTrue(application.parseArguments(new String[] { "-output", "out", "-check", TestSupport.TEST_MODEL_FILE_1.getParent() }));
+        
+        List<?> files = (List<?>)TestUtils.getPrivateField(application, "fFiles");
+        assertTrue(files.contains(TestSupport.TEST_MODEL_FILE_1));
+    }
+    
+    @Test
+    public void testParseArguments_Wrong() {
+        String model = TestData.TEST_MODEL_FILE_ARCHISURANCE.getPath();
+        
+        // No output folder
+        assertFalse(new BatchApplication().parseArguments(new String[] { "-check", model }));
+        
+        // No operations
+        assertFalse(new BatchApplication().parseArguments(new String[] { "-output", "out", model }));
+        
+        // No models
+        assertFalse(new BatchApplication().parseArguments(new String[] { "-output", "out", "-check" }));
+        
+        // Unknown operation
+        assertFalse(new BatchApplication().parseArguments(new String[] { "-output", "out", "-foo", model }));
+        
+        // Bad number of threads
+        assertFalse(new BatchApplication().parseArguments(new String[] { "-output", "out", "-threads", "0", "-check", model }));
+    }
+    
+    @Test
+    public void testModelCheckBatchOperation() throws Exception {
+        ModelLoader loader = new ModelLoader(TestData.TEST_MODEL_FILE_ARCHISURANCE, false);
+        loader.load();
+        IArchimateModel model = loader.getModel();
+        
+        File folder = TestUtils.createTempFolder("batch");
+        new ModelCheckBatchOperation().run(model, folder, null);
+        assertFalse(new File(folder, "errors.txt").exists());
+    }
+    
+    @Test
+    public void testConvertBatchOperation_Archive() throws Exception {
+        IArchimateModel model = loadModel(TestSupport.TEST_MODEL_FILE_ZIPPED);
+        IArchiveManager archiveManager = (IArchiveManager)model.getAdapter(IArchiveManager.class);
+        File folder = TestUtils.createTempFolder("batch");
+        
+        // Binary, still an archive file with the images
+        new ConvertBatchOperation().run(model, folder, "binary");
+        File file = new File(folder, TestSupport.TEST_MODEL_FILE_ZIPPED.getName());
+        assertTrue(IArchiveManager.FACTORY.isArchiveFile(file));
+        assertTrue(ArchimateResourceFactory.isBinaryResource(IArchiveManager.FACTORY.createArchiveModelURI(file)));
+        
+        IArchimateModel binaryModel = loadModel(file);
+        IArchiveManager binaryArchiveManager = (IArchiveManager)binaryModel.getAdapter(IArchiveManager.class);
+        assertEquals(model.getDiagramModels().size(), binaryModel.getDiagramModels().size());
+        assertEquals(archiveManager.getImagePaths(), binaryArchiveManager.getImagePaths());
+        
+        // And back to XML
+        File xmlFolder = TestUtils.createTempFolder("batchxml");
+        new ConvertBatchOperation().run(binaryModel, xmlFolder, "xml");
+        File xmlFile = new File(xmlFolder, file.getName());
+        assertTrue(IArchiveManager.FACTORY.isArchiveFile(xmlFile));
+        assertFalse(ArchimateResourceFactory.isBinaryResource(IArchiveManager.FACTORY.createArchiveModelURI(xmlFile)));
+        
+        // The models are unchanged
+        assertEquals(TestSupport.TEST_MODEL_FILE_ZIPPED, model.getFile());
+        assertEquals(file, binaryModel.getFile());
+        
+        binaryArchiveManager.dispose();
+        archiveManager.dispose();
+    }
+    
+    @Test(expected=IllegalArgumentException.class)
+    public void testConvertBatchOperation_WrongFormat() throws Exception {
+        IArchimateModel model = loadModel(TestData.TEST_MODEL_FILE_ARCHISURANCE);
+        try {
+            new ConvertBatchOperation().run(model, TestUtils.createTempFolder("batch"), "json");
+        }
+        finally {
+            ((IArchiveManager)model.getAdapter(IArchiveManager.class)).dispose();
+        }
+    }
+    
+    private IArchimateModel loadModel(File file) {
+        ModelLoader loader = new ModelLoader(file, false);
+        loader.load();
+        IArchimateModel model = loader.getModel();
+        model.setFile(file);
+        loader.createArchiveManager();
+        return model;
+    }
+}
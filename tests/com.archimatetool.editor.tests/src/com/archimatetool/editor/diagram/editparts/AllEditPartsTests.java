@@ -7,6 +7,8 @@ package com.archimatetool.editor.diagram.editparts;
 
 import junit.framework.TestSuite;
 
+import com.archimatetool.editor.diagram.editparts.connections.StructuralChainsServiceTests;
+
 @SuppressWarnings("nls")
 public class AllEditPartsTests {
 
@@ -15,6 +17,9 @@ public class AllEditPartsTests {
 		
         // editparts
         suite.addTest(ArchimateDiagramEditPartFactoryTests.suite());
+        
+        // connections
+        suite.addTest(StructuralChainsServiceTests.suite());
 
         return suite;
 	}
@@ -0,0 +1,131 @@
+/**
+ * This program and the accompanying materials
+ * are made available under the terms of the License
+ * which accompanies this distribution in the file LICENSE.txt
+ */
+package com.archimatetool.editor.diagram.editparts.connections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import junit.framework.JUnit4TestAdapter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.emf.ecore.EClass;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.archimatetool.editor.diagram.editparts.connections.StructuralChainsService.IStructuralChainListener;
+import com.archimatetool.model.IArchimateElement;
+import com.archimatetool.model.IArchimateFactory;
+import com.archimatetool.model.IArchimateModel;
+import com.archimatetool.model.IArchimatePackage;
+import com.archimatetool.model.IRelationship;
+
+
+public class StructuralChainsServiceTests {
+    
+    public static junit.framework.Test suite() {
+        return new JUnit4TestAdapter(StructuralChainsServiceTests.class);
+    }
+    
+    private IArchimateModel model;
+    private IArchimateElement actor, role, process;
+    private StructuralChainsService service;
+    
+    private List<Boolean> events = new ArrayList<Boolean>();
+    
+    private IStructuralChainListener listener = new IStructuralChainListener() {
+        @Override
+        public void structuralChainChanged(IRelationship relationship, boolean inChain) {
+            events.add(inChain);
+        }
+    };
+    
+    @Before
+    public void runOnceBeforeEachTest() {
+        model = IArchimateFactory.eINSTANCE.createArchimateModel();
+        model.setDefaults();
+        
+        actor = createElement(IArchimatePackage.eINSTANCE.getBusinessActor());
+        role = createElement(IArchimatePackage.eINSTANCE.getBusinessRole());
+        process = createElement(IArchimatePackage.eINSTANCE.getBusinessProcess());
+        
+        service = StructuralChainsService.getService(model);
+    }
+    
+    private IArchimateElement createElement(EClass eClass) {
+        IArchimateElement element = (IArchimateElement)IArchimateFactory.eINSTANCE.create(eClass);
+        model.getDefaultFolderForElement(element).getElements().add(element);
+        return element;
+    }
+    
+    private IRelationship createRelationship(EClass eClass, IArchimateElement source, IArchimateElement target) {
+        IRelationship relation = (IRelationship)IArchimateFactory.eINSTANCE.create(eClass);
+        relation.setSource(source);
+        relation.setTarget(target);
+        model.getDefaultFolderForElement(relation).getElements().add(relation);
+        return relation;
+    }
+    
+    @Test
+    public void testGetService() {
+        assertSame(service, StructuralChainsService.getService(model));
+    }
+    
+    @Test
+    public void testListeningToModel() {
+        IRelationship relation = createRelationship(IArchimatePackage.eINSTANCE.getAssignmentRelationship(), actor, role);
+        assertFalse(service.isListening());
+        
+        service.addListener(relation, listener);
+        assertTrue(service.isListening());
+        
+        service.removeListener(relation, listener);
+        assertFalse(service.isListening());
+    }
+    
+    @Test
+    public void testRelationshipAddedAndRemoved() {
+        IRelationship relation1 = createRelationship(IArchimatePackage.eINSTANCE.getAssignmentRelationship(), actor, role);
+        assertFalse(service.addListener(relation1, listener));
+        
+        // Joins a chain
+        IRelationship relation2 = createRelationship(IArchimatePackage.eINSTANCE.getAssignmentRelationship(), role, process);
+        assertEquals(1, events.size());
+        assertTrue(events.get(0));
+        assertTrue(service.isInStructuralChain(relation1));
+        
+        // Leaves the chain
+        model.getDefaultFolderForElement(relation2).getElements().remove(relation2);
+        assertEquals(2, events.size());
+        assertFalse(events.get(1));
+        assertFalse(service.isInStructuralChain(relation1));
+    }
+    
+    @Test
+    public void testRelationshipReconnected() {
+        IRelationship relation1 = createRelationship(IArchimatePackage.eINSTANCE.getAssignmentRelationship(), actor, role);
+        IRelationship relation2 = createRelationship(IArchimatePackage.eINSTANCE.getAssignmentRelationship(), role, process);
+        assertTrue(service.addListener(relation1, listener));
+        
+        relation2.setSource(process);
+        assertEquals(1, events.size());
+        assertFalse(events.get(0));
+    }
+    
+    @Test
+    public void testOtherChangesIgnored() {
+        IRelationship relation1 = createRelationship(IArchimatePackage.eINSTANCE.getAssignmentRelationship(), actor, role);
+        createRelationship(IArchimatePackage.eINSTANCE.getAssignmentRelationship(), role, process);
+        service.addListener(relation1, listener);
+        
+        actor.setName("name"); //$NON-NLS-1$
+        relation1.setName("name"); //$NON-NLS-1$
+        createElement(IArchimatePackage.eINSTANCE.getBusinessRole());
+        assertTrue(events.isEmpty());
+    }
+}
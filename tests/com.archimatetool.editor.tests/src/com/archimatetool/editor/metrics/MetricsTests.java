@@ -0,0 +1,146 @@
+/**
+ * This program and the accompanying materials
+ * are made available under the terms of the License
+ * which accompanies this distribution in the file LICENSE.txt
+ */
+package com.archimatetool.editor.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import junit.framework.JUnit4TestAdapter;
+
+
+@SuppressWarnings("nls")
+public class MetricsTests {
+    
+    public static junit.framework.Test suite() {
+        return new JUnit4TestAdapter(MetricsTests.class);
+    }
+    
+    private Metrics metrics;
+    
+    @Before
+    public void runBeforeEachTest() {
+        metrics = new Metrics();
+    }
+    
+    @Test
+    public void testGetMetric_SameInstance() {
+        Counter counter = metrics.getCounter("counter");
+        assertSame(counter, metrics.getCounter("counter"));
+        assertSame(counter, metrics.getMetric("counter"));
+        assertNull(metrics.getMetric("none"));
+    }
+    
+    @Test(expected=IllegalArgumentException.class)
+    public void testGetMetric_WrongType() {
+        metrics.getTimer("metric");
+        metrics.getHistogram("metric");
+    }
+    
+    @Test
+    public void testGetMetrics_SortedByName() {
+        metrics.getTimer("b");
+        metrics.getCounter("c");
+        metrics.getHistogram("a");
+        
+        assertEquals("a", metrics.getMetrics().get(0).getName());
+        assertEquals("b", metrics.getMetrics().get(1).getName());
+        assertEquals("c", metrics.getMetrics().get(2).getName());
+    }
+    
+    @Test
+    public void testCounter() {
+        Counter counter = metrics.getCounter("counter");
+        counter.increment();
+        counter.add(5);
+        assertEquals(6, counter.getCount());
+        
+        metrics.reset();
+        assertEquals(0, counter.getCount());
+    }
+    
+    @Test
+    public void testHistogram() {
+        Histogram histogram = metrics.getHistogram("histogram");
+        assertEquals(0, histogram.getPercentile(0.95));
+        
+        for(int i = 1; i <= 100; i++) {
+            histogram.update(i);
+        }
+        
+        assertEquals(100, histogram.getCount());
+        assertEquals(5050, histogram.getTotal());
+        assertEquals(100, histogram.getMax());
+        assertEquals(50.5, histogram.getMean(), 0);
+        
+        // Estimates are within 25%
+        long p95 = histogram.getPercentile(0.95);
+        assertTrue(p95 >= 95 && p95 <= 100);
+        long p50 = histogram.getPercentile(0.5);
+        assertTrue(p50 >= 50 && p50 <= 63);
+        
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getTotal());
+        assertEquals(0, histogram.getMax());
+    }
+    
+    @Test
+    public void testHistogram_Buckets() {
+        int last = -1;
+        
+        for(long value : new long[] { 0, 1, 3, 4, 5, 7, 8, 10, 100, 1000, 1L << 40, Long.MAX_VALUE }) {
+            int bucket = Histogram.getBucket(value);
+            assertTrue(bucket > last && bucket < Histogram.BUCKETS);
+            assertTrue(value <= Histogram.getBucketMax(bucket));
+            if(bucket > 0) {
+                assertTrue(value > Histogram.getBucketMax(bucket - 1));
+            }
+            last = bucket;
+        }
+        
+        assertEquals(Long.MAX_VALUE, Histogram.getBucketMax(Histogram.BUCKETS - 1));
+    }
+    
+    @Test
+    public void testTimer() {
+        Timer timer = metrics.getTimer("timer");
+        
+        long start = timer.start();
+        long elapsed = timer.stop(start);
+        
+        assertEquals(1, timer.getCount());
+        assertEquals(elapsed, timer.getTotal());
+        assertEquals(1.5, Timer.toMillis(1500000), 0);
+    }
+    
+    @Test
+    public void testMBean() throws Exception {
+        // The plug-in registers the MBean of the shared registry when it starts
+        Metrics.INSTANCE.registerMBean();
+        Metrics.INSTANCE.getCounter("test.counter").add(3);
+        Metrics.INSTANCE.getTimer("test.timer").update(2000000);
+        
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName objectName = new ObjectName(Metrics.OBJECT_NAME);
+        
+        assertEquals(3L, server.getAttribute(objectName, "test.counter"));
+        assertEquals(1L, server.getAttribute(objectName, "test.timer.count"));
+        assertEquals(2.0, (Double)server.getAttribute(objectName, "test.timer.totalMs"), 0);
+        
+        server.invoke(objectName, "reset", null, null);
+        assertEquals(0L, server.getAttribute(objectName, "test.counter"));
+    }
+}
@@ -13,6 +13,8 @@ import com.archimatetool.editor.model.compatibility.handlers.FixDefaultSizesHand
 import com.archimatetool.editor.model.impl.ArchiveManagerTests;
 import com.archimatetool.editor.model.impl.ByteArrayStorageTests;
 import com.archimatetool.editor.model.impl.EditorModelManagerTests;
+import com.archimatetool.editor.model.impl.ModelJournalTests;
+import com.archimatetool.editor.model.impl.ModelLoaderTests;
 import com.archimatetool.editor.model.viewpoints.AllViewpointTests;
 import com.archimatetool.editor.model.viewpoints.ViewpointsManagerTests;
 
@@ -41,6 +43,8 @@ public class AllModelTests {
         suite.addTest(ArchiveManagerTests.suite());
         suite.addTest(ByteArrayStorageTests.suite());
 		suite.addTest(EditorModelManagerTests.suite());
+        suite.addTest(ModelJournalTests.suite());
+        suite.addTest(ModelLoaderTests.suite());
 		
         // model.viewpoints
 		suite.addTest(AllViewpointTests.suite());
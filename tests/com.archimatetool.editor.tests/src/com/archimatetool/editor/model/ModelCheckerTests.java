@@ -6,11 +6,20 @@
 package com.archimatetool.editor.model;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 
 import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map.Entry;
+import java.util.concurrent.ForkJoinPool;
+
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.emf.ecore.util.EcoreUtil;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -22,9 +31,14 @@ import com.archimatetool.model.IArchimateFactory;
 import com.archimatetool.model.IArchimateModel;
 import com.archimatetool.model.IArchimatePackage;
 import com.archimatetool.model.IAssignmentRelationship;
+import com.archimatetool.model.IDiagramModel;
 import com.archimatetool.model.IDiagramModelArchimateConnection;
 import com.archimatetool.model.IDiagramModelArchimateObject;
 import com.archimatetool.model.IRelationship;
+import com.archimatetool.model.util.ArchimateResource;
+import com.archimatetool.model.util.ArchimateResourceFactory;
+import com.archimatetool.model.util.IDAdapter;
+import com.archimatetool.model.util.LazyDiagramContent;
 import com.archimatetool.testingtools.ArchimateTestModel;
 import com.archimatetool.tests.TestData;
 
@@ -57,6 +71,124 @@ public class ModelCheckerTests {
         assertTrue(modelChecker.checkAll());
     }
     
+    @Test
+    public void checkAll_InParallel() {
+        IArchimateModel model = new EditorModelManager().loadModel(TestData.TEST_MODEL_FILE_ARCHISURANCE);
+        ModelChecker modelChecker = new ModelChecker(model, new ForkJoinPool(4));
+        assertTrue(modelChecker.checkAll());
+        
+        // Orphan the element of a diagram object in each diagram model
+        for(IDiagramModel dm : model.getDiagramModels()) {
+            for(EObject eObject : dm.getChildren()) {
+                if(eObject instanceof IDiagramModelArchimateObject) {
+                    EcoreUtil.remove(((IDiagramModelArchimateObject)eObject).getArchimateElement());
+                    break;
+                }
+            }
+        }
+        
+        assertFalse(modelChecker.checkAll());
+        
+        // Same messages in the same order as checking on this thread
+        ModelChecker modelChecker2 = new ModelChecker(model, new ForkJoinPool(1));
+        assertFalse(modelChecker2.checkAll());
+        assertEquals(modelChecker2.getErrorMessages(), modelChecker.getErrorMessages());
+    }
+    
+    private IArchimateModel loadLazily(File file) throws IOException {
+        Resource resource = ArchimateResourceFactory.createNewResource(file);
+        resource.load(Collections.singletonMap(ArchimateResource.OPTION_LOAD_DIAGRAMS_LAZILY, Boolean.TRUE));
+        return (IArchimateModel)resource.getContents().get(0);
+    }
+    
+    @Test
+    public void checkAll_DiagramModelsNotLoaded() throws IOException {
+        IArchimateModel model = loadLazily(TestData.TEST_MODEL_FILE_ARCHISURANCE);
+        ModelChecker modelChecker = new ModelChecker(model);
+        assertTrue(modelChecker.checkAll());
+        
+        for(IDiagramModel dm : model.getDiagramModels()) {
+            assertFalse(LazyDiagramContent.isLoaded(dm));
+        }
+        
+        // Remove an element referenced by a diagram model that is not loaded
+        IDiagramModel dm = getUnloadedDiagramModelWithConnections(model);
+        Entry<String, String> reference = LazyDiagramContent.getContent(dm).getElementReferences().entrySet().iterator().next();
+        IDAdapter idAdapter = (IDAdapter)model.getAdapter(IDAdapter.class);
+        EcoreUtil.remove(idAdapter.getObject(reference.getValue()));
+        
+        // Reported for the diagram object as it is when the diagram model is loaded
+        assertFalse(modelChecker.checkAll());
+        assertTrue(modelChecker.getErrorMessages().contains("Diagram Element has missing referenced ArchiMate element in '" + dm.getName() + "' (" + reference.getKey() + ")"));
+        assertFalse(LazyDiagramContent.isLoaded(dm));
+    }
+    
+    @Test
+    public void checkAll_DiagramModelsNotLoaded_Relationship() throws IOException {
+        IArchimateModel model = loadLazily(TestData.TEST_MODEL_FILE_ARCHISURANCE);
+        ModelChecker modelChecker = new ModelChecker(model);
+        
+        // Remove a relationship referenced by a diagram model that is not loaded
+        IDiagramModel dm = getUnloadedDiagramModelWithConnections(model);
+        Entry<String, String> reference = LazyDiagramContent.getContent(dm).getRelationshipReferences().entrySet().iterator().next();
+        IDAdapter idAdapter = (IDAdapter)model.getAdapter(IDAdapter.class);
+        EcoreUtil.remove(idAdapter.getObject(reference.getValue()));
+        
+        assertFalse(modelChecker.checkAll());
+        assertEquals(1, modelChecker.getErrorMessages().size());
+        assertEquals("Diagram Connection has missing referenced ArchiMate relation in '" + dm.getName() + "' (" + reference.getKey() + ")",
+                modelChecker.getErrorMessages().get(0));
+        assertFalse(LazyDiagramContent.isLoaded(dm));
+    }
+    
+    private IDiagramModel getUnloadedDiagramModelWithConnections(IArchimateModel model) {
+        for(IDiagramModel dm : model.getDiagramModels()) {
+            LazyDiagramContent content = LazyDiagramContent.getContent(dm);
+            if(content != null && !content.getElementReferences().isEmpty() && !content.getRelationshipReferences().isEmpty()) {
+                return dm;
+            }
+        }
+        return null;
+    }
+    
+    @Test
+    public void checkChanged() {
+        IArchimateElement element = (IArchimateElement)tm.createModelElementAndAddToModel(IArchimatePackage.eINSTANCE.getBusinessActor());
+        IRelationship relation = (IRelationship)tm.createModelElementAndAddToModel(IArchimatePackage.eINSTANCE.getAssociationRelationship());
+        relation.setSource(element);
+        relation.setTarget(element);
+        
+        // Checked in full the first time
+        assertTrue(modelChecker.checkChanged());
+        
+        // Changed object
+        String id = element.getId();
+        element.setId(null);
+        assertFalse(modelChecker.checkChanged());
+        assertEquals(1, modelChecker.getErrorMessages().size());
+        assertEquals("No identifier set on " + element.getName(), modelChecker.getErrorMessages().get(0));
+        
+        // Still checked until it is OK
+        assertFalse(modelChecker.checkChanged());
+        element.setId(id);
+        assertTrue(modelChecker.checkChanged());
+        
+        // Added object
+        IRelationship relation2 = IArchimateFactory.eINSTANCE.createAssociationRelationship();
+        relation2.setSource(element);
+        model.getFolder(FolderType.RELATIONS).getElements().add(relation2);
+        assertFalse(modelChecker.checkChanged());
+        assertTrue(modelChecker.getErrorMessages().get(0).startsWith("Relationship has missing referenced target element"));
+        model.getFolder(FolderType.RELATIONS).getElements().remove(relation2);
+        assertTrue(modelChecker.checkChanged());
+        
+        // Removing an object orphans others
+        model.getFolder(FolderType.BUSINESS).getElements().remove(element);
+        assertFalse(modelChecker.checkChanged());
+        assertEquals(2, modelChecker.getErrorMessages().size());
+        assertTrue(modelChecker.getErrorMessages().get(0).startsWith("Relationship has orphaned source element"));
+    }
+    
     @Test
     public void checkFolderStructure() {
         List<String> messages = modelChecker.checkFolderStructure();
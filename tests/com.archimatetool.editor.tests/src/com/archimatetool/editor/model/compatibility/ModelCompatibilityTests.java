@@ -12,15 +12,27 @@ import static org.junit.Assert.fail;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 import junit.framework.JUnit4TestAdapter;
 
+import org.eclipse.emf.ecore.EClass;
+import org.eclipse.emf.ecore.EObject;
 import org.eclipse.emf.ecore.resource.Resource;
 import org.eclipse.emf.ecore.resource.Resource.Diagnostic;
 import org.junit.Test;
 
 import com.archimatetool.editor.TestSupport;
+import com.archimatetool.model.FolderType;
+import com.archimatetool.model.IArchimateFactory;
 import com.archimatetool.model.IArchimateModel;
+import com.archimatetool.model.IArchimatePackage;
+import com.archimatetool.model.IDiagramModel;
+import com.archimatetool.model.IDiagramModelGroup;
+import com.archimatetool.model.IDiagramModelNote;
+import com.archimatetool.model.IRelationship;
 import com.archimatetool.model.util.ArchimateResourceFactory;
 
 
@@ -129,6 +141,72 @@ public class ModelCompatibilityTests {
         assertTrue(mc.isCatastrophicException(diagnostic));
     }
     
+    @Test
+    public void testIsFixedAfterVersion() {
+        assertTrue(ModelCompatibility.isFixedAfterVersion(null, "3.1.1"));
+        assertTrue(ModelCompatibility.isFixedAfterVersion("2.1.0", null));
+        assertTrue(ModelCompatibility.isFixedAfterVersion("2.1.0", "2.0.0"));
+        assertFalse(ModelCompatibility.isFixedAfterVersion("2.1.0", "2.1.0"));
+        assertFalse(ModelCompatibility.isFixedAfterVersion("2.1.0", "3.1.1"));
+    }
+    
+    private static class TestVisitor extends AbstractCompatibilityVisitor {
+        EClass[] types;
+        boolean applies = true;
+        List<EObject> visited = new ArrayList<EObject>();
+        
+        TestVisitor(EClass... types) {
+            this.types = types;
+        }
+        
+        @Override
+        public EClass[] getVisitedTypes() {
+            return types;
+        }
+        
+        @Override
+        public boolean begin(IArchimateModel model) {
+            return applies;
+        }
+        
+        @Override
+        public void visit(EObject eObject) {
+            visited.add(eObject);
+        }
+    }
+    
+    @Test
+    public void testVisit() throws CompatibilityHandlerException {
+        IArchimateModel model = IArchimateFactory.eINSTANCE.createArchimateModel();
+        model.setDefaults();
+        
+        IRelationship relation = IArchimateFactory.eINSTANCE.createAssociationRelationship();
+        model.getFolder(FolderType.RELATIONS).getElements().add(relation);
+        
+        IDiagramModel dm = IArchimateFactory.eINSTANCE.createArchimateDiagramModel();
+        model.getFolder(FolderType.DIAGRAMS).getElements().add(dm);
+        IDiagramModelGroup group = IArchimateFactory.eINSTANCE.createDiagramModelGroup();
+        dm.getChildren().add(group);
+        IDiagramModelNote note = IArchimateFactory.eINSTANCE.createDiagramModelNote();
+        group.getChildren().add(note);
+        
+        TestVisitor relationsVisitor = new TestVisitor(IArchimatePackage.Literals.RELATIONSHIP);
+        TestVisitor diagramObjectsVisitor = new TestVisitor(IArchimatePackage.Literals.DIAGRAM_MODEL_OBJECT);
+        TestVisitor skippedVisitor = new TestVisitor(IArchimatePackage.Literals.RELATIONSHIP);
+        skippedVisitor.applies = false;
+        
+        ModelCompatibility.visit(model, Arrays.asList(relationsVisitor, diagramObjectsVisitor, skippedVisitor));
+        
+        // Only objects of their types
+        assertEquals(Arrays.asList(relation), relationsVisitor.visited);
+        
+        // Children before their parents
+        assertEquals(Arrays.asList(note, group), diagramObjectsVisitor.visited);
+        
+        // Doesn't need to fix the model
+        assertTrue(skippedVisitor.visited.isEmpty());
+    }
+    
     private void createResource(File file) {
         resource = ArchimateResourceFactory.createNewResource(file);
         mc = new ModelCompatibility(resource);
@@ -5,6 +5,7 @@
  */
 package com.archimatetool.editor.model.impl;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
@@ -13,9 +14,24 @@ import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
 
+import org.eclipse.emf.common.util.URI;
 import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.emf.ecore.util.EcoreUtil;
 import org.eclipse.swt.graphics.Image;
 import org.junit.Before;
 import org.junit.Rule;
@@ -27,7 +43,11 @@ import com.archimatetool.editor.model.IArchiveManager;
 import com.archimatetool.model.IArchimateFactory;
 import com.archimatetool.model.IArchimateModel;
 import com.archimatetool.model.IDiagramModel;
+import com.archimatetool.model.IDiagramModelGroup;
 import com.archimatetool.model.IDiagramModelImage;
+import com.archimatetool.model.util.ArchimateResource;
+import com.archimatetool.model.util.ArchimateResourceFactory;
+import com.archimatetool.model.util.LazyDiagramContent;
 import com.archimatetool.testingtools.ArchimateTestModel;
 import com.archimatetool.tests.TestData;
 import com.archimatetool.tests.TestUtils;
@@ -59,9 +79,9 @@ public class ArchiveManagerTests {
     public void testCreateArchiveManager() throws Exception {
         assertNotNull(archiveManager);
         
-        // Should have an ID Adapter and an extra EContentAdapter adapter
-        assertEquals(2, model.eAdapters().size());
-        assertEquals(TestUtils.getPrivateField(archiveManager, "fModelAdapter"), model.eAdapters().get(1));
+        // Should have an ID Adapter, a Relationships Adapter and an extra EContentAdapter adapter
+        assertEquals(3, model.eAdapters().size());
+        assertEquals(TestUtils.getPrivateField(archiveManager, "fModelAdapter"), model.eAdapters().get(2));
         
         assertTrue(archiveManager.getImagePaths().isEmpty());
         assertFalse(archiveManager.hasImages());
@@ -92,8 +112,115 @@ public class ArchiveManagerTests {
         String imagePath2 = "/somePath/image2.png";
         dmImage.setImagePath(imagePath2);
         assertEquals(1, archiveManager.getImagePaths().size());
-        assertEquals(2, archiveManager.getLoadedImagePaths().size()); // This should be increased
+        assertEquals(1, archiveManager.getLoadedImagePaths().size()); // The replaced path is released
         assertEquals(imagePath2, archiveManager.getImagePaths().get(0));
+        assertEquals(imagePath2, archiveManager.getLoadedImagePaths().get(0));
+    }
+    
+    @Test
+    public void testImageReleasedWhenImagePathChanged() throws Exception {
+        // An image with a name and bytes that no other test uses
+        String imagePath = "images/" + EcoreUtil.generateUUID() + ".png";
+        byte[] bytes = imagePath.getBytes();
+        ArchiveManager.BYTE_ARRAY_STORAGE.addByteContentEntry(imagePath, bytes);
+        
+        IDiagramModelImage dmImage1 = IArchimateFactory.eINSTANCE.createDiagramModelImage();
+        dm.getChildren().add(dmImage1);
+        dmImage1.setImagePath(imagePath);
+        IDiagramModelImage dmImage2 = IArchimateFactory.eINSTANCE.createDiagramModelImage();
+        dm.getChildren().add(dmImage2);
+        dmImage2.setImagePath(imagePath);
+        assertEquals(1, ArchiveManager.BYTE_ARRAY_STORAGE.getReferenceCount(imagePath));
+        
+        // Still used by the other image
+        dmImage1.setImagePath(null);
+        assertEquals(1, ArchiveManager.BYTE_ARRAY_STORAGE.getReferenceCount(imagePath));
+        assertTrue(archiveManager.getLoadedImagePaths().contains(imagePath));
+        
+        // Released when no longer used
+        dmImage2.setImagePath(null);
+        assertEquals(0, ArchiveManager.BYTE_ARRAY_STORAGE.getReferenceCount(imagePath));
+        assertFalse(ArchiveManager.BYTE_ARRAY_STORAGE.hasEntry(imagePath));
+        assertFalse(archiveManager.getLoadedImagePaths().contains(imagePath));
+        
+        // Undo sets the image path back and the image is put back
+        dmImage2.setImagePath(imagePath);
+        assertEquals(1, ArchiveManager.BYTE_ARRAY_STORAGE.getReferenceCount(imagePath));
+        assertArrayEquals(bytes, archiveManager.getBytesFromEntry(imagePath));
+        
+        archiveManager.dispose();
+        assertFalse(ArchiveManager.BYTE_ARRAY_STORAGE.hasEntry(imagePath));
+    }
+    
+    @Test
+    public void testImagePathCounts() throws Exception {
+        // An image with a name and bytes that no other test uses
+        String imagePath = "images/" + EcoreUtil.generateUUID() + ".png";
+        byte[] bytes = imagePath.getBytes();
+        ArchiveManager.BYTE_ARRAY_STORAGE.addByteContentEntry(imagePath, bytes);
+        
+        // Images in a group are counted when the group is added
+        IDiagramModelGroup group = IArchimateFactory.eINSTANCE.createDiagramModelGroup();
+        IDiagramModelImage dmImage1 = IArchimateFactory.eINSTANCE.createDiagramModelImage();
+        dmImage1.setImagePath(imagePath);
+        group.getChildren().add(dmImage1);
+        IDiagramModelImage dmImage2 = IArchimateFactory.eINSTANCE.createDiagramModelImage();
+        dmImage2.setImagePath(imagePath);
+        group.getChildren().add(dmImage2);
+        
+        dm.getChildren().add(group);
+        assertEquals(2, archiveManager.getImagePathCount(imagePath));
+        assertEquals(1, ArchiveManager.BYTE_ARRAY_STORAGE.getReferenceCount(imagePath));
+        
+        // A removed image is not counted but its image is not released
+        group.getChildren().remove(dmImage1);
+        assertEquals(1, archiveManager.getImagePathCount(imagePath));
+        assertTrue(ArchiveManager.BYTE_ARRAY_STORAGE.hasEntry(imagePath));
+        
+        // Released when no longer used
+        dmImage2.setImagePath(null);
+        assertEquals(0, archiveManager.getImagePathCount(imagePath));
+        assertFalse(ArchiveManager.BYTE_ARRAY_STORAGE.hasEntry(imagePath));
+        
+        // Undo
+        dmImage2.setImagePath(imagePath);
+        assertEquals(1, archiveManager.getImagePathCount(imagePath));
+        assertArrayEquals(bytes, archiveManager.getBytesFromEntry(imagePath));
+        
+        // The bytes of released images are not kept once the model is saved
+        dmImage2.setImagePath(null);
+        assertFalse(((Map<?, ?>)TestUtils.getPrivateField(archiveManager, "fReleasedImages")).isEmpty());
+        archiveManager.modelSaved();
+        assertTrue(((Map<?, ?>)TestUtils.getPrivateField(archiveManager, "fReleasedImages")).isEmpty());
+        
+        archiveManager.dispose();
+    }
+    
+    @Test
+    public void testImagePathCounts_LazyDiagramModels() throws IOException {
+        Resource resource = ArchimateResourceFactory.createNewResource(IArchiveManager.FACTORY.createArchiveModelURI(TestSupport.TEST_MODEL_FILE_ZIPPED));
+        resource.load(null);
+        ArchiveManager expected = new ArchiveManager((IArchimateModel)resource.getContents().get(0));
+        
+        resource = ArchimateResourceFactory.createNewResource(IArchiveManager.FACTORY.createArchiveModelURI(TestSupport.TEST_MODEL_FILE_ZIPPED));
+        resource.load(Collections.singletonMap(ArchimateResource.OPTION_LOAD_DIAGRAMS_LAZILY, Boolean.TRUE));
+        IArchimateModel lazyModel = (IArchimateModel)resource.getContents().get(0);
+        ArchiveManager lazyArchiveManager = new ArchiveManager(lazyModel);
+        
+        List<String> imagePaths = expected.getImagePaths();
+        assertFalse(imagePaths.isEmpty());
+        
+        // Counted the same once the diagram models are loaded
+        for(IDiagramModel dm : lazyModel.getDiagramModels()) {
+            dm.getChildren();
+        }
+        
+        for(String imagePath : imagePaths) {
+            assertEquals(expected.getImagePathCount(imagePath), lazyArchiveManager.getImagePathCount(imagePath));
+        }
+        
+        expected.dispose();
+        lazyArchiveManager.dispose();
     }
     
     @Rule
@@ -184,6 +311,24 @@ public class ArchiveManagerTests {
         assertFalse(archiveManager.getLoadedImagePaths().isEmpty());
     }
     
+    @Test
+    public void testReadImageIndex() throws Exception {
+        assertNull(ArchiveManager.readImageIndex(null));
+        assertNull(ArchiveManager.readImageIndex(TestData.TEST_MODEL_FILE_ARCHISURANCE));
+        
+        Map<String, ZipEntry> imageIndex = ArchiveManager.readImageIndex(TestSupport.TEST_MODEL_FILE_ZIPPED);
+        assertFalse(imageIndex.isEmpty());
+        
+        model.setFile(TestSupport.TEST_MODEL_FILE_ZIPPED);
+        archiveManager.loadImages(imageIndex);
+        assertEquals(imageIndex.size(), archiveManager.getLoadedImagePaths().size());
+        
+        // Bytes are read from the archive file when asked for
+        for(String path : imageIndex.keySet()) {
+            assertEquals(imageIndex.get(path).getSize(), archiveManager.getBytesFromEntry(path).length);
+        }
+    }
+    
     @Test
     public void testHasImages() {
         assertFalse(archiveManager.hasImages());
@@ -219,6 +364,231 @@ public class ArchiveManagerTests {
         file.delete();
     }
     
+    @Test
+    public void testCreateSnapshot() throws IOException {
+        assertNull(archiveManager.createSnapshot());
+        
+        IDiagramModelImage dmImage = IArchimateFactory.eINSTANCE.createDiagramModelImage();
+        dm.getChildren().add(dmImage);
+        archiveManager.loadImagesFromModelFile(TestSupport.TEST_MODEL_FILE_ZIPPED);
+        dmImage.setImagePath(archiveManager.getLoadedImagePaths().get(0));
+        
+        File file = TestUtils.createTempFile(".archimate");
+        model.setFile(file);
+        
+        ModelSnapshot snapshot = archiveManager.createSnapshot();
+        assertSame(file, snapshot.getFile());
+        
+        // Changes after the snapshot are not saved
+        model.setName("Changed");
+        
+        snapshot.save(null);
+        assertTrue(IArchiveManager.FACTORY.isArchiveFile(file));
+        
+        // The model is not saved itself
+        assertNull(model.eResource());
+        
+        IArchimateModel savedModel = new EditorModelManager().loadModel(file);
+        assertFalse("Changed".equals(savedModel.getName()));
+        
+        // No temp files left
+        for(File f : file.getParentFile().listFiles()) {
+            assertFalse(f.getName().startsWith("~archi-"));
+        }
+        
+        file.delete();
+    }
+    
+    @Test
+    public void testCreateSnapshot_Binary() throws IOException {
+        File file = TestUtils.createTempFile(".archimate");
+        model.setFile(file);
+        
+        // The model was loaded from a file in the binary format
+        Resource resource = ArchimateResourceFactory.createNewBinaryResource(file);
+        resource.getContents().add(model);
+        
+        ModelSnapshot snapshot = archiveManager.createSnapshot();
+        assertTrue(snapshot.isBinary());
+        
+        snapshot.save(null);
+        assertFalse(IArchiveManager.FACTORY.isArchiveFile(file));
+        assertTrue(ArchimateResourceFactory.isBinaryResource(URI.createFileURI(file.getAbsolutePath())));
+        
+        file.delete();
+    }
+    
+    @Test
+    public void testCreateSnapshot_BinaryArchive() throws IOException {
+        IDiagramModelImage dmImage = IArchimateFactory.eINSTANCE.createDiagramModelImage();
+        dm.getChildren().add(dmImage);
+        archiveManager.loadImagesFromModelFile(TestSupport.TEST_MODEL_FILE_ZIPPED);
+        dmImage.setImagePath(archiveManager.getLoadedImagePaths().get(0));
+        
+        File file = TestUtils.createTempFile(".archimate");
+        model.setFile(file);
+        
+        Resource resource = ArchimateResourceFactory.createNewBinaryResource(file);
+        resource.getContents().add(model);
+        
+        archiveManager.createSnapshot().save(null);
+        assertTrue(IArchiveManager.FACTORY.isArchiveFile(file));
+        assertTrue(ArchimateResourceFactory.isBinaryResource(IArchiveManager.FACTORY.createArchiveModelURI(file)));
+        
+        // Release the images so that they are not read from the deleted file
+        archiveManager.dispose();
+        file.delete();
+    }
+    
+    @Test
+    public void testCreateSnapshot_XML() throws IOException {
+        File file = TestUtils.createTempFile(".archimate");
+        model.setFile(file);
+        
+        ModelSnapshot snapshot = archiveManager.createSnapshot();
+        assertFalse(snapshot.isBinary());
+        
+        snapshot.save(null);
+        assertFalse(ArchimateResourceFactory.isBinaryResource(URI.createFileURI(file.getAbsolutePath())));
+        
+        file.delete();
+    }
+    
+    @Test
+    public void testSaveModel_LazyDiagramModelsNotLoaded() throws IOException {
+        Resource resource = ArchimateResourceFactory.createNewResource(IArchiveManager.FACTORY.createArchiveModelURI(TestSupport.TEST_MODEL_FILE_ZIPPED));
+        resource.load(Collections.singletonMap(ArchimateResource.OPTION_LOAD_DIAGRAMS_LAZILY, Boolean.TRUE));
+        IArchimateModel lazyModel = (IArchimateModel)resource.getContents().get(0);
+        
+        ArchiveManager lazyArchiveManager = new ArchiveManager(lazyModel);
+        lazyArchiveManager.loadImagesFromModelFile(TestSupport.TEST_MODEL_FILE_ZIPPED);
+        
+        // The images of the diagram models are known without loading them
+        assertTrue(lazyArchiveManager.hasImages());
+        assertEquals(2, lazyArchiveManager.getImagePaths().size());
+        assertNotLoaded(lazyModel);
+        
+        File file = TestUtils.createTempFile(".archimate");
+        lazyModel.setFile(file);
+        
+        // Saved in the background
+        lazyArchiveManager.createSnapshot().save(null);
+        assertNotLoaded(lazyModel);
+        assertSavedModel(file);
+        
+        // Saved now
+        lazyArchiveManager.saveModel();
+        assertNotLoaded(lazyModel);
+        assertSavedModel(file);
+        
+        lazyArchiveManager.dispose();
+        file.delete();
+    }
+    
+    private void assertNotLoaded(IArchimateModel model) {
+        assertFalse(model.getDiagramModels().isEmpty());
+        for(IDiagramModel dm : model.getDiagramModels()) {
+            assertFalse(LazyDiagramContent.isLoaded(dm));
+        }
+    }
+    
+    private void assertSavedModel(File file) throws IOException {
+        assertTrue(IArchiveManager.FACTORY.isArchiveFile(file));
+        assertEquals(2, ArchiveManager.readImageIndex(file).size());
+        
+        Resource expected = ArchimateResourceFactory.createNewResource(IArchiveManager.FACTORY.createArchiveModelURI(TestSupport.TEST_MODEL_FILE_ZIPPED));
+        expected.load(null);
+        Resource saved = ArchimateResourceFactory.createNewResource(IArchiveManager.FACTORY.createArchiveModelURI(file));
+        saved.load(null);
+        assertTrue(EcoreUtil.equals(expected.getContents().get(0), saved.getContents().get(0)));
+    }
+    
+    @Test
+    public void testSaveModel_ImagesStored() throws IOException {
+        IDiagramModelImage dmImage1 = IArchimateFactory.eINSTANCE.createDiagramModelImage();
+        dm.getChildren().add(dmImage1);
+        IDiagramModelImage dmImage2 = IArchimateFactory.eINSTANCE.createDiagramModelImage();
+        dm.getChildren().add(dmImage2);
+        
+        // Copied from the archive file
+        archiveManager.loadImagesFromModelFile(TestSupport.TEST_MODEL_FILE_ZIPPED);
+        String imagePath1 = archiveManager.getLoadedImagePaths().get(0);
+        dmImage1.setImagePath(imagePath1);
+        
+        // Held in memory
+        String imagePath2 = archiveManager.addImageFromFile(new File(TestSupport.getTestDataFolder(), "img/img1.png"));
+        dmImage2.setImagePath(imagePath2);
+        
+        File file = TestUtils.createTempFile(".archimate");
+        model.setFile(file);
+        archiveManager.saveModel();
+        
+        ZipFile zipFile = new ZipFile(file);
+        try {
+            assertEquals(ZipEntry.DEFLATED, zipFile.getEntry("model.xml").getMethod());
+            
+            ZipEntry zipEntry1 = zipFile.getEntry(imagePath1);
+            assertEquals(ZipEntry.STORED, zipEntry1.getMethod());
+            assertEquals(archiveManager.getBytesFromEntry(imagePath1).length, zipEntry1.getSize());
+            
+            assertEquals(ZipEntry.STORED, zipFile.getEntry(imagePath2).getMethod());
+        }
+        finally {
+            zipFile.close();
+        }
+        
+        // Release the images so that they are not read from the deleted file
+        archiveManager.dispose();
+        file.delete();
+    }
+    
+    @Test
+    public void testSave_ImagesReadFromSameFile() throws IOException {
+        // An image in the file that is saved to, with a name that no other test uses
+        String imagePath = "images/" + EcoreUtil.generateUUID() + ".png";
+        byte[] bytes = ArchiveManager.BYTE_ARRAY_STORAGE.getBytesFromFile(new File(TestSupport.getTestDataFolder(), "img/img1.png"));
+        
+        File file = TestUtils.createTempFile(".archimate");
+        ZipOutputStream zOut = new ZipOutputStream(new FileOutputStream(file));
+        zOut.putNextEntry(new ZipEntry(imagePath));
+        zOut.write(bytes);
+        zOut.closeEntry();
+        zOut.close();
+        
+        ArchiveManager.BYTE_ARRAY_STORAGE.addZipEntry(imagePath, file, bytes.length);
+        
+        // The file is kept open once the image has been read from it
+        assertNotNull(ArchiveManager.BYTE_ARRAY_STORAGE.getEntry(imagePath));
+        assertTrue(ArchiveManager.BYTE_ARRAY_STORAGE.isZipFileOpen(file));
+        
+        // It is closed to replace it
+        Map<String, ModelSnapshot.ImageEntry> images = new HashMap<String, ModelSnapshot.ImageEntry>();
+        images.put(imagePath, new ModelSnapshot.ImageEntry(file, imagePath));
+        new ModelSnapshot(model, file, images).save(null);
+        assertFalse(ArchiveManager.BYTE_ARRAY_STORAGE.isZipFileOpen(file));
+        
+        // And opened again to read from the saved file
+        ArchiveManager.BYTE_ARRAY_STORAGE.removeEntry(imagePath);
+        ArchiveManager.BYTE_ARRAY_STORAGE.addZipEntry(imagePath, file, bytes.length);
+        assertEquals(bytes.length, ArchiveManager.BYTE_ARRAY_STORAGE.getEntry(imagePath).length);
+        assertTrue(ArchiveManager.BYTE_ARRAY_STORAGE.isZipFileOpen(file));
+        
+        // Closed when no entries are left in it
+        ArchiveManager.BYTE_ARRAY_STORAGE.removeEntry(imagePath);
+        assertFalse(ArchiveManager.BYTE_ARRAY_STORAGE.isZipFileOpen(file));
+        assertTrue(file.delete());
+    }
+    
+    @Test
+    public void testIsCompressedImage() {
+        assertTrue(ModelSnapshot.isCompressedImage("images/image.PNG", null));
+        assertTrue(ModelSnapshot.isCompressedImage("images/image.jpg", null));
+        assertFalse(ModelSnapshot.isCompressedImage("images/image.bmp", null));
+        assertFalse(ModelSnapshot.isCompressedImage("images/image", null));
+        assertTrue(ModelSnapshot.isCompressedImage("images/image", new byte[] { 'G', 'I', 'F', '8', '9', 'a' }));
+        assertFalse(ModelSnapshot.isCompressedImage("images/image", new byte[] { 'B', 'M', 0, 0 }));
+    }
+    
     @Test
     public void testSaveModel_ResourceSame() throws IOException {
         File file = TestUtils.createTempFile(".archimate");
@@ -239,6 +609,58 @@ public class ArchiveManagerTests {
         assertSame(resource, model.eResource());
     }
     
+    @Test
+    public void testImagesShared_MultipleModelsOnThreads() throws Exception {
+        // This model keeps its images while the other models are loaded and closed
+        archiveManager.loadImagesFromModelFile(TestSupport.TEST_MODEL_FILE_ZIPPED);
+        List<String> imagePaths = archiveManager.getLoadedImagePaths();
+        assertFalse(imagePaths.isEmpty());
+        
+        Map<String, Integer> referenceCounts = new HashMap<String, Integer>();
+        for(String imagePath : imagePaths) {
+            referenceCounts.put(imagePath, ArchiveManager.BYTE_ARRAY_STORAGE.getReferenceCount(imagePath));
+        }
+        
+        // Other models are loaded and closed on other threads as the images are read on this thread
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<?>> futures = new ArrayList<Future<?>>();
+        
+        for(int i = 0; i < 50; i++) {
+            futures.add(executor.submit(new Callable<Object>() {
+                public Object call() throws Exception {
+                    IArchimateModel otherModel = IArchimateFactory.eINSTANCE.createArchimateModel();
+                    ArchiveManager otherArchiveManager = new ArchiveManager(otherModel);
+                    otherArchiveManager.loadImagesFromModelFile(TestSupport.TEST_MODEL_FILE_ZIPPED);
+                    for(String imagePath : otherArchiveManager.getLoadedImagePaths()) {
+                        assertNotNull(otherArchiveManager.getBytesFromEntry(imagePath));
+                    }
+                    otherArchiveManager.dispose();
+                    return null;
+                }
+            }));
+        }
+        
+        executor.shutdown();
+        
+        while(!executor.isTerminated()) {
+            for(String imagePath : imagePaths) {
+                assertNotNull(archiveManager.getBytesFromEntry(imagePath));
+            }
+        }
+        
+        for(Future<?> future : futures) {
+            future.get();
+        }
+        
+        // Only the references of this model are left
+        for(String imagePath : imagePaths) {
+            assertEquals(referenceCounts.get(imagePath).intValue(), ArchiveManager.BYTE_ARRAY_STORAGE.getReferenceCount(imagePath));
+            assertNotNull(archiveManager.getBytesFromEntry(imagePath));
+        }
+        
+        archiveManager.dispose();
+    }
+    
     @Test
     public void testDispose() throws IOException {
         IDiagramModelImage dmImage = IArchimateFactory.eINSTANCE.createDiagramModelImage();
@@ -246,12 +668,12 @@ public class ArchiveManagerTests {
         archiveManager.loadImagesFromModelFile(TestSupport.TEST_MODEL_FILE_ZIPPED);
         dmImage.setImagePath(archiveManager.getLoadedImagePaths().get(0));
         
-        assertEquals(2, model.eAdapters().size());
+        assertEquals(3, model.eAdapters().size());
         assertFalse(archiveManager.getLoadedImagePaths().isEmpty());
         
         archiveManager.dispose();
         
-        assertEquals(1, model.eAdapters().size());
+        assertEquals(2, model.eAdapters().size());
         assertTrue(archiveManager.getLoadedImagePaths().isEmpty());
     }
 }
\ No newline at end of file
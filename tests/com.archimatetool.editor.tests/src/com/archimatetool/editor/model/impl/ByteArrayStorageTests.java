@@ -14,7 +14,11 @@ import static org.junit.Assert.assertTrue;
 import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 
 import junit.framework.JUnit4TestAdapter;
 
@@ -22,6 +26,7 @@ import org.junit.Before;
 import org.junit.Test;
 
 import com.archimatetool.editor.TestSupport;
+import com.archimatetool.tests.TestUtils;
 
 
 @SuppressWarnings("nls")
@@ -152,6 +157,200 @@ public class ByteArrayStorageTests {
         // entry2 should reference original bytes1
         assertEquals(bytes1, storage.getEntry(entry2));
     }
+    
+    @Test
+    public void getKeyByContentHash() throws Exception {
+        byte[] bytes = storage.getBytesFromFile(img1File);
+        storage.addByteContentEntry(entry1, bytes);
+        
+        // Different array, same content
+        assertEquals(entry1, storage.getKey(storage.getBytesFromFile(img2File)));
+        assertNull(storage.getKey(new byte[] { 1, 2, 3 }));
+        
+        storage.removeEntry(entry1);
+        assertNull(storage.getKey(bytes));
+    }
+    
+    @Test
+    public void getHash() {
+        assertEquals("e3b0c44298fc1c149afbf4c8996fb92427ae41e4649b934ca495991b7852b855", ByteArrayStorage.getHash(new byte[0]));
+    }
+    
+    @Test
+    public void referenceCounts() throws Exception {
+        storage.addFileContentEntry(entry1, img1File);
+        assertEquals(0, storage.getReferenceCount(entry1));
+        
+        storage.addReference(entry1);
+        storage.addReference(entry1);
+        assertEquals(2, storage.getReferenceCount(entry1));
+        
+        storage.removeReference(entry1);
+        assertEquals(1, storage.getReferenceCount(entry1));
+        assertTrue(storage.hasEntry(entry1));
+        
+        // Removed when no longer referenced
+        storage.removeReference(entry1);
+        assertEquals(0, storage.getReferenceCount(entry1));
+        assertFalse(storage.hasEntry(entry1));
+    }
+    
+    private File createZipFile(String entryName, byte[] bytes) throws IOException {
+        return createZipFile(bytes, entryName);
+    }
+    
+    private File createZipFile(byte[] bytes, String... entryNames) throws IOException {
+        File file = TestUtils.createTempFile(".zip");
+        ZipOutputStream zOut = new ZipOutputStream(new FileOutputStream(file));
+        for(String entryName : entryNames) {
+            zOut.putNextEntry(new ZipEntry(entryName));
+            zOut.write(bytes);
+            zOut.closeEntry();
+        }
+        zOut.close();
+        return file;
+    }
+    
+    @Test
+    public void addZipEntry() throws Exception {
+        byte[] bytes = storage.getBytesFromFile(img1File);
+        File zipFile = createZipFile(entry1, bytes);
+        
+        storage.addZipEntry(entry1, zipFile, bytes.length);
+        assertTrue(storage.hasEntry(entry1));
+        assertTrue(storage.hasEntries());
+        assertEquals(imgfileByteSize, storage.getEntrySize(entry1));
+        assertEquals(zipFile, storage.getZipFile(entry1));
+        assertEquals(entry1, storage.getZipEntryName(entry1));
+        
+        // Not read yet
+        assertEquals(0, storage.getCacheSize());
+        
+        // Read when asked for
+        assertEquals(imgfileByteSize, storage.getEntry(entry1).length);
+        assertEquals(imgfileByteSize, storage.getCacheSize());
+        
+        // Same bytes are found in the zip file
+        assertEquals(entry1, storage.getKey(bytes));
+        
+        storage.removeEntry(entry1);
+        assertFalse(storage.hasEntry(entry1));
+        assertEquals(0, storage.getCacheSize());
+        assertNull(storage.getZipFile(entry1));
+    }
+    
+    @Test
+    public void getKey_ZipEntriesReadOnlyIfSameChecksum() throws Exception {
+        byte[] bytes = storage.getBytesFromFile(img1File);
+        File zipFile1 = createZipFile(entry1, bytes);
+        byte[] otherBytes = new byte[bytes.length];
+        File zipFile2 = createZipFile(entry2, otherBytes);
+        
+        storage.addZipEntry(entry1, zipFile1, bytes.length, ByteArrayStorage.getCRC(bytes));
+        storage.addZipEntry(entry2, zipFile2, otherBytes.length, ByteArrayStorage.getCRC(otherBytes));
+        
+        // Only the entry with the same size and CRC-32 is read
+        assertEquals(entry1, storage.getKey(bytes));
+        assertEquals(imgfileByteSize, storage.getCacheSize());
+        assertFalse(storage.isZipFileOpen(zipFile2));
+        
+        assertNull(storage.getKey(new byte[] { 1, 2, 3 }));
+        assertFalse(storage.isZipFileOpen(zipFile2));
+        
+        storage.removeEntry(entry1);
+        storage.removeEntry(entry2);
+        zipFile1.delete();
+        zipFile2.delete();
+    }
+    
+    @Test
+    public void setZipFile() throws Exception {
+        byte[] bytes = storage.getBytesFromFile(img1File);
+        File zipFile1 = createZipFile(entry1, bytes);
+        File zipFile2 = createZipFile(entry1, bytes);
+        
+        storage.addZipEntry(entry1, zipFile1, bytes.length);
+        storage.getEntry(entry1);
+        assertTrue(storage.isZipFileOpen(zipFile1));
+        
+        // No entries are left in the first zip file so it is closed
+        storage.setZipFile(entry1, zipFile2);
+        assertFalse(storage.isZipFileOpen(zipFile1));
+        assertTrue(zipFile1.delete());
+        
+        storage.removeEntry(entry1);
+        storage.addZipEntry(entry1, zipFile2, bytes.length);
+        assertEquals(imgfileByteSize, storage.getEntry(entry1).length);
+        
+        storage.removeEntry(entry1);
+        zipFile2.delete();
+    }
+    
+    @Test
+    public void zipFileKeptOpen() throws Exception {
+        byte[] bytes = storage.getBytesFromFile(img1File);
+        File zipFile = createZipFile(bytes, entry1, entry2);
+        
+        storage.addZipEntry(entry1, zipFile, bytes.length);
+        storage.addZipEntry(entry2, zipFile, bytes.length);
+        assertFalse(storage.isZipFileOpen(zipFile));
+        
+        // Opened when an entry is first read and kept open for the next one
+        assertNotNull(storage.getEntry(entry1));
+        assertTrue(storage.isZipFileOpen(zipFile));
+        assertNotNull(storage.getEntry(entry2));
+        assertTrue(storage.isZipFileOpen(zipFile));
+        
+        // Closed when the last entry in it is removed
+        storage.removeEntry(entry1);
+        assertTrue(storage.isZipFileOpen(zipFile));
+        storage.removeEntry(entry2);
+        assertFalse(storage.isZipFileOpen(zipFile));
+        
+        assertTrue(zipFile.delete());
+    }
+    
+    @Test
+    public void zipFileKeptOpen_EntryWithSameBytes() throws Exception {
+        byte[] bytes = storage.getBytesFromFile(img1File);
+        File zipFile = createZipFile(entry1, bytes);
+        
+        storage.addZipEntry(entry1, zipFile, bytes.length);
+        assertNotNull(storage.getEntry(entry1));
+        
+        // An entry with the same bytes is left in the zip file
+        storage.addByteContentEntry(entry2, bytes);
+        assertEquals(zipFile, storage.getZipFile(entry2));
+        
+        // Closed when the last entry in it is removed
+        storage.removeEntry(entry1);
+        assertTrue(storage.isZipFileOpen(zipFile));
+        storage.removeEntry(entry2);
+        assertFalse(storage.isZipFileOpen(zipFile));
+        
+        assertTrue(zipFile.delete());
+    }
+    
+    @Test
+    public void closeZipFile() throws Exception {
+        byte[] bytes = storage.getBytesFromFile(img1File);
+        File zipFile = createZipFile(bytes, entry1, entry2);
+        
+        storage.addZipEntry(entry1, zipFile, bytes.length);
+        storage.addZipEntry(entry2, zipFile, bytes.length);
+        storage.getEntry(entry1);
+        
+        storage.closeZipFile(zipFile);
+        assertFalse(storage.isZipFileOpen(zipFile));
+        
+        // Opened again
+        assertNotNull(storage.getEntry(entry2));
+        assertTrue(storage.isZipFileOpen(zipFile));
+        
+        storage.removeEntry(entry1);
+        storage.removeEntry(entry2);
+        zipFile.delete();
+    }
 
     
 }
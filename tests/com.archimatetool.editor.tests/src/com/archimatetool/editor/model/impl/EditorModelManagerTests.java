@@ -222,6 +222,68 @@ public class EditorModelManagerTests {
         assertTrue(result);
     }
     
+    @Test
+    public void saveModel_SavedAndNotDirty() throws Exception {
+        File file = TestData.TEST_MODEL_FILE_ARCHISURANCE;
+        
+        IArchimateModel model = editorModelManager.loadModel(file);
+        
+        File tmpFile = TestUtils.createTempFile(".archimate");
+        model.setFile(tmpFile);
+        
+        Preferences.STORE.setValue(IPreferenceConstants.BACKUP_ON_SAVE, false);
+        
+        CommandStack stack = (CommandStack)model.getAdapter(CommandStack.class);
+        stack.execute(new EObjectFeatureCommand("", model, IArchimatePackage.Literals.NAMEABLE__NAME, "Saved"));
+        assertTrue(editorModelManager.isModelDirty(model));
+        
+        assertTrue(editorModelManager.saveModel(model));
+        
+        // Wait for the save if it is in the background
+        TestUtils.invokePrivateMethod(editorModelManager, "waitForSave", new Class[] { IArchimateModel.class }, new Object[] { model });
+        
+        assertTrue(tmpFile.exists());
+        assertFalse(editorModelManager.isModelDirty(model));
+        assertEquals("Saved", new EditorModelManager().loadModel(tmpFile).getName());
+    }
+    
+    @Test
+    public void modelSaved_OverlappingSavesKeepLaterChanges() throws Exception {
+        IArchimateModel model = editorModelManager.loadModel(TestData.TEST_MODEL_FILE_ARCHISURANCE);
+        
+        File tmpFile = TestUtils.createTempFile(".archimate");
+        model.setFile(tmpFile);
+        
+        CommandStack stack = (CommandStack)model.getAdapter(CommandStack.class);
+        ModelJournal journal = (ModelJournal)model.getAdapter(ModelJournal.class);
+        
+        // Snapshot 1 is taken and starts saving
+        stack.execute(new EObjectFeatureCommand("", model, IArchimatePackage.Literals.NAMEABLE__NAME, "Saved 1"));
+        Object savePoint1 = stack.getUndoCommand();
+        int mark1 = journal.getMark();
+        
+        // Snapshot 2 is taken and waits to be saved
+        stack.execute(new EObjectFeatureCommand("", model, IArchimatePackage.Literals.NAMEABLE__NAME, "Saved 2"));
+        Object savePoint2 = stack.getUndoCommand();
+        int mark2 = journal.getMark();
+        
+        // More edits
+        stack.execute(new EObjectFeatureCommand("", model, IArchimatePackage.Literals.ARCHIMATE_MODEL__PURPOSE, "Not saved"));
+        stack.execute(new EObjectFeatureCommand("", model, IArchimatePackage.Literals.NAMEABLE__NAME, "Not saved"));
+        
+        // The snapshots finish saving in order
+        ((EditorModelManager)editorModelManager).modelSaved(model, savePoint1, mark1);
+        ((EditorModelManager)editorModelManager).modelSaved(model, savePoint2, mark2);
+        
+        // The edits made after snapshot 2 are still unsaved and in the journal
+        assertTrue(editorModelManager.isModelDirty(model));
+        assertEquals(2, journal.getEntryCount());
+        assertTrue(ModelJournal.getJournalFile(tmpFile).exists());
+        
+        journal.dispose();
+        assertFalse(ModelJournal.getJournalFile(tmpFile).exists());
+    }
+    
     // ---------------------------------------------------------------------------------------------
     
     /**
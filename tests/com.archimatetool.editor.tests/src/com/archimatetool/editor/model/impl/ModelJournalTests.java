@@ -0,0 +1,248 @@
+/**
+ * This program and the accompanying materials
+ * are made available under the terms of the License
+ * which accompanies this distribution in the file LICENSE.txt
+ */
+package com.archimatetool.editor.model.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.emf.ecore.util.EcoreUtil;
+import org.eclipse.gef.commands.Command;
+import org.eclipse.gef.commands.CommandStack;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.archimatetool.editor.model.commands.EObjectFeatureCommand;
+import com.archimatetool.editor.utils.FileUtils;
+import com.archimatetool.model.FolderType;
+import com.archimatetool.model.IArchimateElement;
+import com.archimatetool.model.IArchimateFactory;
+import com.archimatetool.model.IArchimateModel;
+import com.archimatetool.model.IArchimatePackage;
+import com.archimatetool.model.IDiagramModel;
+import com.archimatetool.model.IDiagramModelObject;
+import com.archimatetool.model.IFolder;
+import com.archimatetool.model.util.ArchimateResourceFactory;
+import com.archimatetool.tests.TestData;
+import com.archimatetool.tests.TestUtils;
+
+import junit.framework.JUnit4TestAdapter;
+
+
+@SuppressWarnings("nls")
+public class ModelJournalTests {
+    
+    public static junit.framework.Test suite() {
+        return new JUnit4TestAdapter(ModelJournalTests.class);
+    }
+    
+    private File file;
+    private IArchimateModel model;
+    private CommandStack stack;
+    private ModelJournal journal;
+    
+    @Before
+    public void runBeforeEachTest() throws IOException {
+        file = TestUtils.createTempFile(".archimate");
+        FileUtils.copyFile(TestData.TEST_MODEL_FILE_ARCHISURANCE, file, false);
+        
+        model = loadModel(file);
+        stack = new CommandStack();
+        journal = new ModelJournal(model, stack);
+    }
+    
+    @After
+    public void runAfterEachTest() {
+        journal.dispose();
+        file.delete();
+    }
+    
+    private IArchimateModel loadModel(File file) throws IOException {
+        Resource resource = ArchimateResourceFactory.createNewResource(file);
+        resource.load(null);
+        IArchimateModel model = (IArchimateModel)resource.getContents().get(0);
+        model.setFile(file);
+        return model;
+    }
+    
+    @Test
+    public void testEntryWrittenForEachCommand() {
+        assertEquals(0, journal.getMark());
+        
+        stack.execute(new EObjectFeatureCommand("", model, IArchimatePackage.Literals.NAMEABLE__NAME, "Renamed"));
+        assertEquals(1, journal.getMark());
+        assertTrue(ModelJournal.getJournalFile(file).exists());
+        
+        stack.undo();
+        stack.redo();
+        assertEquals(3, journal.getMark());
+        
+        // Changes not made by commands are not journaled
+        model.setPurpose("Purpose");
+        assertEquals(3, journal.getMark());
+    }
+    
+    @Test
+    public void testRecover() throws IOException {
+        final IFolder folder = model.getFolder(FolderType.BUSINESS);
+        final IArchimateElement actor = IArchimateFactory.eINSTANCE.createBusinessActor();
+        actor.setName("New Actor");
+        
+        // Add an element
+        stack.execute(new Command() {
+            @Override
+            public void execute() {
+                folder.getElements().add(actor);
+            }
+            
+            @Override
+            public void undo() {
+                folder.getElements().remove(actor);
+            }
+        });
+        
+        // Rename it
+        stack.execute(new EObjectFeatureCommand("", actor, IArchimatePackage.Literals.NAMEABLE__NAME, "Renamed Actor"));
+        
+        // Move it
+        stack.execute(new Command() {
+            @Override
+            public void execute() {
+                folder.getElements().move(0, actor);
+            }
+        });
+        
+        // Remove a diagram object and add it back
+        final IDiagramModel dm = model.getDefaultDiagramModel();
+        final IDiagramModelObject dmo = dm.getChildren().get(0);
+        Command delete = new Command() {
+            @Override
+            public void execute() {
+                dm.getChildren().remove(dmo);
+            }
+            
+            @Override
+            public void undo() {
+                dm.getChildren().add(0, dmo);
+            }
+        };
+        stack.execute(delete);
+        stack.undo();
+        
+        // Archi closes without saving, and opens the model again
+        IArchimateModel model2 = loadModel(file);
+        CommandStack stack2 = new CommandStack();
+        ModelJournal journal2 = new ModelJournal(model2, stack2);
+        
+        assertTrue(journal2.hasUnsavedChanges());
+        assertTrue(journal2.recover());
+        assertTrue(stack2.isDirty());
+        assertFalse(stack2.canUndo());
+        
+        assertTrue(EcoreUtil.equals(model, model2));
+        
+        // All changes were replayed so the journal is not kept
+        assertFalse(ModelJournal.getFailedJournalFile(file).exists());
+        
+        journal2.dispose();
+    }
+    
+    @Test
+    public void testRecover_NotAllChanges() throws IOException {
+        IDiagramModel dm = model.getDefaultDiagramModel();
+        
+        stack.execute(new EObjectFeatureCommand("", model, IArchimatePackage.Literals.NAMEABLE__NAME, "Renamed"));
+        stack.execute(new EObjectFeatureCommand("", dm, IArchimatePackage.Literals.NAMEABLE__NAME, "Renamed View"));
+        
+        // The diagram model is not in the model when it is opened again
+        IArchimateModel model2 = loadModel(file);
+        IDiagramModel dm2 = model2.getDefaultDiagramModel();
+        ((IFolder)dm2.eContainer()).getElements().remove(dm2);
+        
+        CommandStack stack2 = new CommandStack();
+        ModelJournal journal2 = new ModelJournal(model2, stack2);
+        
+        File failedFile = ModelJournal.getFailedJournalFile(file);
+        
+        try {
+            journal2.recover();
+            fail("Should have thrown IOException");
+        }
+        catch(IOException ex) {
+            // The change before the one that failed was replayed
+            assertEquals("Renamed", model2.getName());
+            
+            // The journal is kept with all of its changes
+            assertTrue(failedFile.exists());
+            assertTrue(failedFile.length() > ModelJournal.getJournalFile(file).length());
+        }
+        finally {
+            journal2.dispose();
+            failedFile.delete();
+        }
+    }
+    
+    @Test
+    public void testSaved() throws IOException {
+        stack.execute(new EObjectFeatureCommand("", model, IArchimatePackage.Literals.NAMEABLE__NAME, "Renamed"));
+        int mark = journal.getMark();
+        stack.execute(new EObjectFeatureCommand("", model, IArchimatePackage.Literals.ARCHIMATE_MODEL__PURPOSE, "Purpose"));
+        
+        // Saved with the first change only
+        journal.saved(mark);
+        assertEquals(2, journal.getMark());
+        assertEquals(1, journal.getEntryCount());
+        
+        ModelJournal journal2 = new ModelJournal(loadModel(file), new CommandStack());
+        assertTrue(journal2.hasUnsavedChanges());
+        journal2.dispose();
+        
+        journal.saved(journal.getMark());
+        assertFalse(ModelJournal.getJournalFile(file).exists());
+    }
+    
+    @Test
+    public void testSaved_Overlapping() throws IOException {
+        stack.execute(new EObjectFeatureCommand("", model, IArchimatePackage.Literals.NAMEABLE__NAME, "Renamed"));
+        int mark1 = journal.getMark();
+        stack.execute(new EObjectFeatureCommand("", model, IArchimatePackage.Literals.ARCHIMATE_MODEL__PURPOSE, "Purpose"));
+        int mark2 = journal.getMark();
+        stack.execute(new EObjectFeatureCommand("", model, IArchimatePackage.Literals.NAMEABLE__NAME, "Renamed again"));
+        
+        // The first save finishes and then the second
+        journal.saved(mark1);
+        assertEquals(2, journal.getEntryCount());
+        journal.saved(mark2);
+        assertEquals(1, journal.getEntryCount());
+        assertEquals(3, journal.getMark());
+        
+        // The change made after the second save is still in the journal
+        ModelJournal journal2 = new ModelJournal(loadModel(file), new CommandStack());
+        assertTrue(journal2.hasUnsavedChanges());
+        journal2.dispose();
+        
+        // An earlier save finishing late doesn't remove anything
+        journal.saved(mark1);
+        assertEquals(1, journal.getEntryCount());
+        assertTrue(ModelJournal.getJournalFile(file).exists());
+    }
+    
+    @Test
+    public void testDiscard() throws IOException {
+        stack.execute(new EObjectFeatureCommand("", model, IArchimatePackage.Literals.NAMEABLE__NAME, "Renamed"));
+        
+        ModelJournal journal2 = new ModelJournal(loadModel(file), new CommandStack());
+        journal2.discard();
+        assertFalse(journal2.hasUnsavedChanges());
+        journal2.dispose();
+    }
+}
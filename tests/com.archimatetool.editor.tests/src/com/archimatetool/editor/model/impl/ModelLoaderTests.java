@@ -0,0 +1,93 @@
+/**
+ * This program and the accompanying materials
+ * are made available under the terms of the License
+ * which accompanies this distribution in the file LICENSE.txt
+ */
+package com.archimatetool.editor.model.impl;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.archimatetool.editor.TestSupport;
+import com.archimatetool.editor.model.IArchiveManager;
+import com.archimatetool.model.IArchimateModel;
+import com.archimatetool.tests.TestData;
+
+import junit.framework.JUnit4TestAdapter;
+
+
+public class ModelLoaderTests {
+    
+    public static junit.framework.Test suite() {
+        return new JUnit4TestAdapter(ModelLoaderTests.class);
+    }
+    
+    @Test
+    public void testLoad() {
+        ModelLoader loader = new ModelLoader(TestData.TEST_MODEL_FILE_ARCHISURANCE, false);
+        loader.load();
+        
+        assertNotNull(loader.getModel());
+        assertNull(loader.getError());
+        assertFalse(loader.needsConfirmation());
+        
+        // Not an archive file
+        assertNull(loader.getImageIndex());
+        
+        // Not registered yet
+        assertNull(loader.getModel().getFile());
+    }
+    
+    @Test
+    public void testLoadReadsImageIndex() {
+        ModelLoader loader = new ModelLoader(TestSupport.TEST_MODEL_FILE_ZIPPED, true);
+        loader.load();
+        
+        assertNotNull(loader.getModel());
+        assertFalse(loader.getImageIndex().isEmpty());
+    }
+    
+    @Test
+    public void testCreateArchiveManager() {
+        ModelLoader loader = new ModelLoader(TestSupport.TEST_MODEL_FILE_ZIPPED, false);
+        loader.load();
+        
+        IArchiveManager archiveManager = loader.createArchiveManager();
+        assertSame(archiveManager, loader.getModel().getAdapter(IArchiveManager.class));
+        assertTrue(archiveManager.hasImages());
+    }
+    
+    @Test
+    public void testLoadedOnceFromManyThreads() throws Exception {
+        final ModelLoader loader = new ModelLoader(TestData.TEST_MODEL_FILE_ARCHISURANCE, true);
+        
+        List<Thread> threads = new ArrayList<Thread>();
+        for(int i = 0; i < 4; i++) {
+            Thread thread = new Thread(new Runnable() {
+                public void run() {
+                    loader.load();
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        
+        for(Thread thread : threads) {
+            thread.join();
+        }
+        
+        IArchimateModel model = loader.getModel();
+        assertNotNull(model);
+        
+        loader.load();
+        assertSame(model, loader.getModel());
+    }
+}
@@ -19,6 +19,7 @@ public class AllUITests {
         suite.addTest(ArchimateLabelProviderTests.suite());
         suite.addTest(ColorFactoryTests.suite());
         suite.addTest(FigureChooserTests.suite());
+        suite.addTest(ImageCacheTests.suite());
         
         // factory
         suite.addTest(AllUIFactoryTests.suite());
@@ -0,0 +1,151 @@
+/**
+ * This program and the accompanying materials
+ * are made available under the terms of the License
+ * which accompanies this distribution in the file LICENSE.txt
+ */
+package com.archimatetool.editor.ui;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+
+import org.eclipse.swt.graphics.Image;
+import org.eclipse.swt.graphics.Rectangle;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.archimatetool.editor.TestSupport;
+import com.archimatetool.editor.model.IArchiveManager;
+import com.archimatetool.model.IArchimateModel;
+import com.archimatetool.testingtools.ArchimateTestModel;
+
+import junit.framework.JUnit4TestAdapter;
+
+
+
+@SuppressWarnings("nls")
+public class ImageCacheTests {
+    
+    public static junit.framework.Test suite() {
+        return new JUnit4TestAdapter(ImageCacheTests.class);
+    }
+    
+    private IArchiveManager archiveManager;
+    private String imagePath;
+    
+    @Before
+    public void runBeforeEachTest() throws Exception {
+        IArchimateModel model = new ArchimateTestModel().createNewModel();
+        archiveManager = (IArchiveManager)model.getAdapter(IArchiveManager.class);
+        
+        // 268 x 268
+        imagePath = archiveManager.addImageFromFile(new File(TestSupport.getTestDataFolder(), "img/img3.png"));
+    }
+    
+    @Test
+    public void testGetImage_Shared() {
+        ImageCache cache = new ImageCache(ImageCache.MAX_UNUSED_SIZE);
+        
+        Image image1 = cache.getImage(archiveManager, imagePath);
+        Image image2 = cache.getImage(archiveManager, imagePath);
+        assertSame(image1, image2);
+        assertEquals(new Rectangle(0, 0, 268, 268), image1.getBounds());
+        assertEquals(1, cache.size());
+        
+        assertNull(cache.getImage(archiveManager, "bogus"));
+        assertNull(cache.getImage(null, imagePath));
+    }
+    
+    @Test
+    public void testGetImage_Scaled() {
+        ImageCache cache = new ImageCache(ImageCache.MAX_UNUSED_SIZE);
+        
+        Image image1 = cache.getImage(archiveManager, imagePath, 10, 20);
+        Image image2 = cache.getImage(archiveManager, imagePath, 10, 20);
+        assertSame(image1, image2);
+        assertEquals(new Rectangle(0, 0, 10, 20), image1.getBounds());
+        
+        // Original is kept for scaling again
+        assertEquals(2, cache.size());
+        
+        // Same size as original
+        Image original = cache.getImage(archiveManager, imagePath);
+        assertSame(original, cache.getImage(archiveManager, imagePath, 268, 268));
+        assertNotSame(original, image1);
+    }
+    
+    @Test
+    public void testGetImage_MaxSize() {
+        ImageCache cache = new ImageCache(ImageCache.MAX_UNUSED_SIZE);
+        
+        Image image = cache.getImage(archiveManager, imagePath, 100);
+        assertEquals(new Rectangle(0, 0, 100, 100), image.getBounds());
+        
+        // Not bigger than max size
+        Image original = cache.getImage(archiveManager, imagePath);
+        assertSame(original, cache.getImage(archiveManager, imagePath, 500));
+    }
+    
+    @Test
+    public void testRelease() {
+        // Keep no released images
+        ImageCache cache = new ImageCache(0);
+        
+        Image image1 = cache.getImage(archiveManager, imagePath);
+        Image image2 = cache.getImage(archiveManager, imagePath);
+        
+        cache.release(image1);
+        assertFalse(image2.isDisposed());
+        
+        cache.release(image2);
+        assertTrue(image2.isDisposed());
+        assertEquals(0, cache.size());
+        
+        // Released more than once
+        cache.release(image2);
+        
+        // Not in the cache
+        Image image = new Image(null, 1, 1);
+        cache.release(image);
+        assertFalse(image.isDisposed());
+        image.dispose();
+    }
+    
+    @Test
+    public void testReleasedImagesKept() {
+        ImageCache cache = new ImageCache(ImageCache.MAX_UNUSED_SIZE);
+        
+        Image image1 = cache.getImage(archiveManager, imagePath, 10, 10);
+        cache.release(image1);
+        assertFalse(image1.isDisposed());
+        
+        // Got again
+        assertSame(image1, cache.getImage(archiveManager, imagePath, 10, 10));
+        
+        cache.release(image1);
+        cache.clear();
+        assertTrue(image1.isDisposed());
+        assertEquals(0, cache.size());
+    }
+    
+    @Test
+    public void testLeastRecentlyUsedDisposed() {
+        // Room for one released 10 x 10 image
+        ImageCache cache = new ImageCache(10 * 10 * 4);
+        
+        Image image1 = cache.getImage(archiveManager, imagePath, 10, 10);
+        Image image2 = cache.getImage(archiveManager, imagePath, 5, 5);
+        
+        cache.release(image1);
+        assertFalse(image1.isDisposed());
+        
+        cache.release(image2);
+        assertTrue(image1.isDisposed());
+        assertFalse(image2.isDisposed());
+    }
+}
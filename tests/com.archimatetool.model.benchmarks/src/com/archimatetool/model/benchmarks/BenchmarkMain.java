@@ -0,0 +1,31 @@
+/**
+ * This program and the accompanying materials
+ * are made available under the terms of the License
+ * which accompanies this distribution in the file LICENSE.txt
+ */
+package com.archimatetool.model.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+
+/**
+ * Main class of benchmarks.jar. This runs JMH with the command line given but adds the GC profiler, unless a profiler is given,
+ * so that the bytes allocated for each operation ("gc.alloc.rate.norm") are reported as well as the time or throughput.
+ * 
+ * @author Phillip Beauvoir
+ */
+public class BenchmarkMain {
+    
+    public static void main(String[] args) throws Exception {
+        List<String> list = new ArrayList<String>(Arrays.asList(args));
+        
+        if(!list.contains("-prof") && !list.contains("-l") && !list.contains("-h")) { //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+            list.add("-prof"); //$NON-NLS-1$
+            list.add("gc"); //$NON-NLS-1$
+        }
+        
+        org.openjdk.jmh.Main.main(list.toArray(new String[list.size()]));
+    }
+}
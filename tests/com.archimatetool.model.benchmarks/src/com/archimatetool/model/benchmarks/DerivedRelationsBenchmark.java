@@ -0,0 +1,130 @@
+/**
+ * This program and the accompanying materials
+ * are made available under the terms of the License
+ * which accompanies this distribution in the file LICENSE.txt
+ */
+package com.archimatetool.model.benchmarks;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.archimatetool.model.IArchimateElement;
+import com.archimatetool.model.IArchimateModel;
+import com.archimatetool.model.IRelationship;
+import com.archimatetool.model.util.ArchimateModelUtils;
+import com.archimatetool.model.util.DerivedRelationsUtils;
+import com.archimatetool.model.util.DerivedRelationsUtils.TooComplicatedException;
+
+
+/**
+ * Benchmark of finding derived relationships in a generated model.
+ * 
+ * The elements of the generated model are in a chain, so the pairs of elements that are looked up are up to CHAIN_LENGTH apart
+ * along the chain.
+ * "getDerivedRelationshipChains" finds the chains of relationships between two elements.
+ * "createDerivedRelationship" finds the weakest relationship type along the chains and creates the derived relationship.
+ * "isInDerivedChain" checks whether a relationship is part of a derived chain.
+ * 
+ * @author Phillip Beauvoir
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DerivedRelationsBenchmark {
+    
+    static final int PAIRS = 100;
+    static final int RELATIONS = 1000;
+    static final int CHAIN_LENGTH = 6;
+    
+    /**
+     * Approximate number of objects in the generated model
+     */
+    @Param({ "10000", "100000" })
+    int size;
+    
+    IArchimateElement[] sources = new IArchimateElement[PAIRS];
+    IArchimateElement[] targets = new IArchimateElement[PAIRS];
+    IRelationship[] relations = new IRelationship[RELATIONS];
+    
+    @Setup(Level.Trial)
+    public void setup() {
+        IArchimateModel model = ModelGenerator.createModel(size);
+        List<IRelationship> relationships = ModelGenerator.getRelationships(model);
+        
+        Random random = new Random(1);
+        
+        for(int i = 0; i < PAIRS; i++) {
+            IRelationship relationship = relationships.get(random.nextInt(relationships.size()));
+            sources[i] = relationship.getSource();
+            
+            // Follow the chain from the source of the relationship
+            IArchimateElement target = relationship.getTarget();
+            int length = 1 + random.nextInt(CHAIN_LENGTH);
+            for(int j = 1; j < length; j++) {
+                List<IRelationship> next = ArchimateModelUtils.getSourceRelationships(target);
+                if(next.isEmpty()) {
+                    break;
+                }
+                target = next.get(0).getTarget();
+            }
+            targets[i] = target;
+        }
+        
+        for(int i = 0; i < RELATIONS; i++) {
+            relations[i] = relationships.get(random.nextInt(relationships.size()));
+        }
+    }
+    
+    @Benchmark
+    @OperationsPerInvocation(PAIRS)
+    public void getDerivedRelationshipChains(Blackhole bh) {
+        for(int i = 0; i < PAIRS; i++) {
+            try {
+                bh.consume(DerivedRelationsUtils.getDerivedRelationshipChains(sources[i], targets[i]));
+            }
+            catch(TooComplicatedException ex) {
+                bh.consume(ex);
+            }
+        }
+    }
+    
+    @Benchmark
+    @OperationsPerInvocation(PAIRS)
+    public void createDerivedRelationship(Blackhole bh) {
+        for(int i = 0; i < PAIRS; i++) {
+            try {
+                bh.consume(DerivedRelationsUtils.createDerivedRelationship(sources[i], targets[i]));
+            }
+            catch(TooComplicatedException ex) {
+                bh.consume(ex);
+            }
+        }
+    }
+    
+    @Benchmark
+    @OperationsPerInvocation(RELATIONS)
+    public void isInDerivedChain(Blackhole bh) {
+        for(int i = 0; i < RELATIONS; i++) {
+            bh.consume(DerivedRelationsUtils.isInDerivedChain(relations[i]));
+        }
+    }
+}
@@ -0,0 +1,98 @@
+/**
+ * This program and the accompanying materials
+ * are made available under the terms of the License
+ * which accompanies this distribution in the file LICENSE.txt
+ */
+package com.archimatetool.model.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.archimatetool.model.IArchimateElement;
+import com.archimatetool.model.IArchimateFactory;
+import com.archimatetool.model.IArchimateModel;
+import com.archimatetool.model.IFolder;
+import com.archimatetool.model.util.IDAdapter;
+
+
+/**
+ * Benchmark of registering the IDs of model objects with the IDAdapter.
+ * 
+ * "registerModel" registers all of the objects of a generated model in one pass, as is done after a model is loaded.
+ * "addElements" adds new elements to a model one at a time, as the user does, so that the model's IDAdapter
+ * allocates and registers an ID for each of them when it is notified.
+ * 
+ * @author Phillip Beauvoir
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IDAdapterBenchmark {
+    
+    /**
+     * Approximate number of objects in the generated model
+     */
+    @Param({ "10000", "100000" })
+    int size;
+    
+    IArchimateModel model;
+    
+    @Setup(Level.Trial)
+    public void setup() {
+        model = ModelGenerator.createModel(size);
+    }
+    
+    @Benchmark
+    public Object registerModel() {
+        IDAdapter adapter = new IDAdapter();
+        adapter.registerModel(model);
+        return adapter;
+    }
+    
+    /**
+     * An empty model and new elements to add to it, made again before each call of the benchmark
+     */
+    @State(Scope.Thread)
+    public static class NewElements {
+        static final int COUNT = 10000;
+        
+        IArchimateModel model;
+        IFolder folder;
+        IArchimateElement[] elements = new IArchimateElement[COUNT];
+        
+        @Setup(Level.Invocation)
+        public void setup() {
+            model = IArchimateFactory.eINSTANCE.createArchimateModel();
+            model.setDefaults();
+            
+            for(int i = 0; i < COUNT; i++) {
+                elements[i] = IArchimateFactory.eINSTANCE.createBusinessActor();
+            }
+            
+            folder = model.getDefaultFolderForElement(elements[0]);
+        }
+    }
+    
+    @Benchmark
+    public Object addElements(NewElements state) {
+        for(IArchimateElement element : state.elements) {
+            state.folder.getElements().add(element);
+        }
+        return state.model;
+    }
+}
@@ -0,0 +1,109 @@
+/**
+ * This program and the accompanying materials
+ * are made available under the terms of the License
+ * which accompanies this distribution in the file LICENSE.txt
+ */
+package com.archimatetool.model.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.eclipse.emf.ecore.EClass;
+
+import com.archimatetool.model.IArchimateDiagramModel;
+import com.archimatetool.model.IArchimateElement;
+import com.archimatetool.model.IArchimateFactory;
+import com.archimatetool.model.IArchimateModel;
+import com.archimatetool.model.IArchimatePackage;
+import com.archimatetool.model.IDiagramModelArchimateConnection;
+import com.archimatetool.model.IDiagramModelArchimateObject;
+import com.archimatetool.model.IRelationship;
+import com.archimatetool.model.util.ArchimateModelUtils;
+
+
+/**
+ * Generates synthetic models for the benchmarks.
+ * 
+ * The same size always gives the same model so that results can be compared between runs.
+ * The size of the model used by a benchmark can be set on the JMH command line, for example "-p size=250000".
+ * 
+ * @author Phillip Beauvoir
+ */
+public class ModelGenerator {
+    
+    /**
+     * Create a model with about size objects. Each element is shown in a diagram and each relationship is shown as a connection.
+     * The elements are in a chain where each element has a relationship to the next one. The type of each relationship is
+     * picked from those that are valid between the two elements so that there are derived relationships along the chain.
+     */
+    public static IArchimateModel createModel(int size) {
+        IArchimateModel model = IArchimateFactory.eINSTANCE.createArchimateModel();
+        model.setDefaults();
+        
+        Random random = new Random(1);
+        EClass[] elementClasses = ArchimateModelUtils.getBusinessClasses();
+        
+        // An element with a relationship, a diagram object with its bounds, and a connection come to about seven objects
+        int count = Math.max(size / 7, 2);
+        int perDiagram = 50;
+        
+        List<IArchimateElement> elements = new ArrayList<IArchimateElement>();
+        IArchimateDiagramModel dm = null;
+        
+        for(int i = 0; i < count; i++) {
+            IArchimateElement element = (IArchimateElement)IArchimateFactory.eINSTANCE.create(elementClasses[random.nextInt(elementClasses.length)]);
+            element.setName("Element " + i); //$NON-NLS-1$
+            model.getDefaultFolderForElement(element).getElements().add(element);
+            elements.add(element);
+            
+            if(i % perDiagram == 0) {
+                dm = IArchimateFactory.eINSTANCE.createArchimateDiagramModel();
+                dm.setName("View " + i); //$NON-NLS-1$
+                model.getDefaultFolderForElement(dm).getElements().add(dm);
+            }
+            
+            IDiagramModelArchimateObject dmo = IArchimateFactory.eINSTANCE.createDiagramModelArchimateObject();
+            dmo.setArchimateElement(element);
+            dmo.setBounds((i % 10) * 130, (i / 10 % 5) * 70, 120, 55);
+            dm.getChildren().add(dmo);
+        }
+        
+        for(int i = 1; i < count; i++) {
+            IArchimateElement source = elements.get(i - 1);
+            IArchimateElement target = elements.get(i);
+            
+            EClass[] relationshipClasses = ArchimateModelUtils.getValidRelationships(source, target);
+            EClass relationshipClass = relationshipClasses != null && relationshipClasses.length > 0 ?
+                    relationshipClasses[random.nextInt(relationshipClasses.length)] : IArchimatePackage.Literals.ASSOCIATION_RELATIONSHIP;
+            
+            IRelationship relationship = (IRelationship)IArchimateFactory.eINSTANCE.create(relationshipClass);
+            relationship.setSource(source);
+            relationship.setTarget(target);
+            model.getDefaultFolderForElement(relationship).getElements().add(relationship);
+            
+            // Connections between objects in the same diagram
+            if(i % perDiagram != 0) {
+                IDiagramModelArchimateConnection connection = IArchimateFactory.eINSTANCE.createDiagramModelArchimateConnection();
+                connection.setRelationship(relationship);
+                connection.connect(source.getReferencingDiagramObjects().get(0), target.getReferencingDiagramObjects().get(0));
+            }
+        }
+        
+        return model;
+    }
+    
+    /**
+     * @return All elements of model
+     */
+    public static List<IArchimateElement> getElements(IArchimateModel model) {
+        return ArchimateModelUtils.getObjectsOfKind(model, IArchimatePackage.Literals.ARCHIMATE_ELEMENT);
+    }
+    
+    /**
+     * @return All relationships of model
+     */
+    public static List<IRelationship> getRelationships(IArchimateModel model) {
+        return ArchimateModelUtils.getObjectsOfKind(model, IArchimatePackage.Literals.RELATIONSHIP);
+    }
+}
@@ -0,0 +1,124 @@
+/**
+ * This program and the accompanying materials
+ * are made available under the terms of the License
+ * which accompanies this distribution in the file LICENSE.txt
+ */
+package com.archimatetool.model.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.emf.ecore.util.BasicExtendedMetaData;
+import org.eclipse.emf.ecore.util.ExtendedMetaData;
+import org.eclipse.emf.ecore.xmi.XMLResource;
+import org.eclipse.emf.ecore.xmi.impl.XMLResourceImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.archimatetool.model.util.ArchimateResourceFactory;
+
+
+/**
+ * Benchmark of loading a generated model, or the model file given as the "model" parameter, in the XML format.
+ *
+ * "baselineLoad" loads with a plain XMLResourceImpl with only the ExtendedMetaData and encoding options, as models were loaded
+ * before the load options were tuned.
+ * "tunedLoad" loads with the ArchimateResource and its default load options.
+ * "binaryLoad" loads the same model saved in the binary format.
+ *
+ * @author Phillip Beauvoir
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class ModelLoadBenchmark {
+    
+    /**
+     * Approximate number of objects in the generated model
+     */
+    @Param({ "10000", "500000" })
+    int size;
+    
+    /**
+     * Path of a model file to load instead of the generated model, e.g. "-p model=testdata/models/Archisurance.archimate"
+     */
+    @Param({ "" })
+    String model;
+    
+    File file;
+    File binaryFile;
+    
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        file = File.createTempFile("benchmark", ".archimate"); //$NON-NLS-1$ //$NON-NLS-2$
+        
+        Resource resource = ArchimateResourceFactory.createNewResource(file);
+        resource.getContents().add(createModel());
+        resource.save(null);
+        
+        binaryFile = File.createTempFile("benchmark", ".archimate"); //$NON-NLS-1$ //$NON-NLS-2$
+        
+        Resource binaryResource = ArchimateResourceFactory.createNewBinaryResource(binaryFile);
+        binaryResource.getContents().add(createModel());
+        binaryResource.save(null);
+    }
+    
+    private EObject createModel() throws IOException {
+        if(model.length() == 0) {
+            return ModelGenerator.createModel(size);
+        }
+        
+        Resource resource = ArchimateResourceFactory.createNewResource(new File(model));
+        resource.load(null);
+        return resource.getContents().get(0);
+    }
+    
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        file.delete();
+        binaryFile.delete();
+    }
+    
+    @Benchmark
+    public Object baselineLoad() throws IOException {
+        XMLResource resource = new XMLResourceImpl(URI.createFileURI(file.getAbsolutePath()));
+        ExtendedMetaData ext = new BasicExtendedMetaData();
+        resource.getDefaultLoadOptions().put(XMLResource.OPTION_EXTENDED_META_DATA, ext);
+        resource.getDefaultLoadOptions().put(XMLResource.OPTION_ENCODING, "UTF-8"); //$NON-NLS-1$
+        resource.load(null);
+        return resource.getContents().get(0);
+    }
+    
+    @Benchmark
+    public Object tunedLoad() throws IOException {
+        Resource resource = ArchimateResourceFactory.createNewResource(file);
+        resource.load(null);
+        return resource.getContents().get(0);
+    }
+    
+    @Benchmark
+    public Object binaryLoad() throws IOException {
+        // The factory makes an ArchimateBinaryResource for a file in the binary format
+        Resource resource = ArchimateResourceFactory.createNewResource(binaryFile);
+        resource.load(null);
+        return resource.getContents().get(0);
+    }
+}
@@ -0,0 +1,85 @@
+/**
+ * This program and the accompanying materials
+ * are made available under the terms of the License
+ * which accompanies this distribution in the file LICENSE.txt
+ */
+package com.archimatetool.model.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.emf.ecore.resource.Resource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.archimatetool.model.util.ArchimateResourceFactory;
+
+
+/**
+ * Benchmark of saving a generated model.
+ * 
+ * The model is written to a stream that throws the bytes away, so that only the serialisation is measured and not the disk.
+ * "xmlSave" saves with the ArchimateResource in the XML format.
+ * "binarySave" saves with the ArchimateBinaryResource in the binary format.
+ * 
+ * @author Phillip Beauvoir
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class ModelSaveBenchmark {
+    
+    /**
+     * Approximate number of objects in the generated model
+     */
+    @Param({ "10000", "500000" })
+    int size;
+    
+    Resource xmlResource;
+    Resource binaryResource;
+    
+    OutputStream nullStream = new OutputStream() {
+        @Override
+        public void write(int b) {
+        }
+        
+        @Override
+        public void write(byte[] b, int off, int len) {
+        }
+    };
+    
+    @Setup(Level.Trial)
+    public void setup() {
+        // A model can only be in one Resource so each has its own copy
+        xmlResource = ArchimateResourceFactory.createNewXMLResource(new File("benchmark.archimate")); //$NON-NLS-1$
+        xmlResource.getContents().add(ModelGenerator.createModel(size));
+        
+        binaryResource = ArchimateResourceFactory.createNewBinaryResource(new File("benchmark.archimate")); //$NON-NLS-1$
+        binaryResource.getContents().add(ModelGenerator.createModel(size));
+    }
+    
+    @Benchmark
+    public void xmlSave() throws IOException {
+        xmlResource.save(nullStream, null);
+    }
+    
+    @Benchmark
+    public void binarySave() throws IOException {
+        binaryResource.save(nullStream, null);
+    }
+}
@@ -0,0 +1,129 @@
+/**
+ * This program and the accompanying materials
+ * are made available under the terms of the License
+ * which accompanies this distribution in the file LICENSE.txt
+ */
+package com.archimatetool.model.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.emf.ecore.EObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.archimatetool.model.IArchimateElement;
+import com.archimatetool.model.IArchimateModel;
+import com.archimatetool.model.IIdentifier;
+import com.archimatetool.model.util.ArchimateModelUtils;
+
+
+/**
+ * Benchmark of looking up relationships and objects in a generated model.
+ * 
+ * "getRelationships" gets the relationships of an element from the model's relationships index.
+ * "getObjectByID" looks up objects through the IDAdapter's map.
+ * "getObjectByIDWalk" is the previous look up by iterating through the model and is kept here as the baseline.
+ * 
+ * @author Phillip Beauvoir
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ModelUtilsBenchmark {
+    
+    static final int LOOKUPS = 1000;
+    
+    /**
+     * The walk through the model is so slow that it only does a few
+     */
+    static final int WALK_LOOKUPS = 10;
+    
+    /**
+     * Approximate number of objects in the generated model
+     */
+    @Param({ "10000", "100000" })
+    int size;
+    
+    IArchimateModel model;
+    
+    IArchimateElement[] elements = new IArchimateElement[LOOKUPS];
+    String[] ids = new String[LOOKUPS];
+    
+    @Setup(Level.Trial)
+    public void setup() {
+        model = ModelGenerator.createModel(size);
+        
+        List<IArchimateElement> allElements = ModelGenerator.getElements(model);
+        
+        List<String> allIDs = new ArrayList<String>();
+        for(Iterator<EObject> iter = model.eAllContents(); iter.hasNext();) {
+            EObject eObject = iter.next();
+            if(eObject instanceof IIdentifier) {
+                allIDs.add(((IIdentifier)eObject).getId());
+            }
+        }
+        
+        Random random = new Random(1);
+        for(int i = 0; i < LOOKUPS; i++) {
+            elements[i] = allElements.get(random.nextInt(allElements.size()));
+            ids[i] = allIDs.get(random.nextInt(allIDs.size()));
+        }
+    }
+    
+    @Benchmark
+    @OperationsPerInvocation(LOOKUPS)
+    public void getRelationships(Blackhole bh) {
+        for(int i = 0; i < LOOKUPS; i++) {
+            bh.consume(ArchimateModelUtils.getRelationships(elements[i]));
+        }
+    }
+    
+    @Benchmark
+    @OperationsPerInvocation(LOOKUPS)
+    public void getObjectByID(Blackhole bh) {
+        for(int i = 0; i < LOOKUPS; i++) {
+            bh.consume(ArchimateModelUtils.getObjectByID(model, ids[i]));
+        }
+    }
+    
+    @Benchmark
+    @OperationsPerInvocation(WALK_LOOKUPS)
+    public void getObjectByIDWalk(Blackhole bh) {
+        for(int i = 0; i < WALK_LOOKUPS; i++) {
+            bh.consume(getObjectByIDWalk(ids[i]));
+        }
+    }
+    
+    /**
+     * The look up as it was before IDAdapter kept a map of objects
+     */
+    private EObject getObjectByIDWalk(String id) {
+        for(Iterator<EObject> iter = model.eAllContents(); iter.hasNext();) {
+            EObject element = iter.next();
+            if(element instanceof IIdentifier && id.equals(((IIdentifier)element).getId())) {
+                return element;
+            }
+        }
+        
+        return null;
+    }
+}
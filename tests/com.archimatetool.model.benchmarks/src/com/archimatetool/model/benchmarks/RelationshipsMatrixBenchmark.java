@@ -0,0 +1,120 @@
+/**
+ * This program and the accompanying materials
+ * are made available under the terms of the License
+ * which accompanies this distribution in the file LICENSE.txt
+ */
+package com.archimatetool.model.benchmarks;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.emf.ecore.EClass;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.archimatetool.model.IArchimatePackage;
+import com.archimatetool.model.util.ArchimateModelUtils;
+import com.archimatetool.model.util.RelationshipsMatrix;
+import com.archimatetool.model.util.RelationshipsMatrix.TargetMatrix;
+
+
+/**
+ * Benchmark of a million relationship validity checks.
+ * 
+ * "listMatrix" is the previous look up through the List of TargetMatrix for each source class and is kept here as the baseline.
+ * "compiledMatrix" is the look up through the compiled tables in RelationshipsMatrix.
+ * 
+ * @author Phillip Beauvoir
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RelationshipsMatrixBenchmark {
+    
+    static final int CHECKS = 1000000;
+    
+    EClass[] sources = new EClass[CHECKS];
+    EClass[] targets = new EClass[CHECKS];
+    EClass[] relations = new EClass[CHECKS];
+    
+    Map<EClass, List<TargetMatrix>> matrixMap;
+    
+    @Setup
+    public void setup() {
+        EClass[] elementClasses = ArchimateModelUtils.getAllArchimateClasses();
+        EClass[] relationsClasses = ArchimateModelUtils.getRelationsClasses();
+        
+        Random random = new Random(1);
+        for(int i = 0; i < CHECKS; i++) {
+            sources[i] = elementClasses[random.nextInt(elementClasses.length)];
+            targets[i] = elementClasses[random.nextInt(elementClasses.length)];
+            relations[i] = relationsClasses[random.nextInt(relationsClasses.length)];
+        }
+        
+        matrixMap = RelationshipsMatrix.INSTANCE.getRelationshipsMatrix();
+    }
+    
+    @Benchmark
+    @OperationsPerInvocation(CHECKS)
+    public void listMatrix(Blackhole bh) {
+        for(int i = 0; i < CHECKS; i++) {
+            bh.consume(isValidRelationshipList(sources[i], targets[i], relations[i]));
+        }
+    }
+    
+    @Benchmark
+    @OperationsPerInvocation(CHECKS)
+    public void compiledMatrix(Blackhole bh) {
+        for(int i = 0; i < CHECKS; i++) {
+            bh.consume(ArchimateModelUtils.isValidRelationship(sources[i], targets[i], relations[i]));
+        }
+    }
+    
+    @Benchmark
+    public void getValidRelationships(Blackhole bh) {
+        for(EClass source : ArchimateModelUtils.getAllArchimateClasses()) {
+            for(EClass target : ArchimateModelUtils.getAllArchimateClasses()) {
+                bh.consume(ArchimateModelUtils.getValidRelationships(source, target));
+            }
+        }
+    }
+    
+    /**
+     * The look up as it was before the matrix was compiled
+     */
+    private boolean isValidRelationshipList(EClass sourceType, EClass targetType, EClass relationshipType) {
+        if(relationshipType == null) {
+            return false;
+        }
+        
+        if(!IArchimatePackage.eINSTANCE.getRelationship().isSuperTypeOf(relationshipType)) {
+            return false;
+        }
+        
+        List<TargetMatrix> listMatrix = matrixMap.get(sourceType);
+        if(listMatrix != null) {
+            for(TargetMatrix targetMatrix : listMatrix) {
+                if(targetMatrix.getTargetClass() == targetType && targetMatrix.getRelationships().contains(relationshipType)) {
+                    return true;
+                }
+            }
+        }
+        
+        return false;
+    }
+}
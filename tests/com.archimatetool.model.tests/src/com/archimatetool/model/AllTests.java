@@ -29,10 +29,18 @@ import com.archimatetool.model.impl.SketchModelActorTests;
 import com.archimatetool.model.impl.SketchModelStickyTests;
 import com.archimatetool.model.impl.SketchModelTests;
 import com.archimatetool.model.util.ArchimateModelUtilsTests;
+import com.archimatetool.model.util.ArchimateResourceConverterTests;
 import com.archimatetool.model.util.ArchimateResourceFactoryTests;
+import com.archimatetool.model.util.DerivedRelationsCalculatorTests;
+import com.archimatetool.model.util.DerivedRelationsEngineTests;
 import com.archimatetool.model.util.DerivedRelationsUtilsTests;
 import com.archimatetool.model.util.IDAdapterTests;
+import com.archimatetool.model.util.LazyDiagramContentTests;
+import com.archimatetool.model.util.ModelWalkerTests;
+import com.archimatetool.model.util.StringPoolTests;
+import com.archimatetool.model.util.RelationshipsAdapterTests;
 import com.archimatetool.model.util.RelationshipsMatrixTests;
+import com.archimatetool.model.util.TypeIndexAdapterTests;
 
 @SuppressWarnings("nls")
 public class AllTests {
@@ -69,10 +77,18 @@ public class AllTests {
         
         // util
         suite.addTest(ArchimateModelUtilsTests.suite());
+        suite.addTest(ArchimateResourceConverterTests.suite());
         suite.addTest(ArchimateResourceFactoryTests.suite());
+        suite.addTest(DerivedRelationsCalculatorTests.suite());
+        suite.addTest(DerivedRelationsEngineTests.suite());
         suite.addTest(DerivedRelationsUtilsTests.suite());
         suite.addTest(IDAdapterTests.suite());
+        suite.addTest(LazyDiagramContentTests.suite());
+        suite.addTest(ModelWalkerTests.suite());
+        suite.addTest(StringPoolTests.suite());
+        suite.addTest(RelationshipsAdapterTests.suite());
         suite.addTest(RelationshipsMatrixTests.suite());
+        suite.addTest(TypeIndexAdapterTests.suite());
 
         return suite;
 	}
@@ -25,6 +25,7 @@ import com.archimatetool.model.IArchimateFactory;
 import com.archimatetool.model.IDiagramModel;
 import com.archimatetool.model.IFolder;
 import com.archimatetool.model.util.IDAdapter;
+import com.archimatetool.model.util.RelationshipsAdapter;
 
 import junit.framework.JUnit4TestAdapter;
 
@@ -278,6 +279,12 @@ public class ArchimateModelTests {
         assertTrue(model.eAdapters().get(0) instanceof IDAdapter);
     }
     
+    @Test
+    public void testRelationshipsAdapterAddedToArchimateModel() {
+        assertTrue(model.eAdapters().get(1) instanceof RelationshipsAdapter);
+        assertSame(model.eAdapters().get(1), model.getAdapter(RelationshipsAdapter.class));
+    }
+    
     @Test
     public void testIDAddedToElement() {
         IArchimateElement element = IArchimateFactory.eINSTANCE.createApplicationService();
@@ -0,0 +1,104 @@
+/**
+ * This program and the accompanying materials
+ * are made available under the terms of the License
+ * which accompanies this distribution in the file LICENSE.txt
+ */
+package com.archimatetool.model.util;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import junit.framework.JUnit4TestAdapter;
+
+import java.io.File;
+import java.util.Iterator;
+
+import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.emf.ecore.util.EcoreUtil;
+import org.junit.Test;
+
+import com.archimatetool.model.IArchimateModel;
+import com.archimatetool.model.IIdentifier;
+import com.archimatetool.model.TestSupport;
+import com.archimatetool.tests.TestUtils;
+
+
+
+/**
+ * ArchimateResourceConverter Tests
+ *
+ * @author Phillip Beauvoir
+ */
+@SuppressWarnings("nls")
+public class ArchimateResourceConverterTests {
+    
+    public static junit.framework.Test suite() {
+        return new JUnit4TestAdapter(ArchimateResourceConverterTests.class);
+    }
+    
+    @Test
+    public void testConvertToBinary() throws Exception {
+        File binaryFile = TestUtils.createTempFile(".archimate");
+        ArchimateResourceConverter.convertToBinary(TestSupport.TEST_MODEL_FILE_ARCHISURANCE, binaryFile);
+        
+        assertTrue(ArchimateResourceFactory.isBinaryResource(URI.createFileURI(binaryFile.getAbsolutePath())));
+        assertFalse(ArchimateResourceFactory.isBinaryResource(URI.createFileURI(TestSupport.TEST_MODEL_FILE_ARCHISURANCE.getAbsolutePath())));
+        
+        // Smaller
+        assertTrue(binaryFile.length() < TestSupport.TEST_MODEL_FILE_ARCHISURANCE.length());
+        
+        Resource resource = ArchimateResourceFactory.createNewResource(binaryFile);
+        assertTrue(resource instanceof ArchimateBinaryResource);
+        resource.load(null);
+        
+        // Same as the XML model
+        IArchimateModel xmlModel = TestSupport.loadModel(TestSupport.TEST_MODEL_FILE_ARCHISURANCE);
+        IArchimateModel binaryModel = (IArchimateModel)resource.getContents().get(0);
+        assertTrue(EcoreUtil.equals(xmlModel, binaryModel));
+    }
+    
+    @Test
+    public void testConvertToXML_RoundTrip() throws Exception {
+        File binaryFile = TestUtils.createTempFile(".archimate");
+        File xmlFile = TestUtils.createTempFile(".archimate");
+        ArchimateResourceConverter.convertToBinary(TestSupport.TEST_MODEL_FILE_ARCHISURANCE, binaryFile);
+        ArchimateResourceConverter.convertToXML(binaryFile, xmlFile);
+        
+        assertFalse(ArchimateResourceFactory.isBinaryResource(URI.createFileURI(xmlFile.getAbsolutePath())));
+        
+        IArchimateModel model1 = TestSupport.loadModel(TestSupport.TEST_MODEL_FILE_ARCHISURANCE);
+        IArchimateModel model2 = TestSupport.loadModel(xmlFile);
+        assertTrue(EcoreUtil.equals(model1, model2));
+    }
+    
+    @Test
+    public void testConvertSameFile() throws Exception {
+        File file = TestUtils.createTempFile(".archimate");
+        ArchimateResourceConverter.convertToBinary(TestSupport.TEST_MODEL_FILE_ARCHISURANCE, file);
+        ArchimateResourceConverter.convertToXML(file, file);
+        assertFalse(ArchimateResourceFactory.isBinaryResource(URI.createFileURI(file.getAbsolutePath())));
+        
+        ArchimateResourceConverter.convertToBinary(file, file);
+        assertTrue(ArchimateResourceFactory.isBinaryResource(URI.createFileURI(file.getAbsolutePath())));
+    }
+    
+    @Test
+    public void testIDsRegisteredAfterBinaryLoad() throws Exception {
+        File binaryFile = TestUtils.createTempFile(".archimate");
+        ArchimateResourceConverter.convertToBinary(TestSupport.TEST_MODEL_FILE_ARCHISURANCE, binaryFile);
+        IArchimateModel model = TestSupport.loadModel(binaryFile);
+        
+        IDAdapter adapter = (IDAdapter)model.getAdapter(IDAdapter.class);
+        assertNotNull(adapter);
+        
+        for(Iterator<EObject> iter = model.eAllContents(); iter.hasNext();) {
+            EObject eObject = iter.next();
+            if(eObject instanceof IIdentifier) {
+                assertSame(eObject, adapter.getObject(((IIdentifier)eObject).getId()));
+            }
+        }
+    }
+}
@@ -0,0 +1,274 @@
+/**
+ * This program and the accompanying materials
+ * are made available under the terms of the License
+ * which accompanies this distribution in the file LICENSE.txt
+ */
+package com.archimatetool.model.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import junit.framework.JUnit4TestAdapter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
+import org.eclipse.emf.ecore.EClass;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.archimatetool.model.IArchimateElement;
+import com.archimatetool.model.IArchimateFactory;
+import com.archimatetool.model.IArchimateModel;
+import com.archimatetool.model.IArchimatePackage;
+import com.archimatetool.model.IRelationship;
+
+
+
+/**
+ * DerivedRelationsCalculator Tests
+ *
+ * @author Phillip Beauvoir
+ */
+public class DerivedRelationsCalculatorTests {
+    
+    public static junit.framework.Test suite() {
+        return new JUnit4TestAdapter(DerivedRelationsCalculatorTests.class);
+    }
+    
+    private IArchimateModel model;
+    private IArchimateElement actor, role, process;
+    
+    @Before
+    public void runBeforeEachTest() {
+        model = IArchimateFactory.eINSTANCE.createArchimateModel();
+        model.setDefaults();
+        
+        actor = createElement(IArchimatePackage.eINSTANCE.getBusinessActor());
+        role = createElement(IArchimatePackage.eINSTANCE.getBusinessRole());
+        process = createElement(IArchimatePackage.eINSTANCE.getBusinessProcess());
+    }
+    
+    private IArchimateElement createElement(EClass eClass) {
+        IArchimateElement element = (IArchimateElement)IArchimateFactory.eINSTANCE.create(eClass);
+        model.getDefaultFolderForElement(element).getElements().add(element);
+        return element;
+    }
+    
+    private IRelationship createRelationship(EClass eClass, IArchimateElement source, IArchimateElement target) {
+        IRelationship relation = (IRelationship)IArchimateFactory.eINSTANCE.create(eClass);
+        relation.setSource(source);
+        relation.setTarget(target);
+        model.getDefaultFolderForElement(relation).getElements().add(relation);
+        return relation;
+    }
+    
+    @Test
+    public void testCalculate() {
+        createRelationship(IArchimatePackage.eINSTANCE.getAssignmentRelationship(), actor, role);
+        createRelationship(IArchimatePackage.eINSTANCE.getAssignmentRelationship(), role, process);
+        
+        List<IRelationship> relationships = new DerivedRelationsCalculator(model).calculate(null);
+        assertEquals(1, relationships.size());
+        
+        IRelationship relationship = relationships.get(0);
+        assertEquals(IArchimatePackage.eINSTANCE.getAssignmentRelationship(), relationship.eClass());
+        assertSame(actor, relationship.getSource());
+        assertSame(process, relationship.getTarget());
+        
+        // Not added to the model
+        assertNull(relationship.eContainer());
+    }
+    
+    @Test
+    public void testCalculate_NotValid() {
+        IArchimateElement location = createElement(IArchimatePackage.eINSTANCE.getLocation());
+        createRelationship(IArchimatePackage.eINSTANCE.getCompositionRelationship(), actor, role);
+        createRelationship(IArchimatePackage.eINSTANCE.getCompositionRelationship(), role, location);
+        
+        // Composition is not valid between a Business Actor and a Location
+        List<IRelationship> relationships = new DerivedRelationsCalculator(model).calculate(null);
+        assertTrue(relationships.isEmpty());
+    }
+    
+    @Test
+    public void testCalculate_DirectRelationship() {
+        createRelationship(IArchimatePackage.eINSTANCE.getAssignmentRelationship(), actor, role);
+        createRelationship(IArchimatePackage.eINSTANCE.getAssignmentRelationship(), role, process);
+        createRelationship(IArchimatePackage.eINSTANCE.getAssignmentRelationship(), actor, process);
+        
+        List<IRelationship> relationships = new DerivedRelationsCalculator(model).calculate(null);
+        assertTrue(relationships.isEmpty());
+    }
+    
+    @Test
+    public void testCalculate_DirectAssociationOtherWay() {
+        IArchimateElement function = createElement(IArchimatePackage.eINSTANCE.getBusinessFunction());
+        createRelationship(IArchimatePackage.eINSTANCE.getAssociationRelationship(), role, actor);
+        createRelationship(IArchimatePackage.eINSTANCE.getAssociationRelationship(), role, function);
+        createRelationship(IArchimatePackage.eINSTANCE.getAssociationRelationship(), role, function);
+        
+        // actor -> role -> function -> role reaches role but actor and role are already associated
+        List<IRelationship> relationships = new DerivedRelationsCalculator(model).calculate(null);
+        for(IRelationship relationship : relationships) {
+            assertFalse(relationship.getSource() == actor && relationship.getTarget() == role);
+            assertFalse(relationship.getSource() == role && relationship.getTarget() == actor);
+        }
+    }
+    
+    @Test
+    public void testCalculate_SameAsEachPair() {
+        EClass[] elementTypes = {
+                IArchimatePackage.eINSTANCE.getNode(),
+                IArchimatePackage.eINSTANCE.getBusinessService(),
+                IArchimatePackage.eINSTANCE.getBusinessProcess(),
+                IArchimatePackage.eINSTANCE.getBusinessRole(),
+                IArchimatePackage.eINSTANCE.getApplicationComponent(),
+                IArchimatePackage.eINSTANCE.getApplicationFunction()
+        };
+        
+        Random random = new Random(0);
+        
+        for(int n = 0; n < 300; n++) {
+            model = IArchimateFactory.eINSTANCE.createArchimateModel();
+            model.setDefaults();
+            
+            List<IArchimateElement> elements = new ArrayList<IArchimateElement>();
+            int elementCount = 3 + random.nextInt(5);
+            for(int i = 0; i < elementCount; i++) {
+                elements.add(createElement(elementTypes[random.nextInt(elementTypes.length)]));
+            }
+            
+            int relationshipCount = 2 + random.nextInt(2 * elementCount);
+            for(int i = 0; i < relationshipCount; i++) {
+                EClass eClass = DerivedRelationsUtils.weaklist.get(random.nextInt(DerivedRelationsUtils.weaklist.size()));
+                IArchimateElement source = elements.get(random.nextInt(elementCount));
+                IArchimateElement target = elements.get(random.nextInt(elementCount));
+                if(source != target && ArchimateModelUtils.isValidRelationship(source, target, eClass)) {
+                    createRelationship(eClass, source, target);
+                }
+            }
+            
+            Set<List<Object>> expected = new HashSet<List<Object>>();
+            for(IArchimateElement source : elements) {
+                for(IArchimateElement target : elements) {
+                    if(source != target && !hasDirectRelationship(source, target)) {
+                        try {
+                            IRelationship relationship = DerivedRelationsUtils.createDerivedRelationship(source, target);
+                            if(relationship != null) {
+                                expected.add(Arrays.<Object>asList(source, target, relationship.eClass()));
+                            }
+                        }
+                        catch(DerivedRelationsUtils.TooComplicatedException ex) {
+                            fail("Too complicated");
+                        }
+                    }
+                }
+            }
+            
+            Set<List<Object>> actual = new HashSet<List<Object>>();
+            for(IRelationship relationship : new DerivedRelationsCalculator(model).calculate(null)) {
+                actual.add(Arrays.<Object>asList(relationship.getSource(), relationship.getTarget(), relationship.eClass()));
+            }
+            
+            assertEquals("Model " + n, expected, actual);
+        }
+    }
+    
+    private boolean hasDirectRelationship(IArchimateElement source, IArchimateElement target) {
+        if(DerivedRelationsUtils.hasDirectStructuralRelationship(source, target)) {
+            return true;
+        }
+        
+        for(IRelationship relationship : ArchimateModelUtils.getSourceRelationships(target)) {
+            if(relationship.getTarget() == source && DerivedRelationsUtils.isBidirectionalRelationship(relationship)) {
+                return true;
+            }
+        }
+        
+        return false;
+    }
+    
+    @Test
+    public void testCalculate_AgainAfterAdding() {
+        createRelationship(IArchimatePackage.eINSTANCE.getAssignmentRelationship(), actor, role);
+        createRelationship(IArchimatePackage.eINSTANCE.getAssignmentRelationship(), role, process);
+        
+        List<IRelationship> relationships = new DerivedRelationsCalculator(model).calculate(null);
+        model.addDerivedRelationsFolder().getElements().addAll(relationships);
+        
+        relationships = new DerivedRelationsCalculator(model).calculate(null);
+        assertTrue(relationships.isEmpty());
+    }
+    
+    @Test
+    public void testCalculate_SameResultInParallel() {
+        IArchimateElement[] roles = new IArchimateElement[50];
+        for(int i = 0; i < roles.length; i++) {
+            roles[i] = createElement(IArchimatePackage.eINSTANCE.getBusinessRole());
+            createRelationship(IArchimatePackage.eINSTANCE.getAssignmentRelationship(), actor, roles[i]);
+            if(i > 0) {
+                createRelationship(IArchimatePackage.eINSTANCE.getAggregationRelationship(), roles[i - 1], roles[i]);
+            }
+            if(i % 7 == 0) {
+                createRelationship(IArchimatePackage.eINSTANCE.getAssociationRelationship(), roles[i], process);
+            }
+        }
+        
+        List<IRelationship> relationships1 = new DerivedRelationsCalculator(model, new ForkJoinPool(1)).calculate(null);
+        List<IRelationship> relationships2 = new DerivedRelationsCalculator(model, new ForkJoinPool(4)).calculate(null);
+        
+        assertTrue(relationships1.size() > 0);
+        assertEquals(relationships1.size(), relationships2.size());
+        
+        for(int i = 0; i < relationships1.size(); i++) {
+            IRelationship relationship1 = relationships1.get(i);
+            IRelationship relationship2 = relationships2.get(i);
+            assertEquals(relationship1.eClass(), relationship2.eClass());
+            assertSame(relationship1.getSource(), relationship2.getSource());
+            assertSame(relationship1.getTarget(), relationship2.getTarget());
+        }
+    }
+    
+    @Test
+    public void testSnapshot() {
+        IRelationship relation1 = createRelationship(IArchimatePackage.eINSTANCE.getAssignmentRelationship(), actor, role);
+        IRelationship relation2 = createRelationship(IArchimatePackage.eINSTANCE.getSpecialisationRelationship(), role, process);
+        
+        DerivedRelationsCalculator calculator = new DerivedRelationsCalculator(model);
+        DerivedRelationsCalculator.Snapshot snapshot = new DerivedRelationsCalculator.Snapshot(calculator.getElements());
+        
+        // Only structural relationships
+        assertEquals(1, snapshot.getSourceRelationships(actor).size());
+        assertSame(relation1, snapshot.getTargetRelationships(role).get(0));
+        assertTrue(snapshot.getSourceRelationships(role).isEmpty());
+        assertTrue(snapshot.getTargetRelationships(process).isEmpty());
+        
+        // Not changed by the model
+        model.getDefaultFolderForElement(relation1).getElements().remove(relation1);
+        model.getDefaultFolderForElement(relation2).getElements().remove(relation2);
+        createRelationship(IArchimatePackage.eINSTANCE.getAssignmentRelationship(), role, process);
+        assertSame(relation1, snapshot.getSourceRelationships(actor).get(0));
+        assertTrue(snapshot.getSourceRelationships(role).isEmpty());
+    }
+    
+    @Test(expected=OperationCanceledException.class)
+    public void testCalculate_Cancelled() {
+        createRelationship(IArchimatePackage.eINSTANCE.getAssignmentRelationship(), actor, role);
+        createRelationship(IArchimatePackage.eINSTANCE.getAssignmentRelationship(), role, process);
+        
+        NullProgressMonitor monitor = new NullProgressMonitor();
+        monitor.setCanceled(true);
+        new DerivedRelationsCalculator(model).calculate(monitor);
+    }
+}
@@ -0,0 +1,280 @@
+/**
+ * This program and the accompanying materials
+ * are made available under the terms of the License
+ * which accompanies this distribution in the file LICENSE.txt
+ */
+package com.archimatetool.model.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import junit.framework.JUnit4TestAdapter;
+
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.emf.ecore.EClass;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.archimatetool.model.IArchimateElement;
+import com.archimatetool.model.IArchimateFactory;
+import com.archimatetool.model.IArchimateModel;
+import com.archimatetool.model.IArchimatePackage;
+import com.archimatetool.model.IRelationship;
+
+
+
+/**
+ * DerivedRelationsEngine Tests
+ *
+ * @author Phillip Beauvoir
+ */
+public class DerivedRelationsEngineTests {
+
+    public static junit.framework.Test suite() {
+        return new JUnit4TestAdapter(DerivedRelationsEngineTests.class);
+    }
+    
+    private IArchimateModel model;
+    private IArchimateElement actor, role, process;
+    
+    @Before
+    public void runBeforeEachTest() {
+        model = IArchimateFactory.eINSTANCE.createArchimateModel();
+        model.setDefaults();
+        
+        actor = createElement(IArchimatePackage.eINSTANCE.getBusinessActor());
+        role = createElement(IArchimatePackage.eINSTANCE.getBusinessRole());
+        process = createElement(IArchimatePackage.eINSTANCE.getBusinessProcess());
+    }
+    
+    private IArchimateElement createElement(EClass eClass) {
+        IArchimateElement element = (IArchimateElement)IArchimateFactory.eINSTANCE.create(eClass);
+        model.getDefaultFolderForElement(element).getElements().add(element);
+        return element;
+    }
+    
+    private IRelationship createRelationship(EClass eClass, IArchimateElement source, IArchimateElement target) {
+        IRelationship relation = (IRelationship)IArchimateFactory.eINSTANCE.create(eClass);
+        relation.setSource(source);
+        relation.setTarget(target);
+        model.getDefaultFolderForElement(relation).getElements().add(relation);
+        return relation;
+    }
+    
+    @Test
+    public void testFindChains() {
+        IRelationship relation1 = createRelationship(IArchimatePackage.eINSTANCE.getAssignmentRelationship(), actor, role);
+        IRelationship relation2 = createRelationship(IArchimatePackage.eINSTANCE.getAssignmentRelationship(), role, process);
+        
+        DerivedRelationsEngine.Result result = new DerivedRelationsEngine().findChains(actor, process);
+        assertTrue(result.isComplete());
+        assertEquals(1, result.getChains().size());
+        
+        List<IRelationship> chain = result.getChains().get(0);
+        assertEquals(2, chain.size());
+        assertSame(relation1, chain.get(0));
+        assertSame(relation2, chain.get(1));
+        
+        assertEquals(IArchimatePackage.eINSTANCE.getAssignmentRelationship(), result.getWeakestType());
+    }
+    
+    @Test
+    public void testFindChains_NoChain() {
+        createRelationship(IArchimatePackage.eINSTANCE.getAssignmentRelationship(), actor, role);
+        
+        DerivedRelationsEngine.Result result = new DerivedRelationsEngine().findChains(actor, process);
+        assertTrue(result.isComplete());
+        assertTrue(result.getChains().isEmpty());
+        assertNull(result.getWeakestType());
+        
+        // Direct relationship is not a chain
+        result = new DerivedRelationsEngine().findChains(actor, role);
+        assertTrue(result.getChains().isEmpty());
+    }
+    
+    @Test
+    public void testFindChains_Loop() {
+        createRelationship(IArchimatePackage.eINSTANCE.getAssignmentRelationship(), actor, role);
+        createRelationship(IArchimatePackage.eINSTANCE.getAssociationRelationship(), role, actor);
+        createRelationship(IArchimatePackage.eINSTANCE.getAssignmentRelationship(), role, process);
+        
+        DerivedRelationsEngine.Result result = new DerivedRelationsEngine().findChains(actor, process);
+        assertTrue(result.isComplete());
+        assertFalse(result.getChains().isEmpty());
+    }
+    
+    @Test
+    public void testFindWeakestType() {
+        createRelationship(IArchimatePackage.eINSTANCE.getCompositionRelationship(), actor, role);
+        createRelationship(IArchimatePackage.eINSTANCE.getAssignmentRelationship(), role, process);
+        
+        DerivedRelationsEngine.Result result = new DerivedRelationsEngine().findWeakestType(actor, process);
+        assertTrue(result.isComplete());
+        assertTrue(result.getChains().isEmpty());
+        assertEquals(IArchimatePackage.eINSTANCE.getAssignmentRelationship(), result.getWeakestType());
+    }
+    
+    @Test
+    public void testFindWeakestType_ElementReachedAgain() {
+        IArchimateElement function = createElement(IArchimatePackage.eINSTANCE.getBusinessFunction());
+        createRelationship(IArchimatePackage.eINSTANCE.getCompositionRelationship(), actor, role);
+        createRelationship(IArchimatePackage.eINSTANCE.getAssociationRelationship(), role, function);
+        createRelationship(IArchimatePackage.eINSTANCE.getCompositionRelationship(), role, process);
+        createRelationship(IArchimatePackage.eINSTANCE.getCompositionRelationship(), actor, function);
+        
+        // The function is first reached along the association, from where the process can't be reached.
+        // It is reached again from the actor and then the process is reached back along the association.
+        DerivedRelationsEngine.Result result = new DerivedRelationsEngine().findWeakestType(actor, process);
+        assertTrue(result.isComplete());
+        assertEquals(IArchimatePackage.eINSTANCE.getAssociationRelationship(), result.getWeakestType());
+        
+        assertEquals(new DerivedRelationsEngine().findChains(actor, process).getWeakestType(), result.getWeakestType());
+        assertEquals(new DerivedRelationsEngine().findWeakestTypes(actor).getWeakestTypes().get(process), result.getWeakestType());
+    }
+    
+    @Test
+    public void testBudget_PartialResult() {
+        // A dense graph of elements all connected to each other
+        IArchimateElement[] roles = new IArchimateElement[12];
+        for(int i = 0; i < roles.length; i++) {
+            roles[i] = createElement(IArchimatePackage.eINSTANCE.getBusinessRole());
+            createRelationship(IArchimatePackage.eINSTANCE.getAssignmentRelationship(), actor, roles[i]);
+            createRelationship(IArchimatePackage.eINSTANCE.getAssignmentRelationship(), roles[i], process);
+        }
+        for(int i = 0; i < roles.length; i++) {
+            for(int j = 0; j < roles.length; j++) {
+                if(i != j) {
+                    createRelationship(IArchimatePackage.eINSTANCE.getCompositionRelationship(), roles[i], roles[j]);
+                }
+            }
+        }
+        
+        // Cost limit is reached
+        DerivedRelationsEngine.Result result = new DerivedRelationsEngine(0, 1000, 0).findChains(actor, process);
+        assertFalse(result.isComplete());
+        assertFalse(result.getChains().isEmpty());
+        
+        // Maximum number of chains is reached
+        result = new DerivedRelationsEngine(0, 0, 5).findChains(actor, process);
+        assertFalse(result.isComplete());
+        assertEquals(5, result.getChains().size());
+        
+        // Weakest type completes
+        result = new DerivedRelationsEngine(0, 100000, 0).findWeakestType(actor, process);
+        assertTrue(result.isComplete());
+        assertEquals(IArchimatePackage.eINSTANCE.getAssignmentRelationship(), result.getWeakestType());
+    }
+    
+    @Test
+    public void testReentrant() throws Exception {
+        createRelationship(IArchimatePackage.eINSTANCE.getAssignmentRelationship(), actor, role);
+        createRelationship(IArchimatePackage.eINSTANCE.getAssignmentRelationship(), role, process);
+        
+        final DerivedRelationsEngine engine = new DerivedRelationsEngine();
+        final DerivedRelationsEngine.Result[] results = new DerivedRelationsEngine.Result[8];
+        
+        Thread[] threads = new Thread[results.length];
+        for(int i = 0; i < threads.length; i++) {
+            final int index = i;
+            threads[i] = new Thread() {
+                @Override
+                public void run() {
+                    results[index] = engine.findChains(actor, process);
+                }
+            };
+            threads[i].start();
+        }
+        
+        for(Thread thread : threads) {
+            thread.join();
+        }
+        
+        for(DerivedRelationsEngine.Result result : results) {
+            assertEquals(1, result.getChains().size());
+        }
+    }
+    
+    @Test
+    public void testFindWeakestTypes() {
+        IArchimateElement function = createElement(IArchimatePackage.eINSTANCE.getBusinessFunction());
+        createRelationship(IArchimatePackage.eINSTANCE.getCompositionRelationship(), actor, role);
+        createRelationship(IArchimatePackage.eINSTANCE.getAssignmentRelationship(), role, process);
+        createRelationship(IArchimatePackage.eINSTANCE.getAssociationRelationship(), function, process);
+        
+        DerivedRelationsEngine.Result result = new DerivedRelationsEngine().findWeakestTypes(actor);
+        assertTrue(result.isComplete());
+        
+        Map<IArchimateElement, EClass> weakestTypes = result.getWeakestTypes();
+        assertEquals(2, weakestTypes.size());
+        
+        // Direct relationship is not a chain
+        assertFalse(weakestTypes.containsKey(role));
+        
+        assertEquals(IArchimatePackage.eINSTANCE.getAssignmentRelationship(), weakestTypes.get(process));
+        
+        // Association is walked in both directions
+        assertEquals(IArchimatePackage.eINSTANCE.getAssociationRelationship(), weakestTypes.get(function));
+        
+        // Same as each pair
+        for(IArchimateElement target : weakestTypes.keySet()) {
+            assertEquals(new DerivedRelationsEngine().findWeakestType(actor, target).getWeakestType(), weakestTypes.get(target));
+        }
+    }
+    
+    @Test
+    public void testFindWeakestTypes_WeakerChainIsFound() {
+        IArchimateElement function = createElement(IArchimatePackage.eINSTANCE.getBusinessFunction());
+        createRelationship(IArchimatePackage.eINSTANCE.getCompositionRelationship(), actor, role);
+        createRelationship(IArchimatePackage.eINSTANCE.getCompositionRelationship(), role, process);
+        createRelationship(IArchimatePackage.eINSTANCE.getUsedByRelationship(), actor, function);
+        createRelationship(IArchimatePackage.eINSTANCE.getCompositionRelationship(), function, role);
+        
+        Map<IArchimateElement, EClass> weakestTypes = new DerivedRelationsEngine().findWeakestTypes(actor).getWeakestTypes();
+        assertEquals(IArchimatePackage.eINSTANCE.getUsedByRelationship(), weakestTypes.get(process));
+        assertEquals(IArchimatePackage.eINSTANCE.getUsedByRelationship(), weakestTypes.get(role));
+    }
+    
+    @Test
+    public void testFindWeakestTypes_NoWayBack() {
+        // Chains don't use the same association twice
+        createRelationship(IArchimatePackage.eINSTANCE.getAssociationRelationship(), actor, role);
+        
+        Map<IArchimateElement, EClass> weakestTypes = new DerivedRelationsEngine().findWeakestTypes(actor).getWeakestTypes();
+        assertTrue(weakestTypes.isEmpty());
+        
+        weakestTypes = new DerivedRelationsEngine().findWeakestTypes(role).getWeakestTypes();
+        assertTrue(weakestTypes.isEmpty());
+    }
+    
+    @Test
+    public void testFindWeakestTypes_NotThroughTarget() {
+        // The only chains from role back to role pass through actor, so none of them reach actor
+        createRelationship(IArchimatePackage.eINSTANCE.getAssociationRelationship(), role, actor);
+        createRelationship(IArchimatePackage.eINSTANCE.getAssociationRelationship(), actor, process);
+        createRelationship(IArchimatePackage.eINSTANCE.getAssociationRelationship(), actor, process);
+        
+        Map<IArchimateElement, EClass> weakestTypes = new DerivedRelationsEngine().findWeakestTypes(role).getWeakestTypes();
+        assertFalse(weakestTypes.containsKey(actor));
+        assertNull(new DerivedRelationsEngine().findWeakestType(role, actor).getWeakestType());
+        
+        assertEquals(IArchimatePackage.eINSTANCE.getAssociationRelationship(), weakestTypes.get(process));
+    }
+    
+    @Test
+    public void testFindWeakestTypes_BackThroughSource() {
+        IArchimateElement function = createElement(IArchimatePackage.eINSTANCE.getBusinessFunction());
+        createRelationship(IArchimatePackage.eINSTANCE.getAssociationRelationship(), role, process);
+        createRelationship(IArchimatePackage.eINSTANCE.getUsedByRelationship(), role, process);
+        createRelationship(IArchimatePackage.eINSTANCE.getCompositionRelationship(), role, actor);
+        createRelationship(IArchimatePackage.eINSTANCE.getAggregationRelationship(), actor, function);
+        
+        // role -> process -> role along the association the other way, then role -> actor -> function
+        Map<IArchimateElement, EClass> weakestTypes = new DerivedRelationsEngine().findWeakestTypes(role).getWeakestTypes();
+        assertEquals(IArchimatePackage.eINSTANCE.getAssociationRelationship(), weakestTypes.get(function));
+        assertEquals(new DerivedRelationsEngine().findWeakestType(role, function).getWeakestType(), weakestTypes.get(function));
+    }
+}
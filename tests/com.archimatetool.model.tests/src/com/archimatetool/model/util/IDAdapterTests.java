@@ -6,20 +6,34 @@
 package com.archimatetool.model.util;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
-import java.util.List;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Set;
 
 import junit.framework.JUnit4TestAdapter;
 
 import org.eclipse.emf.common.notify.Notification;
+import org.eclipse.emf.ecore.EObject;
 import org.eclipse.emf.ecore.impl.ENotificationImpl;
+import org.eclipse.emf.ecore.resource.Resource;
 import org.junit.Test;
 
+import com.archimatetool.model.FolderType;
+import com.archimatetool.model.IArchimateElement;
 import com.archimatetool.model.IArchimateFactory;
+import com.archimatetool.model.IArchimateModel;
 import com.archimatetool.model.IArchimatePackage;
+import com.archimatetool.model.IDiagramModel;
+import com.archimatetool.model.IDiagramModelComponent;
+import com.archimatetool.model.IFolder;
+import com.archimatetool.model.IIdentifier;
+import com.archimatetool.model.TestSupport;
 import com.archimatetool.model.impl.Folder;
 import com.archimatetool.tests.TestUtils;
 
@@ -51,7 +65,7 @@ public class IDAdapterTests {
         
         String id = "someID";
         adapter.registerID(null);
-        List<String> usedIDs = getPrivateIDList(adapter);
+        Set<String> usedIDs = getPrivateIDList(adapter);
         assertTrue(usedIDs.isEmpty());
         
         adapter.registerID(id);
@@ -70,12 +84,148 @@ public class IDAdapterTests {
         String id = adapter.getNewID();
         assertEquals(8, id.length());
         
-        List<String> usedIDs = getPrivateIDList(adapter);
+        Set<String> usedIDs = getPrivateIDList(adapter);
         assertTrue(usedIDs.contains(id));
     }
 
+    @Test
+    public void testGetNewID_Unique() throws Exception {
+        IDAdapter adapter = new IDAdapter();
+        for(int i = 0; i < 10000; i++) {
+            adapter.getNewID();
+        }
+        assertEquals(10000, getPrivateIDList(adapter).size());
+    }
+    
+    @Test
+    public void testRegisterModel() throws Exception {
+        IArchimateModel model = IArchimateFactory.eINSTANCE.createArchimateModel();
+        IFolder folder = IArchimateFactory.eINSTANCE.createFolder();
+        folder.setId("folderID");
+        IArchimateElement element = IArchimateFactory.eINSTANCE.createBusinessActor();
+        element.setId("elementID");
+        folder.getElements().add(element);
+        IArchimateElement elementNoID = IArchimateFactory.eINSTANCE.createBusinessRole();
+        folder.getElements().add(elementNoID);
+        
+        IDAdapter adapter = new IDAdapter();
+        adapter.registerModel(folder);
+        
+        Set<String> usedIDs = getPrivateIDList(adapter);
+        assertTrue(usedIDs.contains("folderID"));
+        assertTrue(usedIDs.contains("elementID"));
+        assertNotNull(elementNoID.getId());
+        assertTrue(usedIDs.contains(elementNoID.getId()));
+        
+        assertSame(folder, adapter.getObject("folderID"));
+        assertSame(element, adapter.getObject("elementID"));
+        assertSame(elementNoID, adapter.getObject(elementNoID.getId()));
+    }
+    
+    @Test
+    public void testGetObject() {
+        IArchimateModel model = IArchimateFactory.eINSTANCE.createArchimateModel();
+        model.setDefaults();
+        IDAdapter adapter = (IDAdapter)model.getAdapter(IDAdapter.class);
+        assertNotNull(adapter);
+        
+        assertNull(adapter.getObject(null));
+        assertNull(adapter.getObject("someID"));
+        
+        IArchimateElement element = IArchimateFactory.eINSTANCE.createBusinessActor();
+        model.getDefaultFolderForElement(element).getElements().add(element);
+        assertSame(element, adapter.getObject(element.getId()));
+        
+        // Re-identified
+        String oldID = element.getId();
+        element.setId("newID");
+        assertNull(adapter.getObject(oldID));
+        assertSame(element, adapter.getObject("newID"));
+        
+        // Removed
+        model.getDefaultFolderForElement(element).getElements().remove(element);
+        assertNull(adapter.getObject("newID"));
+    }
+    
+    @Test
+    public void testGetObject_SubFolder() {
+        IArchimateModel model = IArchimateFactory.eINSTANCE.createArchimateModel();
+        model.setDefaults();
+        IDAdapter adapter = (IDAdapter)model.getAdapter(IDAdapter.class);
+        
+        IFolder folder = IArchimateFactory.eINSTANCE.createFolder();
+        folder.setId("folderID");
+        IArchimateElement element = IArchimateFactory.eINSTANCE.createBusinessActor();
+        element.setId("elementID");
+        folder.getElements().add(element);
+        
+        // Folder with child added
+        model.getFolder(FolderType.BUSINESS).getFolders().add(folder);
+        assertSame(folder, adapter.getObject("folderID"));
+        assertSame(element, adapter.getObject("elementID"));
+        
+        // Folder with child removed
+        model.getFolder(FolderType.BUSINESS).getFolders().remove(folder);
+        assertNull(adapter.getObject("folderID"));
+        assertNull(adapter.getObject("elementID"));
+    }
+    
+    @Test
+    public void testGetObject_DuplicateID() {
+        IArchimateModel model = IArchimateFactory.eINSTANCE.createArchimateModel();
+        model.setDefaults();
+        IDAdapter adapter = (IDAdapter)model.getAdapter(IDAdapter.class);
+        
+        IArchimateElement element1 = IArchimateFactory.eINSTANCE.createBusinessActor();
+        element1.setId("elementID");
+        IArchimateElement element2 = IArchimateFactory.eINSTANCE.createBusinessActor();
+        element2.setId("elementID");
+        
+        // First one is kept
+        model.getDefaultFolderForElement(element1).getElements().add(element1);
+        model.getDefaultFolderForElement(element2).getElements().add(element2);
+        assertSame(element1, adapter.getObject("elementID"));
+        
+        model.getDefaultFolderForElement(element2).getElements().remove(element2);
+        assertSame(element1, adapter.getObject("elementID"));
+    }
+    
+    @Test
+    public void testGetObject_UnloadedDiagramModel() throws IOException {
+        Resource resource = ArchimateResourceFactory.createNewResource(TestSupport.TEST_MODEL_FILE_ARCHISURANCE);
+        resource.load(Collections.singletonMap(ArchimateResource.OPTION_LOAD_DIAGRAMS_LAZILY, Boolean.TRUE));
+        IArchimateModel model = (IArchimateModel)resource.getContents().get(0);
+        IDAdapter adapter = (IDAdapter)model.getAdapter(IDAdapter.class);
+        
+        IDiagramModel dm = model.getDiagramModels().get(0);
+        LazyDiagramContent content = LazyDiagramContent.getContent(dm);
+        assertNotNull(content);
+        String id = content.getIDs().iterator().next();
+        
+        // Not loaded
+        assertNull(adapter.getObject(id, false));
+        assertFalse(LazyDiagramContent.isLoaded(dm));
+        
+        // Loaded when looked up
+        EObject eObject = ArchimateModelUtils.getObjectByID(model, id);
+        assertTrue(LazyDiagramContent.isLoaded(dm));
+        assertTrue(eObject instanceof IDiagramModelComponent);
+        assertEquals(id, ((IIdentifier)eObject).getId());
+        assertSame(dm, ((IDiagramModelComponent)eObject).getDiagramModel());
+        assertSame(eObject, adapter.getObject(id, false));
+        
+        // Removed before it is loaded
+        dm = model.getDiagramModels().get(1);
+        content = LazyDiagramContent.getContent(dm);
+        assertNotNull(content);
+        id = content.getIDs().iterator().next();
+        ((IFolder)dm.eContainer()).getElements().remove(dm);
+        assertNull(adapter.getObject(id));
+        assertFalse(LazyDiagramContent.isLoaded(dm));
+    }
+
     @SuppressWarnings("unchecked")
-    private List<String> getPrivateIDList(IDAdapter adapter) throws Exception {
-        return (List<String>)TestUtils.getPrivateField(adapter, "fUsedIDs");
+    private Set<String> getPrivateIDList(IDAdapter adapter) throws Exception {
+        return (Set<String>)TestUtils.getPrivateField(adapter, "fUsedIDs");
     }
 } 
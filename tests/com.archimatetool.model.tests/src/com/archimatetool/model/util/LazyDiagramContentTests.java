@@ -0,0 +1,297 @@
+/**
+ * This program and the accompanying materials
+ * are made available under the terms of the License
+ * which accompanies this distribution in the file LICENSE.txt
+ */
+package com.archimatetool.model.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import junit.framework.JUnit4TestAdapter;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.emf.ecore.util.EcoreUtil;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.archimatetool.model.IArchimateModel;
+import com.archimatetool.model.IDiagramModel;
+import com.archimatetool.model.IDiagramModelArchimateConnection;
+import com.archimatetool.model.IDiagramModelArchimateObject;
+import com.archimatetool.model.IDiagramModelComponent;
+import com.archimatetool.model.TestSupport;
+import com.archimatetool.tests.TestUtils;
+
+
+
+/**
+ * LazyDiagramContent Tests
+ *
+ * @author Phillip Beauvoir
+ */
+public class LazyDiagramContentTests {
+    
+    public static junit.framework.Test suite() {
+        return new JUnit4TestAdapter(LazyDiagramContentTests.class);
+    }
+    
+    private IArchimateModel model;
+    private IDiagramModel diagramModel;
+    
+    @Before
+    public void runBeforeEachTest() throws IOException {
+        model = loadLazily(TestSupport.TEST_MODEL_FILE_ARCHISURANCE);
+        diagramModel = model.getDefaultDiagramModel();
+    }
+    
+    private IArchimateModel loadLazily(File file) throws IOException {
+        Resource resource = ArchimateResourceFactory.createNewResource(file);
+        resource.load(Collections.singletonMap(ArchimateResource.OPTION_LOAD_DIAGRAMS_LAZILY, Boolean.TRUE));
+        return (IArchimateModel)resource.getContents().get(0);
+    }
+    
+    @Test
+    public void testChildrenLoadedWhenNeeded() {
+        assertFalse(LazyDiagramContent.isLoaded(diagramModel));
+        assertTrue(diagramModel.eIsSet(diagramModel.eClass().getEStructuralFeature("children"))); //$NON-NLS-1$
+        
+        assertFalse(diagramModel.getChildren().isEmpty());
+        assertTrue(LazyDiagramContent.isLoaded(diagramModel));
+        
+        // Not the others
+        int count = 0;
+        for(IDiagramModel dm : model.getDiagramModels()) {
+            if(!LazyDiagramContent.isLoaded(dm)) {
+                count++;
+            }
+        }
+        assertEquals(model.getDiagramModels().size() - 1, count);
+    }
+    
+    @Test
+    public void testSameAsFullyLoadedModel() throws IOException {
+        IArchimateModel fullModel = TestSupport.loadModel(TestSupport.TEST_MODEL_FILE_ARCHISURANCE);
+        assertTrue(EcoreUtil.equals(fullModel, model));
+    }
+    
+    @Test
+    public void testIDsRegistered() {
+        LazyDiagramContent content = LazyDiagramContent.getContent(diagramModel);
+        assertNotNull(content);
+        assertFalse(content.getIDs().isEmpty());
+        
+        IDAdapter idAdapter = (IDAdapter)model.getAdapter(IDAdapter.class);
+        
+        diagramModel.getChildren();
+        
+        for(String id : content.getIDs()) {
+            EObject eObject = idAdapter.getObject(id);
+            assertNotNull(eObject);
+            assertSame(diagramModel, ((IDiagramModelComponent)eObject).getDiagramModel());
+        }
+    }
+    
+    @Test
+    public void testReferencesResolved() {
+        for(Iterator<EObject> iter = diagramModel.eAllContents(); iter.hasNext();) {
+            EObject eObject = iter.next();
+            if(eObject instanceof IDiagramModelArchimateObject) {
+                IDiagramModelArchimateObject dmo = (IDiagramModelArchimateObject)eObject;
+                assertSame(model, dmo.getArchimateElement().getArchimateModel());
+                assertTrue(dmo.getArchimateElement().getReferencingDiagramObjects().contains(dmo));
+            }
+            else if(eObject instanceof IDiagramModelArchimateConnection) {
+                IDiagramModelArchimateConnection dmc = (IDiagramModelArchimateConnection)eObject;
+                assertSame(model, dmc.getRelationship().getArchimateModel());
+                assertTrue(dmc.getRelationship().getReferencingDiagramConnections().contains(dmc));
+            }
+        }
+    }
+    
+    @Test
+    public void testElementAndRelationshipReferences() {
+        for(IDiagramModel dm : model.getDiagramModels()) {
+            LazyDiagramContent content = LazyDiagramContent.getContent(dm);
+            Map<String, String> elementReferences = new HashMap<String, String>(content.getElementReferences());
+            Map<String, String> relationshipReferences = new HashMap<String, String>(content.getRelationshipReferences());
+            
+            Map<String, String> loadedElementReferences = new HashMap<String, String>();
+            Map<String, String> loadedRelationshipReferences = new HashMap<String, String>();
+            
+            for(Iterator<EObject> iter = dm.eAllContents(); iter.hasNext();) {
+                EObject eObject = iter.next();
+                if(eObject instanceof IDiagramModelArchimateObject) {
+                    IDiagramModelArchimateObject dmo = (IDiagramModelArchimateObject)eObject;
+                    loadedElementReferences.put(dmo.getId(), dmo.getArchimateElement().getId());
+                }
+                else if(eObject instanceof IDiagramModelArchimateConnection) {
+                    IDiagramModelArchimateConnection dmc = (IDiagramModelArchimateConnection)eObject;
+                    loadedRelationshipReferences.put(dmc.getId(), dmc.getRelationship().getId());
+                }
+            }
+            
+            assertEquals(loadedElementReferences, elementReferences);
+            assertEquals(loadedRelationshipReferences, relationshipReferences);
+        }
+    }
+    
+    @Test
+    public void testGetUnloadedDiagramModels() {
+        // The default View has no elements so use one that has
+        IDiagramModel dm = null;
+        for(IDiagramModel d : model.getDiagramModels()) {
+            if(!LazyDiagramContent.getContent(d).getReferencedIDs().isEmpty()) {
+                dm = d;
+                break;
+            }
+        }
+        
+        String id = LazyDiagramContent.getContent(dm).getReferencedIDs().iterator().next();
+        assertTrue(LazyDiagramContent.getUnloadedDiagramModels(model, id).contains(dm));
+        
+        dm.getChildren();
+        assertFalse(LazyDiagramContent.getUnloadedDiagramModels(model, id).contains(dm));
+        
+        LazyDiagramContent.loadAll(model.eResource());
+        assertEquals(0, LazyDiagramContent.getUnloadedDiagramModels(model, id).size());
+    }
+    
+    @Test
+    public void testSave() throws IOException {
+        File file = TestSupport.saveModel(model);
+        
+        // Saved from the kept XML without loading
+        for(IDiagramModel dm : model.getDiagramModels()) {
+            assertFalse(LazyDiagramContent.isLoaded(dm));
+        }
+        
+        IArchimateModel fullModel = TestSupport.loadModel(TestSupport.TEST_MODEL_FILE_ARCHISURANCE);
+        IArchimateModel savedModel = TestSupport.loadModel(file);
+        assertTrue(EcoreUtil.equals(fullModel, savedModel));
+    }
+    
+    @Test
+    public void testSave_SomeLoaded() throws IOException {
+        diagramModel.getChildren();
+        
+        File file = TestSupport.saveModel(model);
+        
+        for(IDiagramModel dm : model.getDiagramModels()) {
+            assertEquals(dm == diagramModel, LazyDiagramContent.isLoaded(dm));
+        }
+        
+        IArchimateModel fullModel = TestSupport.loadModel(TestSupport.TEST_MODEL_FILE_ARCHISURANCE);
+        IArchimateModel savedModel = TestSupport.loadModel(file);
+        assertTrue(EcoreUtil.equals(fullModel, savedModel));
+    }
+    
+    @Test
+    public void testCopy() throws IOException {
+        IArchimateModel copy = LazyDiagramContent.copy(model);
+        
+        for(IDiagramModel dm : model.getDiagramModels()) {
+            assertFalse(LazyDiagramContent.isLoaded(dm));
+        }
+        for(IDiagramModel dm : copy.getDiagramModels()) {
+            assertFalse(LazyDiagramContent.isLoaded(dm));
+        }
+        
+        // The copy loads its own children, which reference the copied elements and relationships
+        IArchimateModel fullModel = TestSupport.loadModel(TestSupport.TEST_MODEL_FILE_ARCHISURANCE);
+        assertTrue(EcoreUtil.equals(fullModel, copy));
+        
+        for(Iterator<EObject> iter = copy.getDefaultDiagramModel().eAllContents(); iter.hasNext();) {
+            EObject eObject = iter.next();
+            if(eObject instanceof IDiagramModelArchimateObject) {
+                assertSame(copy, ((IDiagramModelArchimateObject)eObject).getArchimateElement().getArchimateModel());
+            }
+        }
+        
+        // Not the original
+        for(IDiagramModel dm : model.getDiagramModels()) {
+            assertFalse(LazyDiagramContent.isLoaded(dm));
+        }
+    }
+    
+    @Test
+    public void testCopy_Save() throws IOException {
+        File file = TestSupport.saveModel(LazyDiagramContent.copy(model));
+        
+        for(IDiagramModel dm : model.getDiagramModels()) {
+            assertFalse(LazyDiagramContent.isLoaded(dm));
+        }
+        
+        IArchimateModel fullModel = TestSupport.loadModel(TestSupport.TEST_MODEL_FILE_ARCHISURANCE);
+        IArchimateModel savedModel = TestSupport.loadModel(file);
+        assertTrue(EcoreUtil.equals(fullModel, savedModel));
+    }
+    
+    private LazyDiagramContent setBrokenContent(IDiagramModel dm) {
+        // Not well formed
+        String xml = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" //$NON-NLS-1$
+                + "<archimate:ArchimateDiagramModel xmlns:archimate=\"http://www.archimatetool.com/archimate\">" //$NON-NLS-1$
+                + "<child id=\"broken\" name=\"a & b\"/></archimate:ArchimateDiagramModel>"; //$NON-NLS-1$
+        
+        LazyDiagramContent content = new LazyDiagramContent(xml.getBytes(StandardCharsets.UTF_8), Collections.singleton("broken"), //$NON-NLS-1$
+                Collections.<String>emptySet(), Collections.<String, String>emptyMap(), Collections.<String, String>emptyMap(),
+                Collections.<String>emptySet());
+        LazyDiagramContent.setContent(dm, content);
+        
+        return content;
+    }
+    
+    @Test
+    public void testLoadFailed_ContentKept() {
+        LazyDiagramContent content = setBrokenContent(diagramModel);
+        
+        assertTrue(diagramModel.getChildren().isEmpty());
+        assertTrue(content.isLoadFailed());
+        assertFalse(LazyDiagramContent.isLoaded(diagramModel));
+        assertSame(content, LazyDiagramContent.getContent(diagramModel));
+        
+        // Not tried again
+        diagramModel.getChildren();
+        assertSame(content, LazyDiagramContent.getContent(diagramModel));
+        
+        assertEquals(1, LazyDiagramContent.loadAll(model.eResource()).size());
+    }
+    
+    @Test
+    public void testLoadFailed_KeptXMLSaved() throws IOException {
+        setBrokenContent(diagramModel);
+        diagramModel.getChildren();
+        
+        File file = TestSupport.saveModel(model);
+        String saved = new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+        assertTrue(saved.contains("<child id=\"broken\" name=\"a & b\"/>")); //$NON-NLS-1$
+    }
+    
+    @Test
+    public void testLoadFailed_BinarySaveFails() throws IOException {
+        setBrokenContent(diagramModel);
+        
+        Resource resource = ArchimateResourceFactory.createNewBinaryResource(TestUtils.createTempFile(".archimate")); //$NON-NLS-1$
+        resource.getContents().add(model);
+        
+        try {
+            resource.save(null);
+            fail("Should have thrown an IOException"); //$NON-NLS-1$
+        }
+        catch(IOException ex) {
+        }
+    }
+}
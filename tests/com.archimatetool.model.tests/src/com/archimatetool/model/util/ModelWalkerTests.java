@@ -0,0 +1,228 @@
+/**
+ * This program and the accompanying materials
+ * are made available under the terms of the License
+ * which accompanies this distribution in the file LICENSE.txt
+ */
+package com.archimatetool.model.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import junit.framework.JUnit4TestAdapter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
+import org.eclipse.emf.ecore.EClass;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.resource.Resource;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.archimatetool.model.FolderType;
+import com.archimatetool.model.IArchimateFactory;
+import com.archimatetool.model.IArchimateModel;
+import com.archimatetool.model.IArchimatePackage;
+import com.archimatetool.model.IDiagramModel;
+import com.archimatetool.model.IDiagramModelGroup;
+import com.archimatetool.model.IProperties;
+import com.archimatetool.model.IProperty;
+import com.archimatetool.model.TestSupport;
+
+
+
+/**
+ * ModelWalker Tests
+ *
+ * @author Phillip Beauvoir
+ */
+public class ModelWalkerTests {
+    
+    public static junit.framework.Test suite() {
+        return new JUnit4TestAdapter(ModelWalkerTests.class);
+    }
+    
+    private IArchimateModel model;
+    
+    @Before
+    public void runBeforeEachTest() throws IOException {
+        model = TestSupport.loadModel(TestSupport.TEST_MODEL_FILE_ARCHISURANCE);
+        
+        // Properties in the model, an element and a group
+        addProperty(model);
+        addProperty((IProperties)model.getFolder(FolderType.BUSINESS).getFolders().get(0).getElements().get(0));
+        IDiagramModelGroup group = IArchimateFactory.eINSTANCE.createDiagramModelGroup();
+        model.getDefaultDiagramModel().getChildren().add(group);
+        addProperty(group);
+    }
+    
+    private void addProperty(IProperties properties) {
+        IProperty property = IArchimateFactory.eINSTANCE.createProperty();
+        property.setKey("key"); //$NON-NLS-1$
+        properties.getProperties().add(property);
+    }
+    
+    private List<EObject> getObjectsOfType(EObject root, EClass eClass) {
+        List<EObject> list = new ArrayList<EObject>();
+        for(Iterator<EObject> iter = root.eAllContents(); iter.hasNext();) {
+            EObject eObject = iter.next();
+            if(eClass.isInstance(eObject)) {
+                list.add(eObject);
+            }
+        }
+        return list;
+    }
+    
+    private List<EObject> walk(ModelWalker walker, EObject root) {
+        final List<EObject> list = new ArrayList<EObject>();
+        
+        assertTrue(walker.walk(root, new ModelWalker.IVisitor() {
+            public boolean visit(EObject eObject) {
+                list.add(eObject);
+                return true;
+            }
+        }));
+        
+        return list;
+    }
+    
+    @Test
+    public void testWalk_SameAsAllContents() {
+        EClass[] types = {
+                IArchimatePackage.Literals.PROPERTY,
+                IArchimatePackage.Literals.ARCHIMATE_ELEMENT,
+                IArchimatePackage.Literals.DIAGRAM_MODEL,
+                IArchimatePackage.Literals.DIAGRAM_MODEL_BENDPOINT,
+                IArchimatePackage.Literals.FOLDER
+        };
+        
+        for(EClass type : types) {
+            List<EObject> expected = getObjectsOfType(model, type);
+            assertFalse(expected.isEmpty());
+            assertEquals(expected, walk(new ModelWalker(type), model));
+        }
+    }
+    
+    @Test
+    public void testWalk_MoreThanOneType() {
+        List<EObject> list = walk(new ModelWalker(IArchimatePackage.Literals.ARCHIMATE_ELEMENT, IArchimatePackage.Literals.PROPERTY), model);
+        
+        List<EObject> expected = new ArrayList<EObject>();
+        for(Iterator<EObject> iter = model.eAllContents(); iter.hasNext();) {
+            EObject eObject = iter.next();
+            if(IArchimatePackage.Literals.ARCHIMATE_ELEMENT.isInstance(eObject) || IArchimatePackage.Literals.PROPERTY.isInstance(eObject)) {
+                expected.add(eObject);
+            }
+        }
+        
+        assertEquals(expected, list);
+    }
+    
+    @Test
+    public void testWalk_Subtree() {
+        IDiagramModel dm = model.getDefaultDiagramModel();
+        EClass type = IArchimatePackage.Literals.DIAGRAM_MODEL_OBJECT;
+        assertEquals(getObjectsOfType(dm, type), walk(new ModelWalker(type), dm));
+    }
+    
+    @Test
+    public void testWalk_Stopped() {
+        final List<EObject> list = new ArrayList<EObject>();
+        
+        boolean result = new ModelWalker(IArchimatePackage.Literals.ARCHIMATE_ELEMENT).walk(model, new ModelWalker.IVisitor() {
+            public boolean visit(EObject eObject) {
+                list.add(eObject);
+                return list.size() < 3;
+            }
+        });
+        
+        assertFalse(result);
+        assertEquals(3, list.size());
+    }
+    
+    @Test
+    public void testIsWalked() {
+        ModelWalker walker = new ModelWalker(IArchimatePackage.Literals.DIAGRAM_MODEL);
+        assertTrue(walker.isWalked(IArchimatePackage.Literals.FOLDER__ELEMENTS));
+        assertTrue(walker.isWalked(IArchimatePackage.Literals.FOLDER_CONTAINER__FOLDERS));
+        assertFalse(walker.isWalked(IArchimatePackage.Literals.DIAGRAM_MODEL_CONTAINER__CHILDREN));
+        assertFalse(walker.isWalked(IArchimatePackage.Literals.PROPERTIES__PROPERTIES));
+        
+        walker = new ModelWalker(IArchimatePackage.Literals.ARCHIMATE_ELEMENT);
+        assertFalse(walker.isWalked(IArchimatePackage.Literals.DIAGRAM_MODEL_CONTAINER__CHILDREN));
+        
+        walker = new ModelWalker(IArchimatePackage.Literals.DIAGRAM_MODEL_IMAGE_PROVIDER);
+        assertTrue(walker.isWalked(IArchimatePackage.Literals.DIAGRAM_MODEL_CONTAINER__CHILDREN));
+        assertFalse(walker.isWalked(IArchimatePackage.Literals.DIAGRAM_MODEL_OBJECT__BOUNDS));
+        assertFalse(walker.isWalked(IArchimatePackage.Literals.DIAGRAM_MODEL_CONNECTION__BENDPOINTS));
+        assertFalse(walker.isWalked(IArchimatePackage.Literals.PROPERTIES__PROPERTIES));
+    }
+    
+    @Test
+    public void testWalkParallel_SameObjectsAsWalk() {
+        EClass[] types = {
+                IArchimatePackage.Literals.PROPERTY,
+                IArchimatePackage.Literals.DIAGRAM_MODEL_OBJECT,
+                IArchimatePackage.Literals.FOLDER
+        };
+        
+        for(EClass type : types) {
+            ModelWalker walker = new ModelWalker(type);
+            
+            final Set<EObject> set = Collections.synchronizedSet(new HashSet<EObject>());
+            
+            assertTrue(walker.walkParallel(model, new ModelWalker.IVisitor() {
+                public boolean visit(EObject eObject) {
+                    assertTrue(set.add(eObject));
+                    return true;
+                }
+            }, new ForkJoinPool(4)));
+            
+            assertEquals(new HashSet<EObject>(walk(walker, model)), set);
+        }
+    }
+    
+    @Test
+    public void testWalkParallel_Stopped() {
+        boolean result = new ModelWalker(IArchimatePackage.Literals.DIAGRAM_MODEL_OBJECT).walkParallel(model, new ModelWalker.IVisitor() {
+            public boolean visit(EObject eObject) {
+                return false;
+            }
+        }, new ForkJoinPool(4));
+        
+        assertFalse(result);
+    }
+    
+    @Test
+    public void testWalk_DiagramModelsNotLoaded() throws IOException {
+        Resource resource = ArchimateResourceFactory.createNewResource(TestSupport.TEST_MODEL_FILE_ARCHISURANCE);
+        resource.load(Collections.singletonMap(ArchimateResource.OPTION_LOAD_DIAGRAMS_LAZILY, Boolean.TRUE));
+        IArchimateModel lazyModel = (IArchimateModel)resource.getContents().get(0);
+        
+        // Not loaded
+        assertTrue(walk(new ModelWalker(false, IArchimatePackage.Literals.DIAGRAM_MODEL_OBJECT), lazyModel).isEmpty());
+        for(IDiagramModel dm : lazyModel.getDiagramModels()) {
+            assertFalse(LazyDiagramContent.isLoaded(dm));
+        }
+        
+        // Not loaded because they can't contain elements
+        walk(new ModelWalker(IArchimatePackage.Literals.ARCHIMATE_ELEMENT), lazyModel);
+        for(IDiagramModel dm : lazyModel.getDiagramModels()) {
+            assertFalse(LazyDiagramContent.isLoaded(dm));
+        }
+        
+        // Loaded
+        List<EObject> list = walk(new ModelWalker(IArchimatePackage.Literals.DIAGRAM_MODEL_OBJECT), lazyModel);
+        IArchimateModel fullModel = TestSupport.loadModel(TestSupport.TEST_MODEL_FILE_ARCHISURANCE);
+        assertEquals(getObjectsOfType(fullModel, IArchimatePackage.Literals.DIAGRAM_MODEL_OBJECT).size(), list.size());
+        for(IDiagramModel dm : lazyModel.getDiagramModels()) {
+            assertTrue(LazyDiagramContent.isLoaded(dm));
+        }
+    }
+}
@@ -0,0 +1,351 @@
+/**
+ * This program and the accompanying materials
+ * are made available under the terms of the License
+ * which accompanies this distribution in the file LICENSE.txt
+ */
+package com.archimatetool.model.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import junit.framework.JUnit4TestAdapter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.archimatetool.model.FolderType;
+import com.archimatetool.model.IArchimateElement;
+import com.archimatetool.model.IArchimateFactory;
+import com.archimatetool.model.IArchimateModel;
+import com.archimatetool.model.IFolder;
+import com.archimatetool.model.IRelationship;
+
+
+
+/**
+ * RelationshipsAdapter Tests
+ *
+ * @author Phillip Beauvoir
+ */
+public class RelationshipsAdapterTests {
+
+    public static junit.framework.Test suite() {
+        return new JUnit4TestAdapter(RelationshipsAdapterTests.class);
+    }
+    
+    private IArchimateModel model;
+    private RelationshipsAdapter adapter;
+    private IArchimateElement element1, element2, element3;
+    
+    @Before
+    public void runBeforeEachTest() {
+        model = IArchimateFactory.eINSTANCE.createArchimateModel();
+        model.setDefaults();
+        
+        adapter = (RelationshipsAdapter)model.getAdapter(RelationshipsAdapter.class);
+        
+        element1 = IArchimateFactory.eINSTANCE.createBusinessActor();
+        model.getDefaultFolderForElement(element1).getElements().add(element1);
+        element2 = IArchimateFactory.eINSTANCE.createBusinessRole();
+        model.getDefaultFolderForElement(element2).getElements().add(element2);
+        element3 = IArchimateFactory.eINSTANCE.createBusinessRole();
+        model.getDefaultFolderForElement(element3).getElements().add(element3);
+    }
+    
+    private IRelationship createRelationship(IArchimateElement source, IArchimateElement target) {
+        IRelationship relation = IArchimateFactory.eINSTANCE.createAssociationRelationship();
+        relation.setSource(source);
+        relation.setTarget(target);
+        return relation;
+    }
+    
+    @Test
+    public void testAdapterIsRegistered() {
+        assertNotNull(adapter);
+        assertTrue(model.eAdapters().contains(adapter));
+    }
+
+    @Test
+    public void testAddAndRemoveRelationship() {
+        IRelationship relation = createRelationship(element1, element2);
+        assertTrue(adapter.getSourceRelationships(element1).isEmpty());
+        
+        model.getDefaultFolderForElement(relation).getElements().add(relation);
+        assertEquals(1, adapter.getSourceRelationships(element1).size());
+        assertSame(relation, adapter.getSourceRelationships(element1).get(0));
+        assertEquals(1, adapter.getTargetRelationships(element2).size());
+        assertSame(relation, adapter.getTargetRelationships(element2).get(0));
+        assertTrue(adapter.getTargetRelationships(element1).isEmpty());
+        assertTrue(adapter.getSourceRelationships(element2).isEmpty());
+        
+        model.getDefaultFolderForElement(relation).getElements().remove(relation);
+        assertTrue(adapter.getSourceRelationships(element1).isEmpty());
+        assertTrue(adapter.getTargetRelationships(element2).isEmpty());
+    }
+    
+    @Test
+    public void testSetSourceAndTargetInModel() {
+        IRelationship relation = IArchimateFactory.eINSTANCE.createAssociationRelationship();
+        model.getDefaultFolderForElement(relation).getElements().add(relation);
+        
+        relation.setSource(element1);
+        relation.setTarget(element2);
+        assertEquals(1, adapter.getSourceRelationships(element1).size());
+        assertEquals(1, adapter.getTargetRelationships(element2).size());
+        
+        // Reconnect
+        relation.setSource(element3);
+        relation.setTarget(element1);
+        assertTrue(adapter.getSourceRelationships(element1).isEmpty());
+        assertTrue(adapter.getTargetRelationships(element2).isEmpty());
+        assertEquals(1, adapter.getSourceRelationships(element3).size());
+        assertEquals(1, adapter.getTargetRelationships(element1).size());
+    }
+    
+    @Test
+    public void testSetSourceNotInModel() {
+        IRelationship relation = createRelationship(element1, element2);
+        model.getDefaultFolderForElement(relation).getElements().add(relation);
+        model.getDefaultFolderForElement(relation).getElements().remove(relation);
+        
+        // Not in the model so not indexed
+        relation.setSource(element3);
+        assertTrue(adapter.getSourceRelationships(element3).isEmpty());
+        
+        // Added back
+        model.getDefaultFolderForElement(relation).getElements().add(relation);
+        assertEquals(1, adapter.getSourceRelationships(element3).size());
+        assertTrue(adapter.getSourceRelationships(element1).isEmpty());
+    }
+    
+    @Test
+    public void testAddAndRemoveSubFolder() {
+        IFolder folder = IArchimateFactory.eINSTANCE.createFolder();
+        IFolder subFolder = IArchimateFactory.eINSTANCE.createFolder();
+        folder.getFolders().add(subFolder);
+        
+        IRelationship relation1 = createRelationship(element1, element2);
+        folder.getElements().add(relation1);
+        IRelationship relation2 = createRelationship(element1, element3);
+        subFolder.getElements().add(relation2);
+        
+        model.getFolder(FolderType.RELATIONS).getFolders().add(folder);
+        assertEquals(2, adapter.getSourceRelationships(element1).size());
+        assertEquals(1, adapter.getTargetRelationships(element2).size());
+        assertEquals(1, adapter.getTargetRelationships(element3).size());
+        
+        model.getFolder(FolderType.RELATIONS).getFolders().remove(folder);
+        assertTrue(adapter.getSourceRelationships(element1).isEmpty());
+        assertTrue(adapter.getTargetRelationships(element2).isEmpty());
+        assertTrue(adapter.getTargetRelationships(element3).isEmpty());
+    }
+    
+    @Test
+    public void testSameSourceAndTarget() {
+        IRelationship relation = createRelationship(element1, element1);
+        model.getDefaultFolderForElement(relation).getElements().add(relation);
+        
+        assertEquals(1, adapter.getSourceRelationships(element1).size());
+        assertEquals(1, adapter.getTargetRelationships(element1).size());
+        assertEquals(1, ArchimateModelUtils.getRelationships(element1).size());
+    }
+    
+    @Test
+    public void testDerivedFolder() {
+        IFolder derived = model.addDerivedRelationsFolder();
+        IRelationship relation = createRelationship(element1, element2);
+        derived.getElements().add(relation);
+        
+        assertEquals(1, ArchimateModelUtils.getSourceRelationships(element1).size());
+        
+        model.removeDerivedRelationsFolder();
+        assertTrue(ArchimateModelUtils.getSourceRelationships(element1).isEmpty());
+    }
+    
+    @Test
+    public void testRelationshipsAreInFolderOrder() {
+        IFolder relationsFolder = model.getFolder(FolderType.RELATIONS);
+        IFolder subFolder = IArchimateFactory.eINSTANCE.createFolder();
+        relationsFolder.getFolders().add(subFolder);
+        
+        IRelationship relation1 = createRelationship(element1, element2);
+        subFolder.getElements().add(relation1);
+        IRelationship relation2 = createRelationship(element1, element3);
+        relationsFolder.getElements().add(relation2);
+        IRelationship relation3 = createRelationship(element1, element2);
+        relationsFolder.getElements().add(relation3);
+        
+        // Elements of a folder come before the elements of its sub-folders
+        assertEquals(3, adapter.getSourceRelationships(element1).size());
+        assertSame(relation2, adapter.getSourceRelationships(element1).get(0));
+        assertSame(relation3, adapter.getSourceRelationships(element1).get(1));
+        assertSame(relation1, adapter.getSourceRelationships(element1).get(2));
+        assertSame(relation3, adapter.getTargetRelationships(element2).get(0));
+        assertSame(relation1, adapter.getTargetRelationships(element2).get(1));
+        
+        // Move in the folder
+        relationsFolder.getElements().move(0, relation3);
+        assertSame(relation3, adapter.getSourceRelationships(element1).get(0));
+        assertSame(relation2, adapter.getSourceRelationships(element1).get(1));
+        
+        // Move to another folder
+        relationsFolder.getElements().remove(relation2);
+        subFolder.getElements().add(relation2);
+        assertSame(relation3, adapter.getSourceRelationships(element1).get(0));
+        assertSame(relation1, adapter.getSourceRelationships(element1).get(1));
+        assertSame(relation2, adapter.getSourceRelationships(element1).get(2));
+
+    }
+    
+    @Test
+    public void testRelationshipsInsertedAtIndexAreInFolderOrder() {
+        IFolder relationsFolder = model.getFolder(FolderType.RELATIONS);
+        
+        IRelationship relation1 = createRelationship(element1, element2);
+        relationsFolder.getElements().add(relation1);
+        IRelationship relation2 = createRelationship(element1, element3);
+        relationsFolder.getElements().add(0, relation2);
+        IRelationship relation3 = createRelationship(element1, element2);
+        relationsFolder.getElements().add(1, relation3);
+        
+        assertSame(relation2, adapter.getSourceRelationships(element1).get(0));
+        assertSame(relation3, adapter.getSourceRelationships(element1).get(1));
+        assertSame(relation1, adapter.getSourceRelationships(element1).get(2));
+        assertSame(relation3, adapter.getTargetRelationships(element2).get(0));
+        assertSame(relation1, adapter.getTargetRelationships(element2).get(1));
+        
+        // Move a folder of relationships
+        IFolder subFolder1 = IArchimateFactory.eINSTANCE.createFolder();
+        IFolder subFolder2 = IArchimateFactory.eINSTANCE.createFolder();
+        relationsFolder.getFolders().add(subFolder1);
+        relationsFolder.getFolders().add(subFolder2);
+        relationsFolder.getElements().remove(relation1);
+        subFolder2.getElements().add(relation1);
+        relationsFolder.getElements().remove(relation2);
+        subFolder1.getElements().add(relation2);
+        assertSame(relation3, adapter.getSourceRelationships(element1).get(0));
+        assertSame(relation2, adapter.getSourceRelationships(element1).get(1));
+        assertSame(relation1, adapter.getSourceRelationships(element1).get(2));
+        
+        relationsFolder.getFolders().move(0, subFolder2);
+        assertSame(relation3, adapter.getSourceRelationships(element1).get(0));
+        assertSame(relation1, adapter.getSourceRelationships(element1).get(1));
+        assertSame(relation2, adapter.getSourceRelationships(element1).get(2));
+    }
+    
+    @Test
+    public void testConcurrentLookups() throws Exception {
+        IFolder relationsFolder = model.getFolder(FolderType.RELATIONS);
+        
+        final List<IArchimateElement> elements = new ArrayList<IArchimateElement>();
+        for(int i = 0; i < 100; i++) {
+            IArchimateElement element = IArchimateFactory.eINSTANCE.createBusinessActor();
+            model.getDefaultFolderForElement(element).getElements().add(element);
+            elements.add(element);
+        }
+        
+        // Add relationships in reverse order
+        for(int i = 0; i < 1000; i++) {
+            relationsFolder.getElements().add(0, createRelationship(elements.get(i % 100), elements.get((i * 7) % 100)));
+        }
+        
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<?>> futures = new ArrayList<Future<?>>();
+        
+        try {
+            for(int i = 0; i < 8; i++) {
+                futures.add(executor.submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        for(IArchimateElement element : elements) {
+                            for(IRelationship relationship : adapter.getSourceRelationships(element)) {
+                                assertSame(element, relationship.getSource());
+                            }
+                            for(IRelationship relationship : adapter.getTargetRelationships(element)) {
+                                assertSame(element, relationship.getTarget());
+                            }
+                        }
+                    }
+                }));
+            }
+            
+            // Rethrows any exception thrown in a lookup
+            for(Future<?> future : futures) {
+                future.get();
+            }
+        }
+        finally {
+            executor.shutdown();
+        }
+        
+        // In folder order
+        List<IRelationship> relationships = adapter.getSourceRelationships(elements.get(0));
+        assertEquals(10, relationships.size());
+        for(int i = 1; i < relationships.size(); i++) {
+            assertTrue(relationsFolder.getElements().indexOf(relationships.get(i - 1)) < relationsFolder.getElements().indexOf(relationships.get(i)));
+        }
+    }
+    
+    @Test
+    public void testEntriesRemovedWithLastRelationship() {
+        IRelationship relation = createRelationship(element1, element2);
+        model.getDefaultFolderForElement(relation).getElements().add(relation);
+        assertTrue(adapter.hasEntries(element1));
+        assertTrue(adapter.hasEntries(element2));
+        
+        model.getDefaultFolderForElement(relation).getElements().remove(relation);
+        assertFalse(adapter.hasEntries(element1));
+        assertFalse(adapter.hasEntries(element2));
+    }
+    
+    @Test
+    public void testEntriesRemovedWithElement() {
+        IRelationship relation = createRelationship(element1, element2);
+        model.getDefaultFolderForElement(relation).getElements().add(relation);
+        
+        // Element removed but relationship left in the model
+        IFolder folder = (IFolder)element1.eContainer();
+        folder.getElements().remove(element1);
+        assertFalse(adapter.hasEntries(element1));
+        assertTrue(adapter.hasEntries(element2));
+        
+        // Undo
+        folder.getElements().add(element1);
+        assertEquals(1, adapter.getSourceRelationships(element1).size());
+        assertSame(relation, adapter.getSourceRelationships(element1).get(0));
+        
+        // Element and then relationship removed
+        folder.getElements().remove(element1);
+        model.getDefaultFolderForElement(relation).getElements().remove(relation);
+        assertFalse(adapter.hasEntries(element1));
+        assertFalse(adapter.hasEntries(element2));
+        
+        // Adding the element back doesn't index the removed relationship
+        folder.getElements().add(element1);
+        assertFalse(adapter.hasEntries(element1));
+    }
+    
+    @Test
+    public void testEntriesRemovedWithFolderOfElements() {
+        IFolder folder = IArchimateFactory.eINSTANCE.createFolder();
+        model.getFolder(FolderType.BUSINESS).getFolders().add(folder);
+        folder.getElements().add(element1);
+        
+        IRelationship relation = createRelationship(element1, element2);
+        model.getDefaultFolderForElement(relation).getElements().add(relation);
+        
+        model.getFolder(FolderType.BUSINESS).getFolders().remove(folder);
+        assertFalse(adapter.hasEntries(element1));
+        
+        model.getFolder(FolderType.BUSINESS).getFolders().add(folder);
+        assertSame(relation, adapter.getSourceRelationships(element1).get(0));
+    }
+}
@@ -5,9 +5,11 @@
  */
 package com.archimatetool.model.util;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 
@@ -95,5 +97,68 @@ public class RelationshipsMatrixTests {
         assertFalse(matrix.isValidRelationship(sourceClass, targetClass, relationship));
     }
     
+    @Test
+    public void testIsValidRelationship_MatchesMatrix() {
+        // The compiled tables should give the same answers as the loaded matrix
+        Map<EClass, List<TargetMatrix>> map = matrix.getRelationshipsMatrix();
+        
+        for(EClass sourceClass : ArchimateModelUtils.getAllArchimateClasses()) {
+            for(EClass targetClass : ArchimateModelUtils.getAllArchimateClasses()) {
+                for(EClass relationship : ArchimateModelUtils.getRelationsClasses()) {
+                    boolean expected = false;
+                    for(TargetMatrix targetMatrix : map.get(sourceClass)) {
+                        if(targetMatrix.getTargetClass() == targetClass && targetMatrix.getRelationships().contains(relationship)) {
+                            expected = true;
+                        }
+                    }
+                    assertEquals(expected, matrix.isValidRelationship(sourceClass, targetClass, relationship));
+                }
+            }
+        }
+    }
     
-} 
+    @Test
+    public void testIsValidRelationship_NotRelationship() {
+        EClass sourceClass = IArchimatePackage.eINSTANCE.getBusinessActor();
+        EClass targetClass = IArchimatePackage.eINSTANCE.getBusinessActor();
+        assertFalse(matrix.isValidRelationship(sourceClass, targetClass, null));
+        assertFalse(matrix.isValidRelationship(sourceClass, targetClass, IArchimatePackage.eINSTANCE.getBusinessRole()));
+        assertFalse(matrix.isValidRelationship(sourceClass, targetClass, IArchimatePackage.eINSTANCE.getRelationship()));
+    }
+    
+    @Test
+    public void testGetValidRelationships() {
+        EClass sourceClass = IArchimatePackage.eINSTANCE.getAndJunction();
+        EClass targetClass = IArchimatePackage.eINSTANCE.getOrJunction();
+        
+        EClass[] classes = matrix.getValidRelationships(sourceClass, targetClass);
+        assertEquals(2, classes.length);
+        
+        // In preferred order
+        assertEquals(IArchimatePackage.eINSTANCE.getTriggeringRelationship(), classes[0]);
+        assertEquals(IArchimatePackage.eINSTANCE.getFlowRelationship(), classes[1]);
+        
+        // Returned array is a copy
+        classes[0] = null;
+        assertEquals(IArchimatePackage.eINSTANCE.getTriggeringRelationship(), matrix.getValidRelationships(sourceClass, targetClass)[0]);
+    }
+    
+    @Test
+    public void testGetValidTargets() {
+        EClass sourceClass = IArchimatePackage.eINSTANCE.getBusinessActor();
+        EClass relationship = IArchimatePackage.eINSTANCE.getFlowRelationship();
+        
+        List<EClass> targets = Arrays.asList(matrix.getValidTargets(sourceClass, relationship));
+        assertFalse(targets.isEmpty());
+        
+        for(EClass targetClass : ArchimateModelUtils.getAllArchimateClasses()) {
+            assertEquals(matrix.isValidRelationship(sourceClass, targetClass, relationship), targets.contains(targetClass));
+        }
+        
+        // Junctions
+        assertTrue(targets.contains(IArchimatePackage.eINSTANCE.getAndJunction()));
+        assertTrue(targets.contains(IArchimatePackage.eINSTANCE.getOrJunction()));
+        
+        assertEquals(0, matrix.getValidTargets(sourceClass, IArchimatePackage.eINSTANCE.getBusinessRole()).length);
+    }
+}
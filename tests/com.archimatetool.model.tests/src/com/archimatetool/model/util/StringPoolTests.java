@@ -0,0 +1,182 @@
+/**
+ * This program and the accompanying materials
+ * are made available under the terms of the License
+ * which accompanies this distribution in the file LICENSE.txt
+ */
+package com.archimatetool.model.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import junit.framework.JUnit4TestAdapter;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+
+import org.eclipse.emf.ecore.resource.Resource;
+import org.junit.Test;
+
+import com.archimatetool.model.IArchimateElement;
+import com.archimatetool.model.IArchimateFactory;
+import com.archimatetool.model.IArchimateModel;
+import com.archimatetool.model.FolderType;
+import com.archimatetool.model.IArchimatePackage;
+import com.archimatetool.model.IDiagramModel;
+import com.archimatetool.model.IDiagramModelConnection;
+import com.archimatetool.model.IDiagramModelObject;
+import com.archimatetool.model.IProperty;
+import com.archimatetool.model.TestSupport;
+import com.archimatetool.tests.TestUtils;
+
+
+
+/**
+ * StringPool Tests
+ *
+ * @author Phillip Beauvoir
+ */
+@SuppressWarnings("nls")
+public class StringPoolTests {
+    
+    public static junit.framework.Test suite() {
+        return new JUnit4TestAdapter(StringPoolTests.class);
+    }
+    
+    @Test
+    public void testIntern() {
+        StringPool pool = new StringPool();
+        
+        String s1 = new String("Owner");
+        String s2 = new String("Owner");
+        
+        assertSame(s1, pool.intern(s1));
+        assertSame(s1, pool.intern(s2));
+        assertNull(pool.intern(null));
+        
+        assertEquals(1, pool.size());
+        assertEquals(2, pool.getLookupCount());
+        assertEquals(1, pool.getDuplicateCount());
+        assertEquals(StringPool.getSize(s2), pool.getBytesSaved());
+    }
+    
+    @Test
+    public void testGetStringPool() {
+        IArchimateModel model = IArchimateFactory.eINSTANCE.createArchimateModel();
+        StringPool pool = StringPool.getStringPool(model);
+        assertNotNull(pool);
+        assertSame(pool, StringPool.getStringPool(model));
+        assertSame(pool, model.getAdapter(StringPool.class));
+    }
+    
+    @Test
+    public void testIsPooled() {
+        assertTrue(StringPool.isPooled(IArchimatePackage.Literals.PROPERTY__KEY));
+        assertTrue(StringPool.isPooled(IArchimatePackage.Literals.DOCUMENTABLE__DOCUMENTATION));
+        assertFalse(StringPool.isPooled(IArchimatePackage.Literals.NAMEABLE__NAME));
+    }
+    
+    @Test
+    public void testInternAll() {
+        IArchimateElement element = createElement("Owner", new String("Joe"), "Docs");
+        IArchimateElement element2 = createElement(new String("Owner"), new String("Joe"), new String("Docs"));
+        assertNotSame(element.getProperties().get(0).getKey(), element2.getProperties().get(0).getKey());
+        
+        StringPool pool = new StringPool();
+        pool.internAll(element);
+        pool.internAll(element2);
+        
+        assertSame(element.getProperties().get(0).getKey(), element2.getProperties().get(0).getKey());
+        assertSame(element.getProperties().get(0).getValue(), element2.getProperties().get(0).getValue());
+        assertSame(element.getDocumentation(), element2.getDocumentation());
+    }
+    
+    @Test
+    public void testLoadXML() throws IOException {
+        File file = TestSupport.saveModel(createModel());
+        
+        IArchimateModel model = TestSupport.loadModel(file);
+        checkModel(model);
+    }
+    
+    @Test
+    public void testLoadBinary() throws IOException {
+        File xmlFile = TestSupport.saveModel(createModel());
+        File binaryFile = TestUtils.createTempFile(".archimate");
+        ArchimateResourceConverter.convertToBinary(xmlFile, binaryFile);
+        
+        IArchimateModel model = TestSupport.loadModel(binaryFile);
+        checkModel(model);
+    }
+    
+    @Test
+    public void testLoadDiagramModelLazily() throws IOException {
+        File file = TestSupport.saveModel(createModel());
+        
+        Resource resource = ArchimateResourceFactory.createNewResource(file);
+        resource.load(Collections.singletonMap(ArchimateResource.OPTION_LOAD_DIAGRAMS_LAZILY, Boolean.TRUE));
+        IArchimateModel model = (IArchimateModel)resource.getContents().get(0);
+        
+        IDiagramModel dm = model.getDiagramModels().get(0);
+        assertFalse(LazyDiagramContent.isLoaded(dm));
+        
+        IDiagramModelConnection connection = dm.getChildren().get(0).getSourceConnections().get(0);
+        
+        IArchimateElement element = (IArchimateElement)model.getFolders().get(0).getElements().get(0);
+        assertSame(element.getProperties().get(0).getKey(), connection.getProperties().get(0).getKey());
+    }
+    
+    private void checkModel(IArchimateModel model) {
+        StringPool pool = (StringPool)model.getAdapter(StringPool.class);
+        assertNotNull(pool);
+        
+        IArchimateElement element1 = (IArchimateElement)model.getFolders().get(0).getElements().get(0);
+        IArchimateElement element2 = (IArchimateElement)model.getFolders().get(0).getElements().get(1);
+        assertSame(element1.getProperties().get(0).getKey(), element2.getProperties().get(0).getKey());
+        assertSame(element1.getProperties().get(0).getValue(), element2.getProperties().get(0).getValue());
+        assertSame(element1.getDocumentation(), element2.getDocumentation());
+        assertTrue(pool.getDuplicateCount() > 0);
+    }
+    
+    private IArchimateModel createModel() {
+        IArchimateModel model = IArchimateFactory.eINSTANCE.createArchimateModel();
+        model.setDefaults();
+        
+        IArchimateElement element1 = createElement("Owner", "Joe", "Docs");
+        IArchimateElement element2 = createElement("Owner", "Joe", "Docs");
+        model.getFolders().get(0).getElements().add(element1);
+        model.getFolders().get(0).getElements().add(element2);
+        
+        IDiagramModel dm = IArchimateFactory.eINSTANCE.createArchimateDiagramModel();
+        model.getFolder(FolderType.DIAGRAMS).getElements().add(dm);
+        
+        IDiagramModelObject dmo1 = IArchimateFactory.eINSTANCE.createDiagramModelNote();
+        IDiagramModelObject dmo2 = IArchimateFactory.eINSTANCE.createDiagramModelNote();
+        dm.getChildren().add(dmo1);
+        dm.getChildren().add(dmo2);
+        
+        IDiagramModelConnection connection = IArchimateFactory.eINSTANCE.createDiagramModelConnection();
+        connection.connect(dmo1, dmo2);
+        IProperty property = IArchimateFactory.eINSTANCE.createProperty();
+        property.setKey(new String("Owner"));
+        connection.getProperties().add(property);
+        
+        return model;
+    }
+    
+    private IArchimateElement createElement(String key, String value, String documentation) {
+        IArchimateElement element = IArchimateFactory.eINSTANCE.createBusinessActor();
+        element.setDocumentation(documentation);
+        
+        IProperty property = IArchimateFactory.eINSTANCE.createProperty();
+        property.setKey(key);
+        property.setValue(value);
+        element.getProperties().add(property);
+        
+        return element;
+    }
+}
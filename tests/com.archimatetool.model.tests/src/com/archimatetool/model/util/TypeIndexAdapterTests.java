@@ -0,0 +1,185 @@
+/**
+ * This program and the accompanying materials
+ * are made available under the terms of the License
+ * which accompanies this distribution in the file LICENSE.txt
+ */
+package com.archimatetool.model.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import junit.framework.JUnit4TestAdapter;
+
+import java.util.List;
+
+import org.eclipse.emf.ecore.EClass;
+import org.eclipse.emf.ecore.EObject;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.archimatetool.model.FolderType;
+import com.archimatetool.model.IArchimateElement;
+import com.archimatetool.model.IArchimateFactory;
+import com.archimatetool.model.IArchimateModel;
+import com.archimatetool.model.IArchimatePackage;
+import com.archimatetool.model.IFolder;
+import com.archimatetool.model.IRelationship;
+
+
+
+/**
+ * TypeIndexAdapter Tests
+ *
+ * @author Phillip Beauvoir
+ */
+public class TypeIndexAdapterTests {
+    
+    public static junit.framework.Test suite() {
+        return new JUnit4TestAdapter(TypeIndexAdapterTests.class);
+    }
+    
+    private IArchimateModel model;
+    private IArchimateElement actor1, actor2, role;
+    
+    @Before
+    public void runBeforeEachTest() {
+        model = IArchimateFactory.eINSTANCE.createArchimateModel();
+        model.setDefaults();
+        
+        actor1 = createElement(IArchimatePackage.eINSTANCE.getBusinessActor());
+        actor2 = createElement(IArchimatePackage.eINSTANCE.getBusinessActor());
+        role = createElement(IArchimatePackage.eINSTANCE.getBusinessRole());
+    }
+    
+    private IArchimateElement createElement(EClass eClass) {
+        IArchimateElement element = (IArchimateElement)IArchimateFactory.eINSTANCE.create(eClass);
+        model.getDefaultFolderForElement(element).getElements().add(element);
+        return element;
+    }
+    
+    @Test
+    public void testIndexMadeFromModel() {
+        TypeIndexAdapter index = new TypeIndexAdapter(model);
+        
+        List<EObject> list = index.getObjectsOfType(IArchimatePackage.eINSTANCE.getBusinessActor());
+        assertEquals(2, list.size());
+        assertSame(actor1, list.get(0));
+        assertSame(actor2, list.get(1));
+        
+        assertEquals(1, index.getCount(IArchimatePackage.eINSTANCE.getBusinessRole()));
+        assertEquals(0, index.getCount(IArchimatePackage.eINSTANCE.getBusinessProcess()));
+        assertTrue(index.getObjectsOfType(IArchimatePackage.eINSTANCE.getBusinessProcess()).isEmpty());
+    }
+    
+    @Test
+    public void testElementAddedAndRemoved() {
+        TypeIndexAdapter index = new TypeIndexAdapter(model);
+        
+        IArchimateElement process = createElement(IArchimatePackage.eINSTANCE.getBusinessProcess());
+        assertEquals(1, index.getCount(IArchimatePackage.eINSTANCE.getBusinessProcess()));
+        assertTrue(index.getTypes().contains(IArchimatePackage.eINSTANCE.getBusinessProcess()));
+        
+        model.getFolder(FolderType.BUSINESS).getElements().remove(process);
+        assertEquals(0, index.getCount(IArchimatePackage.eINSTANCE.getBusinessProcess()));
+        assertFalse(index.getTypes().contains(IArchimatePackage.eINSTANCE.getBusinessProcess()));
+    }
+    
+    @Test
+    public void testSubFolderAddedAndRemoved() {
+        TypeIndexAdapter index = new TypeIndexAdapter(model);
+        
+        IFolder folder = IArchimateFactory.eINSTANCE.createFolder();
+        IFolder subFolder = IArchimateFactory.eINSTANCE.createFolder();
+        folder.getFolders().add(subFolder);
+        IArchimateElement actor3 = IArchimateFactory.eINSTANCE.createBusinessActor();
+        subFolder.getElements().add(actor3);
+        
+        model.getFolder(FolderType.BUSINESS).getFolders().add(folder);
+        assertEquals(3, index.getCount(IArchimatePackage.eINSTANCE.getBusinessActor()));
+        
+        // Element added to a folder once the folder is in the model
+        IArchimateElement actor4 = IArchimateFactory.eINSTANCE.createBusinessActor();
+        subFolder.getElements().add(actor4);
+        assertEquals(4, index.getCount(IArchimatePackage.eINSTANCE.getBusinessActor()));
+        
+        model.getFolder(FolderType.BUSINESS).getFolders().remove(folder);
+        assertEquals(2, index.getCount(IArchimatePackage.eINSTANCE.getBusinessActor()));
+    }
+    
+    @Test
+    public void testElementMovedBetweenFolders() {
+        TypeIndexAdapter index = new TypeIndexAdapter(model);
+        
+        IFolder folder = IArchimateFactory.eINSTANCE.createFolder();
+        model.getFolder(FolderType.BUSINESS).getFolders().add(folder);
+        folder.getElements().add(actor1);
+        
+        assertEquals(2, index.getCount(IArchimatePackage.eINSTANCE.getBusinessActor()));
+    }
+    
+    @Test
+    public void testGetObjectsOfKind() {
+        TypeIndexAdapter index = new TypeIndexAdapter(model);
+        
+        IRelationship relation = IArchimateFactory.eINSTANCE.createAssignmentRelationship();
+        relation.setSource(actor1);
+        relation.setTarget(role);
+        model.getFolder(FolderType.RELATIONS).getElements().add(relation);
+        
+        List<EObject> elements = index.getObjectsOfKind(IArchimatePackage.eINSTANCE.getArchimateElement());
+        assertEquals(3, elements.size());
+        assertFalse(elements.contains(relation));
+        
+        List<EObject> relations = index.getObjectsOfKind(IArchimatePackage.eINSTANCE.getRelationship());
+        assertEquals(1, relations.size());
+        assertSame(relation, relations.get(0));
+        
+        model.getFolder(FolderType.DIAGRAMS).getElements().add(IArchimateFactory.eINSTANCE.createArchimateDiagramModel());
+        model.getFolder(FolderType.DIAGRAMS).getElements().add(IArchimateFactory.eINSTANCE.createSketchModel());
+        assertEquals(1, index.getObjectsOfType(IArchimatePackage.eINSTANCE.getArchimateDiagramModel()).size());
+        assertEquals(2, index.getObjectsOfKind(IArchimatePackage.eINSTANCE.getDiagramModel()).size());
+    }
+    
+    @Test
+    public void testGetObjectsOfKind_InModelOrder() {
+        IArchimateElement actor3 = createElement(IArchimatePackage.eINSTANCE.getBusinessActor());
+        
+        TypeIndexAdapter index = new TypeIndexAdapter(model);
+        
+        // Folder order across types, not grouped by type
+        List<EObject> elements = index.getObjectsOfKind(IArchimatePackage.eINSTANCE.getArchimateElement());
+        assertEquals(4, elements.size());
+        assertSame(actor1, elements.get(0));
+        assertSame(actor2, elements.get(1));
+        assertSame(role, elements.get(2));
+        assertSame(actor3, elements.get(3));
+        
+        // Added objects come last
+        IArchimateElement role2 = createElement(IArchimatePackage.eINSTANCE.getBusinessRole());
+        model.getFolder(FolderType.BUSINESS).getElements().remove(actor1);
+        
+        elements = index.getObjectsOfKind(IArchimatePackage.eINSTANCE.getArchimateElement());
+        assertEquals(4, elements.size());
+        assertSame(actor2, elements.get(0));
+        assertSame(role, elements.get(1));
+        assertSame(actor3, elements.get(2));
+        assertSame(role2, elements.get(3));
+    }
+    
+    @Test
+    public void testArchimateModelUtils() {
+        List<IArchimateElement> actors = ArchimateModelUtils.getObjectsOfType(model, IArchimatePackage.eINSTANCE.getBusinessActor());
+        assertEquals(2, actors.size());
+        
+        // Index is made once and kept up to date
+        TypeIndexAdapter index = (TypeIndexAdapter)model.getAdapter(TypeIndexAdapter.class);
+        assertTrue(index != null);
+        
+        createElement(IArchimatePackage.eINSTANCE.getBusinessActor());
+        assertEquals(3, ArchimateModelUtils.getObjectCount(model, IArchimatePackage.eINSTANCE.getBusinessActor()));
+        assertSame(index, model.getAdapter(TypeIndexAdapter.class));
+        
+        assertEquals(4, ArchimateModelUtils.getObjectsOfKind(model, IArchimatePackage.eINSTANCE.getArchimateElement()).size());
+    }
+}